@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.raw;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the bulk methods backed by {@link ArrayKernels} against the scalar
+ * loops they replace. The fork adds jdk.incubator.vector, so the vector
+ * kernels are the ones in use, and needs JDK 17 or later.
+ *
+ * @author Antonio Vicente Martin
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "--add-modules", "jdk.incubator.vector" })
+@State(Scope.Thread)
+public class ArrayKernelsBenchmark {
+
+	@Param({ "1024", "65536" })
+	public int length;
+
+	private short[] shorts;
+	private int[] ints;
+	private long[] longs;
+	private float[] floats;
+
+	@Setup
+	public void setup() {
+		if (ArrayKernels.VECTOR == null) {
+			throw new IllegalStateException("The vector kernels are not available");
+		}
+
+		Random random = new Random(42);
+		shorts = new short[length];
+		ints = new int[length];
+		longs = new long[length];
+		floats = new float[length];
+		for (int i = 0; i < length; i++) {
+			longs[i] = random.nextLong();
+			ints[i] = (int) longs[i];
+			shorts[i] = (short) longs[i];
+			floats[i] = random.nextFloat() * 2.2f - 1.1f;
+		}
+	}
+
+	@Benchmark
+	public short[] swapShorts() {
+		ByteConverter.swapBytes(shorts, 0, length);
+		return shorts;
+	}
+
+	@Benchmark
+	public short[] swapShortsScalar() {
+		for (int i = 0; i < length; i++) {
+			shorts[i] = Short.reverseBytes(shorts[i]);
+		}
+		return shorts;
+	}
+
+	@Benchmark
+	public int[] swapInts() {
+		ByteConverter.swapBytes(ints, 0, length);
+		return ints;
+	}
+
+	@Benchmark
+	public int[] swapIntsScalar() {
+		for (int i = 0; i < length; i++) {
+			ints[i] = Integer.reverseBytes(ints[i]);
+		}
+		return ints;
+	}
+
+	@Benchmark
+	public long[] swapLongs() {
+		ByteConverter.swapBytes(longs, 0, length);
+		return longs;
+	}
+
+	@Benchmark
+	public long[] swapLongsScalar() {
+		for (int i = 0; i < length; i++) {
+			longs[i] = Long.reverseBytes(longs[i]);
+		}
+		return longs;
+	}
+
+	@Benchmark
+	public float[] toFloats() {
+		PcmConverter.toFloatsArray(shorts, 0, floats, 0, length, true);
+		return floats;
+	}
+
+	@Benchmark
+	public float[] toFloatsScalar() {
+		float scale = 1.0f / 32768;
+		for (int i = 0; i < length; i++) {
+			floats[i] = shorts[i] * scale;
+		}
+		return floats;
+	}
+
+	@Benchmark
+	public short[] fromFloats() {
+		PcmConverter.fromFloatsArray(floats, 0, length, shorts, 0, true);
+		return shorts;
+	}
+
+	@Benchmark
+	public short[] fromFloatsScalar() {
+		for (int i = 0; i < length; i++) {
+			shorts[i] = (short) Math.round(Math.min(Math.max(floats[i] * 32768, Short.MIN_VALUE), Short.MAX_VALUE));
+		}
+		return shorts;
+	}
+
+}
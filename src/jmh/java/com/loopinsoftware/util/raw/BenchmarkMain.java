@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.raw;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks and writes the results as JSON, so runs can be compared
+ * over time.
+ * 
+ * <pre>
+ * mvn -P benchmarks package
+ * java -jar target/benchmarks.jar [result.json] [regex]
+ * </pre>
+ * 
+ * @author Antonio Vicente Martin
+ *
+ */
+public class BenchmarkMain {
+
+	/**
+	 * Runs the benchmarks
+	 * 
+	 * @param args
+	 *            The result file, jmh-result.json by default, and the regular
+	 *            expression of the benchmarks to run, all of them by default
+	 * @throws RunnerException
+	 *             If a benchmark fails
+	 */
+	public static void main(String[] args) throws RunnerException {
+		String result = args.length > 0 ? args[0] : "jmh-result.json";
+		String include = args.length > 1 ? args[1] : "com\\.loopinsoftware\\..*Benchmark";
+
+		Options options = new OptionsBuilder().include(include).addProfiler(LatencyProfiler.class)
+				.resultFormat(ResultFormatType.JSON).result(result).build();
+		new Runner(options).run();
+	}
+
+}
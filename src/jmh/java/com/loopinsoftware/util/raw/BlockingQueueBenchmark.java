@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.raw;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.loopinsoftware.util.raw.BlockingQueue.PushPolicy;
+import com.loopinsoftware.util.time.Histogram;
+
+/**
+ * Measures the throughput of {@link BlockingQueue} between producer and
+ * consumer threads, and the time per message in sample mode.
+ * 
+ * Every invocation pushes and pops the same number of messages, so no thread
+ * is left waiting on a semaphore when an iteration ends, which a plain JMH
+ * group benchmark can not guarantee for a queue without timed operations.
+ * 
+ * Each message carries the time it was pushed, and the consumers record the
+ * time from push to pop of every message into {@link #LATENCY}, which
+ * {@link LatencyProfiler} reports as secondary results.
+ * 
+ * @author Antonio Vicente Martin
+ *
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BlockingQueueBenchmark {
+
+	/**
+	 * The number of messages of each invocation
+	 */
+	private static final int MESSAGES = 4096;
+
+	/**
+	 * The time from push to pop of the messages, in nanoseconds
+	 */
+	static final Histogram LATENCY = new Histogram();
+
+	/**
+	 * The number of producers and of consumers, 0 for half the processors
+	 */
+	@Param({ "1", "2", "4", "0" })
+	public int threads;
+
+	@Param({ "PRESERVE_OLD_DATA", "OVERWRITE_OLD_DATA" })
+	public PushPolicy policy;
+
+	@Param({ "64", "1024" })
+	public int messageSize;
+
+	private int producers;
+	private ExecutorService executor;
+	private BlockingQueue queue;
+	private Future<?>[] futures;
+
+	@Setup(Level.Trial)
+	public void setupTrial() {
+		producers = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+		executor = Executors.newFixedThreadPool(2 * producers);
+		futures = new Future<?>[2 * producers];
+	}
+
+	@Setup(Level.Iteration)
+	public void setupIteration() {
+		queue = new BlockingQueue(16 * messageSize, policy, messageSize);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(MESSAGES)
+	public void transfer() throws Exception {
+		for (int t = 0; t < producers; t++) {
+			// Spreads the remainder, so the total is exactly MESSAGES
+			final int messages = MESSAGES / producers + (t < MESSAGES % producers ? 1 : 0);
+			futures[2 * t] = executor.submit(new Runnable() {
+				@Override
+				public void run() {
+					byte[] message = new byte[messageSize];
+					for (int i = 0; i < messages; i++) {
+						ByteConverter.toBytesArray(System.nanoTime(), message, 0, true);
+						queue.push(message);
+					}
+				}
+			});
+			futures[2 * t + 1] = executor.submit(new Runnable() {
+				@Override
+				public void run() {
+					byte[] message = new byte[messageSize];
+					for (int i = 0; i < messages; i++) {
+						// Overwritten messages leave the queue short
+						if (queue.pop(message) == messageSize) {
+							LATENCY.record(System.nanoTime() - ByteConverter.toLongValue(message, 0, true));
+						}
+					}
+				}
+			});
+		}
+		for (Future<?> future : futures) {
+			future.get();
+		}
+	}
+
+}
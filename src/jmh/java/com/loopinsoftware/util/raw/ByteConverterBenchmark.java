@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.raw;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the VarHandle backed conversions of {@link ByteConverter} against
+ * the original byte by byte loops.
+ * 
+ * @author Antonio Vicente Martin
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ByteConverterBenchmark {
+
+	/**
+	 * The number of values converted per invocation
+	 */
+	private static final int VALUES = 1024;
+
+	@Param({ "2", "4", "8" })
+	public int bytesPerValue;
+
+	@Param({ "true", "false" })
+	public boolean littleEndian;
+
+	private byte[] bytes;
+	private long[] values;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(42);
+		bytes = new byte[VALUES * bytesPerValue];
+		values = new long[VALUES];
+		random.nextBytes(bytes);
+		for (int i = 0; i < values.length; i++) {
+			values[i] = random.nextLong();
+		}
+	}
+
+	@Benchmark
+	public void toValue(Blackhole blackhole) {
+		for (int i = 0; i < VALUES; i++) {
+			blackhole.consume(ByteConverter.toValue(bytes, i * bytesPerValue, bytesPerValue, littleEndian));
+		}
+	}
+
+	@Benchmark
+	public void toValueBytewise(Blackhole blackhole) {
+		for (int i = 0; i < VALUES; i++) {
+			blackhole.consume(ByteConverter.toValueBytewise(bytes, i * bytesPerValue, bytesPerValue, littleEndian));
+		}
+	}
+
+	@Benchmark
+	public byte[] toBytesArray() {
+		for (int i = 0; i < VALUES; i++) {
+			int start = i * bytesPerValue;
+			switch (bytesPerValue) {
+			case 2:
+				ByteConverter.toBytesArray((short) values[i], bytes, start, littleEndian);
+				break;
+			case 4:
+				ByteConverter.toBytesArray((int) values[i], bytes, start, littleEndian);
+				break;
+			default:
+				ByteConverter.toBytesArray(values[i], bytes, start, littleEndian);
+			}
+		}
+		return bytes;
+	}
+
+	@Benchmark
+	public byte[] toBytesArrayBytewise() {
+		for (int i = 0; i < VALUES; i++) {
+			ByteConverter.toBytesArrayBytewise(values[i], bytes, i * bytesPerValue, bytesPerValue, littleEndian);
+		}
+		return bytes;
+	}
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.raw;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the sample decoding of {@link ByteConverter} at every sample width,
+ * including the odd ones not covered by {@link ByteConverterBenchmark}, and
+ * compares the specialized decoders of {@link PcmConverter} behind
+ * toDoublesArray with the generic per sample path they replaced.
+ * 
+ * @author Antonio Vicente Martin
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ByteConverterSampleBenchmark {
+
+	/**
+	 * The number of samples converted per invocation
+	 */
+	private static final int SAMPLES = 1024;
+
+	@Param({ "1", "2", "3", "4" })
+	public int sampleSize;
+
+	@Param({ "true", "false" })
+	public boolean littleEndian;
+
+	private byte[] bytes;
+	private double[] samples;
+
+	@Setup
+	public void setup() {
+		bytes = new byte[SAMPLES * sampleSize];
+		samples = new double[SAMPLES];
+		new Random(42).nextBytes(bytes);
+	}
+
+	@Benchmark
+	public void toValue(Blackhole blackhole) {
+		for (int i = 0; i < SAMPLES; i++) {
+			blackhole.consume(ByteConverter.toValue(bytes, i * sampleSize, sampleSize, littleEndian));
+		}
+	}
+
+	@Benchmark
+	public double[] toDoublesArrayGeneric() {
+		// The loop toDoublesArray ran before the specialized decoders
+		double scale = 1.0 / (1L << (8 * sampleSize - 1));
+		for (int i = 0; i < SAMPLES; i++) {
+			samples[i] = ByteConverter.toValue(bytes, i * sampleSize, sampleSize, littleEndian) * scale;
+		}
+		return samples;
+	}
+
+	@Benchmark
+	public double[] toDoublesArray() {
+		ByteConverter.toDoublesArray(bytes, 0, sampleSize, samples, 0, SAMPLES, true, littleEndian);
+		return samples;
+	}
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.raw;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+
+import com.loopinsoftware.util.time.Histogram;
+
+/**
+ * Reports the message latencies of {@link BlockingQueueBenchmark} as
+ * secondary results: the percentiles and the maximum of every iteration, in
+ * nanoseconds, averaged over the iterations.
+ * 
+ * Auxiliary counters can not carry them, since JMH adds those up over the
+ * iterations. {@link BenchmarkMain} adds this profiler to every run.
+ * 
+ * @author Antonio Vicente Martin
+ * 
+ */
+public class LatencyProfiler implements InternalProfiler {
+
+	private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+
+	private final Histogram interval = new Histogram();
+
+	@Override
+	public String getDescription() {
+		return "Message latency of BlockingQueueBenchmark";
+	}
+
+	@Override
+	public void beforeIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams) {
+		// Drops what the previous iteration left
+		BlockingQueueBenchmark.LATENCY.drainTo(interval);
+	}
+
+	@Override
+	public Collection<? extends Result> afterIteration(BenchmarkParams benchmarkParams,
+			IterationParams iterationParams, IterationResult result) {
+		BlockingQueueBenchmark.LATENCY.drainTo(interval);
+		if (interval.getCount() == 0) {
+			return Collections.emptyList();
+		}
+
+		List<Result> results = new ArrayList<Result>();
+		for (double percentile : PERCENTILES) {
+			String label = percentile == (long) percentile ? Long.toString((long) percentile)
+					: Double.toString(percentile);
+			results.add(new ScalarResult("latency.p" + label, interval.getValueAtPercentile(percentile), "ns",
+					AggregationPolicy.AVG));
+		}
+		results.add(new ScalarResult("latency.max", interval.getMax(), "ns", AggregationPolicy.MAX));
+		return results;
+	}
+
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.raw;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the single threaded operations of {@link Queue} at several chunk
+ * sizes. Without wrap the capacity is the chunk size, so every chunk is copied
+ * in one piece. With wrap the capacity is one byte more, so the positions
+ * shift by one on every round and almost every chunk is split at the end of
+ * the ring.
+ * 
+ * @author Antonio Vicente Martin
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class QueueBenchmark {
+
+	@Param({ "16", "256", "4096" })
+	public int chunkSize;
+
+	@Param({ "false", "true" })
+	public boolean wrap;
+
+	private byte[] chunk;
+	private Queue queue;
+	private Queue full;
+
+	@Setup
+	public void setup() {
+		chunk = new byte[chunkSize];
+		for (int i = 0; i < chunk.length; i++) {
+			chunk[i] = (byte) i;
+		}
+
+		int capacity = wrap ? chunkSize + 1 : chunkSize;
+		queue = new Queue(capacity);
+
+		// With wrap the full chunk starts one byte after the ring start
+		full = new Queue(capacity);
+		if (wrap) {
+			full.add(chunk, 0, 1);
+			full.skip(1);
+		}
+		full.add(chunk);
+	}
+
+	@Benchmark
+	public int addPop() {
+		queue.add(chunk);
+		return queue.pop(chunk);
+	}
+
+	@Benchmark
+	public int pushPop() {
+		queue.push(chunk);
+		return queue.pop(chunk);
+	}
+
+	@Benchmark
+	public int peek() {
+		return full.peek(chunk);
+	}
+
+	@Benchmark
+	public Queue pushOverwrite() {
+		full.push(chunk);
+		return full;
+	}
+
+}
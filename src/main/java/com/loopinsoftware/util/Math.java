@@ -70,4 +70,128 @@ public class Math {
         return increaseMod(value, -1, modValue);
     }
 
+    /**
+     * Returns a percentile of the values of an array, interpolating linearly between the closest
+     * ranks. The values are partially reordered in place, so pass a copy if the order matters.
+     *
+     * @param data       The values
+     * @param from       The low index in data
+     * @param to         The high index in data
+     * @param percentile The percentile, from 0 to 100
+     * @return The percentile value
+     */
+    public static double percentile(double[] data, int from, int to, double percentile) {
+        if (from < 0 || from >= to || to > data.length) {
+            throw new ArrayIndexOutOfBoundsException("length: " + data.length + ", from: " + from + ", to: " + to);
+        }
+        if (!(percentile >= 0 && percentile <= 100)) {
+            throw new IllegalArgumentException("Bad percentile: " + percentile);
+        }
+
+        double rank = (to - from - 1) * percentile / 100;
+        int low = from + (int) rank;
+        double fraction = rank - (int) rank;
+
+        double lowValue = select(data, from, to, low);
+        if (fraction == 0) {
+            return lowValue;
+        }
+
+        // The next rank is the smallest value above the selected one
+        double highValue = data[low + 1];
+        for (int i = low + 2; i < to; i++) {
+            highValue = java.lang.Math.min(highValue, data[i]);
+        }
+
+        return lowValue + fraction * (highValue - lowValue);
+    }
+
+    /**
+     * Returns the greatest common divisor of two non negative values
+     *
+     * @param a The first value
+     * @param b The second value
+     * @return The greatest common divisor, 0 when both values are 0
+     */
+    public static int gcd(int a, int b) {
+        if (a < 0 || b < 0) {
+            throw new IllegalArgumentException("Negative value: " + a + ", " + b);
+        }
+        while (b != 0) {
+            int rest = a % b;
+            a = b;
+            b = rest;
+        }
+        return a;
+    }
+
+    /**
+     * Moves the k-th smallest value to its sorted position, with smaller or equal values before it
+     * and greater or equal values after it
+     *
+     * @param data The values
+     * @param from The low index in data
+     * @param to   The high index in data
+     * @param k    The index of the value in sorted order
+     * @return The k-th smallest value
+     */
+    private static double select(double[] data, int from, int to, int k) {
+        int low = from;
+        int high = to - 1;
+
+        while (low < high) {
+            // Median of three pivot
+            int middle = (low + high) >>> 1;
+            if (data[middle] < data[low]) {
+                swap(data, middle, low);
+            }
+            if (data[high] < data[low]) {
+                swap(data, high, low);
+            }
+            if (data[high] < data[middle]) {
+                swap(data, high, middle);
+            }
+            double pivot = data[middle];
+
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (data[i] < pivot) {
+                    i++;
+                }
+                while (data[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(data, i, j);
+                    i++;
+                    j--;
+                }
+            }
+
+            if (k <= j) {
+                high = j;
+            } else if (k >= i) {
+                low = i;
+            } else {
+                break;
+            }
+        }
+
+        return data[k];
+    }
+
+    /**
+     * Swaps two values of an array
+     *
+     * @param data The values
+     * @param i    The first index
+     * @param j    The second index
+     */
+    private static void swap(double[] data, int i, int j) {
+        double aux = data[i];
+        data[i] = data[j];
+        data[j] = aux;
+    }
+
 }
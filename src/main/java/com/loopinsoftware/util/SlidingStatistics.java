@@ -0,0 +1,476 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util;
+
+import com.loopinsoftware.util.event.StreamListener;
+import com.loopinsoftware.util.raw.PcmConverter;
+import com.loopinsoftware.util.raw.Queue;
+
+/**
+ * This class keeps the statistics of the last samples of a stream: mean, variance, RMS, minimum,
+ * maximum and peak. Samples are stored in a ring like a {@link Queue} pushed with overwrite, and
+ * every new sample evicts the oldest one once the window is full. The oldest samples can also be
+ * removed explicitly.
+ * <p>
+ * The window can follow the PCM samples stored in a {@link Queue}, updated as the queue stores,
+ * overwrites, pops or skips data:
+ *
+ * <pre>
+ * queue.addStreamListener(statistics.listen(2, true, true, false));
+ * </pre>
+ * <p>
+ * Each update costs O(1): the mean and variance are updated with Welford's method for a sliding
+ * window and the minimum and maximum with monotonic queues of sample indexes. The sums drift
+ * slightly as samples are added and removed, so they are recomputed from the window once per
+ * window length of evictions. An instance is not thread safe.
+ *
+ * @author Antonio Vicente Martin
+ */
+public class SlidingStatistics {
+
+    /**
+     * The number of samples decoded at a time from raw PCM data
+     */
+    private static final int BLOCK_SIZE = 1024;
+
+    /**
+     * The samples of the window, the next one is stored at total % capacity
+     */
+    private final double[] window;
+    private final int capacity;
+
+    /**
+     * The number of samples added since the last reset
+     */
+    private long total;
+    /**
+     * The index of the oldest sample of the window, the window holds the samples from first to
+     * total
+     */
+    private long first;
+    /**
+     * The number of evictions since the sums were recomputed
+     */
+    private int evictions;
+
+    private double mean;
+    private double m2;
+    private double sumSquares;
+
+    /**
+     * The indexes of the candidates to maximum and minimum, in decreasing and increasing order
+     */
+    private final long[] maxCandidates;
+    private final long[] minCandidates;
+    private int maxHead;
+    private int maxSize;
+    private int minHead;
+    private int minSize;
+
+    /**
+     * The decoded PCM samples, allocated on first use
+     */
+    private double[] block;
+
+    /**
+     * Creates a new empty SlidingStatistics
+     *
+     * @param capacity The number of samples of the window
+     */
+    public SlidingStatistics(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Bad capacity: " + capacity);
+        }
+        this.capacity = capacity;
+        this.window = new double[capacity];
+        this.maxCandidates = new long[capacity];
+        this.minCandidates = new long[capacity];
+        reset();
+    }
+
+    /**
+     * Adds a sample, evicting the oldest one if the window is full
+     *
+     * @param value The sample
+     */
+    public void add(double value) {
+        int index = (int) (total % capacity);
+
+        if (total - first < capacity) {
+            int n = (int) (total - first) + 1;
+            double delta = value - mean;
+            mean += delta / n;
+            m2 += delta * (value - mean);
+            sumSquares += value * value;
+        } else {
+            double old = window[index];
+            double oldMean = mean;
+            mean += (value - old) / capacity;
+            m2 += (value - old) * (value - mean + old - oldMean);
+            sumSquares += value * value - old * old;
+            evictions++;
+            first++;
+        }
+
+        window[index] = value;
+        pushCandidate(value);
+        total++;
+
+        if (evictions >= capacity) {
+            recompute();
+        }
+    }
+
+    /**
+     * Removes the oldest samples of the window
+     *
+     * @param samples The number of samples to remove, all of them if there are less
+     */
+    public void remove(int samples) {
+        if (samples < 0) {
+            throw new IllegalArgumentException("Bad number of samples: " + samples);
+        }
+
+        long last = first + java.lang.Math.min(samples, getCount());
+        for (; first < last; first++) {
+            int n = (int) (total - first);
+            double old = window[(int) (first % capacity)];
+
+            if (n == 1) {
+                mean = 0;
+                m2 = 0;
+                sumSquares = 0;
+            } else {
+                // Welford's update run backwards
+                double oldMean = mean;
+                mean -= (old - mean) / (n - 1);
+                m2 -= (old - oldMean) * (old - mean);
+                sumSquares -= old * old;
+                evictions++;
+            }
+        }
+        dropCandidates();
+
+        if (evictions >= capacity) {
+            recompute();
+        }
+    }
+
+    /**
+     * Adds the samples of a doubles array
+     *
+     * @param src  The array to read
+     * @param from The low index in src
+     * @param to   The high index in src
+     */
+    public void add(double[] src, int from, int to) {
+        Statistics.checkBounds(src.length, from, to);
+
+        for (int i = from; i < to; i++) {
+            add(src[i]);
+        }
+    }
+
+    /**
+     * Adds the samples of a floats array
+     *
+     * @param src  The array to read
+     * @param from The low index in src
+     * @param to   The high index in src
+     */
+    public void add(float[] src, int from, int to) {
+        Statistics.checkBounds(src.length, from, to);
+
+        for (int i = from; i < to; i++) {
+            add(src[i]);
+        }
+    }
+
+    /**
+     * Adds the samples of raw PCM data, decoded with {@link PcmConverter}
+     *
+     * @param src          The raw bytes
+     * @param fromSrc      The first byte of the first sample
+     * @param sampleSize   The number of bytes per sample, from 1 to 4
+     * @param signed       Whether the samples are signed or not
+     * @param samples      The number of samples to add
+     * @param normalize    Whether the samples are scaled to [-1, 1) or not
+     * @param littleEndian The byte order, as in {@link com.loopinsoftware.util.raw.ByteConverter}
+     */
+    public void add(byte[] src, int fromSrc, int sampleSize, boolean signed, int samples, boolean normalize,
+            boolean littleEndian) {
+        if (block == null) {
+            block = new double[BLOCK_SIZE];
+        }
+
+        for (int done = 0; done < samples; done += BLOCK_SIZE) {
+            int n = java.lang.Math.min(BLOCK_SIZE, samples - done);
+            PcmConverter.toDoublesArray(src, fromSrc + done * sampleSize, sampleSize, signed, block, 0, n, normalize,
+                    littleEndian);
+            add(block, 0, n);
+        }
+    }
+
+    /**
+     * Returns a listener that keeps this window on the PCM samples stored in a {@link Queue}: the
+     * samples stored are added and the samples popped, skipped or overwritten are removed. A sample
+     * split between two insertions is added once all its bytes are stored, and removed once all
+     * its bytes are removed. The queue must not be read into a sample that is not stored whole.
+     * <p>
+     * The window may be smaller than the queue, then it holds the newest samples of the queue and
+     * the samples it already evicted are not removed again when the queue drops them.
+     *
+     * @param sampleSize   The number of bytes per sample, from 1 to 4
+     * @param signed       Whether the samples are signed or not
+     * @param normalize    Whether the samples are scaled to [-1, 1) or not
+     * @param littleEndian The byte order, as in {@link com.loopinsoftware.util.raw.ByteConverter}
+     * @return The listener to add with {@link Queue#addStreamListener(StreamListener)}
+     */
+    public StreamListener listen(final int sampleSize, final boolean signed, final boolean normalize,
+            final boolean littleEndian) {
+        if (sampleSize < 1 || sampleSize > 4) {
+            throw new IllegalArgumentException("Bad sample size: " + sampleSize);
+        }
+
+        return new StreamListener() {
+
+            /**
+             * The first bytes of a sample not stored whole yet
+             */
+            private final byte[] partial = new byte[sampleSize];
+            private int partialSize;
+            /**
+             * The bytes removed from a sample not removed whole yet
+             */
+            private int removedBytes;
+            /**
+             * The number of whole samples stored in the queue, some of them may be evicted from
+             * the window already
+             */
+            private long queued;
+
+            @Override
+            public void onAdded(byte[] src, int from, int to) {
+                if (partialSize > 0) {
+                    int bytes = java.lang.Math.min(sampleSize - partialSize, to - from);
+                    System.arraycopy(src, from, partial, partialSize, bytes);
+                    partialSize += bytes;
+                    from += bytes;
+                    if (partialSize < sampleSize) {
+                        return;
+                    }
+                    add(partial, 0, sampleSize, signed, 1, normalize, littleEndian);
+                    queued++;
+                    partialSize = 0;
+                }
+
+                int samples = (to - from) / sampleSize;
+                add(src, from, sampleSize, signed, samples, normalize, littleEndian);
+                queued += samples;
+                from += samples * sampleSize;
+
+                partialSize = to - from;
+                System.arraycopy(src, from, partial, 0, partialSize);
+            }
+
+            @Override
+            public void onRemoved(int bytes) {
+                removedBytes += bytes;
+                int samples = removedBytes / sampleSize;
+                removedBytes %= sampleSize;
+
+                // The oldest samples of the queue beyond the window are no longer in it
+                long evicted = java.lang.Math.max(0, queued - getCount());
+                remove((int) java.lang.Math.max(0, samples - evicted));
+                queued = java.lang.Math.max(0, queued - samples);
+            }
+
+        };
+    }
+
+    /**
+     * Updates the monotonic queues with a new sample, dropping the candidates that left the window
+     * or can no longer be the maximum or minimum
+     *
+     * @param value The sample, stored at index total
+     */
+    private void pushCandidate(double value) {
+        dropCandidates();
+
+        while (maxSize > 0 && window[(int) (maxCandidates[(maxHead + maxSize - 1) % capacity] % capacity)] <= value) {
+            maxSize--;
+        }
+        maxCandidates[(maxHead + maxSize) % capacity] = total;
+        maxSize++;
+
+        while (minSize > 0 && window[(int) (minCandidates[(minHead + minSize - 1) % capacity] % capacity)] >= value) {
+            minSize--;
+        }
+        minCandidates[(minHead + minSize) % capacity] = total;
+        minSize++;
+    }
+
+    /**
+     * Drops the candidates that are older than the first sample of the window
+     */
+    private void dropCandidates() {
+        while (maxSize > 0 && maxCandidates[maxHead] < first) {
+            maxHead = (maxHead + 1) % capacity;
+            maxSize--;
+        }
+        while (minSize > 0 && minCandidates[minHead] < first) {
+            minHead = (minHead + 1) % capacity;
+            minSize--;
+        }
+    }
+
+    /**
+     * Recomputes the sums from the window to remove the accumulated rounding errors
+     */
+    private void recompute() {
+        int n = getCount();
+        evictions = 0;
+        if (n == 0) {
+            return;
+        }
+
+        // The window is contiguous from start, or split by the end of the ring
+        int start = (int) (first % capacity);
+        int firstPart = java.lang.Math.min(n, capacity - start);
+
+        double sum = 0;
+        double squares = 0;
+        for (int i = start; i < start + firstPart; i++) {
+            sum += window[i];
+            squares += window[i] * window[i];
+        }
+        for (int i = 0; i < n - firstPart; i++) {
+            sum += window[i];
+            squares += window[i] * window[i];
+        }
+
+        mean = sum / n;
+        m2 = 0;
+        for (int i = start; i < start + firstPart; i++) {
+            double delta = window[i] - mean;
+            m2 += delta * delta;
+        }
+        for (int i = 0; i < n - firstPart; i++) {
+            double delta = window[i] - mean;
+            m2 += delta * delta;
+        }
+        sumSquares = squares;
+    }
+
+    /**
+     * Removes all samples
+     */
+    public void reset() {
+        total = 0;
+        first = 0;
+        evictions = 0;
+        mean = 0;
+        m2 = 0;
+        sumSquares = 0;
+        maxHead = 0;
+        maxSize = 0;
+        minHead = 0;
+        minSize = 0;
+    }
+
+    /**
+     * Returns the number of samples in the window
+     *
+     * @return The number of samples
+     */
+    public int getCount() {
+        return (int) (total - first);
+    }
+
+    /**
+     * Returns the capacity of the window
+     *
+     * @return The maximum number of samples
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the mean of the window
+     *
+     * @return The mean, or NaN if there are no samples
+     */
+    public double getMean() {
+        return total > first ? mean : Double.NaN;
+    }
+
+    /**
+     * Returns the population variance of the window
+     *
+     * @return The variance, or NaN if there are no samples
+     */
+    public double getVariance() {
+        // Rounding may leave a tiny negative remainder
+        return total > first ? java.lang.Math.max(0, m2) / getCount() : Double.NaN;
+    }
+
+    /**
+     * Returns the population standard deviation of the window
+     *
+     * @return The standard deviation, or NaN if there are no samples
+     */
+    public double getStandardDeviation() {
+        return java.lang.Math.sqrt(getVariance());
+    }
+
+    /**
+     * Returns the root mean square of the window
+     *
+     * @return The RMS, or NaN if there are no samples
+     */
+    public double getRms() {
+        return total > first ? java.lang.Math.sqrt(java.lang.Math.max(0, sumSquares) / getCount()) : Double.NaN;
+    }
+
+    /**
+     * Returns the smallest sample of the window
+     *
+     * @return The minimum, or positive infinity if there are no samples
+     */
+    public double getMin() {
+        return minSize > 0 ? window[(int) (minCandidates[minHead] % capacity)] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Returns the largest sample of the window
+     *
+     * @return The maximum, or negative infinity if there are no samples
+     */
+    public double getMax() {
+        return maxSize > 0 ? window[(int) (maxCandidates[maxHead] % capacity)] : Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * Returns the largest absolute value of the window
+     *
+     * @return The peak, or 0 if there are no samples
+     */
+    public double getPeak() {
+        return total > first ? java.lang.Math.max(-getMin(), getMax()) : 0;
+    }
+
+}
@@ -0,0 +1,322 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util;
+
+import com.loopinsoftware.util.raw.PcmConverter;
+
+/**
+ * This class accumulates the statistics of a stream of samples in a single pass: count, mean,
+ * variance, RMS, minimum, maximum and peak. The variance is kept with Welford's method and the sum
+ * of squares with Kahan's compensated summation, so long streams do not lose precision.
+ * <p>
+ * Bulk updates are computed per block in two passes, the mean first and then the squared
+ * deviations from it, and merged with Chan's formula. The two passes are more accurate than adding
+ * one sample at a time, and the fields are written once per block instead of once per sample.
+ * Accumulators filled by different threads can be merged with {@link #merge(Statistics)}. An
+ * instance is not thread safe.
+ *
+ * @author Antonio Vicente Martin
+ */
+public class Statistics {
+
+    /**
+     * The number of samples decoded at a time from raw PCM data
+     */
+    private static final int BLOCK_SIZE = 1024;
+
+    private long count;
+    private double mean;
+    private double m2;
+    private double sumSquares;
+    private double sumSquaresCompensation;
+    private double min;
+    private double max;
+
+    /**
+     * The decoded PCM samples or widened floats, allocated on first use
+     */
+    private double[] block;
+
+    /**
+     * Creates a new empty Statistics
+     */
+    public Statistics() {
+        reset();
+    }
+
+    /**
+     * Adds a sample
+     *
+     * @param value The sample
+     */
+    public void add(double value) {
+        count++;
+        double delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+        addSquare(value * value);
+        min = java.lang.Math.min(min, value);
+        max = java.lang.Math.max(max, value);
+    }
+
+    /**
+     * Adds the samples of a doubles array
+     *
+     * @param src  The array to read
+     * @param from The low index in src
+     * @param to   The high index in src
+     */
+    public void add(double[] src, int from, int to) {
+        checkBounds(src.length, from, to);
+
+        for (int start = from; start < to; start += BLOCK_SIZE) {
+            addBlock(src, start, java.lang.Math.min(to, start + BLOCK_SIZE));
+        }
+    }
+
+    /**
+     * Adds the samples of a floats array
+     *
+     * @param src  The array to read
+     * @param from The low index in src
+     * @param to   The high index in src
+     */
+    public void add(float[] src, int from, int to) {
+        checkBounds(src.length, from, to);
+        if (block == null) {
+            block = new double[BLOCK_SIZE];
+        }
+
+        for (int start = from; start < to; start += BLOCK_SIZE) {
+            int n = java.lang.Math.min(BLOCK_SIZE, to - start);
+            for (int i = 0; i < n; i++) {
+                block[i] = src[start + i];
+            }
+            addBlock(block, 0, n);
+        }
+    }
+
+    /**
+     * Adds a block of samples: the sums are computed in two passes and merged with Chan's formula
+     *
+     * @param src   The array to read
+     * @param start The low index in src
+     * @param end   The high index in src, at most BLOCK_SIZE samples after start
+     */
+    private void addBlock(double[] src, int start, int end) {
+        double sum = 0;
+        double squares = 0;
+        double blockMin = Double.POSITIVE_INFINITY;
+        double blockMax = Double.NEGATIVE_INFINITY;
+        for (int i = start; i < end; i++) {
+            double value = src[i];
+            sum += value;
+            squares += value * value;
+            blockMin = java.lang.Math.min(blockMin, value);
+            blockMax = java.lang.Math.max(blockMax, value);
+        }
+
+        int n = end - start;
+        double blockMean = sum / n;
+        double blockM2 = 0;
+        for (int i = start; i < end; i++) {
+            double delta = src[i] - blockMean;
+            blockM2 += delta * delta;
+        }
+
+        merge(n, blockMean, blockM2, squares, blockMin, blockMax);
+    }
+
+    /**
+     * Adds the samples of raw PCM data, decoded with {@link PcmConverter}
+     *
+     * @param src          The raw bytes
+     * @param fromSrc      The first byte of the first sample
+     * @param sampleSize   The number of bytes per sample, from 1 to 4
+     * @param signed       Whether the samples are signed or not
+     * @param samples      The number of samples to add
+     * @param normalize    Whether the samples are scaled to [-1, 1) or not
+     * @param littleEndian The byte order, as in {@link com.loopinsoftware.util.raw.ByteConverter}
+     */
+    public void add(byte[] src, int fromSrc, int sampleSize, boolean signed, int samples, boolean normalize,
+            boolean littleEndian) {
+        if (block == null) {
+            block = new double[BLOCK_SIZE];
+        }
+
+        for (int done = 0; done < samples; done += BLOCK_SIZE) {
+            int n = java.lang.Math.min(BLOCK_SIZE, samples - done);
+            PcmConverter.toDoublesArray(src, fromSrc + done * sampleSize, sampleSize, signed, block, 0, n, normalize,
+                    littleEndian);
+            add(block, 0, n);
+        }
+    }
+
+    /**
+     * Adds all the samples accumulated by another Statistics, which is not modified
+     *
+     * @param other The statistics to merge
+     */
+    public void merge(Statistics other) {
+        if (other.count > 0) {
+            merge(other.count, other.mean, other.m2, other.sumSquares - other.sumSquaresCompensation, other.min,
+                    other.max);
+        }
+    }
+
+    /**
+     * Merges the statistics of a group of samples with Chan's formula
+     *
+     * @param n         The number of samples of the group
+     * @param groupMean The mean of the group
+     * @param groupM2   The sum of squared differences from the mean of the group
+     * @param squares   The sum of squares of the group
+     * @param groupMin  The minimum of the group
+     * @param groupMax  The maximum of the group
+     */
+    private void merge(long n, double groupMean, double groupM2, double squares, double groupMin, double groupMax) {
+        long total = count + n;
+        double delta = groupMean - mean;
+
+        mean += delta * n / total;
+        m2 += groupM2 + delta * delta * ((double) count * n / total);
+        count = total;
+
+        addSquare(squares);
+        min = java.lang.Math.min(min, groupMin);
+        max = java.lang.Math.max(max, groupMax);
+    }
+
+    /**
+     * Adds to the sum of squares with Kahan's summation
+     *
+     * @param value The value to add
+     */
+    private void addSquare(double value) {
+        double y = value - sumSquaresCompensation;
+        double t = sumSquares + y;
+        sumSquaresCompensation = (t - sumSquares) - y;
+        sumSquares = t;
+    }
+
+    /**
+     * Removes all samples
+     */
+    public void reset() {
+        count = 0;
+        mean = 0;
+        m2 = 0;
+        sumSquares = 0;
+        sumSquaresCompensation = 0;
+        min = Double.POSITIVE_INFINITY;
+        max = Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * Returns the number of samples
+     *
+     * @return The number of samples
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the mean of the samples
+     *
+     * @return The mean, or NaN if there are no samples
+     */
+    public double getMean() {
+        return count > 0 ? mean : Double.NaN;
+    }
+
+    /**
+     * Returns the population variance of the samples
+     *
+     * @return The variance, or NaN if there are no samples
+     */
+    public double getVariance() {
+        return count > 0 ? m2 / count : Double.NaN;
+    }
+
+    /**
+     * Returns the sample variance, with Bessel's correction
+     *
+     * @return The variance, or NaN if there are less than 2 samples
+     */
+    public double getSampleVariance() {
+        return count > 1 ? m2 / (count - 1) : Double.NaN;
+    }
+
+    /**
+     * Returns the population standard deviation of the samples
+     *
+     * @return The standard deviation, or NaN if there are no samples
+     */
+    public double getStandardDeviation() {
+        return java.lang.Math.sqrt(getVariance());
+    }
+
+    /**
+     * Returns the root mean square of the samples
+     *
+     * @return The RMS, or NaN if there are no samples
+     */
+    public double getRms() {
+        return count > 0 ? java.lang.Math.sqrt(sumSquares / count) : Double.NaN;
+    }
+
+    /**
+     * Returns the smallest sample
+     *
+     * @return The minimum, or positive infinity if there are no samples
+     */
+    public double getMin() {
+        return min;
+    }
+
+    /**
+     * Returns the largest sample
+     *
+     * @return The maximum, or negative infinity if there are no samples
+     */
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * Returns the largest absolute value of the samples
+     *
+     * @return The peak, or 0 if there are no samples
+     */
+    public double getPeak() {
+        return count > 0 ? java.lang.Math.max(-min, max) : 0;
+    }
+
+    /**
+     * Checks a range is inside an array
+     *
+     * @param length The length of the array
+     * @param from   The low index
+     * @param to     The high index
+     */
+    static void checkBounds(int length, int from, int to) {
+        if (from < 0 || from > to || to > length) {
+            throw new ArrayIndexOutOfBoundsException("length: " + length + ", from: " + from + ", to: " + to);
+        }
+    }
+
+}
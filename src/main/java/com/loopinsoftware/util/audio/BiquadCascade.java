@@ -0,0 +1,260 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.audio;
+
+import java.util.Arrays;
+
+/**
+ * @author Antonio Vicente Martin
+ * 
+ *         This class is a cascade of second order IIR sections, each one in
+ *         transposed direct form II. Sections are added with the design
+ *         methods, based on the Audio EQ Cookbook, or with raw coefficients.
+ * 
+ *         Blocks are filtered a section at a time over a whole plane, keeping
+ *         the state in local variables, which is much faster than running
+ *         every section for every sample.
+ */
+public class BiquadCascade implements Filter {
+
+	private final int channels;
+
+	/**
+	 * b0, b1, b2, a1 and a2 of every section, normalized by a0
+	 */
+	private double[] coefficients = new double[0];
+	private int sections;
+
+	/**
+	 * z1 and z2 of every section of every channel
+	 */
+	private double[][] state;
+
+	/**
+	 * Creates a new BiquadCascade without sections, which lets the signal
+	 * through
+	 * 
+	 * @param channels
+	 *            The number of channels
+	 */
+	public BiquadCascade(int channels) {
+		if (channels < 1) {
+			throw new IllegalArgumentException("Bad channels: " + channels);
+		}
+		this.channels = channels;
+		this.state = new double[channels][0];
+	}
+
+	/**
+	 * Adds a section with raw coefficients
+	 * 
+	 * @param b0
+	 *            The feed forward coefficient of x[n]
+	 * @param b1
+	 *            The feed forward coefficient of x[n - 1]
+	 * @param b2
+	 *            The feed forward coefficient of x[n - 2]
+	 * @param a0
+	 *            The feedback coefficient of y[n]
+	 * @param a1
+	 *            The feedback coefficient of y[n - 1]
+	 * @param a2
+	 *            The feedback coefficient of y[n - 2]
+	 * @return This cascade
+	 */
+	public BiquadCascade addSection(double b0, double b1, double b2, double a0, double a1, double a2) {
+		if (a0 == 0) {
+			throw new IllegalArgumentException("a0 can not be 0");
+		}
+
+		coefficients = Arrays.copyOf(coefficients, 5 * (sections + 1));
+		int k = 5 * sections;
+		coefficients[k] = b0 / a0;
+		coefficients[k + 1] = b1 / a0;
+		coefficients[k + 2] = b2 / a0;
+		coefficients[k + 3] = a1 / a0;
+		coefficients[k + 4] = a2 / a0;
+		sections++;
+
+		for (int c = 0; c < channels; c++) {
+			state[c] = Arrays.copyOf(state[c], 2 * sections);
+		}
+		return this;
+	}
+
+	/**
+	 * Adds a second order low pass section
+	 * 
+	 * @param sampleRate
+	 *            The number of samples per second
+	 * @param frequency
+	 *            The cutoff frequency in Hz
+	 * @param q
+	 *            The quality factor, 0.7071 for a Butterworth response
+	 * @return This cascade
+	 */
+	public BiquadCascade addLowPass(double sampleRate, double frequency, double q) {
+		double w0 = omega(sampleRate, frequency);
+		double cos = Math.cos(w0);
+		double alpha = Math.sin(w0) / (2 * q);
+		return addSection((1 - cos) / 2, 1 - cos, (1 - cos) / 2, 1 + alpha, -2 * cos, 1 - alpha);
+	}
+
+	/**
+	 * Adds a second order high pass section
+	 * 
+	 * @param sampleRate
+	 *            The number of samples per second
+	 * @param frequency
+	 *            The cutoff frequency in Hz
+	 * @param q
+	 *            The quality factor, 0.7071 for a Butterworth response
+	 * @return This cascade
+	 */
+	public BiquadCascade addHighPass(double sampleRate, double frequency, double q) {
+		double w0 = omega(sampleRate, frequency);
+		double cos = Math.cos(w0);
+		double alpha = Math.sin(w0) / (2 * q);
+		return addSection((1 + cos) / 2, -(1 + cos), (1 + cos) / 2, 1 + alpha, -2 * cos, 1 - alpha);
+	}
+
+	/**
+	 * Adds a band pass section with a peak gain of 0 dB
+	 * 
+	 * @param sampleRate
+	 *            The number of samples per second
+	 * @param frequency
+	 *            The center frequency in Hz
+	 * @param q
+	 *            The quality factor, the center frequency divided by the
+	 *            bandwidth
+	 * @return This cascade
+	 */
+	public BiquadCascade addBandPass(double sampleRate, double frequency, double q) {
+		double w0 = omega(sampleRate, frequency);
+		double cos = Math.cos(w0);
+		double alpha = Math.sin(w0) / (2 * q);
+		return addSection(alpha, 0, -alpha, 1 + alpha, -2 * cos, 1 - alpha);
+	}
+
+	/**
+	 * Adds a notch section
+	 * 
+	 * @param sampleRate
+	 *            The number of samples per second
+	 * @param frequency
+	 *            The rejected frequency in Hz
+	 * @param q
+	 *            The quality factor, the center frequency divided by the
+	 *            bandwidth
+	 * @return This cascade
+	 */
+	public BiquadCascade addNotch(double sampleRate, double frequency, double q) {
+		double w0 = omega(sampleRate, frequency);
+		double cos = Math.cos(w0);
+		double alpha = Math.sin(w0) / (2 * q);
+		return addSection(1, -2 * cos, 1, 1 + alpha, -2 * cos, 1 - alpha);
+	}
+
+	/**
+	 * Adds a first order DC blocker, {@code y[n] = x[n] - x[n - 1] + pole y[n - 1]}
+	 * 
+	 * @param pole
+	 *            The pole, slightly below 1, such as 0.995
+	 * @return This cascade
+	 */
+	public BiquadCascade addDcBlocker(double pole) {
+		if (!(pole > 0 && pole < 1)) {
+			throw new IllegalArgumentException("Bad pole: " + pole);
+		}
+		return addSection(1, -1, 0, 1, -pole, 0);
+	}
+
+	@Override
+	public void process(double[][] planes, int from, int to) {
+		if (planes.length != channels) {
+			throw new IllegalArgumentException("Expected " + channels + " planes, got " + planes.length);
+		}
+
+		for (int c = 0; c < channels; c++) {
+			double[] plane = planes[c];
+			if (from < 0 || from > to || to > plane.length) {
+				throw new ArrayIndexOutOfBoundsException("length: " + plane.length + ", from: " + from + ", to: " + to);
+			}
+
+			double[] z = state[c];
+			for (int s = 0; s < sections; s++) {
+				int k = 5 * s;
+				double b0 = coefficients[k];
+				double b1 = coefficients[k + 1];
+				double b2 = coefficients[k + 2];
+				double a1 = coefficients[k + 3];
+				double a2 = coefficients[k + 4];
+				double z1 = z[2 * s];
+				double z2 = z[2 * s + 1];
+
+				for (int i = from; i < to; i++) {
+					double x = plane[i];
+					double y = b0 * x + z1;
+					z1 = b1 * x - a1 * y + z2;
+					z2 = b2 * x - a2 * y;
+					plane[i] = y;
+				}
+
+				z[2 * s] = z1;
+				z[2 * s + 1] = z2;
+			}
+		}
+	}
+
+	@Override
+	public void reset() {
+		for (double[] z : state) {
+			Arrays.fill(z, 0);
+		}
+	}
+
+	@Override
+	public int getChannels() {
+		return channels;
+	}
+
+	/**
+	 * Returns the number of sections
+	 * 
+	 * @return The number of sections
+	 */
+	public int getSections() {
+		return sections;
+	}
+
+	/**
+	 * Converts a frequency into radians per sample
+	 * 
+	 * @param sampleRate
+	 *            The number of samples per second
+	 * @param frequency
+	 *            The frequency in Hz
+	 * @return The angular frequency
+	 */
+	private static double omega(double sampleRate, double frequency) {
+		if (!(frequency > 0 && frequency < sampleRate / 2)) {
+			throw new IllegalArgumentException("Bad frequency: " + frequency + ", the sample rate is " + sampleRate);
+		}
+		return 2 * Math.PI * frequency / sampleRate;
+	}
+
+}
@@ -0,0 +1,455 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.audio;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author Antonio Vicente Martin
+ * 
+ *         This class computes in place the discrete Fourier transform of
+ *         complex data of a fixed size. Data is interleaved, the real part of
+ *         sample k at 2k and the imaginary one at 2k + 1. The forward
+ *         transform uses the {@code e^(-2 pi i jk / n)} kernel and is not
+ *         scaled, the inverse one is scaled by 1 / n, so a round trip returns
+ *         the original data.
+ * 
+ *         Power of two sizes are transformed with an iterative decimation in
+ *         time algorithm that fuses pairs of radix-2 passes into radix-4
+ *         passes, halving the passes over the data. Any other size is
+ *         transformed with Bluestein's algorithm on top of a power of two
+ *         transform.
+ * 
+ *         Instances are immutable plans holding the twiddle and bit reversal
+ *         tables. They are cached per size by {@link #getInstance(int)} and
+ *         can be shared by any number of threads. Transforms do not allocate,
+ *         except a scratch buffer per thread the first time a thread uses a
+ *         Bluestein or a float transform.
+ */
+public class Fft {
+
+	private static final ConcurrentHashMap<Integer, Fft> PLANS = new ConcurrentHashMap<Integer, Fft>();
+
+	private final int size;
+
+	/**
+	 * The power of two tables: the bit reversed index of every sample and
+	 * {@code W^k = cos[k] - i sin[k]} for k below size / 2
+	 */
+	private final int[] bitReverse;
+	private final double[] cos;
+	private final double[] sin;
+	private final boolean oddPasses;
+
+	/**
+	 * The Bluestein tables: the power of two transform, the chirp
+	 * {@code e^(-pi i k^2 / size)} and the transform of its conjugate
+	 */
+	private final Fft inner;
+	private final double[] chirp;
+	private final double[] chirpFft;
+
+	/**
+	 * The scratch buffers of each thread, for Bluestein and float transforms
+	 */
+	private final ThreadLocal<double[]> scratch = new ThreadLocal<double[]>();
+	private final ThreadLocal<double[]> floatScratch = new ThreadLocal<double[]>();
+
+	/**
+	 * Returns the shared plan for a size
+	 * 
+	 * @param size
+	 *            The number of complex samples
+	 * @return The plan
+	 */
+	public static Fft getInstance(int size) {
+		Fft plan = PLANS.get(size);
+		if (plan == null) {
+			// Built outside the map, as Bluestein plans need other plans
+			plan = new Fft(size);
+			Fft previous = PLANS.putIfAbsent(size, plan);
+			if (previous != null) {
+				plan = previous;
+			}
+		}
+		return plan;
+	}
+
+	/**
+	 * Builds a new plan, use {@link #getInstance(int)} to share them
+	 * 
+	 * @param size
+	 *            The number of complex samples
+	 */
+	private Fft(int size) {
+		if (size < 1) {
+			throw new IllegalArgumentException("Bad size: " + size);
+		}
+		this.size = size;
+
+		if (isPowerOfTwo(size)) {
+			int bits = Integer.numberOfTrailingZeros(size);
+			bitReverse = new int[size];
+			for (int i = 0; i < size; i++) {
+				bitReverse[i] = bits == 0 ? 0 : Integer.reverse(i) >>> (32 - bits);
+			}
+
+			cos = new double[Math.max(1, size / 2)];
+			sin = new double[cos.length];
+			for (int k = 0; k < cos.length; k++) {
+				double angle = 2 * Math.PI * k / size;
+				cos[k] = Math.cos(angle);
+				sin[k] = Math.sin(angle);
+			}
+			oddPasses = bits % 2 != 0;
+
+			inner = null;
+			chirp = null;
+			chirpFft = null;
+		} else {
+			bitReverse = null;
+			cos = null;
+			sin = null;
+			oddPasses = false;
+
+			// The linear convolution of 2 * size - 1 samples must not wrap
+			inner = getInstance(Integer.highestOneBit(2 * size - 1) << 1);
+			int m = inner.size;
+
+			chirp = new double[2 * size];
+			for (int k = 0; k < size; k++) {
+				// k^2 mod 2 * size keeps the angle small and accurate
+				double angle = Math.PI * (((long) k * k) % (2L * size)) / size;
+				chirp[2 * k] = Math.cos(angle);
+				chirp[2 * k + 1] = -Math.sin(angle);
+			}
+
+			chirpFft = new double[2 * m];
+			for (int k = 0; k < size; k++) {
+				chirpFft[2 * k] = chirp[2 * k];
+				chirpFft[2 * k + 1] = -chirp[2 * k + 1];
+				if (k > 0) {
+					chirpFft[2 * (m - k)] = chirp[2 * k];
+					chirpFft[2 * (m - k) + 1] = -chirp[2 * k + 1];
+				}
+			}
+			inner.transform(chirpFft, false);
+
+		}
+	}
+
+	/**
+	 * Returns the number of complex samples
+	 * 
+	 * @return The size
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Computes the forward transform in place
+	 * 
+	 * @param data
+	 *            The interleaved complex samples, at least 2 * size values
+	 */
+	public void forward(double[] data) {
+		checkLength(data.length);
+		transform(data, false);
+	}
+
+	/**
+	 * Computes the inverse transform in place, scaled by 1 / size
+	 * 
+	 * @param data
+	 *            The interleaved complex samples, at least 2 * size values
+	 */
+	public void inverse(double[] data) {
+		checkLength(data.length);
+		transform(data, true);
+	}
+
+	/**
+	 * Computes the forward transform in place. It is computed in double
+	 * precision.
+	 * 
+	 * @param data
+	 *            The interleaved complex samples, at least 2 * size values
+	 */
+	public void forward(float[] data) {
+		checkLength(data.length);
+		double[] buffer = toBuffer(data);
+		transform(buffer, false);
+		fromBuffer(buffer, data);
+	}
+
+	/**
+	 * Computes the inverse transform in place, scaled by 1 / size. It is
+	 * computed in double precision.
+	 * 
+	 * @param data
+	 *            The interleaved complex samples, at least 2 * size values
+	 */
+	public void inverse(float[] data) {
+		checkLength(data.length);
+		double[] buffer = toBuffer(data);
+		transform(buffer, true);
+		fromBuffer(buffer, data);
+	}
+
+	/**
+	 * Computes a transform in place
+	 * 
+	 * @param data
+	 *            The interleaved complex samples
+	 * @param inverse
+	 *            Whether the inverse transform is computed or not
+	 */
+	void transform(double[] data, boolean inverse) {
+		if (bitReverse != null) {
+			powerOfTwo(data, inverse);
+		} else {
+			bluestein(data, inverse);
+		}
+	}
+
+	/**
+	 * Computes a power of two transform in place
+	 * 
+	 * @param data
+	 *            The interleaved complex samples
+	 * @param inverse
+	 *            Whether the inverse transform is computed or not
+	 */
+	private void powerOfTwo(double[] data, boolean inverse) {
+		int n = size;
+
+		for (int i = 0; i < n; i++) {
+			int j = bitReverse[i];
+			if (j > i) {
+				double re = data[2 * i];
+				double im = data[2 * i + 1];
+				data[2 * i] = data[2 * j];
+				data[2 * i + 1] = data[2 * j + 1];
+				data[2 * j] = re;
+				data[2 * j + 1] = im;
+			}
+		}
+
+		// The sign of the sine of the twiddles
+		double sign = inverse ? 1 : -1;
+		int span = 1;
+
+		// A single radix-2 pass when the number of passes is odd
+		if (oddPasses) {
+			for (int i = 0; i < 2 * n; i += 4) {
+				double re = data[i + 2];
+				double im = data[i + 3];
+				data[i + 2] = data[i] - re;
+				data[i + 3] = data[i + 1] - im;
+				data[i] += re;
+				data[i + 1] += im;
+			}
+			span = 2;
+		}
+
+		// Each pass does the radix-2 passes of spans span and 2 * span
+		for (; span < n; span *= 4) {
+			int stride1 = n / (2 * span);
+			int stride2 = n / (4 * span);
+
+			for (int j = 0; j < span; j++) {
+				double c1 = cos[j * stride1];
+				double s1 = sign * sin[j * stride1];
+				double c2 = cos[j * stride2];
+				double s2 = sign * sin[j * stride2];
+
+				for (int base = j; base < n; base += 4 * span) {
+					int a0 = 2 * base;
+					int a1 = a0 + 2 * span;
+					int a2 = a1 + 2 * span;
+					int a3 = a2 + 2 * span;
+
+					// First pass, twiddle W(2 * span)^j
+					double tr = c1 * data[a1] - s1 * data[a1 + 1];
+					double ti = c1 * data[a1 + 1] + s1 * data[a1];
+					double y0r = data[a0] + tr;
+					double y0i = data[a0 + 1] + ti;
+					double y1r = data[a0] - tr;
+					double y1i = data[a0 + 1] - ti;
+
+					tr = c1 * data[a3] - s1 * data[a3 + 1];
+					ti = c1 * data[a3 + 1] + s1 * data[a3];
+					double y2r = data[a2] + tr;
+					double y2i = data[a2 + 1] + ti;
+					double y3r = data[a2] - tr;
+					double y3i = data[a2 + 1] - ti;
+
+					// Second pass, twiddles W(4 * span)^j and W(4 * span)^(j + span)
+					tr = c2 * y2r - s2 * y2i;
+					ti = c2 * y2i + s2 * y2r;
+					data[a0] = y0r + tr;
+					data[a0 + 1] = y0i + ti;
+					data[a2] = y0r - tr;
+					data[a2 + 1] = y0i - ti;
+
+					// W(4 * span)^span is -i, or i for the inverse
+					double vr = c2 * y3r - s2 * y3i;
+					double vi = c2 * y3i + s2 * y3r;
+					tr = -sign * vi;
+					ti = sign * vr;
+					data[a1] = y1r + tr;
+					data[a1 + 1] = y1i + ti;
+					data[a3] = y1r - tr;
+					data[a3 + 1] = y1i - ti;
+				}
+			}
+		}
+
+		if (inverse) {
+			scale(data, 2 * n, 1.0 / n);
+		}
+	}
+
+	/**
+	 * Computes a transform of any size in place as a convolution with a chirp
+	 * 
+	 * @param data
+	 *            The interleaved complex samples
+	 * @param inverse
+	 *            Whether the inverse transform is computed or not
+	 */
+	private void bluestein(double[] data, boolean inverse) {
+		int n = size;
+		int m = inner.size;
+
+		double[] buffer = scratch.get();
+		if (buffer == null) {
+			buffer = new double[2 * m];
+			scratch.set(buffer);
+		}
+
+		// The inverse transform is the conjugate of the forward transform of
+		// the conjugate
+		double sign = inverse ? -1 : 1;
+
+		for (int k = 0; k < n; k++) {
+			double re = data[2 * k];
+			double im = sign * data[2 * k + 1];
+			double cr = chirp[2 * k];
+			double ci = chirp[2 * k + 1];
+			buffer[2 * k] = re * cr - im * ci;
+			buffer[2 * k + 1] = re * ci + im * cr;
+		}
+		for (int i = 2 * n; i < 2 * m; i++) {
+			buffer[i] = 0;
+		}
+
+		inner.transform(buffer, false);
+		for (int k = 0; k < m; k++) {
+			double re = buffer[2 * k];
+			double im = buffer[2 * k + 1];
+			double br = chirpFft[2 * k];
+			double bi = chirpFft[2 * k + 1];
+			buffer[2 * k] = re * br - im * bi;
+			buffer[2 * k + 1] = re * bi + im * br;
+		}
+		inner.transform(buffer, true);
+
+		double scale = inverse ? 1.0 / n : 1;
+		for (int k = 0; k < n; k++) {
+			double re = buffer[2 * k];
+			double im = buffer[2 * k + 1];
+			double cr = chirp[2 * k];
+			double ci = chirp[2 * k + 1];
+			data[2 * k] = scale * (re * cr - im * ci);
+			data[2 * k + 1] = sign * scale * (re * ci + im * cr);
+		}
+	}
+
+	/**
+	 * Copies float data into the scratch buffer of the thread
+	 * 
+	 * @param data
+	 *            The interleaved complex samples
+	 * @return The buffer
+	 */
+	private double[] toBuffer(float[] data) {
+		double[] buffer = floatScratch.get();
+		if (buffer == null) {
+			buffer = new double[2 * size];
+			floatScratch.set(buffer);
+		}
+		for (int i = 0; i < 2 * size; i++) {
+			buffer[i] = data[i];
+		}
+		return buffer;
+	}
+
+	/**
+	 * Copies the scratch buffer back into float data
+	 * 
+	 * @param buffer
+	 *            The buffer
+	 * @param data
+	 *            The interleaved complex samples
+	 */
+	private void fromBuffer(double[] buffer, float[] data) {
+		for (int i = 0; i < 2 * size; i++) {
+			data[i] = (float) buffer[i];
+		}
+	}
+
+	/**
+	 * Multiplies the first values of an array by a factor
+	 * 
+	 * @param data
+	 *            The values
+	 * @param length
+	 *            The number of values
+	 * @param factor
+	 *            The factor
+	 */
+	static void scale(double[] data, int length, double factor) {
+		for (int i = 0; i < length; i++) {
+			data[i] *= factor;
+		}
+	}
+
+	/**
+	 * Checks an array can hold the samples
+	 * 
+	 * @param length
+	 *            The length of the array
+	 */
+	private void checkLength(int length) {
+		if (length < 2 * size) {
+			throw new ArrayIndexOutOfBoundsException("At least " + 2 * size + " values needed, length: " + length);
+		}
+	}
+
+	/**
+	 * Checks whether a number is a power of two
+	 * 
+	 * @param n
+	 *            The number
+	 * @return true if it is a power of two
+	 */
+	static boolean isPowerOfTwo(int n) {
+		return n > 0 && (n & (n - 1)) == 0;
+	}
+
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.audio;
+
+/**
+ * This interface filters blocks of multi-channel samples in place. Samples are
+ * given as planes, one array per channel, and the state of every channel is
+ * carried from one block to the next, so a stream can be filtered in blocks of
+ * any size.
+ * 
+ * @author Antonio Vicente Martin
+ *
+ */
+public interface Filter {
+
+	/**
+	 * Filters a block of samples in place
+	 * 
+	 * @param planes
+	 *            The samples of each channel
+	 * @param from
+	 *            The low index in every plane
+	 * @param to
+	 *            The high index in every plane
+	 */
+	public void process(double[][] planes, int from, int to);
+
+	/**
+	 * Clears the state, as if no sample had been filtered
+	 */
+	public void reset();
+
+	/**
+	 * Returns the number of channels
+	 * 
+	 * @return The number of channels
+	 */
+	public int getChannels();
+
+}
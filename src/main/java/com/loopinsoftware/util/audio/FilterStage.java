@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.audio;
+
+import com.loopinsoftware.util.raw.PcmConverter;
+import com.loopinsoftware.util.raw.Queue;
+
+/**
+ * @author Antonio Vicente Martin
+ * 
+ *         This class plugs a {@link Filter} into a pipeline of queues. Blocks
+ *         of interleaved PCM frames are popped from a source {@link Queue},
+ *         decoded into planes, filtered and encoded into the same buffer,
+ *         which is pushed into the destination with {@link Queue#push(byte[])}.
+ *         The buffers are allocated once, so filtering a block does not
+ *         allocate.
+ */
+public class FilterStage {
+
+	private final Filter filter;
+	private final int blockSize;
+	private final int sampleSize;
+	private final boolean signed;
+	private final boolean littleEndian;
+
+	private final double[][] planes;
+	private final byte[] block;
+
+	/**
+	 * Creates a new FilterStage
+	 * 
+	 * @param filter
+	 *            The filter, which sets the number of channels
+	 * @param blockSize
+	 *            The number of frames of each block
+	 * @param sampleSize
+	 *            The number of bytes per sample, from 1 to 4
+	 * @param signed
+	 *            Whether the samples are signed or not
+	 * @param littleEndian
+	 *            The byte order, as in
+	 *            {@link com.loopinsoftware.util.raw.ByteConverter}
+	 */
+	public FilterStage(Filter filter, int blockSize, int sampleSize, boolean signed, boolean littleEndian) {
+		if (blockSize < 1) {
+			throw new IllegalArgumentException("Bad block size: " + blockSize);
+		}
+		if (sampleSize < 1 || sampleSize > 4) {
+			throw new IllegalArgumentException("Bad sample size: " + sampleSize);
+		}
+		this.filter = filter;
+		this.blockSize = blockSize;
+		this.sampleSize = sampleSize;
+		this.signed = signed;
+		this.littleEndian = littleEndian;
+		this.planes = new double[filter.getChannels()][blockSize];
+		this.block = new byte[blockSize * sampleSize * filter.getChannels()];
+	}
+
+	/**
+	 * Filters every whole block available in a queue
+	 * 
+	 * @param src
+	 *            The queue of input frames
+	 * @param dst
+	 *            The queue of filtered frames
+	 * @return The number of blocks filtered
+	 */
+	public int process(Queue src, Queue dst) {
+		int blocks = 0;
+		while (src.getSize() >= block.length) {
+			src.pop(block);
+			process(block);
+			dst.push(block);
+			blocks++;
+		}
+		return blocks;
+	}
+
+	/**
+	 * Filters a block of interleaved frames in place
+	 * 
+	 * @param data
+	 *            The frames, {@link #getBlockBytes()} bytes
+	 */
+	public void process(byte[] data) {
+		if (data.length != block.length) {
+			throw new IllegalArgumentException("Expected " + block.length + " bytes, got " + data.length);
+		}
+		int channels = planes.length;
+		PcmConverter.deinterleave(data, 0, sampleSize, signed, channels, null, planes, 0, blockSize, true, littleEndian);
+		filter.process(planes, 0, blockSize);
+		PcmConverter.interleave(planes, 0, blockSize, null, data, 0, channels, sampleSize, signed, true, littleEndian);
+	}
+
+	/**
+	 * Returns the filter
+	 * 
+	 * @return The filter
+	 */
+	public Filter getFilter() {
+		return filter;
+	}
+
+	/**
+	 * Returns the number of frames of each block
+	 * 
+	 * @return The block size
+	 */
+	public int getBlockSize() {
+		return blockSize;
+	}
+
+	/**
+	 * Returns the number of bytes of each block
+	 * 
+	 * @return The number of bytes
+	 */
+	public int getBlockBytes() {
+		return block.length;
+	}
+
+}
@@ -0,0 +1,337 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.audio;
+
+import java.util.Arrays;
+
+/**
+ * @author Antonio Vicente Martin
+ * 
+ *         This class is a FIR filter. Short filters run a direct convolution,
+ *         and filters with more than {@link #DIRECT_CONVOLUTION_TAPS} taps
+ *         use overlap-save with a {@link RealFft}, which costs O(log n) per
+ *         sample instead of O(n).
+ * 
+ *         Overlap-save works on whole hops of samples, so it delays the output
+ *         by {@link #getLatency()} samples. The direct convolution has no
+ *         latency. Both keep their history between blocks, and all buffers are
+ *         allocated when the filter is built.
+ */
+public class FirFilter implements Filter {
+
+	/**
+	 * The largest number of taps filtered by direct convolution when the mode
+	 * is not given
+	 */
+	public static final int DIRECT_CONVOLUTION_TAPS = 64;
+
+	/**
+	 * The number of samples of each step of the direct convolution
+	 */
+	private static final int CHUNK = 1024;
+
+	private final int channels;
+	private final int order;
+
+	/**
+	 * The taps in reverse order, for the direct convolution
+	 */
+	private final double[] reversed;
+
+	/**
+	 * The last order samples of each channel, for the direct convolution
+	 */
+	private final double[][] history;
+
+	private final RealFft fft;
+	private final int hop;
+
+	/**
+	 * The packed spectrum of the taps
+	 */
+	private final double[] spectrum;
+
+	/**
+	 * The input of each channel, the last order samples followed by the
+	 * samples of the current hop
+	 */
+	private final double[][] input;
+
+	/**
+	 * The filtered samples of the previous hop of each channel
+	 */
+	private final double[][] output;
+	private final int[] position;
+
+	private final double[] work;
+
+	/**
+	 * Creates a new FirFilter, using overlap-save for more than
+	 * {@link #DIRECT_CONVOLUTION_TAPS} taps
+	 * 
+	 * @param taps
+	 *            The impulse response
+	 * @param channels
+	 *            The number of channels
+	 */
+	public FirFilter(double[] taps, int channels) {
+		this(taps, channels, taps.length > DIRECT_CONVOLUTION_TAPS);
+	}
+
+	/**
+	 * Creates a new FirFilter
+	 * 
+	 * @param taps
+	 *            The impulse response
+	 * @param channels
+	 *            The number of channels
+	 * @param overlapSave
+	 *            Whether to use overlap-save or the direct convolution
+	 */
+	public FirFilter(double[] taps, int channels, boolean overlapSave) {
+		if (taps.length < 1 || channels < 1) {
+			throw new IllegalArgumentException("Bad taps: " + taps.length + " or channels: " + channels);
+		}
+		this.channels = channels;
+		this.order = taps.length - 1;
+		this.reversed = new double[taps.length];
+		for (int i = 0; i < taps.length; i++) {
+			reversed[i] = taps[order - i];
+		}
+
+		if (overlapSave) {
+			int size = 2;
+			while (size < 2 * taps.length) {
+				size <<= 1;
+			}
+			this.fft = RealFft.getInstance(size);
+			this.hop = size - order;
+			this.spectrum = Arrays.copyOf(taps, size);
+			fft.forward(spectrum);
+			this.input = new double[channels][size];
+			this.output = new double[channels][hop];
+			this.position = new int[channels];
+			this.work = new double[size];
+			this.history = null;
+		} else {
+			this.fft = null;
+			this.hop = 0;
+			this.spectrum = null;
+			this.input = null;
+			this.output = null;
+			this.position = null;
+			this.work = new double[order + CHUNK];
+			this.history = new double[channels][order];
+		}
+	}
+
+	/**
+	 * Designs a low pass filter with the windowed sinc method. The taps are
+	 * symmetric and their sum is 1.
+	 * 
+	 * @param taps
+	 *            The number of taps, an odd number gives a delay of a whole
+	 *            number of samples
+	 * @param cutoff
+	 *            The cutoff frequency divided by the sample rate, below 0.5
+	 * @param window
+	 *            The window
+	 * @return The taps
+	 */
+	public static double[] lowPass(int taps, double cutoff, Window window) {
+		if (taps < 1) {
+			throw new IllegalArgumentException("Bad taps: " + taps);
+		}
+		if (!(cutoff > 0 && cutoff < 0.5)) {
+			throw new IllegalArgumentException("Bad cutoff: " + cutoff);
+		}
+
+		double[] h = new double[taps];
+		double center = (taps - 1) / 2.0;
+		double sum = 0;
+		for (int i = 0; i < taps; i++) {
+			double x = i - center;
+			double sinc = x == 0 ? 2 * cutoff : Math.sin(2 * Math.PI * cutoff * x) / (Math.PI * x);
+			// The symmetric window of a size is the periodic one of size - 1,
+			// computed in place since designs of many taps are not reused
+			double w = taps == 1 ? 1 : window.computeCoefficient(taps - 1, i % (taps - 1));
+			h[i] = sinc * w;
+			sum += h[i];
+		}
+		for (int i = 0; i < taps; i++) {
+			h[i] /= sum;
+		}
+		return h;
+	}
+
+	@Override
+	public void process(double[][] planes, int from, int to) {
+		if (planes.length != channels) {
+			throw new IllegalArgumentException("Expected " + channels + " planes, got " + planes.length);
+		}
+
+		for (int c = 0; c < channels; c++) {
+			double[] plane = planes[c];
+			if (from < 0 || from > to || to > plane.length) {
+				throw new ArrayIndexOutOfBoundsException("length: " + plane.length + ", from: " + from + ", to: " + to);
+			}
+			if (fft == null) {
+				convolve(plane, from, to, history[c]);
+			} else {
+				overlapSave(plane, from, to, c);
+			}
+		}
+	}
+
+	/**
+	 * Filters a plane by direct convolution, in steps of {@link #CHUNK}
+	 * samples
+	 * 
+	 * @param plane
+	 *            The samples
+	 * @param from
+	 *            The low index
+	 * @param to
+	 *            The high index
+	 * @param last
+	 *            The last order samples of the channel
+	 */
+	private void convolve(double[] plane, int from, int to, double[] last) {
+		while (from < to) {
+			int n = Math.min(CHUNK, to - from);
+			System.arraycopy(last, 0, work, 0, order);
+			System.arraycopy(plane, from, work, order, n);
+
+			for (int j = 0; j < n; j++) {
+				double sum = 0;
+				for (int k = 0; k <= order; k++) {
+					sum += reversed[k] * work[j + k];
+				}
+				plane[from + j] = sum;
+			}
+
+			System.arraycopy(work, n, last, 0, order);
+			from += n;
+		}
+	}
+
+	/**
+	 * Filters a plane with overlap-save, one hop at a time
+	 * 
+	 * @param plane
+	 *            The samples
+	 * @param from
+	 *            The low index
+	 * @param to
+	 *            The high index
+	 * @param channel
+	 *            The channel
+	 */
+	private void overlapSave(double[] plane, int from, int to, int channel) {
+		double[] in = input[channel];
+		double[] out = output[channel];
+		int pos = position[channel];
+
+		while (from < to) {
+			int n = Math.min(hop - pos, to - from);
+			System.arraycopy(plane, from, in, order + pos, n);
+			System.arraycopy(out, pos, plane, from, n);
+			pos += n;
+			from += n;
+
+			if (pos == hop) {
+				System.arraycopy(in, 0, work, 0, work.length);
+				fft.forward(work);
+				multiply(work, spectrum);
+				fft.inverse(work);
+				// The first order samples wrapped around, the rest are valid
+				System.arraycopy(work, order, out, 0, hop);
+				System.arraycopy(in, hop, in, 0, order);
+				pos = 0;
+			}
+		}
+
+		position[channel] = pos;
+	}
+
+	/**
+	 * Multiplies two packed spectra
+	 * 
+	 * @param data
+	 *            The spectrum to multiply, and the result
+	 * @param factor
+	 *            The other spectrum
+	 */
+	private static void multiply(double[] data, double[] factor) {
+		data[0] *= factor[0];
+		data[1] *= factor[1];
+		for (int k = 2; k < data.length; k += 2) {
+			double re = data[k];
+			double im = data[k + 1];
+			data[k] = re * factor[k] - im * factor[k + 1];
+			data[k + 1] = re * factor[k + 1] + im * factor[k];
+		}
+	}
+
+	@Override
+	public void reset() {
+		if (fft == null) {
+			for (double[] last : history) {
+				Arrays.fill(last, 0);
+			}
+		} else {
+			for (int c = 0; c < channels; c++) {
+				Arrays.fill(input[c], 0);
+				Arrays.fill(output[c], 0);
+				position[c] = 0;
+			}
+		}
+	}
+
+	@Override
+	public int getChannels() {
+		return channels;
+	}
+
+	/**
+	 * Returns the number of taps
+	 * 
+	 * @return The number of taps
+	 */
+	public int getTaps() {
+		return order + 1;
+	}
+
+	/**
+	 * Returns whether the filter uses overlap-save
+	 * 
+	 * @return True for overlap-save, false for the direct convolution
+	 */
+	public boolean isOverlapSave() {
+		return fft != null;
+	}
+
+	/**
+	 * Returns the number of samples the output is delayed on top of the delay
+	 * of the taps, the hop size for overlap-save and 0 otherwise
+	 * 
+	 * @return The latency
+	 */
+	public int getLatency() {
+		return hop;
+	}
+
+}
@@ -0,0 +1,297 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.audio;
+
+/**
+ * @author Antonio Vicente Martin
+ * 
+ *         This class generates a single channel signal of a {@link Waveform}.
+ *         The phase is a 64 bits fixed point accumulator, a whole cycle being
+ *         2^64, so it wraps for free and never drifts. Its top bits index the
+ *         waveform table and the rest interpolate between two entries.
+ * 
+ *         A linear frequency sweep turns any waveform into a chirp, see
+ *         {@link #setSweep(double, long)}. Noise is uniform white noise from a
+ *         xorshift generator.
+ * 
+ *         An instance is not thread safe, but separate instances can render
+ *         on separate threads.
+ */
+public class Oscillator {
+
+	private static final int FRACTION_BITS = 64 - Waveform.TABLE_BITS;
+	private static final long FRACTION_MASK = (1L << FRACTION_BITS) - 1;
+	private static final double FRACTION_SCALE = 1.0 / (1L << FRACTION_BITS);
+
+	private final Waveform waveform;
+	private final double[] table;
+	private final double sampleRate;
+
+	private long phase;
+	private long increment;
+	private double amplitude = 1;
+
+	/**
+	 * The increment added to the increment every sample while sweeping
+	 */
+	private long sweep;
+	private long sweepRemaining;
+
+	private long noise = 0x9E3779B97F4A7C15L;
+
+	/**
+	 * Creates a new Oscillator
+	 * 
+	 * @param waveform
+	 *            The waveform
+	 * @param frequency
+	 *            The frequency in Hz, up to half the sample rate
+	 * @param sampleRate
+	 *            The number of samples per second
+	 */
+	public Oscillator(Waveform waveform, double frequency, double sampleRate) {
+		if (!(sampleRate > 0)) {
+			throw new IllegalArgumentException("Bad sample rate: " + sampleRate);
+		}
+		this.waveform = waveform;
+		this.table = waveform.table;
+		this.sampleRate = sampleRate;
+		setFrequency(frequency);
+	}
+
+	/**
+	 * Sets the frequency, stopping any sweep
+	 * 
+	 * @param frequency
+	 *            The frequency in Hz, up to half the sample rate
+	 */
+	public void setFrequency(double frequency) {
+		this.increment = toIncrement(frequency);
+		this.sweepRemaining = 0;
+	}
+
+	/**
+	 * Returns the current frequency
+	 * 
+	 * @return The frequency in Hz
+	 */
+	public double getFrequency() {
+		return increment * 0x1p-64 * sampleRate;
+	}
+
+	/**
+	 * Sweeps the frequency linearly from the current one
+	 * 
+	 * @param endFrequency
+	 *            The frequency reached at the end of the sweep
+	 * @param samples
+	 *            The length of the sweep
+	 */
+	public void setSweep(double endFrequency, long samples) {
+		if (samples < 1) {
+			throw new IllegalArgumentException("Bad sweep length: " + samples);
+		}
+		long end = toIncrement(endFrequency);
+		this.sweep = (end - increment) / samples;
+		this.sweepRemaining = samples;
+	}
+
+	/**
+	 * Sets the peak amplitude
+	 * 
+	 * @param amplitude
+	 *            The amplitude, 1 by default
+	 */
+	public void setAmplitude(double amplitude) {
+		this.amplitude = amplitude;
+	}
+
+	/**
+	 * Sets the phase
+	 * 
+	 * @param cycles
+	 *            The phase in cycles, from 0 to 1
+	 */
+	public void setPhase(double cycles) {
+		double fraction = cycles - Math.floor(cycles);
+		// Two steps, as 2^64 does not fit in a long
+		this.phase = (long) (fraction * 0x1p63) << 1;
+	}
+
+	/**
+	 * Sets the seed of the noise generator
+	 * 
+	 * @param seed
+	 *            The seed, any value but 0
+	 */
+	public void setSeed(long seed) {
+		if (seed == 0) {
+			throw new IllegalArgumentException("The seed can not be 0");
+		}
+		this.noise = seed;
+	}
+
+	/**
+	 * Writes the next samples
+	 * 
+	 * @param dst
+	 *            The destination array
+	 * @param from
+	 *            The low index in dst
+	 * @param to
+	 *            The high index in dst
+	 */
+	public void render(double[] dst, int from, int to) {
+		generate(dst, from, to, false);
+	}
+
+	/**
+	 * Adds the next samples to the ones in an array, to mix several signals
+	 * 
+	 * @param dst
+	 *            The destination array
+	 * @param from
+	 *            The low index in dst
+	 * @param to
+	 *            The high index in dst
+	 */
+	public void mix(double[] dst, int from, int to) {
+		generate(dst, from, to, true);
+	}
+
+	/**
+	 * Generates the next samples
+	 * 
+	 * @param dst
+	 *            The destination array
+	 * @param from
+	 *            The low index in dst
+	 * @param to
+	 *            The high index in dst
+	 * @param add
+	 *            Whether the samples are added to dst or not
+	 */
+	private void generate(double[] dst, int from, int to, boolean add) {
+		if (from < 0 || from > to || to > dst.length) {
+			throw new ArrayIndexOutOfBoundsException("length: " + dst.length + ", from: " + from + ", to: " + to);
+		}
+
+		if (table == null) {
+			noise(dst, from, to, add);
+			return;
+		}
+
+		// The sweeping part first, then a steady loop
+		int i = from;
+		if (sweepRemaining > 0) {
+			int end = (int) Math.min(to, from + sweepRemaining);
+			for (; i < end; i++) {
+				double value = amplitude * lookup(phase);
+				dst[i] = add ? dst[i] + value : value;
+				phase += increment;
+				increment += sweep;
+			}
+			sweepRemaining -= end - from;
+		}
+
+		long p = phase;
+		long step = increment;
+		double gain = amplitude;
+		if (add) {
+			for (; i < to; i++, p += step) {
+				dst[i] += gain * lookup(p);
+			}
+		} else {
+			for (; i < to; i++, p += step) {
+				dst[i] = gain * lookup(p);
+			}
+		}
+		phase = p;
+	}
+
+	/**
+	 * Generates white noise
+	 * 
+	 * @param dst
+	 *            The destination array
+	 * @param from
+	 *            The low index in dst
+	 * @param to
+	 *            The high index in dst
+	 * @param add
+	 *            Whether the samples are added to dst or not
+	 */
+	private void noise(double[] dst, int from, int to, boolean add) {
+		long x = noise;
+		double gain = 2 * amplitude * 0x1p-53;
+		for (int i = from; i < to; i++) {
+			x ^= x << 13;
+			x ^= x >>> 7;
+			x ^= x << 17;
+			double value = gain * (x >>> 11) - amplitude;
+			dst[i] = add ? dst[i] + value : value;
+		}
+		noise = x;
+	}
+
+	/**
+	 * Reads the table with linear interpolation
+	 * 
+	 * @param p
+	 *            The phase
+	 * @return The value of the waveform
+	 */
+	private double lookup(long p) {
+		int index = (int) (p >>> FRACTION_BITS);
+		double fraction = (p & FRACTION_MASK) * FRACTION_SCALE;
+		double a = table[index];
+		return a + fraction * (table[index + 1] - a);
+	}
+
+	/**
+	 * Converts a frequency into a phase increment
+	 * 
+	 * @param frequency
+	 *            The frequency in Hz
+	 * @return The increment per sample
+	 */
+	private long toIncrement(double frequency) {
+		double ratio = frequency / sampleRate;
+		if (!(Math.abs(ratio) <= 0.5)) {
+			throw new IllegalArgumentException("Bad frequency: " + frequency + ", the sample rate is " + sampleRate);
+		}
+		return (long) (ratio * 0x1p63) << 1;
+	}
+
+	/**
+	 * Returns the waveform
+	 * 
+	 * @return The waveform
+	 */
+	public Waveform getWaveform() {
+		return waveform;
+	}
+
+	/**
+	 * Returns the sample rate
+	 * 
+	 * @return The number of samples per second
+	 */
+	public double getSampleRate() {
+		return sampleRate;
+	}
+
+}
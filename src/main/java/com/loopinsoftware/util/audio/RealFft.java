@@ -0,0 +1,268 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.audio;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author Antonio Vicente Martin
+ * 
+ *         This class computes in place the discrete Fourier transform of real
+ *         data of an even size n, through a complex {@link Fft} of n / 2
+ *         samples. The spectrum of real data is symmetric, so only the bins 0
+ *         to n / 2 are kept, packed in the n values of the input:
+ * 
+ *         <pre>
+ *         data[0]          = Re(X[0])
+ *         data[1]          = Re(X[n / 2])
+ *         data[2k], data[2k + 1] = Re(X[k]), Im(X[k]), for 0 &lt; k &lt; n / 2
+ *         </pre>
+ * 
+ *         As in {@link Fft}, the forward transform is not scaled and the
+ *         inverse one is scaled by 1 / n. Instances are immutable plans cached
+ *         per size by {@link #getInstance(int)} and shared across threads.
+ */
+public class RealFft {
+
+	private static final ConcurrentHashMap<Integer, RealFft> PLANS = new ConcurrentHashMap<Integer, RealFft>();
+
+	private final int size;
+	private final Fft half;
+
+	/**
+	 * {@code W^k = cos[k] - i sin[k]} for k up to size / 4, the bins are
+	 * processed in pairs k and n / 2 - k
+	 */
+	private final double[] cos;
+	private final double[] sin;
+
+	/**
+	 * The scratch buffer of each thread, for float transforms
+	 */
+	private final ThreadLocal<double[]> floatScratch = new ThreadLocal<double[]>();
+
+	/**
+	 * Returns the shared plan for a size
+	 * 
+	 * @param size
+	 *            The number of real samples, an even number
+	 * @return The plan
+	 */
+	public static RealFft getInstance(int size) {
+		RealFft plan = PLANS.get(size);
+		if (plan == null) {
+			plan = new RealFft(size);
+			RealFft previous = PLANS.putIfAbsent(size, plan);
+			if (previous != null) {
+				plan = previous;
+			}
+		}
+		return plan;
+	}
+
+	/**
+	 * Builds a new plan, use {@link #getInstance(int)} to share them
+	 * 
+	 * @param size
+	 *            The number of real samples, an even number
+	 */
+	private RealFft(int size) {
+		if (size < 2 || size % 2 != 0) {
+			throw new IllegalArgumentException("Bad size: " + size + ", it must be even");
+		}
+		this.size = size;
+		this.half = Fft.getInstance(size / 2);
+
+		cos = new double[size / 4 + 1];
+		sin = new double[cos.length];
+		for (int k = 0; k < cos.length; k++) {
+			double angle = 2 * Math.PI * k / size;
+			cos[k] = Math.cos(angle);
+			sin[k] = Math.sin(angle);
+		}
+	}
+
+	/**
+	 * Returns the number of real samples
+	 * 
+	 * @return The size
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Computes the forward transform in place, leaving the packed spectrum
+	 * 
+	 * @param data
+	 *            The real samples, at least size values
+	 */
+	public void forward(double[] data) {
+		checkLength(data.length);
+
+		// The even samples are the real parts and the odd ones the imaginary
+		half.transform(data, false);
+
+		int m = size / 2;
+		double re = data[0];
+		double im = data[1];
+		data[0] = re + im;
+		data[1] = re - im;
+
+		for (int k = 1, j = m - 1; k <= j; k++, j--) {
+			double zr = data[2 * k];
+			double zi = data[2 * k + 1];
+			double jr = data[2 * j];
+			double ji = data[2 * j + 1];
+
+			// The transforms of the even and odd samples
+			double er = 0.5 * (zr + jr);
+			double ei = 0.5 * (zi - ji);
+			double or = 0.5 * (zi + ji);
+			double oi = -0.5 * (zr - jr);
+
+			// W^k times the odd transform
+			double c = cos[k];
+			double s = sin[k];
+			double tr = c * or + s * oi;
+			double ti = c * oi - s * or;
+
+			data[2 * k] = er + tr;
+			data[2 * k + 1] = ei + ti;
+			if (j != k) {
+				data[2 * j] = er - tr;
+				data[2 * j + 1] = -(ei - ti);
+			}
+		}
+	}
+
+	/**
+	 * Computes the inverse transform of a packed spectrum in place, scaled by
+	 * 1 / size
+	 * 
+	 * @param data
+	 *            The packed spectrum, at least size values
+	 */
+	public void inverse(double[] data) {
+		checkLength(data.length);
+
+		int m = size / 2;
+		double first = data[0];
+		double last = data[1];
+		data[0] = 0.5 * (first + last);
+		data[1] = 0.5 * (first - last);
+
+		for (int k = 1, j = m - 1; k <= j; k++, j--) {
+			double xr = data[2 * k];
+			double xi = data[2 * k + 1];
+			double yr = data[2 * j];
+			double yi = data[2 * j + 1];
+
+			double er = 0.5 * (xr + yr);
+			double ei = 0.5 * (xi - yi);
+			double tr = 0.5 * (xr - yr);
+			double ti = 0.5 * (xi + yi);
+
+			// The odd transform is the conjugate of W^k times t
+			double c = cos[k];
+			double s = sin[k];
+			double or = c * tr - s * ti;
+			double oi = c * ti + s * tr;
+
+			// Z = E + iO and its mirror conj(E) + i conj(O)
+			data[2 * k] = er - oi;
+			data[2 * k + 1] = ei + or;
+			if (j != k) {
+				data[2 * j] = er + oi;
+				data[2 * j + 1] = -ei + or;
+			}
+		}
+
+		half.transform(data, true);
+	}
+
+	/**
+	 * Computes the forward transform in place, in double precision
+	 * 
+	 * @param data
+	 *            The real samples, at least size values
+	 */
+	public void forward(float[] data) {
+		checkLength(data.length);
+		double[] buffer = toBuffer(data);
+		forward(buffer);
+		fromBuffer(buffer, data);
+	}
+
+	/**
+	 * Computes the inverse transform in place, in double precision
+	 * 
+	 * @param data
+	 *            The packed spectrum, at least size values
+	 */
+	public void inverse(float[] data) {
+		checkLength(data.length);
+		double[] buffer = toBuffer(data);
+		inverse(buffer);
+		fromBuffer(buffer, data);
+	}
+
+	/**
+	 * Copies float data into the scratch buffer of the thread
+	 * 
+	 * @param data
+	 *            The values
+	 * @return The buffer
+	 */
+	private double[] toBuffer(float[] data) {
+		double[] buffer = floatScratch.get();
+		if (buffer == null) {
+			buffer = new double[size];
+			floatScratch.set(buffer);
+		}
+		for (int i = 0; i < size; i++) {
+			buffer[i] = data[i];
+		}
+		return buffer;
+	}
+
+	/**
+	 * Copies the scratch buffer back into float data
+	 * 
+	 * @param buffer
+	 *            The buffer
+	 * @param data
+	 *            The values
+	 */
+	private void fromBuffer(double[] buffer, float[] data) {
+		for (int i = 0; i < size; i++) {
+			data[i] = (float) buffer[i];
+		}
+	}
+
+	/**
+	 * Checks an array can hold the samples
+	 * 
+	 * @param length
+	 *            The length of the array
+	 */
+	private void checkLength(int length) {
+		if (length < size) {
+			throw new ArrayIndexOutOfBoundsException("At least " + size + " values needed, length: " + length);
+		}
+	}
+
+}
@@ -0,0 +1,487 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.audio;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.loopinsoftware.util.raw.PcmConverter;
+import com.loopinsoftware.util.raw.Queue;
+
+/**
+ * @author Antonio Vicente Martin
+ * 
+ *         This class converts streams between two sample rates with a
+ *         polyphase filter. The ratio is reduced to up / down, and every output
+ *         sample is the dot product of the last input samples with one of the
+ *         up phases of a windowed sinc low pass filter. The phases of each
+ *         ratio and {@link Quality} are computed once and shared by all
+ *         resamplers.
+ * 
+ *         Ratios of nearly coprime rates, such as 48000 to 47999, would need
+ *         tens of thousands of phases. Above {@link #MAX_PHASES} the filter is
+ *         sampled at {@link #MAX_PHASES} phases and each output interpolates
+ *         linearly between the two nearest ones, so the tables of any ratio
+ *         stay below a megabyte.
+ * 
+ *         The history of each channel and the fractional position of the next
+ *         output are kept between calls, so a stream can be resampled in
+ *         blocks of any size. Planes of all channels are resampled together
+ *         and produce the same number of frames.
+ */
+public class Resampler {
+
+	/**
+	 * This enum classifies the trade off between speed and quality. More taps
+	 * per phase give a sharper transition band and less aliasing, at a
+	 * proportional cost per output sample.
+	 * 
+	 * @author Antonio Vicente Martin
+	 *
+	 */
+	public enum Quality {
+		FAST(8, 0.8, Window.HANN), MEDIUM(24, 0.9, Window.BLACKMAN), BEST(64, 0.95, Window.BLACKMAN_HARRIS);
+
+		private final int taps;
+		private final double passband;
+		private final Window window;
+
+		/**
+		 * The filter banks of each ratio, by up in the high half and down in
+		 * the low half of the key
+		 */
+		private final ConcurrentHashMap<Long, double[]> banks = new ConcurrentHashMap<Long, double[]>();
+
+		private Quality(int taps, double passband, Window window) {
+			this.taps = taps;
+			this.passband = passband;
+			this.window = window;
+		}
+
+		/**
+		 * Returns the number of taps of each phase
+		 * 
+		 * @return The number of taps
+		 */
+		public int getTaps() {
+			return taps;
+		}
+
+		/**
+		 * Returns the cached filter bank of a ratio, which must not be
+		 * modified. Phase p takes taps * p to taps * (p + 1), in the order
+		 * they multiply the input, oldest sample first. The bank has one more
+		 * phase, a whole input sample ahead of the first one, to interpolate
+		 * the phases past the last one.
+		 * 
+		 * @param up
+		 *            The interpolation factor
+		 * @param down
+		 *            The decimation factor
+		 * @param phases
+		 *            The number of phases, up or {@link #MAX_PHASES}
+		 * @return The filter bank
+		 */
+		private double[] getBank(int up, int down, int phases) {
+			Long key = ((long) up << 32) | down;
+			double[] bank = banks.get(key);
+			if (bank == null) {
+				// The cutoff is relative to the rate of the phases
+				double cutoff = passband * 0.5 * Math.min(1.0, (double) up / down) / phases;
+				double[] prototype = FirFilter.lowPass(phases * taps, cutoff, window);
+
+				bank = new double[(phases + 1) * taps];
+				for (int p = 0; p <= phases; p++) {
+					for (int r = 0; r < taps; r++) {
+						int index = p + (taps - 1 - r) * phases;
+						bank[p * taps + r] = index < prototype.length ? phases * prototype[index] : 0;
+					}
+				}
+				banks.putIfAbsent(key, bank);
+			}
+			return bank;
+		}
+	}
+
+	/**
+	 * The largest number of phases of a filter bank
+	 */
+	public static final int MAX_PHASES = 1024;
+
+	/**
+	 * The number of input frames of each step
+	 */
+	private static final int CHUNK = 1024;
+
+	private final int inputRate;
+	private final int outputRate;
+	private final int channels;
+	private final Quality quality;
+
+	private final int up;
+	private final int down;
+	private final int phases;
+	private final int taps;
+	private final double[] bank;
+
+	/**
+	 * The last taps - 1 samples of each channel
+	 */
+	private final double[][] history;
+	private final double[] work;
+
+	/**
+	 * The position of the next output at the interpolated rate, relative to
+	 * the next input sample
+	 */
+	private long position;
+
+	/**
+	 * The buffers to read PCM frames from a queue, allocated on first use
+	 */
+	private byte[] frames;
+	private double[][] planes;
+
+	/**
+	 * Creates a new Resampler
+	 * 
+	 * @param inputRate
+	 *            The sample rate of the input
+	 * @param outputRate
+	 *            The sample rate of the output
+	 * @param channels
+	 *            The number of channels
+	 * @param quality
+	 *            The quality
+	 */
+	public Resampler(int inputRate, int outputRate, int channels, Quality quality) {
+		if (inputRate < 1 || outputRate < 1) {
+			throw new IllegalArgumentException("Bad rates: " + inputRate + ", " + outputRate);
+		}
+		if (channels < 1) {
+			throw new IllegalArgumentException("Bad channels: " + channels);
+		}
+		int gcd = com.loopinsoftware.util.Math.gcd(inputRate, outputRate);
+		this.inputRate = inputRate;
+		this.outputRate = outputRate;
+		this.channels = channels;
+		this.quality = quality;
+		this.up = outputRate / gcd;
+		this.down = inputRate / gcd;
+		this.phases = Math.min(up, MAX_PHASES);
+		this.taps = quality.taps;
+		this.bank = quality.getBank(up, down, phases);
+		this.history = new double[channels][taps - 1];
+		this.work = new double[taps - 1 + CHUNK];
+	}
+
+	/**
+	 * Returns the number of frames the next call produces from a number of
+	 * input frames
+	 * 
+	 * @param inputFrames
+	 *            The number of input frames
+	 * @return The number of output frames
+	 */
+	public int getOutputFrames(int inputFrames) {
+		long span = (long) inputFrames * up - position;
+		return span <= 0 ? 0 : (int) ((span + down - 1) / down);
+	}
+
+	/**
+	 * Returns the largest number of input frames whose output fits in a
+	 * number of frames
+	 * 
+	 * @param outputFrames
+	 *            The number of output frames
+	 * @return The number of input frames
+	 */
+	public int getInputFrames(int outputFrames) {
+		return (int) Math.min(Integer.MAX_VALUE, ((long) outputFrames * down + position) / up);
+	}
+
+	/**
+	 * Resamples a block of planes
+	 * 
+	 * @param src
+	 *            The input samples of each channel
+	 * @param fromSrc
+	 *            The low index in every input plane
+	 * @param toSrc
+	 *            The high index in every input plane
+	 * @param dst
+	 *            The output samples of each channel, with room for
+	 *            {@link #getOutputFrames(int)} frames
+	 * @param fromDst
+	 *            The low index in every output plane
+	 * @return The number of frames written
+	 */
+	public int process(double[][] src, int fromSrc, int toSrc, double[][] dst, int fromDst) {
+		int written = checkBounds(src.length, dst.length, fromSrc, toSrc, fromDst);
+		for (int c = 0; c < channels; c++) {
+			checkBounds(src[c].length, fromSrc, toSrc);
+			checkBounds(dst[c].length, fromDst, fromDst + written);
+		}
+
+		int to = fromDst;
+		while (fromSrc < toSrc) {
+			int n = Math.min(CHUNK, toSrc - fromSrc);
+			long start = position;
+			for (int c = 0; c < channels; c++) {
+				System.arraycopy(history[c], 0, work, 0, taps - 1);
+				System.arraycopy(src[c], fromSrc, work, taps - 1, n);
+
+				double[] plane = dst[c];
+				position = start;
+				to = fromDst;
+				while (position < (long) n * up) {
+					plane[to++] = dot(position);
+					position += down;
+				}
+
+				System.arraycopy(work, n, history[c], 0, taps - 1);
+			}
+			position -= (long) n * up;
+			fromSrc += n;
+			fromDst = to;
+		}
+		return written;
+	}
+
+	/**
+	 * Resamples a block of planes
+	 * 
+	 * @param src
+	 *            The input samples of each channel
+	 * @param fromSrc
+	 *            The low index in every input plane
+	 * @param toSrc
+	 *            The high index in every input plane
+	 * @param dst
+	 *            The output samples of each channel, with room for
+	 *            {@link #getOutputFrames(int)} frames
+	 * @param fromDst
+	 *            The low index in every output plane
+	 * @return The number of frames written
+	 */
+	public int process(float[][] src, int fromSrc, int toSrc, float[][] dst, int fromDst) {
+		int written = checkBounds(src.length, dst.length, fromSrc, toSrc, fromDst);
+		for (int c = 0; c < channels; c++) {
+			checkBounds(src[c].length, fromSrc, toSrc);
+			checkBounds(dst[c].length, fromDst, fromDst + written);
+		}
+
+		int to = fromDst;
+		while (fromSrc < toSrc) {
+			int n = Math.min(CHUNK, toSrc - fromSrc);
+			long start = position;
+			for (int c = 0; c < channels; c++) {
+				System.arraycopy(history[c], 0, work, 0, taps - 1);
+				float[] in = src[c];
+				for (int i = 0; i < n; i++) {
+					work[taps - 1 + i] = in[fromSrc + i];
+				}
+
+				float[] plane = dst[c];
+				position = start;
+				to = fromDst;
+				while (position < (long) n * up) {
+					plane[to++] = (float) dot(position);
+					position += down;
+				}
+
+				System.arraycopy(work, n, history[c], 0, taps - 1);
+			}
+			position -= (long) n * up;
+			fromSrc += n;
+			fromDst = to;
+		}
+		return written;
+	}
+
+	/**
+	 * Resamples the whole PCM frames available in a queue, as many as fit in
+	 * the output planes. Samples are normalized to [-1, 1].
+	 * 
+	 * @param src
+	 *            The queue of interleaved frames
+	 * @param sampleSize
+	 *            The number of bytes per sample, from 1 to 4
+	 * @param signed
+	 *            Whether the samples are signed or not
+	 * @param littleEndian
+	 *            The byte order, as in
+	 *            {@link com.loopinsoftware.util.raw.ByteConverter}
+	 * @param dst
+	 *            The output samples of each channel
+	 * @param fromDst
+	 *            The low index in every output plane
+	 * @param toDst
+	 *            The high index in every output plane
+	 * @return The number of frames written
+	 */
+	public int process(Queue src, int sampleSize, boolean signed, boolean littleEndian, double[][] dst, int fromDst,
+			int toDst) {
+		if (sampleSize < 1 || sampleSize > 4) {
+			throw new IllegalArgumentException("Bad sample size: " + sampleSize);
+		}
+		int frameBytes = sampleSize * channels;
+		if (frames == null || frames.length < CHUNK * frameBytes) {
+			frames = new byte[CHUNK * frameBytes];
+			planes = new double[channels][CHUNK];
+		}
+
+		int written = 0;
+		while (true) {
+			int n = Math.min(CHUNK, Math.min(src.getSize() / frameBytes, getInputFrames(toDst - fromDst - written)));
+			if (n == 0) {
+				return written;
+			}
+			src.pop(frames, n * frameBytes);
+			PcmConverter.deinterleave(frames, 0, sampleSize, signed, channels, null, planes, 0, n, true, littleEndian);
+			written += process(planes, 0, n, dst, fromDst + written);
+		}
+	}
+
+	/**
+	 * Returns the output sample of a position, the dot product of a phase with
+	 * the samples of the work buffer
+	 * 
+	 * @param position
+	 *            The position at the interpolated rate
+	 * @return The sample
+	 */
+	private double dot(long position) {
+		int index = (int) (position / up);
+		if (phases == up) {
+			int offset = (int) (position % up) * taps;
+			double sum = 0;
+			for (int r = 0; r < taps; r++) {
+				sum += bank[offset + r] * work[index + r];
+			}
+			return sum;
+		}
+
+		// Between two phases of the bank
+		long scaled = position % up * phases;
+		int offset = (int) (scaled / up) * taps;
+		double fraction = (double) (scaled % up) / up;
+		double sum = 0;
+		for (int r = 0; r < taps; r++) {
+			double coefficient = bank[offset + r] + fraction * (bank[offset + taps + r] - bank[offset + r]);
+			sum += coefficient * work[index + r];
+		}
+		return sum;
+	}
+
+	/**
+	 * Checks the number of planes and returns the number of output frames
+	 * 
+	 * @param srcPlanes
+	 *            The number of input planes
+	 * @param dstPlanes
+	 *            The number of output planes
+	 * @param fromSrc
+	 *            The low index in every input plane
+	 * @param toSrc
+	 *            The high index in every input plane
+	 * @param fromDst
+	 *            The low index in every output plane
+	 * @return The number of output frames
+	 */
+	private int checkBounds(int srcPlanes, int dstPlanes, int fromSrc, int toSrc, int fromDst) {
+		if (srcPlanes != channels || dstPlanes != channels) {
+			throw new IllegalArgumentException("Expected " + channels + " planes, got " + srcPlanes + " and "
+					+ dstPlanes);
+		}
+		if (fromSrc > toSrc || fromDst < 0) {
+			throw new ArrayIndexOutOfBoundsException("from: " + fromSrc + ", to: " + toSrc + ", fromDst: " + fromDst);
+		}
+		return getOutputFrames(toSrc - fromSrc);
+	}
+
+	/**
+	 * Checks a range is inside an array
+	 * 
+	 * @param length
+	 *            The length of the array
+	 * @param from
+	 *            The low index
+	 * @param to
+	 *            The high index
+	 */
+	private static void checkBounds(int length, int from, int to) {
+		if (from < 0 || from > to || to > length) {
+			throw new ArrayIndexOutOfBoundsException("length: " + length + ", from: " + from + ", to: " + to);
+		}
+	}
+
+	/**
+	 * Clears the history, as if no sample had been resampled
+	 */
+	public void reset() {
+		for (double[] last : history) {
+			Arrays.fill(last, 0);
+		}
+		position = 0;
+	}
+
+	/**
+	 * Returns the delay of the filter in output frames
+	 * 
+	 * @return The delay
+	 */
+	public double getDelay() {
+		return (phases * taps - 1) / 2.0 / phases * up / down;
+	}
+
+	/**
+	 * Returns the sample rate of the input
+	 * 
+	 * @return The input rate
+	 */
+	public int getInputRate() {
+		return inputRate;
+	}
+
+	/**
+	 * Returns the sample rate of the output
+	 * 
+	 * @return The output rate
+	 */
+	public int getOutputRate() {
+		return outputRate;
+	}
+
+	/**
+	 * Returns the number of channels
+	 * 
+	 * @return The number of channels
+	 */
+	public int getChannels() {
+		return channels;
+	}
+
+	/**
+	 * Returns the quality
+	 * 
+	 * @return The quality
+	 */
+	public Quality getQuality() {
+		return quality;
+	}
+
+}
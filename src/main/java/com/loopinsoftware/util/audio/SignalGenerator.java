@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.audio;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.loopinsoftware.util.raw.BlockingQueue;
+import com.loopinsoftware.util.raw.PcmConverter;
+import com.loopinsoftware.util.raw.Queue;
+
+/**
+ * @author Antonio Vicente Martin
+ * 
+ *         This class renders a group of {@link Oscillator}, one per channel,
+ *         into blocks of interleaved PCM bytes. Each block is rendered into
+ *         preallocated planes, encoded with {@link PcmConverter} and handed to
+ *         a {@link Queue} with {@link Queue#push(byte[])}, so a
+ *         {@link BlockingQueue} blocks or overwrites according to its policy.
+ *         Rendering a block on the caller thread does not allocate.
+ * 
+ *         Channels are independent, so large groups can be rendered on a
+ *         {@link ForkJoinPool}, in ranges of {@link #CHANNELS_PER_TASK}
+ *         channels. The block is then encoded on the same pool in ranges of
+ *         frames holding as many samples.
+ */
+public class SignalGenerator {
+
+	/**
+	 * The number of channels rendered by each task of a pool
+	 */
+	public static final int CHANNELS_PER_TASK = 16;
+
+	private final Oscillator[] channels;
+	private final int blockSize;
+	private final int sampleSize;
+	private final boolean signed;
+	private final boolean littleEndian;
+
+	private final double[][] planes;
+	private final byte[] block;
+	private final int framesPerTask;
+
+	/**
+	 * Creates a new SignalGenerator
+	 * 
+	 * @param channels
+	 *            The oscillator of each channel
+	 * @param blockSize
+	 *            The number of frames of each block
+	 * @param sampleSize
+	 *            The number of bytes per sample, from 1 to 4
+	 * @param signed
+	 *            Whether the samples are signed or not
+	 * @param littleEndian
+	 *            The byte order, as in
+	 *            {@link com.loopinsoftware.util.raw.ByteConverter}
+	 */
+	public SignalGenerator(Oscillator[] channels, int blockSize, int sampleSize, boolean signed, boolean littleEndian) {
+		if (channels.length < 1 || blockSize < 1) {
+			throw new IllegalArgumentException("Bad channels: " + channels.length + " or block size: " + blockSize);
+		}
+		if (sampleSize < 1 || sampleSize > 4) {
+			throw new IllegalArgumentException("Bad sample size: " + sampleSize);
+		}
+		this.channels = channels.clone();
+		this.blockSize = blockSize;
+		this.sampleSize = sampleSize;
+		this.signed = signed;
+		this.littleEndian = littleEndian;
+		this.planes = new double[channels.length][blockSize];
+		this.block = new byte[blockSize * channels.length * sampleSize];
+		this.framesPerTask = Math.max(1, CHANNELS_PER_TASK * blockSize / channels.length);
+	}
+
+	/**
+	 * Renders the next block on the caller thread
+	 * 
+	 * @return The interleaved PCM bytes, overwritten by the next block
+	 */
+	public byte[] renderBlock() {
+		render(0, channels.length);
+		encode(0, blockSize);
+		return block;
+	}
+
+	/**
+	 * Renders the next block on a pool
+	 * 
+	 * @param pool
+	 *            The pool to run on
+	 * @return The interleaved PCM bytes, overwritten by the next block
+	 */
+	public byte[] renderBlock(ForkJoinPool pool) {
+		if (channels.length <= CHANNELS_PER_TASK) {
+			return renderBlock();
+		}
+		pool.invoke(new RenderTask(0, channels.length, false));
+		pool.invoke(new RenderTask(0, blockSize, true));
+		return block;
+	}
+
+	/**
+	 * Renders the next block on the caller thread and pushes it into a queue
+	 * 
+	 * @param dst
+	 *            The queue to push to
+	 */
+	public void renderBlock(Queue dst) {
+		dst.push(renderBlock());
+	}
+
+	/**
+	 * Renders the next block on a pool and pushes it into a queue
+	 * 
+	 * @param pool
+	 *            The pool to run on
+	 * @param dst
+	 *            The queue to push to
+	 */
+	public void renderBlock(ForkJoinPool pool, Queue dst) {
+		dst.push(renderBlock(pool));
+	}
+
+	/**
+	 * Returns the number of bytes of a block
+	 * 
+	 * @return The block size in bytes
+	 */
+	public int getBlockBytes() {
+		return block.length;
+	}
+
+	/**
+	 * Returns the number of frames of a block
+	 * 
+	 * @return The block size in frames
+	 */
+	public int getBlockSize() {
+		return blockSize;
+	}
+
+	/**
+	 * Returns the number of channels
+	 * 
+	 * @return The number of channels
+	 */
+	public int getChannels() {
+		return channels.length;
+	}
+
+	/**
+	 * Renders the planes of a range of channels
+	 * 
+	 * @param from
+	 *            The first channel
+	 * @param to
+	 *            The channel after the last one
+	 */
+	private void render(int from, int to) {
+		for (int c = from; c < to; c++) {
+			channels[c].render(planes[c], 0, blockSize);
+		}
+	}
+
+	/**
+	 * Interleaves and encodes a range of frames of the planes into the block
+	 * 
+	 * @param from
+	 *            The first frame
+	 * @param to
+	 *            The frame after the last one
+	 */
+	private void encode(int from, int to) {
+		PcmConverter.interleave(planes, from, to, null, block, from * channels.length * sampleSize, channels.length,
+				sampleSize, signed, true, littleEndian);
+	}
+
+	/**
+	 * This class splits a range of channels to render, or a range of frames
+	 * to encode, in halves until it is small enough
+	 */
+	private class RenderTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int from;
+		private final int to;
+		private final boolean encode;
+
+		RenderTask(int from, int to, boolean encode) {
+			this.from = from;
+			this.to = to;
+			this.encode = encode;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= (encode ? framesPerTask : CHANNELS_PER_TASK)) {
+				if (encode) {
+					encode(from, to);
+				} else {
+					render(from, to);
+				}
+				return;
+			}
+
+			int middle = (from + to) >>> 1;
+			invokeAll(new RenderTask(from, middle, encode), new RenderTask(middle, to, encode));
+		}
+
+	}
+
+}
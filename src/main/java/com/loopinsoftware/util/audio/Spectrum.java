@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.audio;
+
+/**
+ * @author Antonio Vicente Martin
+ * 
+ *         This class derives power and magnitude spectra from the output of
+ *         {@link RealFft} and {@link Fft}, writing into caller supplied arrays.
+ *         Values are not scaled, so the power of bin k of a real transform of
+ *         n samples is {@code |X[k]|^2}.
+ */
+public class Spectrum {
+
+	/**
+	 * Computes the power of the bins 0 to n / 2 of a packed real spectrum
+	 * 
+	 * @param packed
+	 *            The output of {@link RealFft#forward(double[])}
+	 * @param size
+	 *            The number of real samples transformed
+	 * @param dst
+	 *            The destination array, at least size / 2 + 1 values
+	 */
+	public static void power(double[] packed, int size, double[] dst) {
+		checkLengths(packed.length, size, dst.length, size / 2 + 1);
+
+		int m = size / 2;
+		dst[0] = packed[0] * packed[0];
+		dst[m] = packed[1] * packed[1];
+		for (int k = 1; k < m; k++) {
+			double re = packed[2 * k];
+			double im = packed[2 * k + 1];
+			dst[k] = re * re + im * im;
+		}
+	}
+
+	/**
+	 * Computes the magnitude of the bins 0 to n / 2 of a packed real spectrum
+	 * 
+	 * @param packed
+	 *            The output of {@link RealFft#forward(double[])}
+	 * @param size
+	 *            The number of real samples transformed
+	 * @param dst
+	 *            The destination array, at least size / 2 + 1 values
+	 */
+	public static void magnitude(double[] packed, int size, double[] dst) {
+		power(packed, size, dst);
+		for (int k = 0; k <= size / 2; k++) {
+			dst[k] = Math.sqrt(dst[k]);
+		}
+	}
+
+	/**
+	 * Computes the power of every bin of a complex spectrum
+	 * 
+	 * @param data
+	 *            The output of {@link Fft#forward(double[])}
+	 * @param size
+	 *            The number of complex samples transformed
+	 * @param dst
+	 *            The destination array, at least size values
+	 */
+	public static void complexPower(double[] data, int size, double[] dst) {
+		checkLengths(data.length, 2 * size, dst.length, size);
+
+		for (int k = 0; k < size; k++) {
+			double re = data[2 * k];
+			double im = data[2 * k + 1];
+			dst[k] = re * re + im * im;
+		}
+	}
+
+	/**
+	 * Converts power values to decibels in place, {@code 10 log10(p / ref)}
+	 * 
+	 * @param data
+	 *            The power values
+	 * @param from
+	 *            The low index in data
+	 * @param to
+	 *            The high index in data
+	 * @param reference
+	 *            The power of 0 dB
+	 * @param floor
+	 *            The lowest value returned, for silent bins
+	 */
+	public static void toDecibels(double[] data, int from, int to, double reference, double floor) {
+		if (from < 0 || from > to || to > data.length) {
+			throw new ArrayIndexOutOfBoundsException("length: " + data.length + ", from: " + from + ", to: " + to);
+		}
+
+		double scale = 1 / reference;
+		for (int i = from; i < to; i++) {
+			data[i] = Math.max(floor, 10 * Math.log10(data[i] * scale));
+		}
+	}
+
+	/**
+	 * Checks the source and destination arrays are long enough
+	 * 
+	 * @param srcLength
+	 *            The length of the source
+	 * @param srcNeeded
+	 *            The values needed in the source
+	 * @param dstLength
+	 *            The length of the destination
+	 * @param dstNeeded
+	 *            The values needed in the destination
+	 */
+	private static void checkLengths(int srcLength, int srcNeeded, int dstLength, int dstNeeded) {
+		if (srcLength < srcNeeded || dstLength < dstNeeded) {
+			throw new ArrayIndexOutOfBoundsException(
+					"At least " + srcNeeded + " and " + dstNeeded + " values needed, lengths: " + srcLength + ", "
+							+ dstLength);
+		}
+	}
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.audio;
+
+/**
+ * This enum classifies the waveforms of an {@link Oscillator}. Periodic
+ * waveforms are stored in a table of one cycle, read with linear
+ * interpolation, so no trigonometric function is evaluated per sample.
+ * 
+ * @author Antonio Vicente Martin
+ *
+ */
+public enum Waveform {
+	SINE {
+		@Override
+		double shape(double phase) {
+			return Math.sin(2 * Math.PI * phase);
+		}
+	},
+	SQUARE {
+		@Override
+		double shape(double phase) {
+			return phase < 0.5 ? 1 : -1;
+		}
+	},
+	SAW {
+		@Override
+		double shape(double phase) {
+			return 2 * phase - 1;
+		}
+	},
+	TRIANGLE {
+		@Override
+		double shape(double phase) {
+			return phase < 0.25 ? 4 * phase : phase < 0.75 ? 2 - 4 * phase : 4 * phase - 4;
+		}
+	},
+	NOISE {
+		@Override
+		double shape(double phase) {
+			return Double.NaN;
+		}
+
+		@Override
+		boolean isPeriodic() {
+			return false;
+		}
+	};
+
+	/**
+	 * The number of bits of the table index
+	 */
+	static final int TABLE_BITS = 12;
+	static final int TABLE_SIZE = 1 << TABLE_BITS;
+
+	/**
+	 * One cycle plus the first sample again, so interpolation never wraps.
+	 * Null for noise.
+	 */
+	final double[] table;
+
+	private Waveform() {
+		if (!isPeriodic()) {
+			table = null;
+			return;
+		}
+
+		table = new double[TABLE_SIZE + 1];
+		for (int i = 0; i < TABLE_SIZE; i++) {
+			table[i] = shape((double) i / TABLE_SIZE);
+		}
+		table[TABLE_SIZE] = table[0];
+	}
+
+	/**
+	 * Returns the value of one cycle of the waveform
+	 * 
+	 * @param phase
+	 *            The phase, from 0 to 1
+	 * @return The value, from -1 to 1
+	 */
+	abstract double shape(double phase);
+
+	/**
+	 * Returns whether the waveform is stored in a table or not
+	 * 
+	 * @return true for periodic waveforms
+	 */
+	boolean isPeriodic() {
+		return true;
+	}
+
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.audio;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This enum classifies the windows applied to a block of samples before a
+ * transform, to reduce the leakage between bins. Windows are periodic, the
+ * usual choice for spectral analysis, so a window of n samples is the first n
+ * samples of the symmetric window of n + 1.
+ * 
+ * The coefficients are computed once per size and cached, so applying a
+ * window does not allocate.
+ * 
+ * @author Antonio Vicente Martin
+ *
+ */
+public enum Window {
+	RECTANGULAR(1, 0, 0, 0), HANN(0.5, 0.5, 0, 0), HAMMING(0.54, 0.46, 0, 0), BLACKMAN(0.42, 0.5, 0.08, 0),
+	BLACKMAN_HARRIS(0.35875, 0.48829, 0.14128, 0.01168);
+
+	/**
+	 * The cosine series coefficients, {@code w(i) = a0 - a1 cos(x) + a2
+	 * cos(2x) - a3 cos(3x)}
+	 */
+	private final double a0;
+	private final double a1;
+	private final double a2;
+	private final double a3;
+
+	private final ConcurrentHashMap<Integer, double[]> coefficients = new ConcurrentHashMap<Integer, double[]>();
+
+	private Window(double a0, double a1, double a2, double a3) {
+		this.a0 = a0;
+		this.a1 = a1;
+		this.a2 = a2;
+		this.a3 = a3;
+	}
+
+	/**
+	 * Multiplies a block of samples by the window
+	 * 
+	 * @param data
+	 *            The samples
+	 * @param from
+	 *            The low index in data
+	 * @param to
+	 *            The high index in data
+	 */
+	public void apply(double[] data, int from, int to) {
+		checkBounds(data.length, from, to);
+		double[] window = getCoefficients(to - from);
+		for (int i = from, j = 0; i < to; i++, j++) {
+			data[i] *= window[j];
+		}
+	}
+
+	/**
+	 * Multiplies a block of samples by the window
+	 * 
+	 * @param data
+	 *            The samples
+	 * @param from
+	 *            The low index in data
+	 * @param to
+	 *            The high index in data
+	 */
+	public void apply(float[] data, int from, int to) {
+		checkBounds(data.length, from, to);
+		double[] window = getCoefficients(to - from);
+		for (int i = from, j = 0; i < to; i++, j++) {
+			data[i] *= window[j];
+		}
+	}
+
+	/**
+	 * Multiplies a block of interleaved complex samples by the window
+	 * 
+	 * @param data
+	 *            The interleaved complex samples
+	 * @param size
+	 *            The number of complex samples
+	 */
+	public void applyComplex(double[] data, int size) {
+		checkBounds(data.length, 0, 2 * size);
+		double[] window = getCoefficients(size);
+		for (int j = 0; j < size; j++) {
+			data[2 * j] *= window[j];
+			data[2 * j + 1] *= window[j];
+		}
+	}
+
+	/**
+	 * Returns a coefficient of the window
+	 * 
+	 * @param size
+	 *            The size of the window
+	 * @param index
+	 *            The position in the window
+	 * @return The coefficient
+	 */
+	public double getCoefficient(int size, int index) {
+		return getCoefficients(size)[index];
+	}
+
+	/**
+	 * Returns the mean of the coefficients, the amplitude of a bin centered
+	 * sine after the window is applied. Divide magnitudes by size * gain to
+	 * read amplitudes.
+	 * 
+	 * @param size
+	 *            The size of the window
+	 * @return The coherent gain
+	 */
+	public double getCoherentGain(int size) {
+		double[] window = getCoefficients(size);
+		double sum = 0;
+		for (double value : window) {
+			sum += value;
+		}
+		return sum / size;
+	}
+
+	/**
+	 * Returns the cached coefficients of a size, which must not be modified
+	 * 
+	 * @param size
+	 *            The size of the window
+	 * @return The coefficients
+	 */
+	private double[] getCoefficients(int size) {
+		double[] window = coefficients.get(size);
+		if (window == null) {
+			window = new double[size];
+			for (int i = 0; i < size; i++) {
+				window[i] = computeCoefficient(size, i);
+			}
+			coefficients.putIfAbsent(size, window);
+		}
+		return window;
+	}
+
+	/**
+	 * Computes a coefficient of the window without the cache, for sizes that
+	 * are used once
+	 * 
+	 * @param size
+	 *            The size of the window
+	 * @param index
+	 *            The position in the window
+	 * @return The coefficient
+	 */
+	double computeCoefficient(int size, int index) {
+		double x = 2 * Math.PI * index / size;
+		return a0 - a1 * Math.cos(x) + a2 * Math.cos(2 * x) - a3 * Math.cos(3 * x);
+	}
+
+	/**
+	 * Checks a range is inside an array
+	 * 
+	 * @param length
+	 *            The length of the array
+	 * @param from
+	 *            The low index
+	 * @param to
+	 *            The high index
+	 */
+	private static void checkBounds(int length, int from, int to) {
+		if (from < 0 || from > to || to > length) {
+			throw new ArrayIndexOutOfBoundsException("length: " + length + ", from: " + from + ", to: " + to);
+		}
+	}
+
+}
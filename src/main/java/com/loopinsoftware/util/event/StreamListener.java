@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.event;
+
+/**
+ * This interface follows the bytes that go through a data structure in
+ * order: the bytes stored at its end and the number of bytes dropped from
+ * its start, either read or overwritten
+ *
+ * @author Antonio Vicente Martin
+ *
+ */
+public interface StreamListener {
+
+	/**
+	 * Will be called when bytes are stored, after the bytes they evict
+	 *
+	 * @param src
+	 *            The array holding the stored bytes, only valid during the call
+	 * @param from
+	 *            The low index in src
+	 * @param to
+	 *            The high index in src
+	 */
+	public void onAdded(byte[] src, int from, int to);
+
+	/**
+	 * Will be called when the oldest bytes are removed
+	 *
+	 * @param bytes
+	 *            The number of bytes removed, at least 1
+	 */
+	public void onRemoved(int bytes);
+
+}
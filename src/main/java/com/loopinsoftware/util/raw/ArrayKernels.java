@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.raw;
+
+/**
+ * @author Antonio Vicente Martin
+ *
+ *         The bulk loops that have an explicit SIMD version. The
+ *         implementation lives in src/main/vector, which is compiled apart
+ *         with the jdk.incubator.vector module, and is only loaded when the
+ *         JVM runs with --add-modules jdk.incubator.vector. Otherwise
+ *         {@link #VECTOR} is null and the callers run their scalar loops.
+ *
+ *         Callers check the ranges; the kernels must give the very same
+ *         results as the scalar loops.
+ */
+interface ArrayKernels {
+
+	/**
+	 * The vector kernels, or null when they are not available
+	 */
+	ArrayKernels VECTOR = Loader.load();
+
+	/**
+	 * @see ByteConverter#swapBytes(short[], int, int)
+	 */
+	void swapBytes(short[] data, int from, int to);
+
+	/**
+	 * @see ByteConverter#swapBytes(int[], int, int)
+	 */
+	void swapBytes(int[] data, int from, int to);
+
+	/**
+	 * @see ByteConverter#swapBytes(long[], int, int)
+	 */
+	void swapBytes(long[] data, int from, int to);
+
+	/**
+	 * Widens shorts into floats multiplied by scale
+	 *
+	 * @see PcmConverter#toFloatsArray(short[], int, float[], int, int, boolean)
+	 */
+	void toFloats(short[] src, int fromSrc, float[] dst, int fromDst, int toDst, float scale);
+
+	/**
+	 * Narrows floats multiplied by scale into shorts, clipping and rounding
+	 * as Math.round does
+	 *
+	 * @see PcmConverter#fromFloatsArray(float[], int, int, short[], int,
+	 *      boolean)
+	 */
+	void fromFloats(float[] src, int fromSrc, int toSrc, short[] dst, int fromDst, float scale);
+
+	/**
+	 * Probes for the vector kernels once
+	 */
+	final class Loader {
+
+		private static final String VECTOR_KERNELS = "com.loopinsoftware.util.raw.VectorArrayKernels";
+
+		private Loader() {
+		}
+
+		static ArrayKernels load() {
+			try {
+				return (ArrayKernels) Class.forName(VECTOR_KERNELS).getDeclaredConstructor().newInstance();
+			} catch (ReflectiveOperationException | LinkageError e) {
+				// Not compiled in, the module is missing or there are no SIMD units
+				return null;
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,605 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.raw;
+
+import java.util.Arrays;
+
+/**
+ * @author Antonio Vicente Martin
+ * 
+ *         This class converts bytes to Base64 text and back, with the standard
+ *         and the URL and filename safe alphabets of RFC 4648. Digits are
+ *         looked up in tables and written straight into caller supplied char
+ *         or ASCII byte arrays, so no String is built. The contents of a
+ *         {@link Queue} are encoded in place, from both regions of the ring.
+ */
+public class Base64Converter {
+
+	private static final char[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/"
+			.toCharArray();
+	private static final char[] URL_ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_"
+			.toCharArray();
+
+	/**
+	 * The value of every ASCII digit, -1 if it is not a digit
+	 */
+	private static final byte[] VALUES = new byte[128];
+	private static final byte[] URL_VALUES = new byte[128];
+
+	static {
+		Arrays.fill(VALUES, (byte) -1);
+		Arrays.fill(URL_VALUES, (byte) -1);
+		for (int i = 0; i < 64; i++) {
+			VALUES[ALPHABET[i]] = (byte) i;
+			URL_VALUES[URL_ALPHABET[i]] = (byte) i;
+		}
+	}
+
+	/**
+	 * Returns the number of digits needed to encode a number of bytes
+	 * 
+	 * @param length
+	 *            The number of bytes
+	 * @param padding
+	 *            Whether the last group is completed with '=' or not
+	 * @return The number of digits
+	 */
+	public static int encodedLength(int length, boolean padding) {
+		return padding ? (length + 2) / 3 * 4 : (length * 4 + 2) / 3;
+	}
+
+	/**
+	 * Encodes a bytes array into chars
+	 * 
+	 * @param src
+	 *            The array to read
+	 * @param fromSrc
+	 *            The low index in src
+	 * @param toSrc
+	 *            The high index in src
+	 * @param dst
+	 *            The destination array
+	 * @param fromDst
+	 *            The low index in dst
+	 * @param url
+	 *            Whether the URL and filename safe alphabet is used or not
+	 * @param padding
+	 *            Whether the last group is completed with '=' or not
+	 * @return The index in dst after the last digit
+	 */
+	public static int encode(byte[] src, int fromSrc, int toSrc, char[] dst, int fromDst, boolean url, boolean padding) {
+		checkBounds(src.length, fromSrc, toSrc);
+		checkBounds(dst.length, fromDst, fromDst + encodedLength(toSrc - fromSrc, padding));
+
+		char[] alphabet = url ? URL_ALPHABET : ALPHABET;
+		int length = toSrc - fromSrc;
+		int whole = length - length % 3;
+
+		int j = encodeGroups(src, fromSrc, fromSrc + whole, dst, fromDst, alphabet);
+
+		int bits = 0;
+		for (int i = whole; i < length; i++) {
+			bits |= (src[fromSrc + i] & 0xff) << (16 - 8 * (i - whole));
+		}
+		return encodeTail(bits, length - whole, dst, j, alphabet, padding);
+	}
+
+	/**
+	 * Encodes the stored bytes of a queue into chars. The queue is not
+	 * modified.
+	 * 
+	 * @param src
+	 *            The queue to read
+	 * @param fromSrc
+	 *            The low position from the first element
+	 * @param toSrc
+	 *            The high position from the first element
+	 * @param dst
+	 *            The destination array
+	 * @param fromDst
+	 *            The low index in dst
+	 * @param url
+	 *            Whether the URL and filename safe alphabet is used or not
+	 * @param padding
+	 *            Whether the last group is completed with '=' or not
+	 * @return The index in dst after the last digit
+	 */
+	public static int encode(Queue src, int fromSrc, int toSrc, char[] dst, int fromDst, boolean url, boolean padding) {
+		checkBounds(src.getSize(), fromSrc, toSrc);
+		checkBounds(dst.length, fromDst, fromDst + encodedLength(toSrc - fromSrc, padding));
+		if (fromSrc == toSrc) {
+			return fromDst;
+		}
+
+		char[] alphabet = url ? URL_ALPHABET : ALPHABET;
+		byte[] ring = src.getRingData();
+		int length = toSrc - fromSrc;
+
+		// The whole groups before the end of the ring
+		int start = src.getRingIndex(fromSrc);
+		int first = Math.min(length, src.getCapacity() - start);
+		int done = first - first % 3;
+		int j = encodeGroups(ring, start, start + done, dst, fromDst, alphabet);
+
+		if (length - done >= 3) {
+			// The group split by the end of the ring, the rest is contiguous
+			encodeGroup(group(src, fromSrc + done, 3), dst, j, alphabet);
+			j += 4;
+			done += 3;
+
+			int whole = (length - done) / 3 * 3;
+			start = src.getRingIndex(fromSrc + done);
+			j = encodeGroups(ring, start, start + whole, dst, j, alphabet);
+			done += whole;
+		}
+
+		return encodeTail(group(src, fromSrc + done, length - done), length - done, dst, j, alphabet, padding);
+	}
+
+	/**
+	 * Encodes a bytes array into ASCII bytes
+	 * 
+	 * @param src
+	 *            The array to read
+	 * @param fromSrc
+	 *            The low index in src
+	 * @param toSrc
+	 *            The high index in src
+	 * @param dst
+	 *            The destination array
+	 * @param fromDst
+	 *            The low index in dst
+	 * @param url
+	 *            Whether the URL and filename safe alphabet is used or not
+	 * @param padding
+	 *            Whether the last group is completed with '=' or not
+	 * @return The index in dst after the last digit
+	 */
+	public static int encode(byte[] src, int fromSrc, int toSrc, byte[] dst, int fromDst, boolean url, boolean padding) {
+		checkBounds(src.length, fromSrc, toSrc);
+		checkBounds(dst.length, fromDst, fromDst + encodedLength(toSrc - fromSrc, padding));
+
+		char[] alphabet = url ? URL_ALPHABET : ALPHABET;
+		int length = toSrc - fromSrc;
+		int whole = length - length % 3;
+
+		int j = encodeGroups(src, fromSrc, fromSrc + whole, dst, fromDst, alphabet);
+
+		int bits = 0;
+		for (int i = whole; i < length; i++) {
+			bits |= (src[fromSrc + i] & 0xff) << (16 - 8 * (i - whole));
+		}
+		return encodeTail(bits, length - whole, dst, j, alphabet, padding);
+	}
+
+	/**
+	 * Encodes the stored bytes of a queue into ASCII bytes. The queue is not
+	 * modified.
+	 * 
+	 * @param src
+	 *            The queue to read
+	 * @param fromSrc
+	 *            The low position from the first element
+	 * @param toSrc
+	 *            The high position from the first element
+	 * @param dst
+	 *            The destination array
+	 * @param fromDst
+	 *            The low index in dst
+	 * @param url
+	 *            Whether the URL and filename safe alphabet is used or not
+	 * @param padding
+	 *            Whether the last group is completed with '=' or not
+	 * @return The index in dst after the last digit
+	 */
+	public static int encode(Queue src, int fromSrc, int toSrc, byte[] dst, int fromDst, boolean url, boolean padding) {
+		checkBounds(src.getSize(), fromSrc, toSrc);
+		checkBounds(dst.length, fromDst, fromDst + encodedLength(toSrc - fromSrc, padding));
+		if (fromSrc == toSrc) {
+			return fromDst;
+		}
+
+		char[] alphabet = url ? URL_ALPHABET : ALPHABET;
+		byte[] ring = src.getRingData();
+		int length = toSrc - fromSrc;
+
+		// The whole groups before the end of the ring
+		int start = src.getRingIndex(fromSrc);
+		int first = Math.min(length, src.getCapacity() - start);
+		int done = first - first % 3;
+		int j = encodeGroups(ring, start, start + done, dst, fromDst, alphabet);
+
+		if (length - done >= 3) {
+			// The group split by the end of the ring, the rest is contiguous
+			encodeGroup(group(src, fromSrc + done, 3), dst, j, alphabet);
+			j += 4;
+			done += 3;
+
+			int whole = (length - done) / 3 * 3;
+			start = src.getRingIndex(fromSrc + done);
+			j = encodeGroups(ring, start, start + whole, dst, j, alphabet);
+			done += whole;
+		}
+
+		return encodeTail(group(src, fromSrc + done, length - done), length - done, dst, j, alphabet, padding);
+	}
+
+	/**
+	 * Decodes chars into a bytes array. The last group may be padded
+	 * or not.
+	 * 
+	 * @param src
+	 *            The digits to read
+	 * @param fromSrc
+	 *            The low index in src
+	 * @param toSrc
+	 *            The high index in src
+	 * @param dst
+	 *            The destination array
+	 * @param fromDst
+	 *            The low index in dst
+	 * @param url
+	 *            Whether the URL and filename safe alphabet is used or not
+	 * @return The index in dst after the last byte
+	 */
+	public static int decode(char[] src, int fromSrc, int toSrc, byte[] dst, int fromDst, boolean url) {
+		checkBounds(src.length, fromSrc, toSrc);
+
+		int end = toSrc;
+		while (end > fromSrc && toSrc - end < 2 && src[end - 1] == '=') {
+			end--;
+		}
+		int length = checkLength(end - fromSrc, toSrc - end);
+		checkBounds(dst.length, fromDst, fromDst + decodedLength(length));
+
+		byte[] values = url ? URL_VALUES : VALUES;
+		int whole = fromSrc + length - length % 4;
+		int j = fromDst;
+
+		for (int i = fromSrc; i < whole; i += 4, j += 3) {
+			int bits = valueOf(src[i], values) << 18 | valueOf(src[i + 1], values) << 12
+					| valueOf(src[i + 2], values) << 6 | valueOf(src[i + 3], values);
+			// Any bad digit makes the group negative
+			if (bits < 0) {
+				throw badDigit(i, i + 4);
+			}
+			dst[j] = (byte) (bits >>> 16);
+			dst[j + 1] = (byte) (bits >>> 8);
+			dst[j + 2] = (byte) bits;
+		}
+
+		int bits = 0;
+		for (int i = whole; i < end; i++) {
+			bits |= valueOf(src[i], values) << (18 - 6 * (i - whole));
+		}
+		if (bits < 0) {
+			throw badDigit(whole, end);
+		}
+		for (int i = whole + 1; i < end; i++) {
+			dst[j++] = (byte) (bits >>> (16 - 8 * (i - whole - 1)));
+		}
+
+		return j;
+	}
+
+	/**
+	 * Decodes ASCII bytes into a bytes array. The last group may be padded
+	 * or not.
+	 * 
+	 * @param src
+	 *            The digits to read
+	 * @param fromSrc
+	 *            The low index in src
+	 * @param toSrc
+	 *            The high index in src
+	 * @param dst
+	 *            The destination array
+	 * @param fromDst
+	 *            The low index in dst
+	 * @param url
+	 *            Whether the URL and filename safe alphabet is used or not
+	 * @return The index in dst after the last byte
+	 */
+	public static int decode(byte[] src, int fromSrc, int toSrc, byte[] dst, int fromDst, boolean url) {
+		checkBounds(src.length, fromSrc, toSrc);
+
+		int end = toSrc;
+		while (end > fromSrc && toSrc - end < 2 && src[end - 1] == '=') {
+			end--;
+		}
+		int length = checkLength(end - fromSrc, toSrc - end);
+		checkBounds(dst.length, fromDst, fromDst + decodedLength(length));
+
+		byte[] values = url ? URL_VALUES : VALUES;
+		int whole = fromSrc + length - length % 4;
+		int j = fromDst;
+
+		for (int i = fromSrc; i < whole; i += 4, j += 3) {
+			int bits = valueOf((char) (src[i] & 0xff), values) << 18 | valueOf((char) (src[i + 1] & 0xff), values) << 12
+					| valueOf((char) (src[i + 2] & 0xff), values) << 6 | valueOf((char) (src[i + 3] & 0xff), values);
+			// Any bad digit makes the group negative
+			if (bits < 0) {
+				throw badDigit(i, i + 4);
+			}
+			dst[j] = (byte) (bits >>> 16);
+			dst[j + 1] = (byte) (bits >>> 8);
+			dst[j + 2] = (byte) bits;
+		}
+
+		int bits = 0;
+		for (int i = whole; i < end; i++) {
+			bits |= valueOf((char) (src[i] & 0xff), values) << (18 - 6 * (i - whole));
+		}
+		if (bits < 0) {
+			throw badDigit(whole, end);
+		}
+		for (int i = whole + 1; i < end; i++) {
+			dst[j++] = (byte) (bits >>> (16 - 8 * (i - whole - 1)));
+		}
+
+		return j;
+	}
+
+	/**
+	 * Encodes whole groups of 3 bytes
+	 * 
+	 * @param src
+	 *            The array to read
+	 * @param from
+	 *            The low index in src
+	 * @param to
+	 *            The high index in src, a multiple of 3 bytes after from
+	 * @param dst
+	 *            The destination array
+	 * @param index
+	 *            The low index in dst
+	 * @param alphabet
+	 *            The digits
+	 * @return The index in dst after the last digit
+	 */
+	private static int encodeGroups(byte[] src, int from, int to, char[] dst, int index, char[] alphabet) {
+		int j = index;
+		for (int i = from; i < to; i += 3, j += 4) {
+			encodeGroup((src[i] & 0xff) << 16 | (src[i + 1] & 0xff) << 8 | (src[i + 2] & 0xff), dst, j, alphabet);
+		}
+		return j;
+	}
+
+	/**
+	 * Encodes a group of 3 bytes
+	 * 
+	 * @param bits
+	 *            The bytes, the first one at bits 16 to 23
+	 * @param dst
+	 *            The destination array
+	 * @param index
+	 *            The low index in dst
+	 * @param alphabet
+	 *            The digits
+	 */
+	private static void encodeGroup(int bits, char[] dst, int index, char[] alphabet) {
+		dst[index] = alphabet[bits >>> 18];
+		dst[index + 1] = alphabet[(bits >>> 12) & 0x3f];
+		dst[index + 2] = alphabet[(bits >>> 6) & 0x3f];
+		dst[index + 3] = alphabet[bits & 0x3f];
+	}
+
+	/**
+	 * Encodes the last 1 or 2 bytes
+	 * 
+	 * @param bits
+	 *            The bytes, the first one at bits 16 to 23
+	 * @param count
+	 *            The number of bytes, from 0 to 2
+	 * @param dst
+	 *            The destination array
+	 * @param index
+	 *            The low index in dst
+	 * @param alphabet
+	 *            The digits
+	 * @param padding
+	 *            Whether the last group is completed with '=' or not
+	 * @return The index in dst after the last digit
+	 */
+	private static int encodeTail(int bits, int count, char[] dst, int index, char[] alphabet, boolean padding) {
+		if (count == 0) {
+			return index;
+		}
+
+		int j = index;
+		dst[j++] = alphabet[bits >>> 18];
+		dst[j++] = alphabet[(bits >>> 12) & 0x3f];
+		if (count == 2) {
+			dst[j++] = alphabet[(bits >>> 6) & 0x3f];
+		}
+		if (padding) {
+			for (int i = count; i < 3; i++) {
+				dst[j++] = '=';
+			}
+		}
+		return j;
+	}
+
+	/**
+	 * Encodes whole groups of 3 bytes
+	 * 
+	 * @param src
+	 *            The array to read
+	 * @param from
+	 *            The low index in src
+	 * @param to
+	 *            The high index in src, a multiple of 3 bytes after from
+	 * @param dst
+	 *            The destination array
+	 * @param index
+	 *            The low index in dst
+	 * @param alphabet
+	 *            The digits
+	 * @return The index in dst after the last digit
+	 */
+	private static int encodeGroups(byte[] src, int from, int to, byte[] dst, int index, char[] alphabet) {
+		int j = index;
+		for (int i = from; i < to; i += 3, j += 4) {
+			encodeGroup((src[i] & 0xff) << 16 | (src[i + 1] & 0xff) << 8 | (src[i + 2] & 0xff), dst, j, alphabet);
+		}
+		return j;
+	}
+
+	/**
+	 * Encodes a group of 3 bytes
+	 * 
+	 * @param bits
+	 *            The bytes, the first one at bits 16 to 23
+	 * @param dst
+	 *            The destination array
+	 * @param index
+	 *            The low index in dst
+	 * @param alphabet
+	 *            The digits
+	 */
+	private static void encodeGroup(int bits, byte[] dst, int index, char[] alphabet) {
+		dst[index] = (byte) alphabet[bits >>> 18];
+		dst[index + 1] = (byte) alphabet[(bits >>> 12) & 0x3f];
+		dst[index + 2] = (byte) alphabet[(bits >>> 6) & 0x3f];
+		dst[index + 3] = (byte) alphabet[bits & 0x3f];
+	}
+
+	/**
+	 * Encodes the last 1 or 2 bytes
+	 * 
+	 * @param bits
+	 *            The bytes, the first one at bits 16 to 23
+	 * @param count
+	 *            The number of bytes, from 0 to 2
+	 * @param dst
+	 *            The destination array
+	 * @param index
+	 *            The low index in dst
+	 * @param alphabet
+	 *            The digits
+	 * @param padding
+	 *            Whether the last group is completed with '=' or not
+	 * @return The index in dst after the last digit
+	 */
+	private static int encodeTail(int bits, int count, byte[] dst, int index, char[] alphabet, boolean padding) {
+		if (count == 0) {
+			return index;
+		}
+
+		int j = index;
+		dst[j++] = (byte) alphabet[bits >>> 18];
+		dst[j++] = (byte) alphabet[(bits >>> 12) & 0x3f];
+		if (count == 2) {
+			dst[j++] = (byte) alphabet[(bits >>> 6) & 0x3f];
+		}
+		if (padding) {
+			for (int i = count; i < 3; i++) {
+				dst[j++] = '=';
+			}
+		}
+		return j;
+	}
+
+	/**
+	 * Packs up to 3 stored bytes of a queue
+	 * 
+	 * @param src
+	 *            The queue to read
+	 * @param index
+	 *            The position from the first element
+	 * @param count
+	 *            The number of bytes, from 0 to 3
+	 * @return The bytes, the first one at bits 16 to 23
+	 */
+	private static int group(Queue src, int index, int count) {
+		int bits = 0;
+		for (int i = 0; i < count; i++) {
+			bits |= (src.getByte(index + i) & 0xff) << (16 - 8 * i);
+		}
+		return bits;
+	}
+
+	/**
+	 * Returns the value of a digit
+	 * 
+	 * @param digit
+	 *            The digit
+	 * @param values
+	 *            The values of the alphabet
+	 * @return The value from 0 to 63, or -1 if it is not a digit
+	 */
+	private static int valueOf(char digit, byte[] values) {
+		return digit < 128 ? values[digit] : -1;
+	}
+
+	/**
+	 * Returns the number of bytes encoded by a number of digits, without
+	 * padding
+	 * 
+	 * @param length
+	 *            The number of digits
+	 * @return The number of bytes
+	 */
+	private static int decodedLength(int length) {
+		return length / 4 * 3 + Math.max(0, length % 4 - 1);
+	}
+
+	/**
+	 * Checks the number of digits can be decoded
+	 * 
+	 * @param length
+	 *            The number of digits, without padding
+	 * @param padding
+	 *            The number of padding characters
+	 * @return The number of digits
+	 */
+	private static int checkLength(int length, int padding) {
+		if (length % 4 == 1 || (padding > 0 && (length + padding) % 4 != 0)) {
+			throw new IllegalArgumentException("Bad Base64 length: " + length + " digits, " + padding + " padding");
+		}
+		return length;
+	}
+
+	/**
+	 * Builds the exception for a group with a bad digit
+	 * 
+	 * @param from
+	 *            The low index of the group
+	 * @param to
+	 *            The high index of the group
+	 * @return The exception to throw
+	 */
+	private static IllegalArgumentException badDigit(int from, int to) {
+		return new IllegalArgumentException("Bad Base64 digit between " + from + " and " + to);
+	}
+
+	/**
+	 * Checks a range is inside an array
+	 * 
+	 * @param length
+	 *            The length of the array
+	 * @param from
+	 *            The low index
+	 * @param to
+	 *            The high index
+	 */
+	private static void checkBounds(int length, int from, int to) {
+		if (from < 0 || from > to || to > length) {
+			throw new ArrayIndexOutOfBoundsException("length: " + length + ", from: " + from + ", to: " + to);
+		}
+	}
+
+}
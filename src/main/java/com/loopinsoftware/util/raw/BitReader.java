@@ -0,0 +1,325 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.raw;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * @author Antonio Vicente Martin
+ * 
+ *         This class reads fields of 1 to 64 bits from a byte array, a
+ *         {@link ByteBuffer} or the contents of a {@link Queue}. Bits are kept
+ *         in a 64 bits accumulator that is refilled a whole word at a time
+ *         from arrays and buffers, so most reads do not touch memory at all.
+ * 
+ *         Bytes can be read from the most significant bit, as in most network
+ *         protocols, or from the least significant one. A Queue is read
+ *         without removing its data, use {@link #getBytePosition()} to skip
+ *         the bytes already read.
+ */
+public class BitReader {
+
+	private static final VarHandle LONG_MSB_FIRST = MethodHandles.byteArrayViewVarHandle(long[].class,
+			ByteOrder.BIG_ENDIAN);
+	private static final VarHandle LONG_LSB_FIRST = MethodHandles.byteArrayViewVarHandle(long[].class,
+			ByteOrder.LITTLE_ENDIAN);
+	private static final VarHandle BUFFER_LONG_MSB_FIRST = MethodHandles.byteBufferViewVarHandle(long[].class,
+			ByteOrder.BIG_ENDIAN);
+	private static final VarHandle BUFFER_LONG_LSB_FIRST = MethodHandles.byteBufferViewVarHandle(long[].class,
+			ByteOrder.LITTLE_ENDIAN);
+
+	/**
+	 * The source, only one of them is set
+	 */
+	private byte[] array;
+	private ByteBuffer buffer;
+	private Queue queue;
+
+	/**
+	 * The first byte of the source
+	 */
+	private int start;
+	/**
+	 * The next byte to load into the accumulator
+	 */
+	private int position;
+	/**
+	 * The byte after the last one of the source
+	 */
+	private int end;
+	/**
+	 * Whether the most significant bit of each byte comes first
+	 */
+	private boolean msbFirst;
+
+	/**
+	 * The loaded bits. Most significant bit first readers keep the next bit
+	 * at position {@code bits - 1}, the others at position 0.
+	 */
+	private long accumulator;
+	/**
+	 * The number of loaded bits not read yet
+	 */
+	private int bits;
+
+	/**
+	 * Creates a new BitReader over a range of a byte array
+	 * 
+	 * @param src
+	 *            The array to read
+	 * @param from
+	 *            The low index in src
+	 * @param to
+	 *            The high index in src
+	 * @param msbFirst
+	 *            Whether the most significant bit of each byte comes first
+	 */
+	public BitReader(byte[] src, int from, int to, boolean msbFirst) {
+		if (from < 0 || to > src.length || from > to) {
+			throw new ArrayIndexOutOfBoundsException("array length: " + src.length + ", from: " + from + ", to: " + to);
+		}
+		this.array = src;
+		init(from, to, msbFirst);
+	}
+
+	/**
+	 * Creates a new BitReader over a range of a buffer. Indexes are absolute,
+	 * the position of the buffer is not used nor modified.
+	 * 
+	 * @param src
+	 *            The buffer to read
+	 * @param from
+	 *            The low index in src
+	 * @param to
+	 *            The high index in src
+	 * @param msbFirst
+	 *            Whether the most significant bit of each byte comes first
+	 */
+	public BitReader(ByteBuffer src, int from, int to, boolean msbFirst) {
+		if (from < 0 || to > src.limit() || from > to) {
+			throw new IndexOutOfBoundsException("buffer limit: " + src.limit() + ", from: " + from + ", to: " + to);
+		}
+		this.buffer = src;
+		init(from, to, msbFirst);
+	}
+
+	/**
+	 * Creates a new BitReader over the current contents of a queue
+	 * 
+	 * @param src
+	 *            The queue to read
+	 * @param msbFirst
+	 *            Whether the most significant bit of each byte comes first
+	 */
+	public BitReader(Queue src, boolean msbFirst) {
+		this.queue = src;
+		init(0, src.getSize(), msbFirst);
+	}
+
+	/**
+	 * Initializes all fields
+	 * 
+	 * @param from
+	 *            The first byte of the source
+	 * @param to
+	 *            The byte after the last one of the source
+	 * @param msbFirst
+	 *            Whether the most significant bit of each byte comes first
+	 */
+	private void init(int from, int to, boolean msbFirst) {
+		this.start = from;
+		this.position = from;
+		this.end = to;
+		this.msbFirst = msbFirst;
+		this.accumulator = 0;
+		this.bits = 0;
+	}
+
+	/**
+	 * Reads an unsigned field
+	 * 
+	 * @param width
+	 *            The number of bits of the field, from 1 to 64
+	 * @return The field value
+	 */
+	public long read(int width) {
+		if (width < 1 || width > 64) {
+			throw new IllegalArgumentException("Bad width: " + width);
+		}
+
+		// The accumulator always holds at least 56 bits after a refill
+		if (width > 56) {
+			if (msbFirst) {
+				long high = read(width - 32);
+				return (high << 32) | read(32);
+			}
+			long low = read(32);
+			return low | (read(width - 32) << 32);
+		}
+
+		if (bits < width) {
+			refill();
+			if (bits < width) {
+				throw new IndexOutOfBoundsException("Only " + bits + " bits left, " + width + " needed");
+			}
+		}
+
+		long mask = (1L << width) - 1;
+		bits -= width;
+
+		if (msbFirst) {
+			return (accumulator >>> bits) & mask;
+		}
+
+		long value = accumulator & mask;
+		accumulator >>>= width;
+		return value;
+	}
+
+	/**
+	 * Reads a two's complement field
+	 * 
+	 * @param width
+	 *            The number of bits of the field, from 1 to 64
+	 * @return The sign extended field value
+	 */
+	public long readSigned(int width) {
+		int unused = 64 - width;
+		return (read(width) << unused) >> unused;
+	}
+
+	/**
+	 * Reads a single bit
+	 * 
+	 * @return true if the bit is set, false otherwise
+	 */
+	public boolean readBoolean() {
+		return read(1) != 0;
+	}
+
+	/**
+	 * Skips the bits left to complete the current byte
+	 */
+	public void align() {
+		// Whole bytes are loaded, so the unread bits of the current byte are
+		// the remainder
+		int skipped = bits % 8;
+		bits -= skipped;
+		if (!msbFirst) {
+			accumulator >>>= skipped;
+		}
+	}
+
+	/**
+	 * Returns the number of bits read so far
+	 * 
+	 * @return The number of bits read
+	 */
+	public long getBitPosition() {
+		return (long) (position - start) * 8 - bits;
+	}
+
+	/**
+	 * Returns the number of whole bytes read so far, starting from the low
+	 * index of the source
+	 * 
+	 * @return The number of bytes read
+	 */
+	public int getBytePosition() {
+		return (int) (getBitPosition() / 8);
+	}
+
+	/**
+	 * Returns the number of bits that can still be read
+	 * 
+	 * @return The number of bits left
+	 */
+	public long getRemainingBits() {
+		return (long) (end - position) * 8 + bits;
+	}
+
+	/**
+	 * Loads bytes into the accumulator until it holds at least 56 bits or the
+	 * source ends
+	 */
+	private void refill() {
+		if (bits > 55) {
+			return;
+		}
+
+		if (position + 8 <= end && queue == null) {
+			// The whole bytes that fit in the accumulator, at least 1
+			int bytes = (63 - bits) >>> 3;
+			long word = loadWord(position);
+
+			if (msbFirst) {
+				accumulator = (accumulator << 8 * bytes) | (word >>> (64 - 8 * bytes));
+			} else {
+				accumulator = (accumulator & ((1L << bits) - 1)) | (word << bits);
+			}
+			position += bytes;
+			bits += 8 * bytes;
+			return;
+		}
+
+		while (bits <= 56 && position < end) {
+			long value = loadByte(position++) & 0xFF;
+
+			if (msbFirst) {
+				accumulator = (accumulator << 8) | value;
+			} else {
+				accumulator = (accumulator & ((1L << bits) - 1)) | (value << bits);
+			}
+			bits += 8;
+		}
+	}
+
+	/**
+	 * Reads 8 bytes of the source in the bit order
+	 * 
+	 * @param index
+	 *            The first byte
+	 * @return The word
+	 */
+	private long loadWord(int index) {
+		if (array != null) {
+			return msbFirst ? (long) LONG_MSB_FIRST.get(array, index) : (long) LONG_LSB_FIRST.get(array, index);
+		}
+		return msbFirst ? (long) BUFFER_LONG_MSB_FIRST.get(buffer, index)
+				: (long) BUFFER_LONG_LSB_FIRST.get(buffer, index);
+	}
+
+	/**
+	 * Reads a byte of the source
+	 * 
+	 * @param index
+	 *            The byte index
+	 * @return The byte
+	 */
+	private byte loadByte(int index) {
+		if (array != null) {
+			return array[index];
+		}
+		if (buffer != null) {
+			return buffer.get(index);
+		}
+		return queue.getByte(index);
+	}
+
+}
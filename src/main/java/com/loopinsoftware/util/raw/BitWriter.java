@@ -0,0 +1,268 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.raw;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @author Antonio Vicente Martin
+ * 
+ *         This class writes fields of 1 to 64 bits into a byte array, a
+ *         {@link ByteBuffer} or a {@link Queue}. Bits are gathered in a 64
+ *         bits accumulator and only stored when it is full, so most writes do
+ *         not touch memory at all. Call {@link #flush()} to store the pending
+ *         bits, the last byte is padded with zeros.
+ * 
+ *         Bytes can be written from the most significant bit, as in most
+ *         network protocols, or from the least significant one.
+ */
+public class BitWriter {
+
+	/**
+	 * The destination, only one of them is set
+	 */
+	private byte[] array;
+	private ByteBuffer buffer;
+	private Queue queue;
+
+	/**
+	 * The bytes gathered before being added to the queue
+	 */
+	private byte[] queueBytes;
+
+	/**
+	 * The first byte of the destination
+	 */
+	private int start;
+	/**
+	 * The next byte to store
+	 */
+	private int position;
+	/**
+	 * The byte after the last one of the destination
+	 */
+	private int end;
+	/**
+	 * Whether the most significant bit of each byte comes first
+	 */
+	private boolean msbFirst;
+
+	/**
+	 * The pending bits. Most significant bit first writers keep the last
+	 * written bit at position 0, the others at position {@code bits - 1}.
+	 */
+	private long accumulator;
+	/**
+	 * The number of pending bits
+	 */
+	private int bits;
+
+	/**
+	 * Creates a new BitWriter over a range of a byte array
+	 * 
+	 * @param dst
+	 *            The array to write in
+	 * @param from
+	 *            The low index in dst
+	 * @param to
+	 *            The high index in dst
+	 * @param msbFirst
+	 *            Whether the most significant bit of each byte comes first
+	 */
+	public BitWriter(byte[] dst, int from, int to, boolean msbFirst) {
+		if (from < 0 || to > dst.length || from > to) {
+			throw new ArrayIndexOutOfBoundsException("array length: " + dst.length + ", from: " + from + ", to: " + to);
+		}
+		this.array = dst;
+		init(from, to, msbFirst);
+	}
+
+	/**
+	 * Creates a new BitWriter over a range of a buffer. Indexes are absolute,
+	 * the position of the buffer is not used nor modified.
+	 * 
+	 * @param dst
+	 *            The buffer to write in
+	 * @param from
+	 *            The low index in dst
+	 * @param to
+	 *            The high index in dst
+	 * @param msbFirst
+	 *            Whether the most significant bit of each byte comes first
+	 */
+	public BitWriter(ByteBuffer dst, int from, int to, boolean msbFirst) {
+		if (from < 0 || to > dst.limit() || from > to) {
+			throw new IndexOutOfBoundsException("buffer limit: " + dst.limit() + ", from: " + from + ", to: " + to);
+		}
+		this.buffer = dst;
+		init(from, to, msbFirst);
+	}
+
+	/**
+	 * Creates a new BitWriter that adds the written bytes to a queue. Old data
+	 * is never overwritten, writing into a full queue throws an
+	 * IllegalStateException.
+	 * 
+	 * @param dst
+	 *            The queue to add to
+	 * @param msbFirst
+	 *            Whether the most significant bit of each byte comes first
+	 */
+	public BitWriter(Queue dst, boolean msbFirst) {
+		this.queue = dst;
+		this.queueBytes = new byte[8];
+		init(0, Integer.MAX_VALUE, msbFirst);
+	}
+
+	/**
+	 * Initializes all fields
+	 * 
+	 * @param from
+	 *            The first byte of the destination
+	 * @param to
+	 *            The byte after the last one of the destination
+	 * @param msbFirst
+	 *            Whether the most significant bit of each byte comes first
+	 */
+	private void init(int from, int to, boolean msbFirst) {
+		this.start = from;
+		this.position = from;
+		this.end = to;
+		this.msbFirst = msbFirst;
+		this.accumulator = 0;
+		this.bits = 0;
+	}
+
+	/**
+	 * Writes the lowest bits of a value
+	 * 
+	 * @param value
+	 *            The field value
+	 * @param width
+	 *            The number of bits of the field, from 1 to 64
+	 */
+	public void write(long value, int width) {
+		if (width < 1 || width > 64) {
+			throw new IllegalArgumentException("Bad width: " + width);
+		}
+
+		// Keep the shifts below 64 bits
+		if (width > 56) {
+			if (msbFirst) {
+				write(value >>> 32, width - 32);
+				write(value, 32);
+			} else {
+				write(value, 32);
+				write(value >>> 32, width - 32);
+			}
+			return;
+		}
+
+		if (bits + width > 64) {
+			storeBytes();
+		}
+
+		long field = value & ((1L << width) - 1);
+
+		if (msbFirst) {
+			accumulator = (accumulator << width) | field;
+		} else {
+			accumulator |= field << bits;
+		}
+		bits += width;
+	}
+
+	/**
+	 * Writes a single bit
+	 * 
+	 * @param value
+	 *            Whether the bit is set
+	 */
+	public void writeBoolean(boolean value) {
+		write(value ? 1 : 0, 1);
+	}
+
+	/**
+	 * Pads the current byte with zeros
+	 */
+	public void align() {
+		int padding = (8 - bits % 8) % 8;
+		if (padding > 0) {
+			write(0, padding);
+		}
+	}
+
+	/**
+	 * Stores every pending bit, padding the last byte with zeros
+	 */
+	public void flush() {
+		align();
+		storeBytes();
+	}
+
+	/**
+	 * Returns the number of bits written so far
+	 * 
+	 * @return The number of bits written
+	 */
+	public long getBitPosition() {
+		return (long) (position - start) * 8 + bits;
+	}
+
+	/**
+	 * Stores the whole bytes of the accumulator
+	 */
+	private void storeBytes() {
+		int bytes = bits >>> 3;
+
+		// Both checks come before the accumulator is drained, so a failed
+		// store can be retried
+		if (end - position < bytes) {
+			throw new IndexOutOfBoundsException("Only " + (end - position) + " bytes left, " + bytes + " needed");
+		}
+		if (queue != null && queue.getCapacity() - queue.getSize() < bytes) {
+			throw new IllegalStateException("Not enough space in the queue for " + bytes + " bytes");
+		}
+
+		for (int i = 0; i < bytes; i++) {
+			byte value;
+
+			if (msbFirst) {
+				bits -= 8;
+				value = (byte) (accumulator >>> bits);
+			} else {
+				bits -= 8;
+				value = (byte) accumulator;
+				accumulator >>>= 8;
+			}
+
+			if (array != null) {
+				array[position + i] = value;
+			} else if (buffer != null) {
+				buffer.put(position + i, value);
+			} else {
+				queueBytes[i] = value;
+			}
+		}
+
+		if (queue != null && bytes > 0) {
+			queue.add(queueBytes, 0, bytes);
+		}
+
+		position += bytes;
+	}
+
+}
@@ -0,0 +1,603 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.raw;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * @author Antonio Vicente Martin
+ * 
+ *         This class is the {@link ByteBuffer} counterpart of
+ *         {@link ByteConverter}. It reads and writes primitives straight from
+ *         heap, direct or mapped buffers, so data does not need to be copied
+ *         into a byte array before being decoded.
+ * 
+ *         All indexes are absolute, like in {@link ByteBuffer#get(int)}, so
+ *         neither the position nor the order of the buffer are used or
+ *         modified. The littleEndian flag has the same meaning as in
+ *         {@link ByteConverter}.
+ * 
+ *         Foreign memory can be used through
+ *         {@code MemorySegment.asByteBuffer()}, which returns a view of the
+ *         segment without copying it.
+ */
+public class BufferConverter {
+
+	private static final VarHandle SHORT_MSB_FIRST = MethodHandles.byteBufferViewVarHandle(short[].class,
+			ByteOrder.BIG_ENDIAN);
+	private static final VarHandle SHORT_LSB_FIRST = MethodHandles.byteBufferViewVarHandle(short[].class,
+			ByteOrder.LITTLE_ENDIAN);
+	private static final VarHandle INT_MSB_FIRST = MethodHandles.byteBufferViewVarHandle(int[].class,
+			ByteOrder.BIG_ENDIAN);
+	private static final VarHandle INT_LSB_FIRST = MethodHandles.byteBufferViewVarHandle(int[].class,
+			ByteOrder.LITTLE_ENDIAN);
+	private static final VarHandle LONG_MSB_FIRST = MethodHandles.byteBufferViewVarHandle(long[].class,
+			ByteOrder.BIG_ENDIAN);
+	private static final VarHandle LONG_LSB_FIRST = MethodHandles.byteBufferViewVarHandle(long[].class,
+			ByteOrder.LITTLE_ENDIAN);
+	private static final VarHandle FLOAT_MSB_FIRST = MethodHandles.byteBufferViewVarHandle(float[].class,
+			ByteOrder.BIG_ENDIAN);
+	private static final VarHandle FLOAT_LSB_FIRST = MethodHandles.byteBufferViewVarHandle(float[].class,
+			ByteOrder.LITTLE_ENDIAN);
+	private static final VarHandle DOUBLE_MSB_FIRST = MethodHandles.byteBufferViewVarHandle(double[].class,
+			ByteOrder.BIG_ENDIAN);
+	private static final VarHandle DOUBLE_LSB_FIRST = MethodHandles.byteBufferViewVarHandle(double[].class,
+			ByteOrder.LITTLE_ENDIAN);
+
+	/**
+	 * Return an integer built from a buffer
+	 * 
+	 * @param buffer
+	 *            The raw bytes
+	 * @param index
+	 *            The initial position
+	 * @param bytesPerValue
+	 *            The number of bytes per value
+	 * @param littleEndian
+	 *            The byte order
+	 * @return The value
+	 */
+	public static long toValue(ByteBuffer buffer, int index, int bytesPerValue, boolean littleEndian) {
+		switch (bytesPerValue) {
+		case 2:
+			return toShortValue(buffer, index, littleEndian);
+		case 4:
+			return toIntValue(buffer, index, littleEndian);
+		case 8:
+			return toLongValue(buffer, index, littleEndian);
+		default:
+			checkBounds(buffer, index, bytesPerValue);
+		}
+
+		int first = littleEndian ? index : index + bytesPerValue - 1;
+		int increment = littleEndian ? 1 : -1;
+
+		// Preserve sign with the most significant byte
+		long value = buffer.get(first);
+		for (int i = 1; i < bytesPerValue; i++) {
+			value = (value << 8) | (buffer.get(first + i * increment) & 0xFF);
+		}
+
+		return value;
+	}
+
+	/**
+	 * Return a short built from a buffer
+	 * 
+	 * @param buffer
+	 *            The raw bytes
+	 * @param index
+	 *            The initial position
+	 * @param littleEndian
+	 *            The byte order
+	 * @return The short value
+	 */
+	public static short toShortValue(ByteBuffer buffer, int index, boolean littleEndian) {
+		checkBounds(buffer, index, 2);
+		return littleEndian ? (short) SHORT_MSB_FIRST.get(buffer, index) : (short) SHORT_LSB_FIRST.get(buffer, index);
+	}
+
+	/**
+	 * Writes a primitive splitted into a specified buffer
+	 * 
+	 * @param value
+	 *            The short value to split
+	 * @param buffer
+	 *            The buffer to write in
+	 * @param start
+	 *            The start iteration index
+	 * @param littleEndian
+	 *            The buffer endianess
+	 */
+	public static void toBuffer(short value, ByteBuffer buffer, int start, boolean littleEndian) {
+		checkBounds(buffer, start, 2);
+		if (littleEndian) {
+			SHORT_MSB_FIRST.set(buffer, start, value);
+		} else {
+			SHORT_LSB_FIRST.set(buffer, start, value);
+		}
+	}
+
+	/**
+	 * Return a int built from a buffer
+	 * 
+	 * @param buffer
+	 *            The raw bytes
+	 * @param index
+	 *            The initial position
+	 * @param littleEndian
+	 *            The byte order
+	 * @return The int value
+	 */
+	public static int toIntValue(ByteBuffer buffer, int index, boolean littleEndian) {
+		checkBounds(buffer, index, 4);
+		return littleEndian ? (int) INT_MSB_FIRST.get(buffer, index) : (int) INT_LSB_FIRST.get(buffer, index);
+	}
+
+	/**
+	 * Writes a primitive splitted into a specified buffer
+	 * 
+	 * @param value
+	 *            The int value to split
+	 * @param buffer
+	 *            The buffer to write in
+	 * @param start
+	 *            The start iteration index
+	 * @param littleEndian
+	 *            The buffer endianess
+	 */
+	public static void toBuffer(int value, ByteBuffer buffer, int start, boolean littleEndian) {
+		checkBounds(buffer, start, 4);
+		if (littleEndian) {
+			INT_MSB_FIRST.set(buffer, start, value);
+		} else {
+			INT_LSB_FIRST.set(buffer, start, value);
+		}
+	}
+
+	/**
+	 * Return a long built from a buffer
+	 * 
+	 * @param buffer
+	 *            The raw bytes
+	 * @param index
+	 *            The initial position
+	 * @param littleEndian
+	 *            The byte order
+	 * @return The long value
+	 */
+	public static long toLongValue(ByteBuffer buffer, int index, boolean littleEndian) {
+		checkBounds(buffer, index, 8);
+		return littleEndian ? (long) LONG_MSB_FIRST.get(buffer, index) : (long) LONG_LSB_FIRST.get(buffer, index);
+	}
+
+	/**
+	 * Writes a primitive splitted into a specified buffer
+	 * 
+	 * @param value
+	 *            The long value to split
+	 * @param buffer
+	 *            The buffer to write in
+	 * @param start
+	 *            The start iteration index
+	 * @param littleEndian
+	 *            The buffer endianess
+	 */
+	public static void toBuffer(long value, ByteBuffer buffer, int start, boolean littleEndian) {
+		checkBounds(buffer, start, 8);
+		if (littleEndian) {
+			LONG_MSB_FIRST.set(buffer, start, value);
+		} else {
+			LONG_LSB_FIRST.set(buffer, start, value);
+		}
+	}
+
+	/**
+	 * Return a float built from a buffer
+	 * 
+	 * @param buffer
+	 *            The raw bytes
+	 * @param index
+	 *            The initial position
+	 * @param littleEndian
+	 *            The byte order
+	 * @return The float value
+	 */
+	public static float toFloatValue(ByteBuffer buffer, int index, boolean littleEndian) {
+		checkBounds(buffer, index, 4);
+		return littleEndian ? (float) FLOAT_MSB_FIRST.get(buffer, index) : (float) FLOAT_LSB_FIRST.get(buffer, index);
+	}
+
+	/**
+	 * Writes a primitive splitted into a specified buffer
+	 * 
+	 * @param value
+	 *            The float value to split
+	 * @param buffer
+	 *            The buffer to write in
+	 * @param start
+	 *            The start iteration index
+	 * @param littleEndian
+	 *            The buffer endianess
+	 */
+	public static void toBuffer(float value, ByteBuffer buffer, int start, boolean littleEndian) {
+		checkBounds(buffer, start, 4);
+		if (littleEndian) {
+			FLOAT_MSB_FIRST.set(buffer, start, value);
+		} else {
+			FLOAT_LSB_FIRST.set(buffer, start, value);
+		}
+	}
+
+	/**
+	 * Return a double built from a buffer
+	 * 
+	 * @param buffer
+	 *            The raw bytes
+	 * @param index
+	 *            The initial position
+	 * @param littleEndian
+	 *            The byte order
+	 * @return The double value
+	 */
+	public static double toDoubleValue(ByteBuffer buffer, int index, boolean littleEndian) {
+		checkBounds(buffer, index, 8);
+		return littleEndian ? (double) DOUBLE_MSB_FIRST.get(buffer, index) : (double) DOUBLE_LSB_FIRST.get(buffer, index);
+	}
+
+	/**
+	 * Writes a primitive splitted into a specified buffer
+	 * 
+	 * @param value
+	 *            The double value to split
+	 * @param buffer
+	 *            The buffer to write in
+	 * @param start
+	 *            The start iteration index
+	 * @param littleEndian
+	 *            The buffer endianess
+	 */
+	public static void toBuffer(double value, ByteBuffer buffer, int start, boolean littleEndian) {
+		checkBounds(buffer, start, 8);
+		if (littleEndian) {
+			DOUBLE_MSB_FIRST.set(buffer, start, value);
+		} else {
+			DOUBLE_LSB_FIRST.set(buffer, start, value);
+		}
+	}
+
+	/**
+	 * Copies and converts the buffer into a shorts array
+	 * 
+	 * @param src
+	 *            The buffer to read
+	 * @param fromSrc
+	 *            The low index in src
+	 * @param dst
+	 *            The destination array
+	 * @param fromDst
+	 *            The low index in dst
+	 * @param toDst
+	 *            The high index in dst
+	 * @param littleEndian
+	 *            Whether the src buffer is encoded in little endian or not
+	 */
+	public static void toShortArray(ByteBuffer src, int fromSrc, short[] dst, int fromDst, int toDst, boolean littleEndian) {
+		checkBounds(src, fromSrc, (toDst - fromDst) * 2);
+
+		if (littleEndian) {
+			for (int i = fromDst, j = fromSrc; i < toDst; i++, j += 2) {
+				dst[i] = (short) SHORT_MSB_FIRST.get(src, j);
+			}
+		} else {
+			for (int i = fromDst, j = fromSrc; i < toDst; i++, j += 2) {
+				dst[i] = (short) SHORT_LSB_FIRST.get(src, j);
+			}
+		}
+	}
+
+	/**
+	 * Copies and converts the shorts array into a buffer
+	 * 
+	 * @param src
+	 *            The array to read
+	 * @param fromSrc
+	 *            The low index in src
+	 * @param toSrc
+	 *            The high index in src
+	 * @param dst
+	 *            The destination buffer
+	 * @param fromDst
+	 *            The low index in dst
+	 * @param littleEndian
+	 *            Whether the dst buffer is encoded in little endian or not
+	 */
+	public static void fromShortArray(short[] src, int fromSrc, int toSrc, ByteBuffer dst, int fromDst, boolean littleEndian) {
+		checkBounds(dst, fromDst, (toSrc - fromSrc) * 2);
+
+		if (littleEndian) {
+			for (int i = fromSrc, j = fromDst; i < toSrc; i++, j += 2) {
+				SHORT_MSB_FIRST.set(dst, j, src[i]);
+			}
+		} else {
+			for (int i = fromSrc, j = fromDst; i < toSrc; i++, j += 2) {
+				SHORT_LSB_FIRST.set(dst, j, src[i]);
+			}
+		}
+	}
+
+	/**
+	 * Copies and converts the buffer into a ints array
+	 * 
+	 * @param src
+	 *            The buffer to read
+	 * @param fromSrc
+	 *            The low index in src
+	 * @param dst
+	 *            The destination array
+	 * @param fromDst
+	 *            The low index in dst
+	 * @param toDst
+	 *            The high index in dst
+	 * @param littleEndian
+	 *            Whether the src buffer is encoded in little endian or not
+	 */
+	public static void toIntArray(ByteBuffer src, int fromSrc, int[] dst, int fromDst, int toDst, boolean littleEndian) {
+		checkBounds(src, fromSrc, (toDst - fromDst) * 4);
+
+		if (littleEndian) {
+			for (int i = fromDst, j = fromSrc; i < toDst; i++, j += 4) {
+				dst[i] = (int) INT_MSB_FIRST.get(src, j);
+			}
+		} else {
+			for (int i = fromDst, j = fromSrc; i < toDst; i++, j += 4) {
+				dst[i] = (int) INT_LSB_FIRST.get(src, j);
+			}
+		}
+	}
+
+	/**
+	 * Copies and converts the ints array into a buffer
+	 * 
+	 * @param src
+	 *            The array to read
+	 * @param fromSrc
+	 *            The low index in src
+	 * @param toSrc
+	 *            The high index in src
+	 * @param dst
+	 *            The destination buffer
+	 * @param fromDst
+	 *            The low index in dst
+	 * @param littleEndian
+	 *            Whether the dst buffer is encoded in little endian or not
+	 */
+	public static void fromIntArray(int[] src, int fromSrc, int toSrc, ByteBuffer dst, int fromDst, boolean littleEndian) {
+		checkBounds(dst, fromDst, (toSrc - fromSrc) * 4);
+
+		if (littleEndian) {
+			for (int i = fromSrc, j = fromDst; i < toSrc; i++, j += 4) {
+				INT_MSB_FIRST.set(dst, j, src[i]);
+			}
+		} else {
+			for (int i = fromSrc, j = fromDst; i < toSrc; i++, j += 4) {
+				INT_LSB_FIRST.set(dst, j, src[i]);
+			}
+		}
+	}
+
+	/**
+	 * Copies and converts the buffer into a longs array
+	 * 
+	 * @param src
+	 *            The buffer to read
+	 * @param fromSrc
+	 *            The low index in src
+	 * @param dst
+	 *            The destination array
+	 * @param fromDst
+	 *            The low index in dst
+	 * @param toDst
+	 *            The high index in dst
+	 * @param littleEndian
+	 *            Whether the src buffer is encoded in little endian or not
+	 */
+	public static void toLongArray(ByteBuffer src, int fromSrc, long[] dst, int fromDst, int toDst, boolean littleEndian) {
+		checkBounds(src, fromSrc, (toDst - fromDst) * 8);
+
+		if (littleEndian) {
+			for (int i = fromDst, j = fromSrc; i < toDst; i++, j += 8) {
+				dst[i] = (long) LONG_MSB_FIRST.get(src, j);
+			}
+		} else {
+			for (int i = fromDst, j = fromSrc; i < toDst; i++, j += 8) {
+				dst[i] = (long) LONG_LSB_FIRST.get(src, j);
+			}
+		}
+	}
+
+	/**
+	 * Copies and converts the longs array into a buffer
+	 * 
+	 * @param src
+	 *            The array to read
+	 * @param fromSrc
+	 *            The low index in src
+	 * @param toSrc
+	 *            The high index in src
+	 * @param dst
+	 *            The destination buffer
+	 * @param fromDst
+	 *            The low index in dst
+	 * @param littleEndian
+	 *            Whether the dst buffer is encoded in little endian or not
+	 */
+	public static void fromLongArray(long[] src, int fromSrc, int toSrc, ByteBuffer dst, int fromDst, boolean littleEndian) {
+		checkBounds(dst, fromDst, (toSrc - fromSrc) * 8);
+
+		if (littleEndian) {
+			for (int i = fromSrc, j = fromDst; i < toSrc; i++, j += 8) {
+				LONG_MSB_FIRST.set(dst, j, src[i]);
+			}
+		} else {
+			for (int i = fromSrc, j = fromDst; i < toSrc; i++, j += 8) {
+				LONG_LSB_FIRST.set(dst, j, src[i]);
+			}
+		}
+	}
+
+	/**
+	 * Copies and converts the buffer into a floats array
+	 * 
+	 * @param src
+	 *            The buffer to read
+	 * @param fromSrc
+	 *            The low index in src
+	 * @param dst
+	 *            The destination array
+	 * @param fromDst
+	 *            The low index in dst
+	 * @param toDst
+	 *            The high index in dst
+	 * @param littleEndian
+	 *            Whether the src buffer is encoded in little endian or not
+	 */
+	public static void toFloatArray(ByteBuffer src, int fromSrc, float[] dst, int fromDst, int toDst, boolean littleEndian) {
+		checkBounds(src, fromSrc, (toDst - fromDst) * 4);
+
+		if (littleEndian) {
+			for (int i = fromDst, j = fromSrc; i < toDst; i++, j += 4) {
+				dst[i] = (float) FLOAT_MSB_FIRST.get(src, j);
+			}
+		} else {
+			for (int i = fromDst, j = fromSrc; i < toDst; i++, j += 4) {
+				dst[i] = (float) FLOAT_LSB_FIRST.get(src, j);
+			}
+		}
+	}
+
+	/**
+	 * Copies and converts the floats array into a buffer
+	 * 
+	 * @param src
+	 *            The array to read
+	 * @param fromSrc
+	 *            The low index in src
+	 * @param toSrc
+	 *            The high index in src
+	 * @param dst
+	 *            The destination buffer
+	 * @param fromDst
+	 *            The low index in dst
+	 * @param littleEndian
+	 *            Whether the dst buffer is encoded in little endian or not
+	 */
+	public static void fromFloatArray(float[] src, int fromSrc, int toSrc, ByteBuffer dst, int fromDst, boolean littleEndian) {
+		checkBounds(dst, fromDst, (toSrc - fromSrc) * 4);
+
+		if (littleEndian) {
+			for (int i = fromSrc, j = fromDst; i < toSrc; i++, j += 4) {
+				FLOAT_MSB_FIRST.set(dst, j, src[i]);
+			}
+		} else {
+			for (int i = fromSrc, j = fromDst; i < toSrc; i++, j += 4) {
+				FLOAT_LSB_FIRST.set(dst, j, src[i]);
+			}
+		}
+	}
+
+	/**
+	 * Copies and converts the buffer into a doubles array
+	 * 
+	 * @param src
+	 *            The buffer to read
+	 * @param fromSrc
+	 *            The low index in src
+	 * @param dst
+	 *            The destination array
+	 * @param fromDst
+	 *            The low index in dst
+	 * @param toDst
+	 *            The high index in dst
+	 * @param littleEndian
+	 *            Whether the src buffer is encoded in little endian or not
+	 */
+	public static void toDoubleArray(ByteBuffer src, int fromSrc, double[] dst, int fromDst, int toDst, boolean littleEndian) {
+		checkBounds(src, fromSrc, (toDst - fromDst) * 8);
+
+		if (littleEndian) {
+			for (int i = fromDst, j = fromSrc; i < toDst; i++, j += 8) {
+				dst[i] = (double) DOUBLE_MSB_FIRST.get(src, j);
+			}
+		} else {
+			for (int i = fromDst, j = fromSrc; i < toDst; i++, j += 8) {
+				dst[i] = (double) DOUBLE_LSB_FIRST.get(src, j);
+			}
+		}
+	}
+
+	/**
+	 * Copies and converts the doubles array into a buffer
+	 * 
+	 * @param src
+	 *            The array to read
+	 * @param fromSrc
+	 *            The low index in src
+	 * @param toSrc
+	 *            The high index in src
+	 * @param dst
+	 *            The destination buffer
+	 * @param fromDst
+	 *            The low index in dst
+	 * @param littleEndian
+	 *            Whether the dst buffer is encoded in little endian or not
+	 */
+	public static void fromDoubleArray(double[] src, int fromSrc, int toSrc, ByteBuffer dst, int fromDst, boolean littleEndian) {
+		checkBounds(dst, fromDst, (toSrc - fromSrc) * 8);
+
+		if (littleEndian) {
+			for (int i = fromSrc, j = fromDst; i < toSrc; i++, j += 8) {
+				DOUBLE_MSB_FIRST.set(dst, j, src[i]);
+			}
+		} else {
+			for (int i = fromSrc, j = fromDst; i < toSrc; i++, j += 8) {
+				DOUBLE_LSB_FIRST.set(dst, j, src[i]);
+			}
+		}
+	}
+
+	/**
+	 * Checks that {@code length} bytes can be accessed from {@code index}
+	 * 
+	 * @param buffer
+	 *            The buffer to access
+	 * @param index
+	 *            The initial position
+	 * @param length
+	 *            The number of bytes to access
+	 */
+	private static void checkBounds(ByteBuffer buffer, int index, int length) {
+		int end = index + length;
+
+		if (index < 0 || end > buffer.limit()) {
+			throw new IndexOutOfBoundsException("buffer limit: " + buffer.limit() + ", index: " + end);
+		}
+	}
+
+}
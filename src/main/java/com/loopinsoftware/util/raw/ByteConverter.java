@@ -15,14 +15,91 @@
  */
 package com.loopinsoftware.util.raw;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
 /**
  * @author Antonio Vicente Martin
  * 
  *         This class is a tool to convert or split primitives types into bytes
  *         arrays
+ * 
+ *         The bulk loops are tight counted loops with no calls but
+ *         intrinsics, whose ranges are checked once before the loop, so each
+ *         element costs a single load or store and a byte swap. They are not
+ *         vectorized by the JIT. The swaps of shorts, ints and longs run the
+ *         {@link ArrayKernels} when the Vector API is available.
  */
 public class ByteConverter {
 
+	/*
+	 * Byte array views used by the 2, 4 and 8 bytes conversions. The JIT
+	 * compiles every access into a single load or store plus a byte swap when
+	 * the order differs from the native one.
+	 * 
+	 * Note that, as the original shifting loops did, the littleEndian flag of
+	 * this class stores the most significant byte first, so littleEndian ==
+	 * true selects the BIG_ENDIAN views.
+	 */
+	private static final VarHandle SHORT_MSB_FIRST = MethodHandles.byteArrayViewVarHandle(short[].class,
+			ByteOrder.BIG_ENDIAN);
+	private static final VarHandle SHORT_LSB_FIRST = MethodHandles.byteArrayViewVarHandle(short[].class,
+			ByteOrder.LITTLE_ENDIAN);
+	private static final VarHandle INT_MSB_FIRST = MethodHandles.byteArrayViewVarHandle(int[].class,
+			ByteOrder.BIG_ENDIAN);
+	private static final VarHandle INT_LSB_FIRST = MethodHandles.byteArrayViewVarHandle(int[].class,
+			ByteOrder.LITTLE_ENDIAN);
+	private static final VarHandle LONG_MSB_FIRST = MethodHandles.byteArrayViewVarHandle(long[].class,
+			ByteOrder.BIG_ENDIAN);
+	private static final VarHandle LONG_LSB_FIRST = MethodHandles.byteArrayViewVarHandle(long[].class,
+			ByteOrder.LITTLE_ENDIAN);
+	private static final VarHandle FLOAT_MSB_FIRST = MethodHandles.byteArrayViewVarHandle(float[].class,
+			ByteOrder.BIG_ENDIAN);
+	private static final VarHandle FLOAT_LSB_FIRST = MethodHandles.byteArrayViewVarHandle(float[].class,
+			ByteOrder.LITTLE_ENDIAN);
+	private static final VarHandle DOUBLE_MSB_FIRST = MethodHandles.byteArrayViewVarHandle(double[].class,
+			ByteOrder.BIG_ENDIAN);
+	private static final VarHandle DOUBLE_LSB_FIRST = MethodHandles.byteArrayViewVarHandle(double[].class,
+			ByteOrder.LITTLE_ENDIAN);
+
+	/**
+	 * Half precision decoding tables. The float bits of a half are
+	 * {@code MANTISSA[OFFSET[e] + m] + EXPONENT[e]}, being e the sign and
+	 * exponent and m the mantissa of the half.
+	 */
+	private static final int[] HALF_MANTISSA = new int[2048];
+	private static final int[] HALF_EXPONENT = new int[64];
+	private static final int[] HALF_OFFSET = new int[64];
+
+	static {
+		// Subnormals are normalized
+		for (int i = 1; i < 1024; i++) {
+			int mantissa = i << 13;
+			int exponent = 0;
+			while ((mantissa & 0x800000) == 0) {
+				exponent -= 0x800000;
+				mantissa <<= 1;
+			}
+			HALF_MANTISSA[i] = (mantissa & ~0x800000) | (exponent + 0x38800000);
+		}
+		for (int i = 1024; i < 2048; i++) {
+			HALF_MANTISSA[i] = 0x38000000 + ((i - 1024) << 13);
+		}
+
+		for (int i = 1; i < 31; i++) {
+			HALF_EXPONENT[i] = i << 23;
+			HALF_EXPONENT[i + 32] = 0x80000000 + (i << 23);
+		}
+		HALF_EXPONENT[31] = 0x47800000;
+		HALF_EXPONENT[32] = 0x80000000;
+		HALF_EXPONENT[63] = 0xc7800000;
+
+		for (int i = 0; i < 64; i++) {
+			HALF_OFFSET[i] = (i == 0 || i == 32) ? 0 : 1024;
+		}
+	}
+
 	/**
 	 * Returns the corresponding byte inside the value
 	 * 
@@ -88,31 +165,44 @@ public class ByteConverter {
 	 *            The array of bytes to write in
 	 * @param start
 	 *            The start iteration index
-	 * @param valueLength
-	 *            The number of bytes of input value
 	 * @param littleEndian
 	 *            The array of bytes endianess
 	 */
-	private static void toBytesArray(long value, byte[] bytes, int start, int valueLength, boolean littleEndian) {
-		int i = littleEndian ? valueLength - 1 : 0;
-		int sum = littleEndian ? -1 : 1;
-		int end = start + valueLength;
-
-		if (end > bytes.length) {
-			throw new ArrayIndexOutOfBoundsException("array length: " + bytes.length + ", index: " + end);
+	public static void toBytesArray(long value, byte[] bytes, int start, boolean littleEndian) {
+		checkBounds(bytes, start, 8);
+		if (littleEndian) {
+			LONG_MSB_FIRST.set(bytes, start, value);
+		} else {
+			LONG_LSB_FIRST.set(bytes, start, value);
 		}
+	}
 
-		for (int j = start; j < end && i < valueLength && i >= 0; i += sum) {
-			bytes[j++] = getByteAt(value, i);
+	/**
+	 * Returns a value from a primitive splitted into a specified byte array
+	 * 
+	 * @param value
+	 *            The int value to split
+	 * @param bytes
+	 *            The array of bytes to write in
+	 * @param start
+	 *            The start iteration index
+	 * @param littleEndian
+	 *            The array of bytes endianess
+	 */
+	public static void toBytesArray(int value, byte[] bytes, int start, boolean littleEndian) {
+		checkBounds(bytes, start, 4);
+		if (littleEndian) {
+			INT_MSB_FIRST.set(bytes, start, value);
+		} else {
+			INT_LSB_FIRST.set(bytes, start, value);
 		}
-
 	}
 
 	/**
 	 * Returns a value from a primitive splitted into a specified byte array
 	 * 
 	 * @param value
-	 *            The long value to split
+	 *            The short value to split
 	 * @param bytes
 	 *            The array of bytes to write in
 	 * @param start
@@ -120,15 +210,20 @@ public class ByteConverter {
 	 * @param littleEndian
 	 *            The array of bytes endianess
 	 */
-	public static void toBytesArray(long value, byte[] bytes, int start, boolean littleEndian) {
-		toBytesArray(value, bytes, start, 8, littleEndian);
+	public static void toBytesArray(short value, byte[] bytes, int start, boolean littleEndian) {
+		checkBounds(bytes, start, 2);
+		if (littleEndian) {
+			SHORT_MSB_FIRST.set(bytes, start, value);
+		} else {
+			SHORT_LSB_FIRST.set(bytes, start, value);
+		}
 	}
 
 	/**
 	 * Returns a value from a primitive splitted into a specified byte array
 	 * 
 	 * @param value
-	 *            The int value to split
+	 *            The float value to split
 	 * @param bytes
 	 *            The array of bytes to write in
 	 * @param start
@@ -136,15 +231,20 @@ public class ByteConverter {
 	 * @param littleEndian
 	 *            The array of bytes endianess
 	 */
-	public static void toBytesArray(int value, byte[] bytes, int start, boolean littleEndian) {
-		toBytesArray(value, bytes, start, 4, littleEndian);
+	public static void toBytesArray(float value, byte[] bytes, int start, boolean littleEndian) {
+		checkBounds(bytes, start, 4);
+		if (littleEndian) {
+			FLOAT_MSB_FIRST.set(bytes, start, value);
+		} else {
+			FLOAT_LSB_FIRST.set(bytes, start, value);
+		}
 	}
 
 	/**
 	 * Returns a value from a primitive splitted into a specified byte array
 	 * 
 	 * @param value
-	 *            The short value to split
+	 *            The double value to split
 	 * @param bytes
 	 *            The array of bytes to write in
 	 * @param start
@@ -152,8 +252,43 @@ public class ByteConverter {
 	 * @param littleEndian
 	 *            The array of bytes endianess
 	 */
-	public static void toBytesArray(short value, byte[] bytes, int start, boolean littleEndian) {
-		toBytesArray(value, bytes, start, 2, littleEndian);
+	public static void toBytesArray(double value, byte[] bytes, int start, boolean littleEndian) {
+		checkBounds(bytes, start, 8);
+		if (littleEndian) {
+			DOUBLE_MSB_FIRST.set(bytes, start, value);
+		} else {
+			DOUBLE_LSB_FIRST.set(bytes, start, value);
+		}
+	}
+
+	/**
+	 * Returns a value from a primitive splitted into a specified byte array,
+	 * one byte at a time. It supports any value length up to 8 bytes.
+	 * 
+	 * @param value
+	 *            The long value to split
+	 * @param bytes
+	 *            The array of bytes to write in
+	 * @param start
+	 *            The start iteration index
+	 * @param valueLength
+	 *            The number of bytes of input value
+	 * @param littleEndian
+	 *            The array of bytes endianess
+	 */
+	static void toBytesArrayBytewise(long value, byte[] bytes, int start, int valueLength, boolean littleEndian) {
+		int i = littleEndian ? valueLength - 1 : 0;
+		int sum = littleEndian ? -1 : 1;
+		int end = start + valueLength;
+
+		if (end > bytes.length) {
+			throw new ArrayIndexOutOfBoundsException("array length: " + bytes.length + ", index: " + end);
+		}
+
+		for (int j = start; j < end && i < valueLength && i >= 0; i += sum) {
+			bytes[j++] = getByteAt(value, i);
+		}
+
 	}
 
 	/**
@@ -168,7 +303,72 @@ public class ByteConverter {
 	 * @return The int value
 	 */
 	public static int toIntValue(byte[] bytes, int index, boolean littleEndian) {
-		return (int) toValue(bytes, index, 4, littleEndian);
+		checkValueBounds(bytes, index, 4);
+		return littleEndian ? (int) INT_MSB_FIRST.get(bytes, index) : (int) INT_LSB_FIRST.get(bytes, index);
+	}
+
+	/**
+	 * Return a short built from an array of bytes
+	 * 
+	 * @param bytes
+	 *            The raw bytes
+	 * @param index
+	 *            The initial position
+	 * @param littleEndian
+	 *            The byte order
+	 * @return The short value
+	 */
+	public static short toShortValue(byte[] bytes, int index, boolean littleEndian) {
+		checkValueBounds(bytes, index, 2);
+		return littleEndian ? (short) SHORT_MSB_FIRST.get(bytes, index) : (short) SHORT_LSB_FIRST.get(bytes, index);
+	}
+
+	/**
+	 * Return a long built from an array of bytes
+	 * 
+	 * @param bytes
+	 *            The raw bytes
+	 * @param index
+	 *            The initial position
+	 * @param littleEndian
+	 *            The byte order
+	 * @return The long value
+	 */
+	public static long toLongValue(byte[] bytes, int index, boolean littleEndian) {
+		checkValueBounds(bytes, index, 8);
+		return littleEndian ? (long) LONG_MSB_FIRST.get(bytes, index) : (long) LONG_LSB_FIRST.get(bytes, index);
+	}
+
+	/**
+	 * Return a float built from an array of bytes
+	 * 
+	 * @param bytes
+	 *            The raw bytes
+	 * @param index
+	 *            The initial position
+	 * @param littleEndian
+	 *            The byte order
+	 * @return The float value
+	 */
+	public static float toFloatValue(byte[] bytes, int index, boolean littleEndian) {
+		checkValueBounds(bytes, index, 4);
+		return littleEndian ? (float) FLOAT_MSB_FIRST.get(bytes, index) : (float) FLOAT_LSB_FIRST.get(bytes, index);
+	}
+
+	/**
+	 * Return a double built from an array of bytes
+	 * 
+	 * @param bytes
+	 *            The raw bytes
+	 * @param index
+	 *            The initial position
+	 * @param littleEndian
+	 *            The byte order
+	 * @return The double value
+	 */
+	public static double toDoubleValue(byte[] bytes, int index, boolean littleEndian) {
+		checkValueBounds(bytes, index, 8);
+		return littleEndian ? (double) DOUBLE_MSB_FIRST.get(bytes, index) : (double) DOUBLE_LSB_FIRST.get(bytes, index);
 	}
 
 	/**
@@ -185,6 +385,33 @@ public class ByteConverter {
 	 * @return The int value
 	 */
 	public static long toValue(byte[] bytes, int index, int bytesPerValue, boolean littleEndian) {
+		switch (bytesPerValue) {
+		case 2:
+			return toShortValue(bytes, index, littleEndian);
+		case 4:
+			return toIntValue(bytes, index, littleEndian);
+		case 8:
+			return toLongValue(bytes, index, littleEndian);
+		default:
+			return toValueBytewise(bytes, index, bytesPerValue, littleEndian);
+		}
+	}
+
+	/**
+	 * Return an integer built from an array of bytes, one byte at a time. It
+	 * supports any value length up to 4 bytes.
+	 * 
+	 * @param bytes
+	 *            The raw bytes
+	 * @param index
+	 *            The initial position
+	 * @param bytesPerValue
+	 *            The number of bytes per value
+	 * @param littleEndian
+	 *            The byte order
+	 * @return The int value
+	 */
+	static long toValueBytewise(byte[] bytes, int index, int bytesPerValue, boolean littleEndian) {
 		int value = 0;
 
 		int i = 0;
@@ -240,18 +467,637 @@ public class ByteConverter {
 	 * @param toDst
 	 *            The high index in src
 	 * @param normalize
-	 *            Write double data represented in values between 1.0 and 0.0
+	 *            Write double data represented in values between -1.0
+	 *            (inclusive) and 1.0 (exclusive)
 	 * @param littleEndian
 	 *            Whether the src array is encoded in little endian or not
+	 * @see PcmConverter#toDoublesArray(byte[], int, int, boolean, double[], int,
+	 *      int, boolean, boolean)
 	 */
 	public static void toDoublesArray(byte[] src, int fromSrc, int sampleSize, double[] dst, int fromDst, int toDst,
 			boolean normalize, boolean littleEndian) {
-		double normalizationCoefficient = normalize ? Math.pow(256, sampleSize) : 1.0;
+		// The dst index has always been applied to src too
+		PcmConverter.toDoublesArray(src, fromSrc + fromDst * sampleSize, sampleSize, true, dst, fromDst, toDst,
+				normalize, littleEndian);
+	}
 
-		for (int i = fromDst; i < toDst; i++) {
-			dst[i] = toValue(src, fromSrc + i * sampleSize, sampleSize, littleEndian) / normalizationCoefficient;
+	/**
+	 * Copies and converts the bytes array into a shorts array
+	 * 
+	 * @param src
+	 *            The array to read
+	 * @param fromSrc
+	 *            The low index in src
+	 * @param dst
+	 *            The destination array
+	 * @param fromDst
+	 *            The low index in dst
+	 * @param toDst
+	 *            The high index in dst
+	 * @param littleEndian
+	 *            Whether the src array is encoded in little endian or not
+	 */
+	public static void toShortArray(byte[] src, int fromSrc, short[] dst, int fromDst, int toDst, boolean littleEndian) {
+		checkValueBounds(src, fromSrc, (toDst - fromDst) * 2);
+
+		if (littleEndian) {
+			for (int i = fromDst, j = fromSrc; i < toDst; i++, j += 2) {
+				dst[i] = (short) SHORT_MSB_FIRST.get(src, j);
+			}
+		} else {
+			for (int i = fromDst, j = fromSrc; i < toDst; i++, j += 2) {
+				dst[i] = (short) SHORT_LSB_FIRST.get(src, j);
+			}
 		}
+	}
+
+	/**
+	 * Copies and converts the shorts array into a bytes array
+	 * 
+	 * @param src
+	 *            The array to read
+	 * @param fromSrc
+	 *            The low index in src
+	 * @param toSrc
+	 *            The high index in src
+	 * @param dst
+	 *            The destination array
+	 * @param fromDst
+	 *            The low index in dst
+	 * @param littleEndian
+	 *            Whether the dst array is encoded in little endian or not
+	 */
+	public static void fromShortArray(short[] src, int fromSrc, int toSrc, byte[] dst, int fromDst, boolean littleEndian) {
+		checkBounds(dst, fromDst, (toSrc - fromSrc) * 2);
+
+		if (littleEndian) {
+			for (int i = fromSrc, j = fromDst; i < toSrc; i++, j += 2) {
+				SHORT_MSB_FIRST.set(dst, j, src[i]);
+			}
+		} else {
+			for (int i = fromSrc, j = fromDst; i < toSrc; i++, j += 2) {
+				SHORT_LSB_FIRST.set(dst, j, src[i]);
+			}
+		}
+	}
+
+	/**
+	 * Copies and converts the bytes array into a ints array
+	 * 
+	 * @param src
+	 *            The array to read
+	 * @param fromSrc
+	 *            The low index in src
+	 * @param dst
+	 *            The destination array
+	 * @param fromDst
+	 *            The low index in dst
+	 * @param toDst
+	 *            The high index in dst
+	 * @param littleEndian
+	 *            Whether the src array is encoded in little endian or not
+	 */
+	public static void toIntArray(byte[] src, int fromSrc, int[] dst, int fromDst, int toDst, boolean littleEndian) {
+		checkValueBounds(src, fromSrc, (toDst - fromDst) * 4);
+
+		if (littleEndian) {
+			for (int i = fromDst, j = fromSrc; i < toDst; i++, j += 4) {
+				dst[i] = (int) INT_MSB_FIRST.get(src, j);
+			}
+		} else {
+			for (int i = fromDst, j = fromSrc; i < toDst; i++, j += 4) {
+				dst[i] = (int) INT_LSB_FIRST.get(src, j);
+			}
+		}
+	}
+
+	/**
+	 * Copies and converts the ints array into a bytes array
+	 * 
+	 * @param src
+	 *            The array to read
+	 * @param fromSrc
+	 *            The low index in src
+	 * @param toSrc
+	 *            The high index in src
+	 * @param dst
+	 *            The destination array
+	 * @param fromDst
+	 *            The low index in dst
+	 * @param littleEndian
+	 *            Whether the dst array is encoded in little endian or not
+	 */
+	public static void fromIntArray(int[] src, int fromSrc, int toSrc, byte[] dst, int fromDst, boolean littleEndian) {
+		checkBounds(dst, fromDst, (toSrc - fromSrc) * 4);
+
+		if (littleEndian) {
+			for (int i = fromSrc, j = fromDst; i < toSrc; i++, j += 4) {
+				INT_MSB_FIRST.set(dst, j, src[i]);
+			}
+		} else {
+			for (int i = fromSrc, j = fromDst; i < toSrc; i++, j += 4) {
+				INT_LSB_FIRST.set(dst, j, src[i]);
+			}
+		}
+	}
+
+	/**
+	 * Copies and converts the bytes array into a longs array
+	 * 
+	 * @param src
+	 *            The array to read
+	 * @param fromSrc
+	 *            The low index in src
+	 * @param dst
+	 *            The destination array
+	 * @param fromDst
+	 *            The low index in dst
+	 * @param toDst
+	 *            The high index in dst
+	 * @param littleEndian
+	 *            Whether the src array is encoded in little endian or not
+	 */
+	public static void toLongArray(byte[] src, int fromSrc, long[] dst, int fromDst, int toDst, boolean littleEndian) {
+		checkValueBounds(src, fromSrc, (toDst - fromDst) * 8);
+
+		if (littleEndian) {
+			for (int i = fromDst, j = fromSrc; i < toDst; i++, j += 8) {
+				dst[i] = (long) LONG_MSB_FIRST.get(src, j);
+			}
+		} else {
+			for (int i = fromDst, j = fromSrc; i < toDst; i++, j += 8) {
+				dst[i] = (long) LONG_LSB_FIRST.get(src, j);
+			}
+		}
+	}
 
+	/**
+	 * Copies and converts the longs array into a bytes array
+	 * 
+	 * @param src
+	 *            The array to read
+	 * @param fromSrc
+	 *            The low index in src
+	 * @param toSrc
+	 *            The high index in src
+	 * @param dst
+	 *            The destination array
+	 * @param fromDst
+	 *            The low index in dst
+	 * @param littleEndian
+	 *            Whether the dst array is encoded in little endian or not
+	 */
+	public static void fromLongArray(long[] src, int fromSrc, int toSrc, byte[] dst, int fromDst, boolean littleEndian) {
+		checkBounds(dst, fromDst, (toSrc - fromSrc) * 8);
+
+		if (littleEndian) {
+			for (int i = fromSrc, j = fromDst; i < toSrc; i++, j += 8) {
+				LONG_MSB_FIRST.set(dst, j, src[i]);
+			}
+		} else {
+			for (int i = fromSrc, j = fromDst; i < toSrc; i++, j += 8) {
+				LONG_LSB_FIRST.set(dst, j, src[i]);
+			}
+		}
+	}
+
+	/**
+	 * Copies and converts the bytes array into a floats array
+	 * 
+	 * @param src
+	 *            The array to read
+	 * @param fromSrc
+	 *            The low index in src
+	 * @param dst
+	 *            The destination array
+	 * @param fromDst
+	 *            The low index in dst
+	 * @param toDst
+	 *            The high index in dst
+	 * @param littleEndian
+	 *            Whether the src array is encoded in little endian or not
+	 */
+	public static void toFloatArray(byte[] src, int fromSrc, float[] dst, int fromDst, int toDst, boolean littleEndian) {
+		checkValueBounds(src, fromSrc, (toDst - fromDst) * 4);
+
+		if (littleEndian) {
+			for (int i = fromDst, j = fromSrc; i < toDst; i++, j += 4) {
+				dst[i] = (float) FLOAT_MSB_FIRST.get(src, j);
+			}
+		} else {
+			for (int i = fromDst, j = fromSrc; i < toDst; i++, j += 4) {
+				dst[i] = (float) FLOAT_LSB_FIRST.get(src, j);
+			}
+		}
+	}
+
+	/**
+	 * Copies and converts the floats array into a bytes array
+	 * 
+	 * @param src
+	 *            The array to read
+	 * @param fromSrc
+	 *            The low index in src
+	 * @param toSrc
+	 *            The high index in src
+	 * @param dst
+	 *            The destination array
+	 * @param fromDst
+	 *            The low index in dst
+	 * @param littleEndian
+	 *            Whether the dst array is encoded in little endian or not
+	 */
+	public static void fromFloatArray(float[] src, int fromSrc, int toSrc, byte[] dst, int fromDst, boolean littleEndian) {
+		checkBounds(dst, fromDst, (toSrc - fromSrc) * 4);
+
+		if (littleEndian) {
+			for (int i = fromSrc, j = fromDst; i < toSrc; i++, j += 4) {
+				FLOAT_MSB_FIRST.set(dst, j, src[i]);
+			}
+		} else {
+			for (int i = fromSrc, j = fromDst; i < toSrc; i++, j += 4) {
+				FLOAT_LSB_FIRST.set(dst, j, src[i]);
+			}
+		}
+	}
+
+	/**
+	 * Copies and converts the bytes array into a doubles array
+	 * 
+	 * @param src
+	 *            The array to read
+	 * @param fromSrc
+	 *            The low index in src
+	 * @param dst
+	 *            The destination array
+	 * @param fromDst
+	 *            The low index in dst
+	 * @param toDst
+	 *            The high index in dst
+	 * @param littleEndian
+	 *            Whether the src array is encoded in little endian or not
+	 */
+	public static void toDoubleArray(byte[] src, int fromSrc, double[] dst, int fromDst, int toDst, boolean littleEndian) {
+		checkValueBounds(src, fromSrc, (toDst - fromDst) * 8);
+
+		if (littleEndian) {
+			for (int i = fromDst, j = fromSrc; i < toDst; i++, j += 8) {
+				dst[i] = (double) DOUBLE_MSB_FIRST.get(src, j);
+			}
+		} else {
+			for (int i = fromDst, j = fromSrc; i < toDst; i++, j += 8) {
+				dst[i] = (double) DOUBLE_LSB_FIRST.get(src, j);
+			}
+		}
+	}
+
+	/**
+	 * Copies and converts the doubles array into a bytes array
+	 * 
+	 * @param src
+	 *            The array to read
+	 * @param fromSrc
+	 *            The low index in src
+	 * @param toSrc
+	 *            The high index in src
+	 * @param dst
+	 *            The destination array
+	 * @param fromDst
+	 *            The low index in dst
+	 * @param littleEndian
+	 *            Whether the dst array is encoded in little endian or not
+	 */
+	public static void fromDoubleArray(double[] src, int fromSrc, int toSrc, byte[] dst, int fromDst,
+			boolean littleEndian) {
+		checkBounds(dst, fromDst, (toSrc - fromSrc) * 8);
+
+		if (littleEndian) {
+			for (int i = fromSrc, j = fromDst; i < toSrc; i++, j += 8) {
+				DOUBLE_MSB_FIRST.set(dst, j, src[i]);
+			}
+		} else {
+			for (int i = fromSrc, j = fromDst; i < toSrc; i++, j += 8) {
+				DOUBLE_LSB_FIRST.set(dst, j, src[i]);
+			}
+		}
+	}
+
+	/**
+	 * Converts an IEEE 754 binary16 value into a float. The conversion is
+	 * exact.
+	 * 
+	 * @param half
+	 *            The half precision bits
+	 * @return The float value
+	 */
+	public static float halfToFloat(short half) {
+		int exponent = (half >>> 10) & 0x3f;
+		return Float.intBitsToFloat(HALF_MANTISSA[HALF_OFFSET[exponent] + (half & 0x3ff)] + HALF_EXPONENT[exponent]);
+	}
+
+	/**
+	 * Converts a float into an IEEE 754 binary16 value, rounding to the
+	 * nearest even. Values beyond the half precision range become infinite
+	 * and NaN payloads are truncated but kept quiet.
+	 * 
+	 * @param value
+	 *            The float value
+	 * @return The half precision bits
+	 */
+	public static short floatToHalf(float value) {
+		int bits = Float.floatToRawIntBits(value);
+		int sign = (bits >>> 16) & 0x8000;
+		int abs = bits & 0x7fffffff;
+
+		// Infinite or NaN
+		if (abs >= 0x7f800000) {
+			return (short) (sign | 0x7c00 | (abs > 0x7f800000 ? 0x200 | ((abs >>> 13) & 0x3ff) : 0));
+		}
+
+		// Overflow, 65520 and above round to infinite
+		if (abs >= 0x477ff000) {
+			return (short) (sign | 0x7c00);
+		}
+
+		// Normal, rebias the exponent from 127 to 15
+		if (abs >= 0x38800000) {
+			int half = (abs - 0x38000000) >>> 13;
+			int remainder = abs & 0x1fff;
+			if (remainder > 0x1000 || (remainder == 0x1000 && (half & 1) != 0)) {
+				half++;
+			}
+			return (short) (sign | half);
+		}
+
+		// Up to half the smallest subnormal rounds to zero
+		if (abs <= 0x33000000) {
+			return (short) sign;
+		}
+
+		// Subnormal, in units of 2^-24
+		int shift = 126 - (abs >>> 23);
+		int mantissa = (abs & 0x7fffff) | 0x800000;
+		int half = mantissa >>> shift;
+		int remainder = mantissa & ((1 << shift) - 1);
+		int halfway = 1 << (shift - 1);
+		if (remainder > halfway || (remainder == halfway && (half & 1) != 0)) {
+			half++;
+		}
+		return (short) (sign | half);
+	}
+
+	/**
+	 * Return a float built from an IEEE 754 binary16 value in an array of
+	 * bytes
+	 * 
+	 * @param bytes
+	 *            The raw bytes
+	 * @param index
+	 *            The initial position
+	 * @param littleEndian
+	 *            The byte order
+	 * @return The float value
+	 */
+	public static float toHalfFloatValue(byte[] bytes, int index, boolean littleEndian) {
+		return halfToFloat(toShortValue(bytes, index, littleEndian));
+	}
+
+	/**
+	 * Writes a float as an IEEE 754 binary16 value into a specified byte array
+	 * 
+	 * @param value
+	 *            The float value to convert
+	 * @param bytes
+	 *            The array of bytes to write in
+	 * @param start
+	 *            The start iteration index
+	 * @param littleEndian
+	 *            The array of bytes endianess
+	 */
+	public static void toHalfBytesArray(float value, byte[] bytes, int start, boolean littleEndian) {
+		toBytesArray(floatToHalf(value), bytes, start, littleEndian);
+	}
+
+	/**
+	 * Copies and converts a bytes array of IEEE 754 binary16 values into a
+	 * floats array
+	 * 
+	 * @param src
+	 *            The array to read
+	 * @param fromSrc
+	 *            The low index in src
+	 * @param dst
+	 *            The destination array
+	 * @param fromDst
+	 *            The low index in dst
+	 * @param toDst
+	 *            The high index in dst
+	 * @param littleEndian
+	 *            Whether the src array is encoded in little endian or not
+	 */
+	public static void toHalfFloatArray(byte[] src, int fromSrc, float[] dst, int fromDst, int toDst,
+			boolean littleEndian) {
+		checkValueBounds(src, fromSrc, (toDst - fromDst) * 2);
+
+		if (littleEndian) {
+			for (int i = fromDst, j = fromSrc; i < toDst; i++, j += 2) {
+				dst[i] = halfToFloat((short) SHORT_MSB_FIRST.get(src, j));
+			}
+		} else {
+			for (int i = fromDst, j = fromSrc; i < toDst; i++, j += 2) {
+				dst[i] = halfToFloat((short) SHORT_LSB_FIRST.get(src, j));
+			}
+		}
+	}
+
+	/**
+	 * Copies and converts a floats array into a bytes array of IEEE 754
+	 * binary16 values, halving its size
+	 * 
+	 * @param src
+	 *            The array to read
+	 * @param fromSrc
+	 *            The low index in src
+	 * @param toSrc
+	 *            The high index in src
+	 * @param dst
+	 *            The destination array
+	 * @param fromDst
+	 *            The low index in dst
+	 * @param littleEndian
+	 *            Whether the dst array is encoded in little endian or not
+	 */
+	public static void fromHalfFloatArray(float[] src, int fromSrc, int toSrc, byte[] dst, int fromDst,
+			boolean littleEndian) {
+		checkBounds(dst, fromDst, (toSrc - fromSrc) * 2);
+
+		if (littleEndian) {
+			for (int i = fromSrc, j = fromDst; i < toSrc; i++, j += 2) {
+				SHORT_MSB_FIRST.set(dst, j, floatToHalf(src[i]));
+			}
+		} else {
+			for (int i = fromSrc, j = fromDst; i < toSrc; i++, j += 2) {
+				SHORT_LSB_FIRST.set(dst, j, floatToHalf(src[i]));
+			}
+		}
+	}
+
+	/**
+	 * Reverses the byte order of every {@code width} bytes value in the range,
+	 * in place
+	 * 
+	 * @param data
+	 *            The raw bytes
+	 * @param from
+	 *            The low index in data
+	 * @param to
+	 *            The high index in data
+	 * @param width
+	 *            The size of each value: 2, 4 or 8 bytes
+	 */
+	public static void swapBytes(byte[] data, int from, int to, int width) {
+		if ((to - from) % width != 0) {
+			throw new IllegalArgumentException("Range length: " + (to - from) + " is not a multiple of " + width);
+		}
+		checkBounds(data, from, to - from);
+
+		// Reading with one order and writing with the other swaps each value
+		switch (width) {
+		case 2:
+			for (int i = from; i < to; i += 2) {
+				SHORT_MSB_FIRST.set(data, i, (short) SHORT_LSB_FIRST.get(data, i));
+			}
+			break;
+		case 4:
+			for (int i = from; i < to; i += 4) {
+				INT_MSB_FIRST.set(data, i, (int) INT_LSB_FIRST.get(data, i));
+			}
+			break;
+		case 8:
+			for (int i = from; i < to; i += 8) {
+				LONG_MSB_FIRST.set(data, i, (long) LONG_LSB_FIRST.get(data, i));
+			}
+			break;
+		default:
+			throw new IllegalArgumentException("Unsupported width: " + width);
+		}
+	}
+
+	/**
+	 * Reverses the byte order of every value in the range, in place
+	 * 
+	 * @param data
+	 *            The values to swap
+	 * @param from
+	 *            The low index in data
+	 * @param to
+	 *            The high index in data
+	 */
+	public static void swapBytes(short[] data, int from, int to) {
+		checkRange(data.length, from, to);
+		if (ArrayKernels.VECTOR != null) {
+			ArrayKernels.VECTOR.swapBytes(data, from, to);
+			return;
+		}
+
+		for (int i = from; i < to; i++) {
+			data[i] = Short.reverseBytes(data[i]);
+		}
+	}
+
+	/**
+	 * Reverses the byte order of every value in the range, in place
+	 * 
+	 * @param data
+	 *            The values to swap
+	 * @param from
+	 *            The low index in data
+	 * @param to
+	 *            The high index in data
+	 */
+	public static void swapBytes(int[] data, int from, int to) {
+		checkRange(data.length, from, to);
+		if (ArrayKernels.VECTOR != null) {
+			ArrayKernels.VECTOR.swapBytes(data, from, to);
+			return;
+		}
+
+		for (int i = from; i < to; i++) {
+			data[i] = Integer.reverseBytes(data[i]);
+		}
+	}
+
+	/**
+	 * Reverses the byte order of every value in the range, in place
+	 * 
+	 * @param data
+	 *            The values to swap
+	 * @param from
+	 *            The low index in data
+	 * @param to
+	 *            The high index in data
+	 */
+	public static void swapBytes(long[] data, int from, int to) {
+		checkRange(data.length, from, to);
+		if (ArrayKernels.VECTOR != null) {
+			ArrayKernels.VECTOR.swapBytes(data, from, to);
+			return;
+		}
+
+		for (int i = from; i < to; i++) {
+			data[i] = Long.reverseBytes(data[i]);
+		}
+	}
+
+	/**
+	 * Checks that {@code length} bytes can be written from {@code start}
+	 * 
+	 * @param bytes
+	 *            The array of bytes to write in
+	 * @param start
+	 *            The start iteration index
+	 * @param length
+	 *            The number of bytes to write
+	 */
+	private static void checkBounds(byte[] bytes, int start, int length) {
+		int end = start + length;
+
+		if (start < 0 || end > bytes.length) {
+			throw new ArrayIndexOutOfBoundsException("array length: " + bytes.length + ", index: " + end);
+		}
+	}
+
+	/**
+	 * Checks that the range lies inside an array
+	 * 
+	 * @param length
+	 *            The length of the array
+	 * @param from
+	 *            The low index
+	 * @param to
+	 *            The high index
+	 */
+	static void checkRange(int length, int from, int to) {
+		if (from < 0 || from > to || to > length) {
+			throw new ArrayIndexOutOfBoundsException("array length: " + length + ", from: " + from + ", to: " + to);
+		}
+	}
+
+	/**
+	 * Checks that {@code bytesPerValue} bytes can be read from {@code index}
+	 * 
+	 * @param bytes
+	 *            The raw bytes
+	 * @param index
+	 *            The initial position
+	 * @param bytesPerValue
+	 *            The number of bytes per value
+	 */
+	private static void checkValueBounds(byte[] bytes, int index, int bytesPerValue) {
+		// The index + bytesPerValue int bytes must be within array bounds
+		if (index < 0 || index + bytesPerValue > bytes.length) {
+			throw new ArrayIndexOutOfBoundsException("At least " + bytesPerValue + " bytes needed.");
+		}
 	}
 
 }
@@ -0,0 +1,287 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.raw;
+
+import java.util.Arrays;
+
+/**
+ * @author Antonio Vicente Martin
+ * 
+ *         This class converts bytes to hexadecimal text and back. Digits are
+ *         looked up in tables and written straight into caller supplied char
+ *         or ASCII byte arrays, so dumping a buffer does not build any String.
+ *         The contents of a {@link Queue} are encoded in place, from both
+ *         regions of the ring.
+ */
+public class HexConverter {
+
+	/**
+	 * The two digits of every byte value, at 2 * value
+	 */
+	private static final char[] UPPER_DIGITS = new char[512];
+	private static final char[] LOWER_DIGITS = new char[512];
+
+	/**
+	 * The value of every ASCII digit, -1 if it is not a digit
+	 */
+	private static final byte[] VALUES = new byte[128];
+
+	static {
+		String upper = "0123456789ABCDEF";
+		String lower = "0123456789abcdef";
+
+		for (int i = 0; i < 256; i++) {
+			UPPER_DIGITS[2 * i] = upper.charAt(i >>> 4);
+			UPPER_DIGITS[2 * i + 1] = upper.charAt(i & 0xf);
+			LOWER_DIGITS[2 * i] = lower.charAt(i >>> 4);
+			LOWER_DIGITS[2 * i + 1] = lower.charAt(i & 0xf);
+		}
+
+		Arrays.fill(VALUES, (byte) -1);
+		for (int i = 0; i < 16; i++) {
+			VALUES[upper.charAt(i)] = (byte) i;
+			VALUES[lower.charAt(i)] = (byte) i;
+		}
+	}
+
+	/**
+	 * Writes two hexadecimal digits per byte into a chars array
+	 * 
+	 * @param src
+	 *            The array to read
+	 * @param fromSrc
+	 *            The low index in src
+	 * @param toSrc
+	 *            The high index in src
+	 * @param dst
+	 *            The destination array
+	 * @param fromDst
+	 *            The low index in dst
+	 * @param upperCase
+	 *            Whether the digits above 9 are upper case or not
+	 * @return The index in dst after the last digit
+	 */
+	public static int encode(byte[] src, int fromSrc, int toSrc, char[] dst, int fromDst, boolean upperCase) {
+		checkBounds(src.length, fromSrc, toSrc);
+		checkBounds(dst.length, fromDst, fromDst + 2 * (toSrc - fromSrc));
+
+		char[] digits = upperCase ? UPPER_DIGITS : LOWER_DIGITS;
+		int j = fromDst;
+		for (int i = fromSrc; i < toSrc; i++, j += 2) {
+			int k = (src[i] & 0xff) << 1;
+			dst[j] = digits[k];
+			dst[j + 1] = digits[k + 1];
+		}
+
+		return j;
+	}
+
+	/**
+	 * Writes two hexadecimal ASCII digits per byte into a bytes array
+	 * 
+	 * @param src
+	 *            The array to read
+	 * @param fromSrc
+	 *            The low index in src
+	 * @param toSrc
+	 *            The high index in src
+	 * @param dst
+	 *            The destination array
+	 * @param fromDst
+	 *            The low index in dst
+	 * @param upperCase
+	 *            Whether the digits above 9 are upper case or not
+	 * @return The index in dst after the last digit
+	 */
+	public static int encode(byte[] src, int fromSrc, int toSrc, byte[] dst, int fromDst, boolean upperCase) {
+		checkBounds(src.length, fromSrc, toSrc);
+		checkBounds(dst.length, fromDst, fromDst + 2 * (toSrc - fromSrc));
+
+		char[] digits = upperCase ? UPPER_DIGITS : LOWER_DIGITS;
+		int j = fromDst;
+		for (int i = fromSrc; i < toSrc; i++, j += 2) {
+			int k = (src[i] & 0xff) << 1;
+			dst[j] = (byte) digits[k];
+			dst[j + 1] = (byte) digits[k + 1];
+		}
+
+		return j;
+	}
+
+	/**
+	 * Writes two hexadecimal digits per stored byte of a queue into a chars
+	 * array. The queue is not modified.
+	 * 
+	 * @param src
+	 *            The queue to read
+	 * @param fromSrc
+	 *            The low position from the first element
+	 * @param toSrc
+	 *            The high position from the first element
+	 * @param dst
+	 *            The destination array
+	 * @param fromDst
+	 *            The low index in dst
+	 * @param upperCase
+	 *            Whether the digits above 9 are upper case or not
+	 * @return The index in dst after the last digit
+	 */
+	public static int encode(Queue src, int fromSrc, int toSrc, char[] dst, int fromDst, boolean upperCase) {
+		checkBounds(src.getSize(), fromSrc, toSrc);
+		if (fromSrc == toSrc) {
+			return fromDst;
+		}
+
+		int start = src.getRingIndex(fromSrc);
+		int first = Math.min(toSrc - fromSrc, src.getCapacity() - start);
+
+		int end = encode(src.getRingData(), start, start + first, dst, fromDst, upperCase);
+		return encode(src.getRingData(), 0, toSrc - fromSrc - first, dst, end, upperCase);
+	}
+
+	/**
+	 * Writes two hexadecimal ASCII digits per stored byte of a queue into a
+	 * bytes array. The queue is not modified.
+	 * 
+	 * @param src
+	 *            The queue to read
+	 * @param fromSrc
+	 *            The low position from the first element
+	 * @param toSrc
+	 *            The high position from the first element
+	 * @param dst
+	 *            The destination array
+	 * @param fromDst
+	 *            The low index in dst
+	 * @param upperCase
+	 *            Whether the digits above 9 are upper case or not
+	 * @return The index in dst after the last digit
+	 */
+	public static int encode(Queue src, int fromSrc, int toSrc, byte[] dst, int fromDst, boolean upperCase) {
+		checkBounds(src.getSize(), fromSrc, toSrc);
+		if (fromSrc == toSrc) {
+			return fromDst;
+		}
+
+		int start = src.getRingIndex(fromSrc);
+		int first = Math.min(toSrc - fromSrc, src.getCapacity() - start);
+
+		int end = encode(src.getRingData(), start, start + first, dst, fromDst, upperCase);
+		return encode(src.getRingData(), 0, toSrc - fromSrc - first, dst, end, upperCase);
+	}
+
+	/**
+	 * Reads pairs of hexadecimal digits, in any case, into a bytes array
+	 * 
+	 * @param src
+	 *            The digits to read
+	 * @param fromSrc
+	 *            The low index in src
+	 * @param toSrc
+	 *            The high index in src
+	 * @param dst
+	 *            The destination array
+	 * @param fromDst
+	 *            The low index in dst
+	 * @return The index in dst after the last byte
+	 */
+	public static int decode(char[] src, int fromSrc, int toSrc, byte[] dst, int fromDst) {
+		checkBounds(src.length, fromSrc, toSrc);
+		checkDigits(toSrc - fromSrc);
+		checkBounds(dst.length, fromDst, fromDst + (toSrc - fromSrc) / 2);
+
+		int j = fromDst;
+		for (int i = fromSrc; i < toSrc; i += 2, j++) {
+			dst[j] = (byte) ((valueOf(src[i], i) << 4) | valueOf(src[i + 1], i + 1));
+		}
+
+		return j;
+	}
+
+	/**
+	 * Reads pairs of hexadecimal ASCII digits, in any case, into a bytes array
+	 * 
+	 * @param src
+	 *            The digits to read
+	 * @param fromSrc
+	 *            The low index in src
+	 * @param toSrc
+	 *            The high index in src
+	 * @param dst
+	 *            The destination array
+	 * @param fromDst
+	 *            The low index in dst
+	 * @return The index in dst after the last byte
+	 */
+	public static int decode(byte[] src, int fromSrc, int toSrc, byte[] dst, int fromDst) {
+		checkBounds(src.length, fromSrc, toSrc);
+		checkDigits(toSrc - fromSrc);
+		checkBounds(dst.length, fromDst, fromDst + (toSrc - fromSrc) / 2);
+
+		int j = fromDst;
+		for (int i = fromSrc; i < toSrc; i += 2, j++) {
+			dst[j] = (byte) ((valueOf((char) (src[i] & 0xff), i) << 4) | valueOf((char) (src[i + 1] & 0xff), i + 1));
+		}
+
+		return j;
+	}
+
+	/**
+	 * Returns the value of a digit
+	 * 
+	 * @param digit
+	 *            The digit
+	 * @param index
+	 *            The position of the digit, for the error message
+	 * @return The value from 0 to 15
+	 */
+	private static int valueOf(char digit, int index) {
+		int value = digit < 128 ? VALUES[digit] : -1;
+		if (value < 0) {
+			throw new IllegalArgumentException("Bad hexadecimal digit at " + index + ": " + digit);
+		}
+		return value;
+	}
+
+	/**
+	 * Checks the digits come in pairs
+	 * 
+	 * @param length
+	 *            The number of digits
+	 */
+	private static void checkDigits(int length) {
+		if (length % 2 != 0) {
+			throw new IllegalArgumentException("Odd number of digits: " + length);
+		}
+	}
+
+	/**
+	 * Checks a range is inside an array
+	 * 
+	 * @param length
+	 *            The length of the array
+	 * @param from
+	 *            The low index
+	 * @param to
+	 *            The high index
+	 */
+	private static void checkBounds(int length, int from, int to) {
+		if (from < 0 || from > to || to > length) {
+			throw new ArrayIndexOutOfBoundsException("length: " + length + ", from: " + from + ", to: " + to);
+		}
+	}
+
+}
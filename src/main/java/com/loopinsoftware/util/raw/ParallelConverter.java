@@ -0,0 +1,593 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.raw;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.loopinsoftware.util.raw.PcmConverter.Dither;
+
+/**
+ * @author Antonio Vicente Martin
+ * 
+ *         This class runs the bulk conversions of {@link PcmConverter} and
+ *         {@link ByteConverter} on a {@link ForkJoinPool} for very large
+ *         buffers. Work is split in chunks of a fixed number of values, so the
+ *         result never depends on the number of threads. Every boundary
+ *         between chunks is moved forward to the next value that starts a
+ *         cache line of the destination, so two threads never write the same
+ *         line. The address is computed from {@link #ARRAY_BASE_OFFSET}, and
+ *         large arrays are allocated at aligned addresses by the collectors of
+ *         HotSpot. When the first byte written is not a multiple of the width
+ *         of a value no boundary can be aligned, and the chunks are left as
+ *         they are. Inputs below {@link #PARALLEL_THRESHOLD} values are
+ *         converted on the caller thread.
+ * 
+ *         Every method takes the pool to run on, usually
+ *         {@link ForkJoinPool#commonPool()}.
+ */
+public class ParallelConverter {
+
+	/**
+	 * The number of values converted by each task
+	 */
+	public static final int CHUNK_SIZE = 64 * 1024;
+
+	/**
+	 * The minimum number of values to split the conversion
+	 */
+	public static final int PARALLEL_THRESHOLD = 4 * CHUNK_SIZE;
+
+	/**
+	 * The size of a cache line in bytes
+	 */
+	static final int CACHE_LINE = 64;
+
+	/**
+	 * The offset of the first element of a primitive array from the start of
+	 * the object, as in HotSpot with compressed class pointers
+	 */
+	static final int ARRAY_BASE_OFFSET = 16;
+
+	/**
+	 * This interface converts one chunk of a split conversion
+	 */
+	private interface Chunk {
+
+		void convert(int chunk, int from, int to);
+
+	}
+
+	/**
+	 * This class splits a range of chunks in halves until a single chunk is
+	 * left
+	 */
+	private static class ChunkTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Chunk chunk;
+		private final int from;
+		private final int to;
+		private final long dstOffset;
+		private final int width;
+		private final int firstChunk;
+		private final int lastChunk;
+
+		ChunkTask(Chunk chunk, int from, int to, long dstOffset, int width, int firstChunk, int lastChunk) {
+			this.chunk = chunk;
+			this.from = from;
+			this.to = to;
+			this.dstOffset = dstOffset;
+			this.width = width;
+			this.firstChunk = firstChunk;
+			this.lastChunk = lastChunk;
+		}
+
+		@Override
+		protected void compute() {
+			if (lastChunk - firstChunk == 1) {
+				chunk.convert(firstChunk, boundary(from, to, dstOffset, width, firstChunk),
+						boundary(from, to, dstOffset, width, lastChunk));
+				return;
+			}
+
+			int middle = (firstChunk + lastChunk) >>> 1;
+			invokeAll(new ChunkTask(chunk, from, to, dstOffset, width, firstChunk, middle),
+					new ChunkTask(chunk, from, to, dstOffset, width, middle, lastChunk));
+		}
+
+	}
+
+	/**
+	 * Returns the first value of a chunk, the first one from
+	 * chunk * {@link #CHUNK_SIZE} on that starts a cache line of the
+	 * destination
+	 * 
+	 * @param from
+	 *            The low index of the values
+	 * @param to
+	 *            The high index of the values
+	 * @param dstOffset
+	 *            The offset in bytes of the first value in the destination
+	 *            array
+	 * @param width
+	 *            The number of bytes of each value in the destination
+	 * @param chunk
+	 *            The index of the chunk
+	 * @return The index of the value
+	 */
+	static int boundary(int from, int to, long dstOffset, int width, int chunk) {
+		if (chunk == 0) {
+			return from;
+		}
+		long value = from + (long) chunk * CHUNK_SIZE;
+		if (value >= to) {
+			return to;
+		}
+
+		// The line offsets of the values repeat every CACHE_LINE values
+		for (int i = 0; i < CACHE_LINE; i++) {
+			if ((ARRAY_BASE_OFFSET + dstOffset + (value + i - from) * width) % CACHE_LINE == 0) {
+				return (int) Math.min(to, value + i);
+			}
+		}
+		return (int) value;
+	}
+
+	/**
+	 * Runs the chunks of a conversion
+	 * 
+	 * @param pool
+	 *            The pool to run on
+	 * @param from
+	 *            The low index of the values
+	 * @param to
+	 *            The high index of the values
+	 * @param dstOffset
+	 *            The offset in bytes of the first value in the destination
+	 *            array
+	 * @param width
+	 *            The number of bytes of each value in the destination
+	 * @param chunk
+	 *            The conversion of each chunk
+	 */
+	private static void run(ForkJoinPool pool, int from, int to, long dstOffset, int width, Chunk chunk) {
+		int chunks = (to - from + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		pool.invoke(new ChunkTask(chunk, from, to, dstOffset, width, 0, chunks));
+	}
+
+	/**
+	 * A parallel version of
+	 * {@link PcmConverter#toDoublesArray(byte[], int, int, boolean, double[], int, int, boolean, boolean)}
+	 * 
+	 * @param pool
+	 *            The pool to run on
+	 * @param src
+	 *            The array to read
+	 * @param fromSrc
+	 *            The index of the first sample in src
+	 * @param sampleSize
+	 *            The size of the sample, from 1 to 4 bytes
+	 * @param signed
+	 *            Whether the samples are signed or offset binary
+	 * @param dst
+	 *            The destination array
+	 * @param fromDst
+	 *            The low index in dst
+	 * @param toDst
+	 *            The high index in dst
+	 * @param normalize
+	 *            Write double data represented in values between -1.0 (inclusive)
+	 *            and 1.0 (exclusive)
+	 * @param littleEndian
+	 *            Whether the src array is encoded in little endian or not
+	 */
+	public static void toDoublesArray(ForkJoinPool pool, byte[] src, int fromSrc, int sampleSize, boolean signed,
+			double[] dst, int fromDst, int toDst, boolean normalize, boolean littleEndian) {
+		if (toDst - fromDst < PARALLEL_THRESHOLD) {
+			PcmConverter.toDoublesArray(src, fromSrc, sampleSize, signed, dst, fromDst, toDst, normalize, littleEndian);
+			return;
+		}
+
+		run(pool, fromDst, toDst, fromDst * 8L, 8,
+				(chunk, from, to) -> PcmConverter.toDoublesArray(src, fromSrc + (from - fromDst) * sampleSize,
+						sampleSize, signed, dst, from, to, normalize, littleEndian));
+	}
+
+	/**
+	 * A parallel version of
+	 * {@link PcmConverter#toFloatsArray(byte[], int, int, boolean, float[], int, int, boolean, boolean)}
+	 * 
+	 * @param pool
+	 *            The pool to run on
+	 * @param src
+	 *            The array to read
+	 * @param fromSrc
+	 *            The index of the first sample in src
+	 * @param sampleSize
+	 *            The size of the sample, from 1 to 4 bytes
+	 * @param signed
+	 *            Whether the samples are signed or offset binary
+	 * @param dst
+	 *            The destination array
+	 * @param fromDst
+	 *            The low index in dst
+	 * @param toDst
+	 *            The high index in dst
+	 * @param normalize
+	 *            Write float data represented in values between -1.0 (inclusive)
+	 *            and 1.0 (exclusive)
+	 * @param littleEndian
+	 *            Whether the src array is encoded in little endian or not
+	 */
+	public static void toFloatsArray(ForkJoinPool pool, byte[] src, int fromSrc, int sampleSize, boolean signed,
+			float[] dst, int fromDst, int toDst, boolean normalize, boolean littleEndian) {
+		if (toDst - fromDst < PARALLEL_THRESHOLD) {
+			PcmConverter.toFloatsArray(src, fromSrc, sampleSize, signed, dst, fromDst, toDst, normalize, littleEndian);
+			return;
+		}
+
+		run(pool, fromDst, toDst, fromDst * 4L, 4,
+				(chunk, from, to) -> PcmConverter.toFloatsArray(src, fromSrc + (from - fromDst) * sampleSize,
+						sampleSize, signed, dst, from, to, normalize, littleEndian));
+	}
+
+	/**
+	 * A parallel version of
+	 * {@link PcmConverter#fromDoublesArray(double[], int, int, byte[], int, int, boolean, boolean, Dither, boolean)}.
+	 * When dithering, each chunk gets its own generator derived from the
+	 * dither state, so the output is reproducible.
+	 * 
+	 * @param pool
+	 *            The pool to run on
+	 * @param src
+	 *            The array to read
+	 * @param fromSrc
+	 *            The low index in src
+	 * @param toSrc
+	 *            The high index in src
+	 * @param dst
+	 *            The destination array
+	 * @param fromDst
+	 *            The index of the first sample in dst
+	 * @param sampleSize
+	 *            The size of the sample, from 1 to 4 bytes
+	 * @param signed
+	 *            Whether the samples are signed or offset binary
+	 * @param normalized
+	 *            Whether src data is represented in values between -1.0 and
+	 *            1.0
+	 * @param dither
+	 *            The dither to add before rounding, or null
+	 * @param littleEndian
+	 *            Whether the dst array is encoded in little endian or not
+	 */
+	public static void fromDoublesArray(ForkJoinPool pool, double[] src, int fromSrc, int toSrc, byte[] dst,
+			int fromDst, int sampleSize, boolean signed, boolean normalized, Dither dither, boolean littleEndian) {
+		if (toSrc - fromSrc < PARALLEL_THRESHOLD) {
+			PcmConverter.fromDoublesArray(src, fromSrc, toSrc, dst, fromDst, sampleSize, signed, normalized, dither,
+					littleEndian);
+			return;
+		}
+
+		run(pool, fromSrc, toSrc, fromDst, sampleSize,
+				(chunk, from, to) -> PcmConverter.fromDoublesArray(src, from, to, dst,
+						fromDst + (from - fromSrc) * sampleSize, sampleSize, signed, normalized,
+						dither == null ? null : dither.split(chunk), littleEndian));
+
+		if (dither != null) {
+			dither.advance();
+		}
+	}
+
+	/**
+	 * A parallel version of
+	 * {@link PcmConverter#fromFloatsArray(float[], int, int, byte[], int, int, boolean, boolean, Dither, boolean)}.
+	 * When dithering, each chunk gets its own generator derived from the
+	 * dither state, so the output is reproducible.
+	 * 
+	 * @param pool
+	 *            The pool to run on
+	 * @param src
+	 *            The array to read
+	 * @param fromSrc
+	 *            The low index in src
+	 * @param toSrc
+	 *            The high index in src
+	 * @param dst
+	 *            The destination array
+	 * @param fromDst
+	 *            The index of the first sample in dst
+	 * @param sampleSize
+	 *            The size of the sample, from 1 to 4 bytes
+	 * @param signed
+	 *            Whether the samples are signed or offset binary
+	 * @param normalized
+	 *            Whether src data is represented in values between -1.0 and
+	 *            1.0
+	 * @param dither
+	 *            The dither to add before rounding, or null
+	 * @param littleEndian
+	 *            Whether the dst array is encoded in little endian or not
+	 */
+	public static void fromFloatsArray(ForkJoinPool pool, float[] src, int fromSrc, int toSrc, byte[] dst, int fromDst,
+			int sampleSize, boolean signed, boolean normalized, Dither dither, boolean littleEndian) {
+		if (toSrc - fromSrc < PARALLEL_THRESHOLD) {
+			PcmConverter.fromFloatsArray(src, fromSrc, toSrc, dst, fromDst, sampleSize, signed, normalized, dither,
+					littleEndian);
+			return;
+		}
+
+		run(pool, fromSrc, toSrc, fromDst, sampleSize,
+				(chunk, from, to) -> PcmConverter.fromFloatsArray(src, from, to, dst,
+						fromDst + (from - fromSrc) * sampleSize, sampleSize, signed, normalized,
+						dither == null ? null : dither.split(chunk), littleEndian));
+
+		if (dither != null) {
+			dither.advance();
+		}
+	}
+
+	/**
+	 * A parallel version of
+	 * {@link ByteConverter#toShortArray(byte[], int, short[], int, int, boolean)}
+	 * 
+	 * @param pool
+	 *            The pool to run on
+	 * @param src
+	 *            The array to read
+	 * @param fromSrc
+	 *            The low index in src
+	 * @param dst
+	 *            The destination array
+	 * @param fromDst
+	 *            The low index in dst
+	 * @param toDst
+	 *            The high index in dst
+	 * @param littleEndian
+	 *            Whether the src array is encoded in little endian or not
+	 */
+	public static void toShortArray(ForkJoinPool pool, byte[] src, int fromSrc, short[] dst, int fromDst, int toDst,
+			boolean littleEndian) {
+		if (toDst - fromDst < PARALLEL_THRESHOLD) {
+			ByteConverter.toShortArray(src, fromSrc, dst, fromDst, toDst, littleEndian);
+			return;
+		}
+
+		run(pool, fromDst, toDst, fromDst * 2L, 2,
+				(chunk, from, to) -> ByteConverter.toShortArray(src, fromSrc + (from - fromDst) * 2, dst, from, to,
+						littleEndian));
+	}
+
+	/**
+	 * A parallel version of
+	 * {@link ByteConverter#fromShortArray(short[], int, int, byte[], int, boolean)}
+	 * 
+	 * @param pool
+	 *            The pool to run on
+	 * @param src
+	 *            The array to read
+	 * @param fromSrc
+	 *            The low index in src
+	 * @param toSrc
+	 *            The high index in src
+	 * @param dst
+	 *            The destination array
+	 * @param fromDst
+	 *            The low index in dst
+	 * @param littleEndian
+	 *            Whether the dst array is encoded in little endian or not
+	 */
+	public static void fromShortArray(ForkJoinPool pool, short[] src, int fromSrc, int toSrc, byte[] dst, int fromDst,
+			boolean littleEndian) {
+		if (toSrc - fromSrc < PARALLEL_THRESHOLD) {
+			ByteConverter.fromShortArray(src, fromSrc, toSrc, dst, fromDst, littleEndian);
+			return;
+		}
+
+		run(pool, fromSrc, toSrc, fromDst, 2,
+				(chunk, from, to) -> ByteConverter.fromShortArray(src, from, to, dst,
+						fromDst + (from - fromSrc) * 2, littleEndian));
+	}
+
+	/**
+	 * A parallel version of
+	 * {@link ByteConverter#toIntArray(byte[], int, int[], int, int, boolean)}
+	 * 
+	 * @param pool
+	 *            The pool to run on
+	 * @param src
+	 *            The array to read
+	 * @param fromSrc
+	 *            The low index in src
+	 * @param dst
+	 *            The destination array
+	 * @param fromDst
+	 *            The low index in dst
+	 * @param toDst
+	 *            The high index in dst
+	 * @param littleEndian
+	 *            Whether the src array is encoded in little endian or not
+	 */
+	public static void toIntArray(ForkJoinPool pool, byte[] src, int fromSrc, int[] dst, int fromDst, int toDst,
+			boolean littleEndian) {
+		if (toDst - fromDst < PARALLEL_THRESHOLD) {
+			ByteConverter.toIntArray(src, fromSrc, dst, fromDst, toDst, littleEndian);
+			return;
+		}
+
+		run(pool, fromDst, toDst, fromDst * 4L, 4,
+				(chunk, from, to) -> ByteConverter.toIntArray(src, fromSrc + (from - fromDst) * 4, dst, from, to,
+						littleEndian));
+	}
+
+	/**
+	 * A parallel version of
+	 * {@link ByteConverter#fromIntArray(int[], int, int, byte[], int, boolean)}
+	 * 
+	 * @param pool
+	 *            The pool to run on
+	 * @param src
+	 *            The array to read
+	 * @param fromSrc
+	 *            The low index in src
+	 * @param toSrc
+	 *            The high index in src
+	 * @param dst
+	 *            The destination array
+	 * @param fromDst
+	 *            The low index in dst
+	 * @param littleEndian
+	 *            Whether the dst array is encoded in little endian or not
+	 */
+	public static void fromIntArray(ForkJoinPool pool, int[] src, int fromSrc, int toSrc, byte[] dst, int fromDst,
+			boolean littleEndian) {
+		if (toSrc - fromSrc < PARALLEL_THRESHOLD) {
+			ByteConverter.fromIntArray(src, fromSrc, toSrc, dst, fromDst, littleEndian);
+			return;
+		}
+
+		run(pool, fromSrc, toSrc, fromDst, 4,
+				(chunk, from, to) -> ByteConverter.fromIntArray(src, from, to, dst,
+						fromDst + (from - fromSrc) * 4, littleEndian));
+	}
+
+	/**
+	 * A parallel version of
+	 * {@link ByteConverter#toLongArray(byte[], int, long[], int, int, boolean)}
+	 * 
+	 * @param pool
+	 *            The pool to run on
+	 * @param src
+	 *            The array to read
+	 * @param fromSrc
+	 *            The low index in src
+	 * @param dst
+	 *            The destination array
+	 * @param fromDst
+	 *            The low index in dst
+	 * @param toDst
+	 *            The high index in dst
+	 * @param littleEndian
+	 *            Whether the src array is encoded in little endian or not
+	 */
+	public static void toLongArray(ForkJoinPool pool, byte[] src, int fromSrc, long[] dst, int fromDst, int toDst,
+			boolean littleEndian) {
+		if (toDst - fromDst < PARALLEL_THRESHOLD) {
+			ByteConverter.toLongArray(src, fromSrc, dst, fromDst, toDst, littleEndian);
+			return;
+		}
+
+		run(pool, fromDst, toDst, fromDst * 8L, 8,
+				(chunk, from, to) -> ByteConverter.toLongArray(src, fromSrc + (from - fromDst) * 8, dst, from, to,
+						littleEndian));
+	}
+
+	/**
+	 * A parallel version of
+	 * {@link ByteConverter#fromLongArray(long[], int, int, byte[], int, boolean)}
+	 * 
+	 * @param pool
+	 *            The pool to run on
+	 * @param src
+	 *            The array to read
+	 * @param fromSrc
+	 *            The low index in src
+	 * @param toSrc
+	 *            The high index in src
+	 * @param dst
+	 *            The destination array
+	 * @param fromDst
+	 *            The low index in dst
+	 * @param littleEndian
+	 *            Whether the dst array is encoded in little endian or not
+	 */
+	public static void fromLongArray(ForkJoinPool pool, long[] src, int fromSrc, int toSrc, byte[] dst, int fromDst,
+			boolean littleEndian) {
+		if (toSrc - fromSrc < PARALLEL_THRESHOLD) {
+			ByteConverter.fromLongArray(src, fromSrc, toSrc, dst, fromDst, littleEndian);
+			return;
+		}
+
+		run(pool, fromSrc, toSrc, fromDst, 8,
+				(chunk, from, to) -> ByteConverter.fromLongArray(src, from, to, dst,
+						fromDst + (from - fromSrc) * 8, littleEndian));
+	}
+
+	/**
+	 * A parallel version of
+	 * {@link ByteConverter#toFloatArray(byte[], int, float[], int, int, boolean)}
+	 * 
+	 * @param pool
+	 *            The pool to run on
+	 * @param src
+	 *            The array to read
+	 * @param fromSrc
+	 *            The low index in src
+	 * @param dst
+	 *            The destination array
+	 * @param fromDst
+	 *            The low index in dst
+	 * @param toDst
+	 *            The high index in dst
+	 * @param littleEndian
+	 *            Whether the src array is encoded in little endian or not
+	 */
+	public static void toFloatArray(ForkJoinPool pool, byte[] src, int fromSrc, float[] dst, int fromDst, int toDst,
+			boolean littleEndian) {
+		if (toDst - fromDst < PARALLEL_THRESHOLD) {
+			ByteConverter.toFloatArray(src, fromSrc, dst, fromDst, toDst, littleEndian);
+			return;
+		}
+
+		run(pool, fromDst, toDst, fromDst * 4L, 4,
+				(chunk, from, to) -> ByteConverter.toFloatArray(src, fromSrc + (from - fromDst) * 4, dst, from, to,
+						littleEndian));
+	}
+
+	/**
+	 * A parallel version of
+	 * {@link ByteConverter#fromFloatArray(float[], int, int, byte[], int, boolean)}
+	 * 
+	 * @param pool
+	 *            The pool to run on
+	 * @param src
+	 *            The array to read
+	 * @param fromSrc
+	 *            The low index in src
+	 * @param toSrc
+	 *            The high index in src
+	 * @param dst
+	 *            The destination array
+	 * @param fromDst
+	 *            The low index in dst
+	 * @param littleEndian
+	 *            Whether the dst array is encoded in little endian or not
+	 */
+	public static void fromFloatArray(ForkJoinPool pool, float[] src, int fromSrc, int toSrc, byte[] dst, int fromDst,
+			boolean littleEndian) {
+		if (toSrc - fromSrc < PARALLEL_THRESHOLD) {
+			ByteConverter.fromFloatArray(src, fromSrc, toSrc, dst, fromDst, littleEndian);
+			return;
+		}
+
+		run(pool, fromSrc, toSrc, fromDst, 4,
+				(chunk, from, to) -> ByteConverter.fromFloatArray(src, from, to, dst,
+						fromDst + (from - fromSrc) * 4, littleEndian));
+	}
+
+}
@@ -0,0 +1,1063 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.raw;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * @author Antonio Vicente Martin
+ * 
+ *         This class converts raw PCM samples of 8, 16, 24 and 32 bits into
+ *         floating point samples and viceversa, either as a flat sequence or
+ *         as interleaved multichannel frames. Encoding clips and can add TPDF
+ *         dither. Each sample size has its own
+ *         unrolled loop, so the byte order, sign and normalization are
+ *         resolved once per call instead of once per sample.
+ * 
+ *         The littleEndian flag has the same meaning as in
+ *         {@link ByteConverter}.
+ */
+public class PcmConverter {
+
+	private static final VarHandle SHORT_MSB_FIRST = MethodHandles.byteArrayViewVarHandle(short[].class,
+			ByteOrder.BIG_ENDIAN);
+	private static final VarHandle SHORT_LSB_FIRST = MethodHandles.byteArrayViewVarHandle(short[].class,
+			ByteOrder.LITTLE_ENDIAN);
+	private static final VarHandle INT_MSB_FIRST = MethodHandles.byteArrayViewVarHandle(int[].class,
+			ByteOrder.BIG_ENDIAN);
+	private static final VarHandle INT_LSB_FIRST = MethodHandles.byteArrayViewVarHandle(int[].class,
+			ByteOrder.LITTLE_ENDIAN);
+
+	/**
+	 * The magnitude of the most negative signed sample for each sample size
+	 */
+	private static final long[] FULL_SCALE = { 0, 1L << 7, 1L << 15, 1L << 23, 1L << 31 };
+
+	/**
+	 * The number of interleaved bytes processed per block, small enough to stay
+	 * in the L1 cache while every channel is visited
+	 */
+	private static final int BLOCK_SIZE = 16 * 1024;
+
+	/**
+	 * Scales a triangular value of the generator to the [-1, 1) LSB range
+	 */
+	private static final double TRIANGULAR_SCALE = 1.0 / (1L << 32);
+
+	/**
+	 * This class holds the state of a triangular probability density function
+	 * (TPDF) dither, spanning one least significant bit at each side. The same
+	 * instance can be used across consecutive calls to keep the noise
+	 * uncorrelated, but it must not be shared by concurrent encoders.
+	 * 
+	 * @author Antonio Vicente Martin
+	 *
+	 */
+	public static class Dither {
+
+		/**
+		 * The xorshift generator state
+		 */
+		private long seed;
+
+		/**
+		 * Creates a new Dither with a seed based on the current time
+		 */
+		public Dither() {
+			this(System.nanoTime());
+		}
+
+		/**
+		 * Creates a new Dither with the specified seed, so that the noise can be
+		 * reproduced
+		 * 
+		 * @param seed
+		 *            The generator seed
+		 */
+		public Dither(long seed) {
+			// A xorshift generator never leaves the 0 state
+			this.seed = seed == 0 ? 0x9E3779B97F4A7C15L : seed;
+		}
+
+		/**
+		 * Creates an independent Dither for one chunk of a split encoding. The
+		 * chunk seed only depends on the current state and the chunk index.
+		 * 
+		 * @param chunk
+		 *            The chunk index
+		 * @return The chunk Dither
+		 */
+		Dither split(int chunk) {
+			// SplitMix64 finalizer, so that consecutive chunks are uncorrelated
+			long z = seed + (chunk + 1) * 0x9E3779B97F4A7C15L;
+			z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+			z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+			return new Dither(z ^ (z >>> 31));
+		}
+
+		/**
+		 * Moves the generator forward, once a split encoding has finished
+		 */
+		void advance() {
+			seed = next(seed);
+		}
+
+	}
+
+	/**
+	 * Copies and converts the PCM samples of the bytes array into a doubles array
+	 * 
+	 * @param src
+	 *            The array to read
+	 * @param fromSrc
+	 *            The index of the first sample in src
+	 * @param sampleSize
+	 *            The size of the sample, from 1 to 4 bytes
+	 * @param signed
+	 *            Whether the samples are signed or offset binary
+	 * @param dst
+	 *            The destination array
+	 * @param fromDst
+	 *            The low index in dst
+	 * @param toDst
+	 *            The high index in dst
+	 * @param normalize
+	 *            Write double data represented in values between -1.0 (inclusive)
+	 *            and 1.0 (exclusive)
+	 * @param littleEndian
+	 *            Whether the src array is encoded in little endian or not
+	 */
+	public static void toDoublesArray(byte[] src, int fromSrc, int sampleSize, boolean signed, double[] dst, int fromDst,
+			int toDst, boolean normalize, boolean littleEndian) {
+		checkSampleSize(sampleSize);
+		checkBounds(src, fromSrc, (toDst - fromDst) * sampleSize);
+
+		decode(src, fromSrc, sampleSize, sampleSize, signed, dst, fromDst, toDst, normalize, littleEndian);
+	}
+
+	/**
+	 * Copies and converts the PCM samples of the bytes array into a floats array
+	 * 
+	 * @param src
+	 *            The array to read
+	 * @param fromSrc
+	 *            The index of the first sample in src
+	 * @param sampleSize
+	 *            The size of the sample, from 1 to 4 bytes
+	 * @param signed
+	 *            Whether the samples are signed or offset binary
+	 * @param dst
+	 *            The destination array
+	 * @param fromDst
+	 *            The low index in dst
+	 * @param toDst
+	 *            The high index in dst
+	 * @param normalize
+	 *            Write float data represented in values between -1.0 (inclusive)
+	 *            and 1.0 (exclusive)
+	 * @param littleEndian
+	 *            Whether the src array is encoded in little endian or not
+	 */
+	public static void toFloatsArray(byte[] src, int fromSrc, int sampleSize, boolean signed, float[] dst, int fromDst,
+			int toDst, boolean normalize, boolean littleEndian) {
+		checkSampleSize(sampleSize);
+		checkBounds(src, fromSrc, (toDst - fromDst) * sampleSize);
+
+		decode(src, fromSrc, sampleSize, sampleSize, signed, dst, fromDst, toDst, normalize, littleEndian);
+	}
+
+	/**
+	 * Copies and converts the doubles array into PCM samples of a bytes array.
+	 * Samples are rounded to the nearest integer and clipped to the range of
+	 * the sample size.
+	 * 
+	 * @param src
+	 *            The array to read
+	 * @param fromSrc
+	 *            The low index in src
+	 * @param toSrc
+	 *            The high index in src
+	 * @param dst
+	 *            The destination array
+	 * @param fromDst
+	 *            The index of the first sample in dst
+	 * @param sampleSize
+	 *            The size of the sample, from 1 to 4 bytes
+	 * @param signed
+	 *            Whether the samples are signed or offset binary
+	 * @param normalized
+	 *            Whether src data is represented in values between -1.0 and
+	 *            1.0
+	 * @param dither
+	 *            The dither to add before rounding, or null
+	 * @param littleEndian
+	 *            Whether the dst array is encoded in little endian or not
+	 */
+	public static void fromDoublesArray(double[] src, int fromSrc, int toSrc, byte[] dst, int fromDst, int sampleSize,
+			boolean signed, boolean normalized, Dither dither, boolean littleEndian) {
+		checkSampleSize(sampleSize);
+		checkBounds(dst, fromDst, (toSrc - fromSrc) * sampleSize);
+
+		encode(src, fromSrc, toSrc, dst, fromDst, sampleSize, sampleSize, signed, normalized, dither, littleEndian);
+	}
+
+	/**
+	 * Copies and converts the floats array into PCM samples of a bytes array.
+	 * Samples are rounded to the nearest integer and clipped to the range of
+	 * the sample size.
+	 * 
+	 * @param src
+	 *            The array to read
+	 * @param fromSrc
+	 *            The low index in src
+	 * @param toSrc
+	 *            The high index in src
+	 * @param dst
+	 *            The destination array
+	 * @param fromDst
+	 *            The index of the first sample in dst
+	 * @param sampleSize
+	 *            The size of the sample, from 1 to 4 bytes
+	 * @param signed
+	 *            Whether the samples are signed or offset binary
+	 * @param normalized
+	 *            Whether src data is represented in values between -1.0 and
+	 *            1.0
+	 * @param dither
+	 *            The dither to add before rounding, or null
+	 * @param littleEndian
+	 *            Whether the dst array is encoded in little endian or not
+	 */
+	public static void fromFloatsArray(float[] src, int fromSrc, int toSrc, byte[] dst, int fromDst, int sampleSize,
+			boolean signed, boolean normalized, Dither dither, boolean littleEndian) {
+		checkSampleSize(sampleSize);
+		checkBounds(dst, fromDst, (toSrc - fromSrc) * sampleSize);
+
+		encode(src, fromSrc, toSrc, dst, fromDst, sampleSize, sampleSize, signed, normalized, dither, littleEndian);
+	}
+
+	/**
+	 * Widens 16 bits PCM samples into a floats array
+	 * 
+	 * @param src
+	 *            The samples to read
+	 * @param fromSrc
+	 *            The low index in src
+	 * @param dst
+	 *            The destination array
+	 * @param fromDst
+	 *            The low index in dst
+	 * @param toDst
+	 *            The high index in dst
+	 * @param normalize
+	 *            Write float data represented in values between -1.0 (inclusive)
+	 *            and 1.0 (exclusive)
+	 */
+	public static void toFloatsArray(short[] src, int fromSrc, float[] dst, int fromDst, int toDst, boolean normalize) {
+		ByteConverter.checkRange(dst.length, fromDst, toDst);
+		ByteConverter.checkRange(src.length, fromSrc, fromSrc + toDst - fromDst);
+		float scale = normalize ? 1.0f / FULL_SCALE[2] : 1.0f;
+		if (ArrayKernels.VECTOR != null) {
+			ArrayKernels.VECTOR.toFloats(src, fromSrc, dst, fromDst, toDst, scale);
+			return;
+		}
+
+		for (int i = fromDst, j = fromSrc; i < toDst; i++, j++) {
+			dst[i] = src[j] * scale;
+		}
+	}
+
+	/**
+	 * Narrows a floats array into 16 bits PCM samples. Samples are rounded to
+	 * the nearest integer and clipped to the 16 bits range.
+	 * 
+	 * @param src
+	 *            The array to read
+	 * @param fromSrc
+	 *            The low index in src
+	 * @param toSrc
+	 *            The high index in src
+	 * @param dst
+	 *            The destination samples
+	 * @param fromDst
+	 *            The low index in dst
+	 * @param normalized
+	 *            Whether src data is represented in values between -1.0 and
+	 *            1.0
+	 */
+	public static void fromFloatsArray(float[] src, int fromSrc, int toSrc, short[] dst, int fromDst,
+			boolean normalized) {
+		ByteConverter.checkRange(src.length, fromSrc, toSrc);
+		ByteConverter.checkRange(dst.length, fromDst, fromDst + toSrc - fromSrc);
+		float scale = normalized ? FULL_SCALE[2] : 1.0f;
+		if (ArrayKernels.VECTOR != null) {
+			ArrayKernels.VECTOR.fromFloats(src, fromSrc, toSrc, dst, fromDst, scale);
+			return;
+		}
+
+		for (int i = fromSrc, j = fromDst; i < toSrc; i++, j++) {
+			dst[j] = (short) Math.round(Math.min(Math.max(src[i] * scale, Short.MIN_VALUE), Short.MAX_VALUE));
+		}
+	}
+
+	/**
+	 * Decodes interleaved PCM frames into one doubles array per channel in a
+	 * single pass. Frames are processed in blocks that fit in the cache, so
+	 * the source bytes are fetched from memory once whatever the number of
+	 * channels.
+	 * 
+	 * @param src
+	 *            The array to read
+	 * @param fromSrc
+	 *            The index of the first frame in src
+	 * @param sampleSize
+	 *            The size of the sample, from 1 to 4 bytes
+	 * @param signed
+	 *            Whether the samples are signed or offset binary
+	 * @param channels
+	 *            The number of channels per frame
+	 * @param selectedChannels
+	 *            The channel decoded into each dst plane, or null to decode
+	 *            every channel in order
+	 * @param dst
+	 *            The destination planes
+	 * @param fromDst
+	 *            The low index in each plane
+	 * @param toDst
+	 *            The high index in each plane
+	 * @param normalize
+	 *            Write double data represented in values between -1.0 (inclusive)
+	 *            and 1.0 (exclusive)
+	 * @param littleEndian
+	 *            Whether the src array is encoded in little endian or not
+	 */
+	public static void deinterleave(byte[] src, int fromSrc, int sampleSize, boolean signed, int channels,
+			int[] selectedChannels, double[][] dst, int fromDst, int toDst, boolean normalize, boolean littleEndian) {
+		checkSampleSize(sampleSize);
+		checkChannels(channels, selectedChannels, dst.length);
+
+		int frameSize = channels * sampleSize;
+		int framesPerBlock = Math.max(1, BLOCK_SIZE / frameSize);
+		checkBounds(src, fromSrc, (toDst - fromDst) * frameSize);
+
+		for (int from = fromDst; from < toDst; from += framesPerBlock) {
+			int to = Math.min(toDst, from + framesPerBlock);
+			int frame = fromSrc + (from - fromDst) * frameSize;
+
+			for (int k = 0; k < dst.length; k++) {
+				int channel = selectedChannels == null ? k : selectedChannels[k];
+				decode(src, frame + channel * sampleSize, frameSize, sampleSize, signed, dst[k], from, to, normalize,
+						littleEndian);
+			}
+		}
+	}
+
+	/**
+	 * Decodes interleaved PCM frames into one floats array per channel in a
+	 * single pass. Frames are processed in blocks that fit in the cache, so
+	 * the source bytes are fetched from memory once whatever the number of
+	 * channels.
+	 * 
+	 * @param src
+	 *            The array to read
+	 * @param fromSrc
+	 *            The index of the first frame in src
+	 * @param sampleSize
+	 *            The size of the sample, from 1 to 4 bytes
+	 * @param signed
+	 *            Whether the samples are signed or offset binary
+	 * @param channels
+	 *            The number of channels per frame
+	 * @param selectedChannels
+	 *            The channel decoded into each dst plane, or null to decode
+	 *            every channel in order
+	 * @param dst
+	 *            The destination planes
+	 * @param fromDst
+	 *            The low index in each plane
+	 * @param toDst
+	 *            The high index in each plane
+	 * @param normalize
+	 *            Write float data represented in values between -1.0 (inclusive)
+	 *            and 1.0 (exclusive)
+	 * @param littleEndian
+	 *            Whether the src array is encoded in little endian or not
+	 */
+	public static void deinterleave(byte[] src, int fromSrc, int sampleSize, boolean signed, int channels,
+			int[] selectedChannels, float[][] dst, int fromDst, int toDst, boolean normalize, boolean littleEndian) {
+		checkSampleSize(sampleSize);
+		checkChannels(channels, selectedChannels, dst.length);
+
+		int frameSize = channels * sampleSize;
+		int framesPerBlock = Math.max(1, BLOCK_SIZE / frameSize);
+		checkBounds(src, fromSrc, (toDst - fromDst) * frameSize);
+
+		for (int from = fromDst; from < toDst; from += framesPerBlock) {
+			int to = Math.min(toDst, from + framesPerBlock);
+			int frame = fromSrc + (from - fromDst) * frameSize;
+
+			for (int k = 0; k < dst.length; k++) {
+				int channel = selectedChannels == null ? k : selectedChannels[k];
+				decode(src, frame + channel * sampleSize, frameSize, sampleSize, signed, dst[k], from, to, normalize,
+						littleEndian);
+			}
+		}
+	}
+
+	/**
+	 * Encodes one doubles array per channel into interleaved PCM frames in a
+	 * single pass. Samples are rounded to the nearest integer and clipped to
+	 * the range of the sample size. Channels that are not selected are left
+	 * untouched in dst.
+	 * 
+	 * @param src
+	 *            The source planes
+	 * @param fromSrc
+	 *            The low index in each plane
+	 * @param toSrc
+	 *            The high index in each plane
+	 * @param selectedChannels
+	 *            The channel each src plane is encoded into, or null to encode
+	 *            every channel in order
+	 * @param dst
+	 *            The array to write
+	 * @param fromDst
+	 *            The index of the first frame in dst
+	 * @param channels
+	 *            The number of channels per frame
+	 * @param sampleSize
+	 *            The size of the sample, from 1 to 4 bytes
+	 * @param signed
+	 *            Whether the samples are signed or offset binary
+	 * @param normalized
+	 *            Whether src data is represented in values between -1.0 and
+	 *            1.0
+	 * @param littleEndian
+	 *            Whether the dst array is encoded in little endian or not
+	 */
+	public static void interleave(double[][] src, int fromSrc, int toSrc, int[] selectedChannels, byte[] dst, int fromDst,
+			int channels, int sampleSize, boolean signed, boolean normalized, boolean littleEndian) {
+		interleave(src, fromSrc, toSrc, selectedChannels, dst, fromDst, channels, sampleSize, signed, normalized, null,
+				littleEndian);
+	}
+
+	/**
+	 * Encodes one doubles array per channel into interleaved PCM frames in a
+	 * single pass. Samples are rounded to the nearest integer and clipped to
+	 * the range of the sample size. Channels that are not selected are left
+	 * untouched in dst.
+	 * 
+	 * @param src
+	 *            The source planes
+	 * @param fromSrc
+	 *            The low index in each plane
+	 * @param toSrc
+	 *            The high index in each plane
+	 * @param selectedChannels
+	 *            The channel each src plane is encoded into, or null to encode
+	 *            every channel in order
+	 * @param dst
+	 *            The array to write
+	 * @param fromDst
+	 *            The index of the first frame in dst
+	 * @param channels
+	 *            The number of channels per frame
+	 * @param sampleSize
+	 *            The size of the sample, from 1 to 4 bytes
+	 * @param signed
+	 *            Whether the samples are signed or offset binary
+	 * @param normalized
+	 *            Whether src data is represented in values between -1.0 and
+	 *            1.0
+	 * @param dither
+	 *            The dither to add before rounding, or null
+	 * @param littleEndian
+	 *            Whether the dst array is encoded in little endian or not
+	 */
+	public static void interleave(double[][] src, int fromSrc, int toSrc, int[] selectedChannels, byte[] dst, int fromDst,
+			int channels, int sampleSize, boolean signed, boolean normalized, Dither dither, boolean littleEndian) {
+		checkSampleSize(sampleSize);
+		checkChannels(channels, selectedChannels, src.length);
+
+		int frameSize = channels * sampleSize;
+		int framesPerBlock = Math.max(1, BLOCK_SIZE / frameSize);
+		checkBounds(dst, fromDst, (toSrc - fromSrc) * frameSize);
+
+		for (int from = fromSrc; from < toSrc; from += framesPerBlock) {
+			int to = Math.min(toSrc, from + framesPerBlock);
+			int frame = fromDst + (from - fromSrc) * frameSize;
+
+			for (int k = 0; k < src.length; k++) {
+				int channel = selectedChannels == null ? k : selectedChannels[k];
+				encode(src[k], from, to, dst, frame + channel * sampleSize, frameSize, sampleSize, signed, normalized,
+						dither, littleEndian);
+			}
+		}
+	}
+
+	/**
+	 * Encodes one floats array per channel into interleaved PCM frames in a
+	 * single pass. Samples are rounded to the nearest integer and clipped to
+	 * the range of the sample size. Channels that are not selected are left
+	 * untouched in dst.
+	 * 
+	 * @param src
+	 *            The source planes
+	 * @param fromSrc
+	 *            The low index in each plane
+	 * @param toSrc
+	 *            The high index in each plane
+	 * @param selectedChannels
+	 *            The channel each src plane is encoded into, or null to encode
+	 *            every channel in order
+	 * @param dst
+	 *            The array to write
+	 * @param fromDst
+	 *            The index of the first frame in dst
+	 * @param channels
+	 *            The number of channels per frame
+	 * @param sampleSize
+	 *            The size of the sample, from 1 to 4 bytes
+	 * @param signed
+	 *            Whether the samples are signed or offset binary
+	 * @param normalized
+	 *            Whether src data is represented in values between -1.0 and
+	 *            1.0
+	 * @param littleEndian
+	 *            Whether the dst array is encoded in little endian or not
+	 */
+	public static void interleave(float[][] src, int fromSrc, int toSrc, int[] selectedChannels, byte[] dst, int fromDst,
+			int channels, int sampleSize, boolean signed, boolean normalized, boolean littleEndian) {
+		interleave(src, fromSrc, toSrc, selectedChannels, dst, fromDst, channels, sampleSize, signed, normalized, null,
+				littleEndian);
+	}
+
+	/**
+	 * Encodes one floats array per channel into interleaved PCM frames in a
+	 * single pass. Samples are rounded to the nearest integer and clipped to
+	 * the range of the sample size. Channels that are not selected are left
+	 * untouched in dst.
+	 * 
+	 * @param src
+	 *            The source planes
+	 * @param fromSrc
+	 *            The low index in each plane
+	 * @param toSrc
+	 *            The high index in each plane
+	 * @param selectedChannels
+	 *            The channel each src plane is encoded into, or null to encode
+	 *            every channel in order
+	 * @param dst
+	 *            The array to write
+	 * @param fromDst
+	 *            The index of the first frame in dst
+	 * @param channels
+	 *            The number of channels per frame
+	 * @param sampleSize
+	 *            The size of the sample, from 1 to 4 bytes
+	 * @param signed
+	 *            Whether the samples are signed or offset binary
+	 * @param normalized
+	 *            Whether src data is represented in values between -1.0 and
+	 *            1.0
+	 * @param dither
+	 *            The dither to add before rounding, or null
+	 * @param littleEndian
+	 *            Whether the dst array is encoded in little endian or not
+	 */
+	public static void interleave(float[][] src, int fromSrc, int toSrc, int[] selectedChannels, byte[] dst, int fromDst,
+			int channels, int sampleSize, boolean signed, boolean normalized, Dither dither, boolean littleEndian) {
+		checkSampleSize(sampleSize);
+		checkChannels(channels, selectedChannels, src.length);
+
+		int frameSize = channels * sampleSize;
+		int framesPerBlock = Math.max(1, BLOCK_SIZE / frameSize);
+		checkBounds(dst, fromDst, (toSrc - fromSrc) * frameSize);
+
+		for (int from = fromSrc; from < toSrc; from += framesPerBlock) {
+			int to = Math.min(toSrc, from + framesPerBlock);
+			int frame = fromDst + (from - fromSrc) * frameSize;
+
+			for (int k = 0; k < src.length; k++) {
+				int channel = selectedChannels == null ? k : selectedChannels[k];
+				encode(src[k], from, to, dst, frame + channel * sampleSize, frameSize, sampleSize, signed, normalized,
+						dither, littleEndian);
+			}
+		}
+	}
+
+	/**
+	 * Selects the decoding loop of the sample size
+	 */
+	private static void decode(byte[] src, int fromSrc, int stride, int sampleSize, boolean signed, double[] dst,
+			int fromDst, int toDst, boolean normalize, boolean littleEndian) {
+		long mask = signed ? -1L : (1L << 8 * sampleSize) - 1;
+		long offset = signed || !normalize ? 0 : -FULL_SCALE[sampleSize];
+		double scale = normalize ? 1.0 / FULL_SCALE[sampleSize] : 1.0;
+
+		switch (sampleSize) {
+		case 1:
+			decode8(src, fromSrc, stride, dst, fromDst, toDst, (int) mask, (int) offset, scale);
+			break;
+		case 2:
+			decode16(src, fromSrc, stride, dst, fromDst, toDst, (int) mask, (int) offset, scale, littleEndian);
+			break;
+		case 3:
+			decode24(src, fromSrc, stride, dst, fromDst, toDst, (int) mask, (int) offset, scale, littleEndian);
+			break;
+		default:
+			decode32(src, fromSrc, stride, dst, fromDst, toDst, mask, offset, scale, littleEndian);
+		}
+	}
+
+	/**
+	 * Selects the decoding loop of the sample size
+	 */
+	private static void decode(byte[] src, int fromSrc, int stride, int sampleSize, boolean signed, float[] dst,
+			int fromDst, int toDst, boolean normalize, boolean littleEndian) {
+		long mask = signed ? -1L : (1L << 8 * sampleSize) - 1;
+		long offset = signed || !normalize ? 0 : -FULL_SCALE[sampleSize];
+		float scale = normalize ? 1.0f / FULL_SCALE[sampleSize] : 1.0f;
+
+		switch (sampleSize) {
+		case 1:
+			decode8(src, fromSrc, stride, dst, fromDst, toDst, (int) mask, (int) offset, scale);
+			break;
+		case 2:
+			decode16(src, fromSrc, stride, dst, fromDst, toDst, (int) mask, (int) offset, scale, littleEndian);
+			break;
+		case 3:
+			decode24(src, fromSrc, stride, dst, fromDst, toDst, (int) mask, (int) offset, scale, littleEndian);
+			break;
+		default:
+			decode32(src, fromSrc, stride, dst, fromDst, toDst, mask, offset, scale, littleEndian);
+		}
+	}
+
+	/**
+	 * Selects the encoding loop of the sample size
+	 */
+	private static void encode(double[] src, int fromSrc, int toSrc, byte[] dst, int fromDst, int stride, int sampleSize,
+			boolean signed, boolean normalized, Dither dither, boolean littleEndian) {
+		double fullScale = FULL_SCALE[sampleSize];
+		double scale = normalized ? fullScale : 1.0;
+		double bias = signed || normalized ? 0 : -fullScale;
+		int flip = signed ? 0 : (int) FULL_SCALE[sampleSize];
+		long seed = dither == null ? 1 : dither.seed;
+		double amplitude = dither == null ? 0 : TRIANGULAR_SCALE;
+
+		switch (sampleSize) {
+		case 1:
+			seed = encode8(src, fromSrc, toSrc, dst, fromDst, stride, scale, bias, fullScale, flip, seed, amplitude);
+			break;
+		case 2:
+			seed = encode16(src, fromSrc, toSrc, dst, fromDst, stride, scale, bias, fullScale, flip, seed, amplitude,
+					littleEndian);
+			break;
+		case 3:
+			seed = encode24(src, fromSrc, toSrc, dst, fromDst, stride, scale, bias, fullScale, flip, seed, amplitude,
+					littleEndian);
+			break;
+		default:
+			seed = encode32(src, fromSrc, toSrc, dst, fromDst, stride, scale, bias, fullScale, flip, seed, amplitude,
+					littleEndian);
+		}
+
+		if (dither != null) {
+			dither.seed = seed;
+		}
+	}
+
+	/**
+	 * Selects the encoding loop of the sample size
+	 */
+	private static void encode(float[] src, int fromSrc, int toSrc, byte[] dst, int fromDst, int stride, int sampleSize,
+			boolean signed, boolean normalized, Dither dither, boolean littleEndian) {
+		double fullScale = FULL_SCALE[sampleSize];
+		double scale = normalized ? fullScale : 1.0;
+		double bias = signed || normalized ? 0 : -fullScale;
+		int flip = signed ? 0 : (int) FULL_SCALE[sampleSize];
+		long seed = dither == null ? 1 : dither.seed;
+		double amplitude = dither == null ? 0 : TRIANGULAR_SCALE;
+
+		switch (sampleSize) {
+		case 1:
+			seed = encode8(src, fromSrc, toSrc, dst, fromDst, stride, scale, bias, fullScale, flip, seed, amplitude);
+			break;
+		case 2:
+			seed = encode16(src, fromSrc, toSrc, dst, fromDst, stride, scale, bias, fullScale, flip, seed, amplitude,
+					littleEndian);
+			break;
+		case 3:
+			seed = encode24(src, fromSrc, toSrc, dst, fromDst, stride, scale, bias, fullScale, flip, seed, amplitude,
+					littleEndian);
+			break;
+		default:
+			seed = encode32(src, fromSrc, toSrc, dst, fromDst, stride, scale, bias, fullScale, flip, seed, amplitude,
+					littleEndian);
+		}
+
+		if (dither != null) {
+			dither.seed = seed;
+		}
+	}
+
+	/*
+	 * Decoding loops, one per sample size. The stride is the distance in bytes
+	 * between two consecutive samples of dst.
+	 * 
+	 * Known limitation: for 1, 2 and 4 bytes samples these loops run about as
+	 * fast as ByteConverter.toValue per sample, which does the same
+	 * VarHandle loads, since the JIT does not vectorize a loop with a
+	 * variable stride nor the byte swaps. Only 3 bytes samples gain, 3 to 4
+	 * times, from the single 4 bytes load. See ByteConverterSampleBenchmark.
+	 */
+	private static void decode8(byte[] src, int fromSrc, int stride, double[] dst, int fromDst, int toDst, int mask,
+			int offset, double scale) {
+		for (int i = fromDst, j = fromSrc; i < toDst; i++, j += stride) {
+			dst[i] = ((src[j] & mask) + offset) * scale;
+		}
+	}
+
+	private static void decode16(byte[] src, int fromSrc, int stride, double[] dst, int fromDst, int toDst, int mask,
+			int offset, double scale, boolean littleEndian) {
+		if (littleEndian) {
+			for (int i = fromDst, j = fromSrc; i < toDst; i++, j += stride) {
+				dst[i] = (((short) SHORT_MSB_FIRST.get(src, j) & mask) + offset) * scale;
+			}
+		} else {
+			for (int i = fromDst, j = fromSrc; i < toDst; i++, j += stride) {
+				dst[i] = (((short) SHORT_LSB_FIRST.get(src, j) & mask) + offset) * scale;
+			}
+		}
+	}
+
+	private static void decode24(byte[] src, int fromSrc, int stride, double[] dst, int fromDst, int toDst, int mask,
+			int offset, double scale, boolean littleEndian) {
+		// Every sample is read with a 4 bytes load and shifted, except the
+		// last one when there is no byte after it
+		int last = toDst > fromDst && fromSrc + (toDst - fromDst - 1) * stride + 4 > src.length ? toDst - 1 : toDst;
+		int i = fromDst;
+		int j = fromSrc;
+
+		if (littleEndian) {
+			for (; i < last; i++, j += stride) {
+				dst[i] = ((((int) INT_MSB_FIRST.get(src, j) >> 8) & mask) + offset) * scale;
+			}
+		} else {
+			for (; i < last; i++, j += stride) {
+				dst[i] = ((((int) INT_LSB_FIRST.get(src, j) << 8 >> 8) & mask) + offset) * scale;
+			}
+		}
+
+		if (i < toDst) {
+			int value = littleEndian ? (src[j] << 16) | ((src[j + 1] & 0xFF) << 8) | (src[j + 2] & 0xFF)
+					: (src[j + 2] << 16) | ((src[j + 1] & 0xFF) << 8) | (src[j] & 0xFF);
+			dst[i] = ((value & mask) + offset) * scale;
+		}
+	}
+
+	private static void decode32(byte[] src, int fromSrc, int stride, double[] dst, int fromDst, int toDst, long mask,
+			long offset, double scale, boolean littleEndian) {
+		if (littleEndian) {
+			for (int i = fromDst, j = fromSrc; i < toDst; i++, j += stride) {
+				dst[i] = (((int) INT_MSB_FIRST.get(src, j) & mask) + offset) * scale;
+			}
+		} else {
+			for (int i = fromDst, j = fromSrc; i < toDst; i++, j += stride) {
+				dst[i] = (((int) INT_LSB_FIRST.get(src, j) & mask) + offset) * scale;
+			}
+		}
+	}
+
+	private static void decode8(byte[] src, int fromSrc, int stride, float[] dst, int fromDst, int toDst, int mask,
+			int offset, float scale) {
+		for (int i = fromDst, j = fromSrc; i < toDst; i++, j += stride) {
+			dst[i] = ((src[j] & mask) + offset) * scale;
+		}
+	}
+
+	private static void decode16(byte[] src, int fromSrc, int stride, float[] dst, int fromDst, int toDst, int mask,
+			int offset, float scale, boolean littleEndian) {
+		if (littleEndian) {
+			for (int i = fromDst, j = fromSrc; i < toDst; i++, j += stride) {
+				dst[i] = (((short) SHORT_MSB_FIRST.get(src, j) & mask) + offset) * scale;
+			}
+		} else {
+			for (int i = fromDst, j = fromSrc; i < toDst; i++, j += stride) {
+				dst[i] = (((short) SHORT_LSB_FIRST.get(src, j) & mask) + offset) * scale;
+			}
+		}
+	}
+
+	private static void decode24(byte[] src, int fromSrc, int stride, float[] dst, int fromDst, int toDst, int mask,
+			int offset, float scale, boolean littleEndian) {
+		// Every sample is read with a 4 bytes load and shifted, except the
+		// last one when there is no byte after it
+		int last = toDst > fromDst && fromSrc + (toDst - fromDst - 1) * stride + 4 > src.length ? toDst - 1 : toDst;
+		int i = fromDst;
+		int j = fromSrc;
+
+		if (littleEndian) {
+			for (; i < last; i++, j += stride) {
+				dst[i] = ((((int) INT_MSB_FIRST.get(src, j) >> 8) & mask) + offset) * scale;
+			}
+		} else {
+			for (; i < last; i++, j += stride) {
+				dst[i] = ((((int) INT_LSB_FIRST.get(src, j) << 8 >> 8) & mask) + offset) * scale;
+			}
+		}
+
+		if (i < toDst) {
+			int value = littleEndian ? (src[j] << 16) | ((src[j + 1] & 0xFF) << 8) | (src[j + 2] & 0xFF)
+					: (src[j + 2] << 16) | ((src[j + 1] & 0xFF) << 8) | (src[j] & 0xFF);
+			dst[i] = ((value & mask) + offset) * scale;
+		}
+	}
+
+	private static void decode32(byte[] src, int fromSrc, int stride, float[] dst, int fromDst, int toDst, long mask,
+			long offset, float scale, boolean littleEndian) {
+		if (littleEndian) {
+			for (int i = fromDst, j = fromSrc; i < toDst; i++, j += stride) {
+				dst[i] = (((int) INT_MSB_FIRST.get(src, j) & mask) + offset) * scale;
+			}
+		} else {
+			for (int i = fromDst, j = fromSrc; i < toDst; i++, j += stride) {
+				dst[i] = (((int) INT_LSB_FIRST.get(src, j) & mask) + offset) * scale;
+			}
+		}
+	}
+
+	/*
+	 * Encoding loops, one per sample size. The stride is the distance in bytes
+	 * between two consecutive samples of src. The dither generator runs on
+	 * every sample, with a zero amplitude when there is no dither, so the
+	 * loops have no branches besides the clipping.
+	 */
+	private static long encode8(double[] src, int fromSrc, int toSrc, byte[] dst, int fromDst, int stride, double scale,
+			double bias, double fullScale, int flip, long seed, double amplitude) {
+		for (int i = fromSrc, j = fromDst; i < toSrc; i++, j += stride) {
+			seed = next(seed);
+			dst[j] = (byte) quantize(src[i] * scale + bias + triangular(seed) * amplitude, fullScale, flip);
+		}
+		return seed;
+	}
+
+	private static long encode16(double[] src, int fromSrc, int toSrc, byte[] dst, int fromDst, int stride,
+			double scale, double bias, double fullScale, int flip, long seed, double amplitude, boolean littleEndian) {
+		if (littleEndian) {
+			for (int i = fromSrc, j = fromDst; i < toSrc; i++, j += stride) {
+				seed = next(seed);
+				SHORT_MSB_FIRST.set(dst, j, (short) quantize(src[i] * scale + bias + triangular(seed) * amplitude, fullScale, flip));
+			}
+		} else {
+			for (int i = fromSrc, j = fromDst; i < toSrc; i++, j += stride) {
+				seed = next(seed);
+				SHORT_LSB_FIRST.set(dst, j, (short) quantize(src[i] * scale + bias + triangular(seed) * amplitude, fullScale, flip));
+			}
+		}
+		return seed;
+	}
+
+	private static long encode24(double[] src, int fromSrc, int toSrc, byte[] dst, int fromDst, int stride,
+			double scale, double bias, double fullScale, int flip, long seed, double amplitude, boolean littleEndian) {
+		int first = littleEndian ? 2 : 0;
+		int last = 2 - first;
+
+		for (int i = fromSrc, j = fromDst; i < toSrc; i++, j += stride) {
+			seed = next(seed);
+			int value = quantize(src[i] * scale + bias + triangular(seed) * amplitude, fullScale, flip);
+			dst[j + first] = (byte) value;
+			dst[j + 1] = (byte) (value >> 8);
+			dst[j + last] = (byte) (value >> 16);
+		}
+		return seed;
+	}
+
+	private static long encode32(double[] src, int fromSrc, int toSrc, byte[] dst, int fromDst, int stride,
+			double scale, double bias, double fullScale, int flip, long seed, double amplitude, boolean littleEndian) {
+		if (littleEndian) {
+			for (int i = fromSrc, j = fromDst; i < toSrc; i++, j += stride) {
+				seed = next(seed);
+				INT_MSB_FIRST.set(dst, j, quantize(src[i] * scale + bias + triangular(seed) * amplitude, fullScale, flip));
+			}
+		} else {
+			for (int i = fromSrc, j = fromDst; i < toSrc; i++, j += stride) {
+				seed = next(seed);
+				INT_LSB_FIRST.set(dst, j, quantize(src[i] * scale + bias + triangular(seed) * amplitude, fullScale, flip));
+			}
+		}
+		return seed;
+	}
+
+	private static long encode8(float[] src, int fromSrc, int toSrc, byte[] dst, int fromDst, int stride, double scale,
+			double bias, double fullScale, int flip, long seed, double amplitude) {
+		for (int i = fromSrc, j = fromDst; i < toSrc; i++, j += stride) {
+			seed = next(seed);
+			dst[j] = (byte) quantize(src[i] * scale + bias + triangular(seed) * amplitude, fullScale, flip);
+		}
+		return seed;
+	}
+
+	private static long encode16(float[] src, int fromSrc, int toSrc, byte[] dst, int fromDst, int stride,
+			double scale, double bias, double fullScale, int flip, long seed, double amplitude, boolean littleEndian) {
+		if (littleEndian) {
+			for (int i = fromSrc, j = fromDst; i < toSrc; i++, j += stride) {
+				seed = next(seed);
+				SHORT_MSB_FIRST.set(dst, j, (short) quantize(src[i] * scale + bias + triangular(seed) * amplitude, fullScale, flip));
+			}
+		} else {
+			for (int i = fromSrc, j = fromDst; i < toSrc; i++, j += stride) {
+				seed = next(seed);
+				SHORT_LSB_FIRST.set(dst, j, (short) quantize(src[i] * scale + bias + triangular(seed) * amplitude, fullScale, flip));
+			}
+		}
+		return seed;
+	}
+
+	private static long encode24(float[] src, int fromSrc, int toSrc, byte[] dst, int fromDst, int stride,
+			double scale, double bias, double fullScale, int flip, long seed, double amplitude, boolean littleEndian) {
+		int first = littleEndian ? 2 : 0;
+		int last = 2 - first;
+
+		for (int i = fromSrc, j = fromDst; i < toSrc; i++, j += stride) {
+			seed = next(seed);
+			int value = quantize(src[i] * scale + bias + triangular(seed) * amplitude, fullScale, flip);
+			dst[j + first] = (byte) value;
+			dst[j + 1] = (byte) (value >> 8);
+			dst[j + last] = (byte) (value >> 16);
+		}
+		return seed;
+	}
+
+	private static long encode32(float[] src, int fromSrc, int toSrc, byte[] dst, int fromDst, int stride,
+			double scale, double bias, double fullScale, int flip, long seed, double amplitude, boolean littleEndian) {
+		if (littleEndian) {
+			for (int i = fromSrc, j = fromDst; i < toSrc; i++, j += stride) {
+				seed = next(seed);
+				INT_MSB_FIRST.set(dst, j, quantize(src[i] * scale + bias + triangular(seed) * amplitude, fullScale, flip));
+			}
+		} else {
+			for (int i = fromSrc, j = fromDst; i < toSrc; i++, j += stride) {
+				seed = next(seed);
+				INT_LSB_FIRST.set(dst, j, quantize(src[i] * scale + bias + triangular(seed) * amplitude, fullScale, flip));
+			}
+		}
+		return seed;
+	}
+
+	/**
+	 * Advances a xorshift generator
+	 * 
+	 * @param seed
+	 *            The current state, never 0
+	 * @return The next state
+	 */
+	private static long next(long seed) {
+		seed ^= seed << 13;
+		seed ^= seed >>> 7;
+		return seed ^ (seed << 17);
+	}
+
+	/**
+	 * Returns a triangular distributed value between -2^32 and 2^32, as the sum
+	 * of the two uniform halves of the state
+	 * 
+	 * @param seed
+	 *            The generator state
+	 * @return The triangular value
+	 */
+	private static double triangular(long seed) {
+		return (long) (int) seed + (int) (seed >>> 32);
+	}
+
+	/**
+	 * Rounds and clips a value to a signed sample
+	 * 
+	 * @param value
+	 *            The value in sample units
+	 * @param fullScale
+	 *            The magnitude of the most negative sample
+	 * @param flip
+	 *            The sign bit to flip for offset binary samples, or 0
+	 * @return The sample
+	 */
+	private static int quantize(double value, double fullScale, int flip) {
+		return (int) Math.floor(Math.min(Math.max(value, -fullScale), fullScale - 1) + 0.5) ^ flip;
+	}
+
+	/**
+	 * Checks that the sample size is supported
+	 * 
+	 * @param sampleSize
+	 *            The size of the sample
+	 */
+	private static void checkSampleSize(int sampleSize) {
+		if (sampleSize < 1 || sampleSize > 4) {
+			throw new IllegalArgumentException("Unsupported sample size: " + sampleSize);
+		}
+	}
+
+	/**
+	 * Checks that every plane is mapped to an existing channel
+	 * 
+	 * @param channels
+	 *            The number of channels per frame
+	 * @param selectedChannels
+	 *            The channel of each plane, or null for every channel
+	 * @param planes
+	 *            The number of planes
+	 */
+	private static void checkChannels(int channels, int[] selectedChannels, int planes) {
+		if (selectedChannels == null) {
+			if (planes != channels) {
+				throw new IllegalArgumentException("Expected " + channels + " planes, found: " + planes);
+			}
+			return;
+		}
+
+		if (selectedChannels.length != planes) {
+			throw new IllegalArgumentException("Expected " + selectedChannels.length + " planes, found: " + planes);
+		}
+
+		for (int i = 0; i < selectedChannels.length; i++) {
+			if (selectedChannels[i] < 0 || selectedChannels[i] >= channels) {
+				throw new IllegalArgumentException("Bad channel: " + selectedChannels[i] + " of " + channels);
+			}
+		}
+	}
+
+	/**
+	 * Checks that {@code length} bytes can be accessed from {@code index}
+	 * 
+	 * @param bytes
+	 *            The raw bytes
+	 * @param index
+	 *            The initial position
+	 * @param length
+	 *            The number of bytes to access
+	 */
+	private static void checkBounds(byte[] bytes, int index, int length) {
+		int end = index + length;
+
+		if (index < 0 || end > bytes.length) {
+			throw new ArrayIndexOutOfBoundsException("array length: " + bytes.length + ", index: " + end);
+		}
+	}
+
+}
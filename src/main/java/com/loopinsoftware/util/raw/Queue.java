@@ -16,8 +16,11 @@
 package com.loopinsoftware.util.raw;
 
 import com.loopinsoftware.util.event.DataListener;
+import com.loopinsoftware.util.event.StreamListener;
+import com.loopinsoftware.util.time.StreamMeter;
 
 import java.util.ArrayList;
+import java.util.zip.Checksum;
 
 /**
  * This class encapsulates a raw byte queue for handling byte streaming. It stores data in a ring
@@ -55,6 +58,26 @@ public class Queue {
      * The list of listeners
      */
     private ArrayList<DataListener> dataListeners;
+    /**
+     * The listeners of the stored and removed bytes
+     */
+    private final ArrayList<StreamListener> streamListeners = new ArrayList<StreamListener>();
+    /**
+     * The checksum updated with every stored byte, if any
+     */
+    private Checksum addedChecksum;
+    /**
+     * The checksum updated with every popped or skipped byte, if any
+     */
+    private Checksum removedChecksum;
+    /**
+     * The meter marked with every insertion, if any
+     */
+    private StreamMeter addedMeter;
+    /**
+     * The meter marked with every pop or skip, if any
+     */
+    private StreamMeter removedMeter;
 
     /**
      * Creates a new RawQueue with a specified {@code capacity}
@@ -213,6 +236,7 @@ public class Queue {
         }
 
         boolean wasFull = isFull();
+        int firstByte = srcFrom;
 
         // Ensure that no data is overwritten
         if (!overwriteOldData) {
@@ -224,11 +248,19 @@ public class Queue {
         }
 
         // Data overflow
-        if (src.length > capacity) {
+        if (numberOfBytesToRead > capacity) {
+            fireOnRemoved(size);
             push(src, srcFrom, srcTo, rawRingData, capacity);
+            if (addedChecksum != null) {
+                addedChecksum.update(src, srcTo - capacity, capacity);
+            }
+            if (addedMeter != null) {
+                addedMeter.mark(capacity);
+            }
             head = 0;
             tail = 0;
             size = capacity;
+            fireOnAdded(src, srcTo - capacity, srcTo);
             if (!wasFull && isFull()) {
                 fireOnFull();
             }
@@ -243,7 +275,7 @@ public class Queue {
             System.arraycopy(src, srcFrom, rawRingData, tail, lastData);
             srcFrom += lastData;
             tail = (tail + lastData) % capacity;
-            lastData = srcTo - lastData;
+            lastData = numberOfBytesToRead - lastData;
         }
 
         System.arraycopy(src, srcFrom, rawRingData, tail, lastData);
@@ -253,9 +285,18 @@ public class Queue {
         if (freeSpace < numberOfBytesToRead) {
             int headOffset = numberOfBytesToRead - freeSpace;
             head = (head + headOffset) % capacity;
+            fireOnRemoved(headOffset);
         }
 
         size = Math.min(capacity, size + numberOfBytesToRead);
+        fireOnAdded(src, firstByte, firstByte + numberOfBytesToRead);
+
+        if (addedChecksum != null) {
+            addedChecksum.update(src, firstByte, numberOfBytesToRead);
+        }
+        if (addedMeter != null) {
+            addedMeter.mark(numberOfBytesToRead);
+        }
 
         if (!wasFull && isFull()) {
             fireOnFull();
@@ -319,6 +360,9 @@ public class Queue {
         }
 
         numberOfElements = Math.min(numberOfElements, size);
+        if (numberOfElements == 0) {
+            return 0;
+        }
 
         int lastData = capacity - head;
         int endIndex = (head + numberOfElements) % capacity;
@@ -326,7 +370,7 @@ public class Queue {
         // If ringed, a split copy is needed
         if (head >= endIndex) {
             System.arraycopy(rawRingData, head, dst, dstOffset, lastData);
-            System.arraycopy(rawRingData, 0, dst, lastData, endIndex);
+            System.arraycopy(rawRingData, 0, dst, dstOffset + lastData, endIndex);
         } else {
             System.arraycopy(rawRingData, head, dst, dstOffset, numberOfElements);
         }
@@ -356,9 +400,17 @@ public class Queue {
     public int pop(byte[] dst, int numberOfElements, int dstOffset) {
         numberOfElements = peek(dst, numberOfElements, dstOffset);
 
+        if (removedChecksum != null) {
+            removedChecksum.update(dst, dstOffset, numberOfElements);
+        }
+        if (removedMeter != null && numberOfElements > 0) {
+            removedMeter.mark(numberOfElements);
+        }
+
         boolean wasEmpty = isEmpty();
         size -= numberOfElements;
         head = (head + numberOfElements) % capacity;
+        fireOnRemoved(numberOfElements);
 
         if (!wasEmpty && isEmpty()) {
             fireOnEmpty();
@@ -377,10 +429,247 @@ public class Queue {
         return pop(dst, dst.length);
     }
 
+    /**
+     * Returns a stored byte without removing it
+     *
+     * @param index The position from the first element
+     * @return The byte at the specified position
+     */
+    public byte getByte(int index) {
+        if (index < 0 || index >= size) {
+            throw new ArrayIndexOutOfBoundsException("size: " + size + ", index: " + index);
+        }
+
+        return rawRingData[(head + index) % capacity];
+    }
+
+    /**
+     * Removes the first bytes from the queue without copying them
+     *
+     * @param numberOfElements The number of elements to remove
+     * @return The number of bytes removed
+     */
+    public int skip(int numberOfElements) {
+        if (numberOfElements < 0) {
+            throw new ArrayIndexOutOfBoundsException(numberOfElements);
+        }
+
+        numberOfElements = Math.min(numberOfElements, size);
+
+        if (removedChecksum != null) {
+            updateChecksum(removedChecksum, 0, numberOfElements);
+        }
+        if (removedMeter != null && numberOfElements > 0) {
+            removedMeter.mark(numberOfElements);
+        }
+
+        boolean wasEmpty = isEmpty();
+        size -= numberOfElements;
+        head = (head + numberOfElements) % capacity;
+        fireOnRemoved(numberOfElements);
+
+        if (!wasEmpty && isEmpty()) {
+            fireOnEmpty();
+        }
+
+        return numberOfElements;
+    }
+
+    /**
+     * Reverses the byte order of every {@code width} bytes value stored in the queue, in place.
+     * Values are taken from the first element, so the value split by the ring bound, if any, is
+     * swapped too.
+     *
+     * @param width The size of each value: 2, 4 or 8 bytes
+     */
+    public void swapBytes(int width) {
+        if (size % width != 0) {
+            throw new IllegalArgumentException("size:" + size + " is not a multiple of width:" + width);
+        }
+
+        // The stored data from head up to the right bound
+        int firstPart = Math.min(size, capacity - head);
+        int straddle = firstPart % width;
+        int aligned = firstPart - straddle;
+        int secondPartStart = 0;
+
+        ByteConverter.swapBytes(rawRingData, head, head + aligned, width);
+
+        // Reverse the value split by the ring bound byte by byte
+        if (straddle > 0) {
+            int start = head + aligned;
+            for (int i = 0, j = width - 1; i < j; i++, j--) {
+                int low = (start + i) % capacity;
+                int high = (start + j) % capacity;
+                byte aux = rawRingData[low];
+                rawRingData[low] = rawRingData[high];
+                rawRingData[high] = aux;
+            }
+            secondPartStart = width - straddle;
+        }
+
+        ByteConverter.swapBytes(rawRingData, secondPartStart, size - firstPart, width);
+
+        // The stored bytes have been replaced
+        fireOnRemoved(size);
+        fireOnAdded(0, size);
+    }
+
+    /**
+     * Returns the ring array, so classes of this package can read the stored data in place. Stored
+     * bytes are split in two regions when they wrap around the end of the array.
+     *
+     * @return The ring array
+     */
+    byte[] getRingData() {
+        return rawRingData;
+    }
+
+    /**
+     * Returns the position in the ring array of a stored byte
+     *
+     * @param index The position from the first element
+     * @return The index in the ring array
+     */
+    int getRingIndex(int index) {
+        return (head + index) % capacity;
+    }
+
+    /**
+     * Adds the bytes that a class of this package has written in place into the free space of the
+     * ring, from {@code getRingIndex(getSize())} on and wrapping around the end of the array
+     *
+     * @param bytes The number of bytes written, not above the free space
+     */
+    void addRingData(int bytes) {
+        if (bytes < 0 || bytes > capacity - size) {
+            throw new IllegalArgumentException("Bad number of bytes: " + bytes + ", free space: " + (capacity - size));
+        }
+        if (bytes == 0) {
+            return;
+        }
+
+        int from = size;
+
+        tail = (tail + bytes) % capacity;
+        size += bytes;
+        fireOnAdded(from, size);
+
+        if (addedChecksum != null) {
+            updateChecksum(addedChecksum, from, size);
+        }
+        if (addedMeter != null) {
+            addedMeter.mark(bytes);
+        }
+
+        if (isFull()) {
+            fireOnFull();
+        }
+    }
+
+    /**
+     * Updates a checksum with stored bytes, in place from both regions of the ring
+     *
+     * @param checksum The checksum to update
+     * @param from     The low position from the first element
+     * @param to       The high position from the first element
+     */
+    public void updateChecksum(Checksum checksum, int from, int to) {
+        if (from < 0 || from > to || to > size) {
+            throw new ArrayIndexOutOfBoundsException("size: " + size + ", from: " + from + ", to: " + to);
+        }
+
+        if (from == to) {
+            return;
+        }
+
+        int start = getRingIndex(from);
+        int firstPart = Math.min(to - from, capacity - start);
+
+        checksum.update(rawRingData, start, firstPart);
+        checksum.update(rawRingData, 0, to - from - firstPart);
+    }
+
+    /**
+     * Sets the checksum to update with every byte stored from now on. Bytes discarded because the
+     * queue is full are not included.
+     *
+     * @param addedChecksum The checksum, or null to stop updating it
+     */
+    public void setAddedChecksum(Checksum addedChecksum) {
+        this.addedChecksum = addedChecksum;
+    }
+
+    /**
+     * Returns the checksum updated with every stored byte
+     *
+     * @return The checksum, or null if none is set
+     */
+    public Checksum getAddedChecksum() {
+        return addedChecksum;
+    }
+
+    /**
+     * Sets the checksum to update with every byte popped or skipped from now on. Old bytes
+     * overwritten by a push are not included.
+     *
+     * @param removedChecksum The checksum, or null to stop updating it
+     */
+    public void setRemovedChecksum(Checksum removedChecksum) {
+        this.removedChecksum = removedChecksum;
+    }
+
+    /**
+     * Returns the checksum updated with every popped or skipped byte
+     *
+     * @return The checksum, or null if none is set
+     */
+    public Checksum getRemovedChecksum() {
+        return removedChecksum;
+    }
+
+    /**
+     * Sets the meter to mark with the bytes of every insertion from now on. Marking only adds to
+     * striped counters, so it is safe and cheap on the push path of a {@link BlockingQueue}.
+     *
+     * @param addedMeter The meter, or null to stop marking it
+     */
+    public void setAddedMeter(StreamMeter addedMeter) {
+        this.addedMeter = addedMeter;
+    }
+
+    /**
+     * Returns the meter marked with every insertion
+     *
+     * @return The meter, or null if none is set
+     */
+    public StreamMeter getAddedMeter() {
+        return addedMeter;
+    }
+
+    /**
+     * Sets the meter to mark with the bytes of every pop or skip from now on
+     *
+     * @param removedMeter The meter, or null to stop marking it
+     */
+    public void setRemovedMeter(StreamMeter removedMeter) {
+        this.removedMeter = removedMeter;
+    }
+
+    /**
+     * Returns the meter marked with every pop or skip
+     *
+     * @return The meter, or null if none is set
+     */
+    public StreamMeter getRemovedMeter() {
+        return removedMeter;
+    }
+
     /**
      * Restores the initial values for the indexes
      */
     public void clear() {
+        fireOnRemoved(size);
         this.head = 0;
         this.tail = 0;
         this.size = 0;
@@ -404,8 +693,10 @@ public class Queue {
             throw new ArrayIndexOutOfBoundsException("size:" + size + " can't be greater than capacity:" + data.length);
         }
 
+        fireOnRemoved(this.size);
         this.capacity = data.length;
         this.initialSize = this.size = size;
+        this.head = 0;
         this.tail = size;
 
         if (copy) {
@@ -417,6 +708,7 @@ public class Queue {
             this.rawRingData = data;
         }
         // this.rawData = new byte[data.length];
+        fireOnAdded(0, size);
     }
 
     /**
@@ -475,6 +767,69 @@ public class Queue {
         return dataListeners.remove(dataListener);
     }
 
+    /**
+     * Adds a new streamListener, told about every byte stored and removed from now on
+     *
+     * @param streamListener The StreamListener to add
+     * @return true (as specified by Collection.add)
+     */
+    public boolean addStreamListener(StreamListener streamListener) {
+        return streamListeners.add(streamListener);
+    }
+
+    /**
+     * Removes a streamListener from the listener list
+     *
+     * @param streamListener The StreamListener to remove
+     * @return true if the element is removed, false otherwise
+     */
+    public boolean removeStreamListener(StreamListener streamListener) {
+        return streamListeners.remove(streamListener);
+    }
+
+    /**
+     * Fires the onAdded() method for each streamListener
+     *
+     * @param src  The stored bytes
+     * @param from The low index in src
+     * @param to   The high index in src
+     */
+    private void fireOnAdded(byte[] src, int from, int to) {
+        for (int i = 0; i < streamListeners.size() && from < to; i++) {
+            streamListeners.get(i).onAdded(src, from, to);
+        }
+    }
+
+    /**
+     * Fires the onAdded() method for each streamListener with stored bytes, from both regions of
+     * the ring
+     *
+     * @param from The low position from the first element
+     * @param to   The high position from the first element
+     */
+    private void fireOnAdded(int from, int to) {
+        if (streamListeners.isEmpty() || from == to) {
+            return;
+        }
+
+        int start = getRingIndex(from);
+        int firstPart = Math.min(to - from, capacity - start);
+
+        fireOnAdded(rawRingData, start, start + firstPart);
+        fireOnAdded(rawRingData, 0, to - from - firstPart);
+    }
+
+    /**
+     * Fires the onRemoved() method for each streamListener
+     *
+     * @param bytes The number of bytes removed from the start
+     */
+    private void fireOnRemoved(int bytes) {
+        for (int i = 0; i < streamListeners.size() && bytes > 0; i++) {
+            streamListeners.get(i).onRemoved(bytes);
+        }
+    }
+
     /**
      * Fires the onFull() method for each dataListener
      */
@@ -497,8 +852,10 @@ public class Queue {
      * Resets the intials bounds values, when the Queue was created
      */
     public void reset() {
+        fireOnRemoved(size);
         this.size = this.initialSize;
         this.tail = size;
         this.head = 0;
+        fireOnAdded(0, size);
     }
 }
@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.raw;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Antonio Vicente Martin
+ * 
+ *         This class describes a fixed layout binary record, such as a sensor
+ *         packet. Each field is declared once with its type, offset and byte
+ *         order and the returned {@link Field} is then used to read or write
+ *         it through a {@link RecordView}, so offsets are not computed by hand
+ *         at every call site.
+ * 
+ *         Fields may overlap, which allows unions. The littleEndian flag has
+ *         the same meaning as in {@link ByteConverter}.
+ */
+public class RecordLayout {
+
+	/**
+	 * This enum classifies the supported field types
+	 * 
+	 * @author Antonio Vicente Martin
+	 *
+	 */
+	public enum Type {
+		BYTE(1), SHORT(2), INT(4), LONG(8), FLOAT(4), DOUBLE(8);
+
+		private final int size;
+
+		private Type(int size) {
+			this.size = size;
+		}
+
+		/**
+		 * Returns the number of bytes of this type
+		 * 
+		 * @return The size in bytes
+		 */
+		public int getSize() {
+			return size;
+		}
+	}
+
+	/**
+	 * This class represents a compiled field of a layout
+	 * 
+	 * @author Antonio Vicente Martin
+	 *
+	 */
+	public static final class Field {
+
+		private final RecordLayout layout;
+		private final String name;
+		final Type type;
+		final int offset;
+		final boolean littleEndian;
+
+		private Field(RecordLayout layout, String name, Type type, int offset, boolean littleEndian) {
+			this.layout = layout;
+			this.name = name;
+			this.type = type;
+			this.offset = offset;
+			this.littleEndian = littleEndian;
+		}
+
+		/**
+		 * Returns the layout this field belongs to
+		 * 
+		 * @return The layout
+		 */
+		public RecordLayout getLayout() {
+			return layout;
+		}
+
+		/**
+		 * Returns the name of this field
+		 * 
+		 * @return The name
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * Returns the type of this field
+		 * 
+		 * @return The type
+		 */
+		public Type getType() {
+			return type;
+		}
+
+		/**
+		 * Returns the offset of this field from the start of the record
+		 * 
+		 * @return The offset in bytes
+		 */
+		public int getOffset() {
+			return offset;
+		}
+
+		/**
+		 * Returns the byte order of this field
+		 * 
+		 * @return The littleEndian flag
+		 */
+		public boolean isLittleEndian() {
+			return littleEndian;
+		}
+
+		@Override
+		public String toString() {
+			return name + " " + type + " @" + offset;
+		}
+	}
+
+	private final Map<String, Field> fieldsByName = new HashMap<String, Field>();
+	private final List<Field> fields = new ArrayList<Field>();
+
+	/**
+	 * The fixed size of a record, 0 if it is computed from the fields
+	 */
+	private final int fixedSize;
+	/**
+	 * The byte after the last field
+	 */
+	private int fieldsEnd;
+
+	/**
+	 * Builds a new layout whose size is the end of its last field
+	 */
+	public RecordLayout() {
+		this.fixedSize = 0;
+	}
+
+	/**
+	 * Builds a new layout with a fixed record size, which may include padding
+	 * 
+	 * @param size
+	 *            The number of bytes of a record
+	 */
+	public RecordLayout(int size) {
+		if (size < 1) {
+			throw new IllegalArgumentException("Bad record size: " + size);
+		}
+		this.fixedSize = size;
+	}
+
+	/**
+	 * Declares a new field
+	 * 
+	 * @param name
+	 *            The unique name of the field
+	 * @param type
+	 *            The field type
+	 * @param offset
+	 *            The position of the field from the start of the record
+	 * @param littleEndian
+	 *            The byte order, ignored for single byte fields
+	 * @return The field to be used with a {@link RecordView}
+	 */
+	public Field add(String name, Type type, int offset, boolean littleEndian) {
+		if (fieldsByName.containsKey(name)) {
+			throw new IllegalArgumentException("Duplicated field: " + name);
+		}
+		if (offset < 0 || (fixedSize > 0 && offset + type.getSize() > fixedSize)) {
+			throw new IllegalArgumentException("Field " + name + " does not fit in the record: " + offset);
+		}
+
+		Field field = new Field(this, name, type, offset, littleEndian);
+		fieldsByName.put(name, field);
+		fields.add(field);
+		fieldsEnd = Math.max(fieldsEnd, offset + type.getSize());
+
+		return field;
+	}
+
+	/**
+	 * Returns a field by name
+	 * 
+	 * @param name
+	 *            The field name
+	 * @return The field or null if it has not been declared
+	 */
+	public Field getField(String name) {
+		return fieldsByName.get(name);
+	}
+
+	/**
+	 * Returns all fields in declaration order
+	 * 
+	 * @return The fields
+	 */
+	public List<Field> getFields() {
+		return Collections.unmodifiableList(fields);
+	}
+
+	/**
+	 * Returns the number of bytes of a record, which is also the distance
+	 * between consecutive records
+	 * 
+	 * @return The record size
+	 */
+	public int getSize() {
+		return fixedSize > 0 ? fixedSize : fieldsEnd;
+	}
+
+}
@@ -0,0 +1,385 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.raw;
+
+import java.nio.ByteBuffer;
+
+import com.loopinsoftware.util.raw.RecordLayout.Field;
+
+/**
+ * @author Antonio Vicente Martin
+ * 
+ *         This class is a flyweight over the records of a {@link RecordLayout}.
+ *         It does not copy nor allocate anything, it only points to a window of
+ *         a byte array or a {@link ByteBuffer} and reads or writes the fields
+ *         in place. The same instance can be moved to another record with
+ *         {@link #wrap(byte[], int)} or slid across consecutive records:
+ * 
+ *         <pre>
+ *         view.wrap(data, from, to);
+ *         while (view.next()) {
+ *             sum += view.getInt(temperature);
+ *         }
+ *         </pre>
+ * 
+ *         The record is checked to fit in the source when the view is moved,
+ *         and every field access checks that the field lies inside the record
+ *         size the view was built with. Fields added to a growing layout
+ *         afterwards are rejected, build a new view to reach them.
+ */
+public class RecordView {
+
+	private final RecordLayout layout;
+	private final int size;
+
+	private byte[] array;
+	private ByteBuffer buffer;
+
+	/**
+	 * The first byte of the records window
+	 */
+	private int start;
+	/**
+	 * The first byte of the current record
+	 */
+	private int offset;
+	/**
+	 * The byte after the last one of the records window
+	 */
+	private int end;
+
+	/**
+	 * Builds a new view not pointing to any record
+	 * 
+	 * @param layout
+	 *            The layout of the records
+	 */
+	public RecordView(RecordLayout layout) {
+		if (layout.getSize() < 1) {
+			throw new IllegalArgumentException("The layout has no fields");
+		}
+		this.layout = layout;
+		this.size = layout.getSize();
+	}
+
+	/**
+	 * Points this view to a single record
+	 * 
+	 * @param data
+	 *            The raw bytes
+	 * @param index
+	 *            The first byte of the record
+	 * @return This view
+	 */
+	public RecordView wrap(byte[] data, int index) {
+		checkBounds(data.length, index, index + size);
+		this.array = data;
+		this.buffer = null;
+		this.start = index;
+		this.offset = index;
+		this.end = index + size;
+		return this;
+	}
+
+	/**
+	 * Points this view to a single record. Indexes are absolute, the position
+	 * of the buffer is not used nor modified.
+	 * 
+	 * @param data
+	 *            The raw bytes
+	 * @param index
+	 *            The first byte of the record
+	 * @return This view
+	 */
+	public RecordView wrap(ByteBuffer data, int index) {
+		checkBounds(data.limit(), index, index + size);
+		this.array = null;
+		this.buffer = data;
+		this.start = index;
+		this.offset = index;
+		this.end = index + size;
+		return this;
+	}
+
+	/**
+	 * Points this view before the first of consecutive records, call
+	 * {@link #next()} to move to it
+	 * 
+	 * @param data
+	 *            The raw bytes
+	 * @param from
+	 *            The first byte of the first record
+	 * @param to
+	 *            The byte after the last record
+	 * @return This view
+	 */
+	public RecordView wrap(byte[] data, int from, int to) {
+		checkBounds(data.length, from, to);
+		this.array = data;
+		this.buffer = null;
+		this.start = from;
+		this.offset = from - size;
+		this.end = to;
+		return this;
+	}
+
+	/**
+	 * Points this view before the first of consecutive records, call
+	 * {@link #next()} to move to it. Indexes are absolute.
+	 * 
+	 * @param data
+	 *            The raw bytes
+	 * @param from
+	 *            The first byte of the first record
+	 * @param to
+	 *            The byte after the last record
+	 * @return This view
+	 */
+	public RecordView wrap(ByteBuffer data, int from, int to) {
+		checkBounds(data.limit(), from, to);
+		this.array = null;
+		this.buffer = data;
+		this.start = from;
+		this.offset = from - size;
+		this.end = to;
+		return this;
+	}
+
+	/**
+	 * Moves this view to the next record
+	 * 
+	 * @return false if there are no more whole records
+	 */
+	public boolean next() {
+		if (end - offset < 2 * size) {
+			offset = end;
+			return false;
+		}
+		offset += size;
+		return true;
+	}
+
+	/**
+	 * Returns the first byte of the current record
+	 * 
+	 * @return The offset in the source
+	 */
+	public int getOffset() {
+		return offset;
+	}
+
+	/**
+	 * Returns the layout of the records
+	 * 
+	 * @return The layout
+	 */
+	public RecordLayout getLayout() {
+		return layout;
+	}
+
+	/**
+	 * Reads an integral field, sign extended
+	 * 
+	 * @param field
+	 *            The field
+	 * @return The value
+	 */
+	public long getLong(Field field) {
+		int index = index(field);
+
+		switch (field.type) {
+		case BYTE:
+			return array != null ? array[index] : buffer.get(index);
+		case SHORT:
+			return array != null ? ByteConverter.toShortValue(array, index, field.littleEndian)
+					: BufferConverter.toShortValue(buffer, index, field.littleEndian);
+		case INT:
+			return array != null ? ByteConverter.toIntValue(array, index, field.littleEndian)
+					: BufferConverter.toIntValue(buffer, index, field.littleEndian);
+		case LONG:
+			return array != null ? ByteConverter.toLongValue(array, index, field.littleEndian)
+					: BufferConverter.toLongValue(buffer, index, field.littleEndian);
+		default:
+			return (long) getDouble(field);
+		}
+	}
+
+	/**
+	 * Reads an integral field of up to 4 bytes, sign extended
+	 * 
+	 * @param field
+	 *            The field
+	 * @return The value
+	 */
+	public int getInt(Field field) {
+		if (field.type == RecordLayout.Type.LONG) {
+			throw new IllegalArgumentException("Field " + field.getName() + " does not fit in an int");
+		}
+		return (int) getLong(field);
+	}
+
+	/**
+	 * Reads a field as a double, integral fields are converted
+	 * 
+	 * @param field
+	 *            The field
+	 * @return The value
+	 */
+	public double getDouble(Field field) {
+		int index = index(field);
+
+		switch (field.type) {
+		case FLOAT:
+			return array != null ? ByteConverter.toFloatValue(array, index, field.littleEndian)
+					: BufferConverter.toFloatValue(buffer, index, field.littleEndian);
+		case DOUBLE:
+			return array != null ? ByteConverter.toDoubleValue(array, index, field.littleEndian)
+					: BufferConverter.toDoubleValue(buffer, index, field.littleEndian);
+		default:
+			return getLong(field);
+		}
+	}
+
+	/**
+	 * Reads a field as a float, integral fields are converted
+	 * 
+	 * @param field
+	 *            The field
+	 * @return The value
+	 */
+	public float getFloat(Field field) {
+		return (float) getDouble(field);
+	}
+
+	/**
+	 * Writes an integral field, truncating the value to its size. Floating
+	 * point fields are written converted.
+	 * 
+	 * @param field
+	 *            The field
+	 * @param value
+	 *            The value
+	 */
+	public void setLong(Field field, long value) {
+		int index = index(field);
+
+		switch (field.type) {
+		case BYTE:
+			if (array != null) {
+				array[index] = (byte) value;
+			} else {
+				buffer.put(index, (byte) value);
+			}
+			break;
+		case SHORT:
+			if (array != null) {
+				ByteConverter.toBytesArray((short) value, array, index, field.littleEndian);
+			} else {
+				BufferConverter.toBuffer((short) value, buffer, index, field.littleEndian);
+			}
+			break;
+		case INT:
+			if (array != null) {
+				ByteConverter.toBytesArray((int) value, array, index, field.littleEndian);
+			} else {
+				BufferConverter.toBuffer((int) value, buffer, index, field.littleEndian);
+			}
+			break;
+		case LONG:
+			if (array != null) {
+				ByteConverter.toBytesArray(value, array, index, field.littleEndian);
+			} else {
+				BufferConverter.toBuffer(value, buffer, index, field.littleEndian);
+			}
+			break;
+		default:
+			setDouble(field, value);
+		}
+	}
+
+	/**
+	 * Writes a floating point field. Integral fields are written rounded to
+	 * the nearest integer and truncated to their size.
+	 * 
+	 * @param field
+	 *            The field
+	 * @param value
+	 *            The value
+	 */
+	public void setDouble(Field field, double value) {
+		int index = index(field);
+
+		switch (field.type) {
+		case FLOAT:
+			if (array != null) {
+				ByteConverter.toBytesArray((float) value, array, index, field.littleEndian);
+			} else {
+				BufferConverter.toBuffer((float) value, buffer, index, field.littleEndian);
+			}
+			break;
+		case DOUBLE:
+			if (array != null) {
+				ByteConverter.toBytesArray(value, array, index, field.littleEndian);
+			} else {
+				BufferConverter.toBuffer(value, buffer, index, field.littleEndian);
+			}
+			break;
+		default:
+			setLong(field, Math.round(value));
+		}
+	}
+
+	/**
+	 * Returns the position of a field in the source
+	 * 
+	 * @param field
+	 *            The field
+	 * @return The index of its first byte
+	 */
+	private int index(Field field) {
+		if (field.getLayout() != layout) {
+			throw new IllegalArgumentException("Field " + field.getName() + " belongs to another layout");
+		}
+		if (array == null && buffer == null) {
+			throw new IllegalStateException("The view does not point to any record");
+		}
+		if (field.offset + field.type.getSize() > size) {
+			throw new IllegalArgumentException("Field " + field.getName() + " does not fit in records of " + size
+					+ " bytes");
+		}
+		if (offset < start || offset + size > end) {
+			throw new IllegalStateException("The view does not point to a whole record");
+		}
+		return offset + field.offset;
+	}
+
+	/**
+	 * Checks a range is inside the source
+	 * 
+	 * @param length
+	 *            The length of the source
+	 * @param from
+	 *            The low index
+	 * @param to
+	 *            The high index
+	 */
+	private static void checkBounds(int length, int from, int to) {
+		if (from < 0 || from > to || to > length) {
+			throw new IndexOutOfBoundsException("length: " + length + ", from: " + from + ", to: " + to);
+		}
+	}
+
+}
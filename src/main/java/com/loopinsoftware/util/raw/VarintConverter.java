@@ -0,0 +1,592 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.raw;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * @author Antonio Vicente Martin
+ * 
+ *         This class encodes and decodes variable length integers (unsigned
+ *         LEB128), where each byte holds 7 bits of the value, least
+ *         significant group first, and the high bit is set in every byte but
+ *         the last one. Signed values are ZigZag mapped first, so that small
+ *         negative numbers stay short.
+ * 
+ *         The bulk decoders read 8 bytes at a time and find the end of the
+ *         value from the continuation bits, so a varint of up to 8 bytes is
+ *         decoded with no loop and no data dependent branch.
+ */
+public class VarintConverter {
+
+	private static final VarHandle LONG_LSB_FIRST = MethodHandles.byteArrayViewVarHandle(long[].class,
+			ByteOrder.LITTLE_ENDIAN);
+
+	/**
+	 * The continuation bit of each byte of a word
+	 */
+	private static final long CONTINUATION_BITS = 0x8080808080808080L;
+
+	/**
+	 * The mask that keeps the first n bytes of a word, indexed by n
+	 */
+	private static final long[] KEEP_BYTES = { 0, 0xFFL, 0xFFFFL, 0xFFFFFFL, 0xFFFFFFFFL, 0xFFFFFFFFFFL,
+			0xFFFFFFFFFFFFL, 0xFFFFFFFFFFFFFFL, -1L };
+
+	/**
+	 * The maximum length of a 64 bits varint
+	 */
+	public static final int MAX_LENGTH = 10;
+
+	/**
+	 * Maps a signed value into an unsigned one: 0, -1, 1, -2... into 0, 1, 2,
+	 * 3...
+	 * 
+	 * @param value
+	 *            The signed value
+	 * @return The ZigZag value
+	 */
+	public static long zigZag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	/**
+	 * Maps a ZigZag value back into the signed one
+	 * 
+	 * @param value
+	 *            The ZigZag value
+	 * @return The signed value
+	 */
+	public static long unZigZag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	/**
+	 * Returns the number of bytes of the unsigned varint of a value
+	 * 
+	 * @param value
+	 *            The unsigned value
+	 * @return The encoded length, from 1 to 10 bytes
+	 */
+	public static int sizeOf(long value) {
+		// 1 byte per 7 significant bits, and at least one byte
+		return (70 - Long.numberOfLeadingZeros(value | 1)) / 7;
+	}
+
+	/**
+	 * Writes a value as a varint
+	 * 
+	 * @param value
+	 *            The value to write
+	 * @param signed
+	 *            Whether the value is ZigZag mapped first
+	 * @param dst
+	 *            The array of bytes to write in
+	 * @param index
+	 *            The initial position
+	 * @return The position after the written varint
+	 */
+	public static int encode(long value, boolean signed, byte[] dst, int index) {
+		long unsigned = signed ? zigZag(value) : value;
+
+		if (index < 0 || index + sizeOf(unsigned) > dst.length) {
+			throw new ArrayIndexOutOfBoundsException("array length: " + dst.length + ", index: " + index);
+		}
+
+		while ((unsigned & ~0x7FL) != 0) {
+			dst[index++] = (byte) (unsigned | 0x80);
+			unsigned >>>= 7;
+		}
+		dst[index++] = (byte) unsigned;
+
+		return index;
+	}
+
+	/**
+	 * Reads a varint. Use {@link #length(byte[], int)} to know where the next
+	 * one starts.
+	 * 
+	 * @param src
+	 *            The raw bytes
+	 * @param index
+	 *            The initial position
+	 * @param signed
+	 *            Whether the value was ZigZag mapped
+	 * @return The value
+	 */
+	public static long decode(byte[] src, int index, boolean signed) {
+		long value = 0;
+		int shift = 0;
+		byte current;
+
+		do {
+			if (shift >= 7 * MAX_LENGTH) {
+				throw new IllegalArgumentException("Malformed varint at index: " + index);
+			}
+			current = src[index++];
+			value |= (long) (current & 0x7F) << shift;
+			shift += 7;
+		} while (current < 0);
+
+		return signed ? unZigZag(value) : value;
+	}
+
+	/**
+	 * Returns the length of the varint stored at a position
+	 * 
+	 * @param src
+	 *            The raw bytes
+	 * @param index
+	 *            The initial position
+	 * @return The number of bytes of the varint
+	 */
+	public static int length(byte[] src, int index) {
+		int end = index;
+
+		while (src[end++] < 0) {
+			if (end - index >= MAX_LENGTH) {
+				throw new IllegalArgumentException("Malformed varint at index: " + index);
+			}
+		}
+
+		return end - index;
+	}
+
+	/**
+	 * Writes an array of values as consecutive varints
+	 * 
+	 * @param src
+	 *            The values to write
+	 * @param fromSrc
+	 *            The low index in src
+	 * @param toSrc
+	 *            The high index in src
+	 * @param signed
+	 *            Whether the values are ZigZag mapped first
+	 * @param dst
+	 *            The array of bytes to write in
+	 * @param fromDst
+	 *            The initial position in dst
+	 * @return The position after the last written varint
+	 */
+	public static int encodeArray(long[] src, int fromSrc, int toSrc, boolean signed, byte[] dst, int fromDst) {
+		for (int i = fromSrc; i < toSrc; i++) {
+			fromDst = encode(src[i], signed, dst, fromDst);
+		}
+		return fromDst;
+	}
+
+	/**
+	 * Writes an array of values as consecutive varints
+	 * 
+	 * @param src
+	 *            The values to write
+	 * @param fromSrc
+	 *            The low index in src
+	 * @param toSrc
+	 *            The high index in src
+	 * @param signed
+	 *            Whether the values are ZigZag mapped first
+	 * @param dst
+	 *            The array of bytes to write in
+	 * @param fromDst
+	 *            The initial position in dst
+	 * @return The position after the last written varint
+	 */
+	public static int encodeArray(int[] src, int fromSrc, int toSrc, boolean signed, byte[] dst, int fromDst) {
+		for (int i = fromSrc; i < toSrc; i++) {
+			// Unsigned ints are widened without sign extension
+			fromDst = encode(signed ? src[i] : src[i] & 0xFFFFFFFFL, signed, dst, fromDst);
+		}
+		return fromDst;
+	}
+
+	/**
+	 * Reads consecutive varints into an array of values
+	 * 
+	 * @param src
+	 *            The raw bytes
+	 * @param fromSrc
+	 *            The initial position in src
+	 * @param dst
+	 *            The destination array
+	 * @param fromDst
+	 *            The low index in dst
+	 * @param toDst
+	 *            The high index in dst
+	 * @param signed
+	 *            Whether the values were ZigZag mapped
+	 * @return The position after the last read varint
+	 */
+	public static int decodeArray(byte[] src, int fromSrc, long[] dst, int fromDst, int toDst, boolean signed) {
+		int index = fromSrc;
+		// The last position where a whole word can be read
+		int lastWord = src.length - 8;
+
+		for (int i = fromDst; i < toDst; i++) {
+			long value;
+
+			if (index <= lastWord) {
+				long word = (long) LONG_LSB_FIRST.get(src, index);
+				long stops = ~word & CONTINUATION_BITS;
+
+				if (stops != 0) {
+					int length = (Long.numberOfTrailingZeros(stops) + 1) >>> 3;
+					value = compact(word & KEEP_BYTES[length]);
+					index += length;
+				} else {
+					value = decode(src, index, false);
+					index += length(src, index);
+				}
+			} else {
+				value = decode(src, index, false);
+				index += length(src, index);
+			}
+
+			dst[i] = signed ? unZigZag(value) : value;
+		}
+
+		return index;
+	}
+
+	/**
+	 * Reads consecutive varints into an array of values. Values wider than 32
+	 * bits are truncated.
+	 * 
+	 * @param src
+	 *            The raw bytes
+	 * @param fromSrc
+	 *            The initial position in src
+	 * @param dst
+	 *            The destination array
+	 * @param fromDst
+	 *            The low index in dst
+	 * @param toDst
+	 *            The high index in dst
+	 * @param signed
+	 *            Whether the values were ZigZag mapped
+	 * @return The position after the last read varint
+	 */
+	public static int decodeArray(byte[] src, int fromSrc, int[] dst, int fromDst, int toDst, boolean signed) {
+		int index = fromSrc;
+		int lastWord = src.length - 8;
+
+		for (int i = fromDst; i < toDst; i++) {
+			long value;
+
+			if (index <= lastWord) {
+				long word = (long) LONG_LSB_FIRST.get(src, index);
+				long stops = ~word & CONTINUATION_BITS;
+
+				if (stops != 0) {
+					int length = (Long.numberOfTrailingZeros(stops) + 1) >>> 3;
+					value = compact(word & KEEP_BYTES[length]);
+					index += length;
+				} else {
+					value = decode(src, index, false);
+					index += length(src, index);
+				}
+			} else {
+				value = decode(src, index, false);
+				index += length(src, index);
+			}
+
+			int truncated = (int) value;
+			dst[i] = signed ? (truncated >>> 1) ^ -(truncated & 1) : truncated;
+		}
+
+		return index;
+	}
+
+	/**
+	 * Writes the differences between consecutive values as signed varints.
+	 * The first value is written as the difference from 0.
+	 * 
+	 * @param src
+	 *            The values to write
+	 * @param fromSrc
+	 *            The low index in src
+	 * @param toSrc
+	 *            The high index in src
+	 * @param dst
+	 *            The array of bytes to write in
+	 * @param fromDst
+	 *            The initial position in dst
+	 * @return The position after the last written varint
+	 */
+	public static int encodeDeltas(long[] src, int fromSrc, int toSrc, byte[] dst, int fromDst) {
+		long previous = 0;
+
+		for (int i = fromSrc; i < toSrc; i++) {
+			fromDst = encode(src[i] - previous, true, dst, fromDst);
+			previous = src[i];
+		}
+		return fromDst;
+	}
+
+	/**
+	 * Writes the differences between consecutive values as signed varints.
+	 * The first value is written as the difference from 0.
+	 * 
+	 * @param src
+	 *            The values to write
+	 * @param fromSrc
+	 *            The low index in src
+	 * @param toSrc
+	 *            The high index in src
+	 * @param dst
+	 *            The array of bytes to write in
+	 * @param fromDst
+	 *            The initial position in dst
+	 * @return The position after the last written varint
+	 */
+	public static int encodeDeltas(int[] src, int fromSrc, int toSrc, byte[] dst, int fromDst) {
+		int previous = 0;
+
+		for (int i = fromSrc; i < toSrc; i++) {
+			// The int difference wraps around, so it always fits in 32 bits
+			fromDst = encode((long) (src[i] - previous), true, dst, fromDst);
+			previous = src[i];
+		}
+		return fromDst;
+	}
+
+	/**
+	 * Reads signed varint differences and rebuilds the original values
+	 * 
+	 * @param src
+	 *            The raw bytes
+	 * @param fromSrc
+	 *            The initial position in src
+	 * @param dst
+	 *            The destination array
+	 * @param fromDst
+	 *            The low index in dst
+	 * @param toDst
+	 *            The high index in dst
+	 * @return The position after the last read varint
+	 */
+	public static int decodeDeltas(byte[] src, int fromSrc, long[] dst, int fromDst, int toDst) {
+		int index = decodeArray(src, fromSrc, dst, fromDst, toDst, true);
+
+		for (int i = fromDst + 1; i < toDst; i++) {
+			dst[i] += dst[i - 1];
+		}
+		return index;
+	}
+
+	/**
+	 * Reads signed varint differences and rebuilds the original values
+	 * 
+	 * @param src
+	 *            The raw bytes
+	 * @param fromSrc
+	 *            The initial position in src
+	 * @param dst
+	 *            The destination array
+	 * @param fromDst
+	 *            The low index in dst
+	 * @param toDst
+	 *            The high index in dst
+	 * @return The position after the last read varint
+	 */
+	public static int decodeDeltas(byte[] src, int fromSrc, int[] dst, int fromDst, int toDst) {
+		int index = decodeArray(src, fromSrc, dst, fromDst, toDst, true);
+
+		for (int i = fromDst + 1; i < toDst; i++) {
+			dst[i] += dst[i - 1];
+		}
+		return index;
+	}
+
+	/**
+	 * Adds an array of values to a queue as consecutive varints. Only the
+	 * values that fit whole in the free space of the queue are added. The
+	 * varints are written in place into the ring of the queue.
+	 * 
+	 * @param src
+	 *            The values to write
+	 * @param fromSrc
+	 *            The low index in src
+	 * @param toSrc
+	 *            The high index in src
+	 * @param signed
+	 *            Whether the values are ZigZag mapped first
+	 * @param dst
+	 *            The queue to add to
+	 * @return The number of values added
+	 */
+	public static int encodeArray(long[] src, int fromSrc, int toSrc, boolean signed, Queue dst) {
+		byte[] ring = dst.getRingData();
+		int capacity = dst.getCapacity();
+		int freeSpace = capacity - dst.getSize();
+		int start = dst.getRingIndex(dst.getSize());
+		int bytes = 0;
+		int i = fromSrc;
+
+		for (; i < toSrc; i++) {
+			long unsigned = signed ? zigZag(src[i]) : src[i];
+			int length = sizeOf(unsigned);
+			if (bytes + length > freeSpace) {
+				break;
+			}
+
+			int index = start + bytes < capacity ? start + bytes : start + bytes - capacity;
+			if (index + length <= capacity) {
+				encode(unsigned, false, ring, index);
+			} else {
+				// The varint wraps around the end of the ring
+				for (int k = 1; k < length; k++) {
+					ring[index] = (byte) (unsigned | 0x80);
+					unsigned >>>= 7;
+					index = index + 1 < capacity ? index + 1 : 0;
+				}
+				ring[index] = (byte) unsigned;
+			}
+			bytes += length;
+		}
+
+		dst.addRingData(bytes);
+		return i - fromSrc;
+	}
+
+	/**
+	 * Removes consecutive varints from a queue into an array of values. A
+	 * varint that is not complete yet is left in the queue.
+	 * 
+	 * The varints are read in place from the ring of the queue: each of its
+	 * two regions with {@link #decodeArray(byte[], int, long[], int, int, boolean)},
+	 * and the one varint that may wrap around the end of the ring on its own.
+	 * 
+	 * @param src
+	 *            The queue to read
+	 * @param dst
+	 *            The destination array
+	 * @param fromDst
+	 *            The low index in dst
+	 * @param toDst
+	 *            The high index in dst
+	 * @param signed
+	 *            Whether the values were ZigZag mapped
+	 * @return The number of values read
+	 */
+	public static int decodeArray(Queue src, long[] dst, int fromDst, int toDst, boolean signed) {
+		byte[] ring = src.getRingData();
+		int size = src.getSize();
+		int start = src.getRingIndex(0);
+		// The stored bytes up to the end of the ring, the rest are at its start
+		int firstPart = Math.min(size, src.getCapacity() - start);
+
+		int count = countVarints(ring, start, start + firstPart, toDst - fromDst);
+		int index = decodeArray(ring, start, dst, fromDst, fromDst + count, signed) - start;
+		int i = fromDst + count;
+
+		if (i < toDst && firstPart < size) {
+			int secondPart = size - firstPart;
+
+			// The varint across the end of the ring
+			if (index < firstPart) {
+				int stop = 0;
+				while (stop < secondPart && ring[stop] < 0) {
+					stop++;
+				}
+				if (stop == secondPart) {
+					checkIncomplete(size - index, index);
+					src.skip(index);
+					return i - fromDst;
+				}
+
+				int length = firstPart - index + stop + 1;
+				if (length > MAX_LENGTH) {
+					throw new IllegalArgumentException("Malformed varint at index: " + index);
+				}
+				long value = 0;
+				for (int k = 0; k < length; k++) {
+					value |= (long) (src.getByte(index + k) & 0x7F) << 7 * k;
+				}
+				dst[i++] = signed ? unZigZag(value) : value;
+				index += length;
+			}
+
+			int from = index - firstPart;
+			count = countVarints(ring, from, secondPart, toDst - i);
+			index = firstPart + decodeArray(ring, from, dst, i, i + count, signed);
+			i += count;
+		}
+
+		if (i < toDst) {
+			checkIncomplete(size - index, index);
+		}
+		src.skip(index);
+		return i - fromDst;
+	}
+
+	/**
+	 * Counts the varints that end in a range, which are as many as the bytes
+	 * with no continuation bit
+	 * 
+	 * @param src
+	 *            The raw bytes
+	 * @param from
+	 *            The low index in src
+	 * @param to
+	 *            The high index in src
+	 * @param max
+	 *            The number of varints to stop at
+	 * @return The number of varints, up to max
+	 */
+	private static int countVarints(byte[] src, int from, int to, int max) {
+		int count = 0;
+		for (int i = from; i < to && count < max; i++) {
+			if (src[i] >= 0) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Checks that the bytes left after the last whole varint can still be
+	 * the start of one
+	 * 
+	 * @param length
+	 *            The number of bytes left
+	 * @param index
+	 *            The position of the first one
+	 */
+	private static void checkIncomplete(int length, int index) {
+		if (length > MAX_LENGTH) {
+			throw new IllegalArgumentException("Malformed varint at index: " + index);
+		}
+	}
+
+	/**
+	 * Removes the continuation bits of a little endian word and joins the 7
+	 * bits groups
+	 * 
+	 * @param word
+	 *            The masked varint bytes
+	 * @return The value
+	 */
+	private static long compact(long word) {
+		return (word & 0x7FL) | ((word & 0x7F00L) >>> 1) | ((word & 0x7F0000L) >>> 2) | ((word & 0x7F000000L) >>> 3)
+				| ((word & 0x7F00000000L) >>> 4) | ((word & 0x7F0000000000L) >>> 5)
+				| ((word & 0x7F000000000000L) >>> 6) | ((word & 0x7F00000000000000L) >>> 7);
+	}
+
+}
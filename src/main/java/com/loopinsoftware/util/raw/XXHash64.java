@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.raw;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.zip.Checksum;
+
+/**
+ * @author Antonio Vicente Martin
+ * 
+ *         This class computes the 64 bits xxHash of a stream of bytes. It is
+ *         a {@link Checksum}, so it can be updated by a {@link Queue} as data
+ *         is added or removed, like {@link java.util.zip.CRC32C} or
+ *         {@link java.util.zip.Adler32}. The value can be queried at any time
+ *         without disturbing the running state.
+ * 
+ *         Bytes are consumed in stripes of 32, the incomplete stripe is kept
+ *         until more bytes arrive or the value is queried.
+ */
+public class XXHash64 implements Checksum {
+
+	private static final VarHandle LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+	private static final VarHandle INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+	private static final long PRIME1 = 0x9E3779B185EBCA87L;
+	private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+	private static final long PRIME3 = 0x165667B19E3779F9L;
+	private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+	private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+	private static final int STRIPE = 32;
+
+	private final long seed;
+
+	/**
+	 * The accumulators of the four lanes
+	 */
+	private long v1;
+	private long v2;
+	private long v3;
+	private long v4;
+
+	/**
+	 * The incomplete stripe
+	 */
+	private final byte[] stripe = new byte[STRIPE];
+	private int stripeSize;
+
+	/**
+	 * The total number of bytes
+	 */
+	private long length;
+
+	/**
+	 * Builds a new XXHash64 with seed 0
+	 */
+	public XXHash64() {
+		this(0);
+	}
+
+	/**
+	 * Builds a new XXHash64
+	 * 
+	 * @param seed
+	 *            The seed of the hash
+	 */
+	public XXHash64(long seed) {
+		this.seed = seed;
+		reset();
+	}
+
+	@Override
+	public void update(int b) {
+		stripe[stripeSize++] = (byte) b;
+		length++;
+
+		if (stripeSize == STRIPE) {
+			consume(stripe, 0);
+			stripeSize = 0;
+		}
+	}
+
+	@Override
+	public void update(byte[] b, int off, int len) {
+		if (off < 0 || len < 0 || off > b.length - len) {
+			throw new ArrayIndexOutOfBoundsException("array length: " + b.length + ", offset: " + off + ", length: " + len);
+		}
+
+		length += len;
+		int end = off + len;
+
+		// Complete the pending stripe first
+		if (stripeSize > 0) {
+			int n = Math.min(STRIPE - stripeSize, len);
+			System.arraycopy(b, off, stripe, stripeSize, n);
+			stripeSize += n;
+			off += n;
+
+			if (stripeSize < STRIPE) {
+				return;
+			}
+			consume(stripe, 0);
+			stripeSize = 0;
+		}
+
+		// Whole stripes straight from the source
+		for (; off <= end - STRIPE; off += STRIPE) {
+			consume(b, off);
+		}
+
+		System.arraycopy(b, off, stripe, 0, end - off);
+		stripeSize = end - off;
+	}
+
+	@Override
+	public long getValue() {
+		long hash;
+
+		if (length >= STRIPE) {
+			hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+			hash = merge(hash, v1);
+			hash = merge(hash, v2);
+			hash = merge(hash, v3);
+			hash = merge(hash, v4);
+		} else {
+			hash = seed + PRIME5;
+		}
+
+		hash += length;
+
+		int i = 0;
+		for (; i <= stripeSize - 8; i += 8) {
+			hash ^= round(0, (long) LONG.get(stripe, i));
+			hash = Long.rotateLeft(hash, 27) * PRIME1 + PRIME4;
+		}
+		if (i <= stripeSize - 4) {
+			hash ^= ((int) INT.get(stripe, i) & 0xFFFFFFFFL) * PRIME1;
+			hash = Long.rotateLeft(hash, 23) * PRIME2 + PRIME3;
+			i += 4;
+		}
+		for (; i < stripeSize; i++) {
+			hash ^= (stripe[i] & 0xFF) * PRIME5;
+			hash = Long.rotateLeft(hash, 11) * PRIME1;
+		}
+
+		hash ^= hash >>> 33;
+		hash *= PRIME2;
+		hash ^= hash >>> 29;
+		hash *= PRIME3;
+		hash ^= hash >>> 32;
+
+		return hash;
+	}
+
+	@Override
+	public void reset() {
+		v1 = seed + PRIME1 + PRIME2;
+		v2 = seed + PRIME2;
+		v3 = seed;
+		v4 = seed - PRIME1;
+		stripeSize = 0;
+		length = 0;
+	}
+
+	/**
+	 * Mixes a whole stripe into the four lanes
+	 * 
+	 * @param b
+	 *            The raw bytes
+	 * @param index
+	 *            The first byte of the stripe
+	 */
+	private void consume(byte[] b, int index) {
+		v1 = round(v1, (long) LONG.get(b, index));
+		v2 = round(v2, (long) LONG.get(b, index + 8));
+		v3 = round(v3, (long) LONG.get(b, index + 16));
+		v4 = round(v4, (long) LONG.get(b, index + 24));
+	}
+
+	private static long round(long accumulator, long input) {
+		accumulator += input * PRIME2;
+		accumulator = Long.rotateLeft(accumulator, 31);
+		return accumulator * PRIME1;
+	}
+
+	private static long merge(long hash, long lane) {
+		hash ^= round(0, lane);
+		return hash * PRIME1 + PRIME4;
+	}
+
+}
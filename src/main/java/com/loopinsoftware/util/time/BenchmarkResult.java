@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.time;
+
+/**
+ * This class holds the result of a {@link BenchmarkRunner}. Times are in
+ * nanoseconds per operation.
+ * 
+ * @author Antonio Vicente Martin
+ *
+ */
+public class BenchmarkResult {
+
+	private final int rounds;
+	private final long operations;
+	private final double mean;
+	private final double standardDeviation;
+	private final double error;
+	private final double confidence;
+	private final double min;
+	private final double max;
+	private final double allocatedBytes;
+
+	BenchmarkResult(int rounds, long operations, double mean, double standardDeviation, double error,
+			double confidence, double min, double max, double allocatedBytes) {
+		this.rounds = rounds;
+		this.operations = operations;
+		this.mean = mean;
+		this.standardDeviation = standardDeviation;
+		this.error = error;
+		this.confidence = confidence;
+		this.min = min;
+		this.max = max;
+		this.allocatedBytes = allocatedBytes;
+	}
+
+	/**
+	 * Returns the number of measured rounds
+	 * 
+	 * @return The number of rounds
+	 */
+	public int getRounds() {
+		return rounds;
+	}
+
+	/**
+	 * Returns the number of operations of the measured rounds
+	 * 
+	 * @return The number of operations
+	 */
+	public long getOperations() {
+		return operations;
+	}
+
+	/**
+	 * Returns the mean time per operation of the rounds
+	 * 
+	 * @return The mean in nanoseconds
+	 */
+	public double getMean() {
+		return mean;
+	}
+
+	/**
+	 * Returns the sample standard deviation of the time per operation of the
+	 * rounds
+	 * 
+	 * @return The standard deviation in nanoseconds
+	 */
+	public double getStandardDeviation() {
+		return standardDeviation;
+	}
+
+	/**
+	 * Returns the half width of the confidence interval of the mean
+	 * 
+	 * @return The error in nanoseconds
+	 */
+	public double getError() {
+		return error;
+	}
+
+	/**
+	 * Returns the confidence of the interval
+	 * 
+	 * @return The confidence, between 0 and 1
+	 */
+	public double getConfidence() {
+		return confidence;
+	}
+
+	/**
+	 * Returns the low end of the confidence interval of the mean
+	 * 
+	 * @return The low end in nanoseconds
+	 */
+	public double getLow() {
+		return mean - error;
+	}
+
+	/**
+	 * Returns the high end of the confidence interval of the mean
+	 * 
+	 * @return The high end in nanoseconds
+	 */
+	public double getHigh() {
+		return mean + error;
+	}
+
+	/**
+	 * Returns the time per operation of the fastest round
+	 * 
+	 * @return The minimum in nanoseconds
+	 */
+	public double getMin() {
+		return min;
+	}
+
+	/**
+	 * Returns the time per operation of the slowest round
+	 * 
+	 * @return The maximum in nanoseconds
+	 */
+	public double getMax() {
+		return max;
+	}
+
+	/**
+	 * Returns the bytes allocated per operation by the measuring thread
+	 * 
+	 * @return The bytes or NaN if the JVM can not count them
+	 */
+	public double getAllocatedBytes() {
+		return allocatedBytes;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%.3f \u00b1 %.3f ns/op (%.1f%%), [%.3f, %.3f], %.1f B/op, %d ops in %d rounds", mean,
+				error, confidence * 100, min, max, allocatedBytes, operations, rounds);
+	}
+
+}
@@ -0,0 +1,324 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.time;
+
+import java.lang.management.ManagementFactory;
+
+import com.loopinsoftware.util.Statistics;
+
+/**
+ * This class benchmarks a {@link Measurable} in process, for environments
+ * where JMH is not available. Every round calls measure() a number of times
+ * and counts the operations it returns. Warmup rounds let the JIT compile the
+ * code and are discarded, and the time per operation of the measured rounds
+ * gives the mean and its confidence interval.
+ * 
+ * When the JVM supports it, the bytes allocated by the running thread are read
+ * with {@link com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long)}
+ * before and after each round.
+ * 
+ * @author Antonio Vicente Martin
+ *
+ */
+public class BenchmarkRunner {
+
+	private int warmupRounds;
+	private int rounds;
+	private int invocations;
+	private double confidence;
+
+	/**
+	 * Accumulates the results of measure(), so the calls can not be removed
+	 */
+	private long sink;
+
+	/**
+	 * Creates a new BenchmarkRunner with 5 warmup rounds, 10 rounds of 1000
+	 * invocations and a confidence of 99%
+	 */
+	public BenchmarkRunner() {
+		this(5, 10, 1000);
+	}
+
+	/**
+	 * Creates a new BenchmarkRunner with a confidence of 99%
+	 * 
+	 * @param warmupRounds
+	 *            The number of discarded rounds
+	 * @param rounds
+	 *            The number of measured rounds, at least 2
+	 * @param invocations
+	 *            The number of calls to measure() per round
+	 */
+	public BenchmarkRunner(int warmupRounds, int rounds, int invocations) {
+		setWarmupRounds(warmupRounds);
+		setRounds(rounds);
+		setInvocations(invocations);
+		setConfidence(0.99);
+	}
+
+	/**
+	 * Runs the benchmark on the calling thread
+	 * 
+	 * @param measurable
+	 *            The code to measure, returning the number of operations it
+	 *            performed
+	 * @return The result
+	 */
+	public BenchmarkResult run(Measurable measurable) {
+		com.sun.management.ThreadMXBean threads = getAllocationBean();
+		long thread = Thread.currentThread().getId();
+
+		// Reading the counter may allocate itself
+		long overhead = 0;
+		if (threads != null) {
+			long before = threads.getThreadAllocatedBytes(thread);
+			overhead = threads.getThreadAllocatedBytes(thread) - before;
+		}
+
+		for (int r = 0; r < warmupRounds; r++) {
+			runRound(measurable);
+		}
+
+		Statistics nanosPerOperation = new Statistics();
+		long operations = 0;
+		long allocated = 0;
+		for (int r = 0; r < rounds; r++) {
+			long allocatedBefore = threads == null ? 0 : threads.getThreadAllocatedBytes(thread);
+			long start = System.nanoTime();
+			long roundOperations = runRound(measurable);
+			long elapsed = System.nanoTime() - start;
+			if (threads != null) {
+				allocated += Math.max(0, threads.getThreadAllocatedBytes(thread) - allocatedBefore - overhead);
+			}
+
+			nanosPerOperation.add((double) elapsed / roundOperations);
+			operations += roundOperations;
+		}
+
+		double error = getCriticalValue(confidence, rounds - 1)
+				* Math.sqrt(nanosPerOperation.getSampleVariance() / rounds);
+		double allocatedPerOperation = threads == null ? Double.NaN : (double) allocated / operations;
+
+		return new BenchmarkResult(rounds, operations, nanosPerOperation.getMean(),
+				Math.sqrt(nanosPerOperation.getSampleVariance()), error, confidence, nanosPerOperation.getMin(),
+				nanosPerOperation.getMax(), allocatedPerOperation);
+	}
+
+	/**
+	 * Calls measure() the configured number of times
+	 * 
+	 * @param measurable
+	 *            The code to measure
+	 * @return The number of operations
+	 */
+	private long runRound(Measurable measurable) {
+		long operations = 0;
+		for (int i = 0; i < invocations; i++) {
+			int result = measurable.measure();
+			operations += result;
+			sink += result;
+		}
+		if (operations <= 0) {
+			throw new IllegalStateException("measure() returned " + operations + " operations in a round");
+		}
+		return operations;
+	}
+
+	/**
+	 * Returns the bean that reads allocated bytes, enabling the counter if
+	 * needed
+	 * 
+	 * @return The bean or null if the JVM does not support it
+	 */
+	private static com.sun.management.ThreadMXBean getAllocationBean() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+			return null;
+		}
+
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+		if (!threads.isThreadAllocatedMemorySupported()) {
+			return null;
+		}
+		if (!threads.isThreadAllocatedMemoryEnabled()) {
+			threads.setThreadAllocatedMemoryEnabled(true);
+		}
+		return threads;
+	}
+
+	/**
+	 * Returns the two sided critical value of the Student's t distribution,
+	 * the t such that P(|T| &lt; t) = confidence
+	 * 
+	 * @param confidence
+	 *            The confidence, between 0 and 1
+	 * @param degrees
+	 *            The degrees of freedom
+	 * @return The critical value
+	 */
+	static double getCriticalValue(double confidence, int degrees) {
+		double low = 0;
+		double high = 1;
+		while (getProbability(high, degrees) < confidence) {
+			high *= 2;
+		}
+		for (int i = 0; i < 100; i++) {
+			double middle = (low + high) / 2;
+			if (getProbability(middle, degrees) < confidence) {
+				low = middle;
+			} else {
+				high = middle;
+			}
+		}
+		return (low + high) / 2;
+	}
+
+	/**
+	 * Returns P(|T| &lt; t) for the Student's t distribution, with the finite
+	 * series of integer degrees of freedom
+	 * 
+	 * @param t
+	 *            The value, not negative
+	 * @param degrees
+	 *            The degrees of freedom
+	 * @return The probability
+	 */
+	private static double getProbability(double t, int degrees) {
+		double theta = Math.atan(t / Math.sqrt(degrees));
+		double cos2 = Math.cos(theta) * Math.cos(theta);
+
+		if (degrees % 2 == 0) {
+			double term = 1;
+			double sum = 1;
+			for (int k = 2; k <= degrees - 2; k += 2) {
+				term *= cos2 * (k - 1) / k;
+				sum += term;
+			}
+			return Math.sin(theta) * sum;
+		}
+
+		if (degrees == 1) {
+			return 2 * theta / Math.PI;
+		}
+		double term = 1;
+		double sum = 1;
+		for (int k = 3; k <= degrees - 2; k += 2) {
+			term *= cos2 * (k - 1) / k;
+			sum += term;
+		}
+		return 2 / Math.PI * (theta + Math.sin(theta) * Math.cos(theta) * sum);
+	}
+
+	/**
+	 * Returns the number of discarded rounds
+	 * 
+	 * @return The number of warmup rounds
+	 */
+	public int getWarmupRounds() {
+		return warmupRounds;
+	}
+
+	/**
+	 * Sets the number of discarded rounds
+	 * 
+	 * @param warmupRounds
+	 *            The number of warmup rounds
+	 */
+	public void setWarmupRounds(int warmupRounds) {
+		if (warmupRounds < 0) {
+			throw new IllegalArgumentException("Bad warmup rounds: " + warmupRounds);
+		}
+		this.warmupRounds = warmupRounds;
+	}
+
+	/**
+	 * Returns the number of measured rounds
+	 * 
+	 * @return The number of rounds
+	 */
+	public int getRounds() {
+		return rounds;
+	}
+
+	/**
+	 * Sets the number of measured rounds
+	 * 
+	 * @param rounds
+	 *            The number of rounds, at least 2
+	 */
+	public void setRounds(int rounds) {
+		if (rounds < 2) {
+			throw new IllegalArgumentException("Bad rounds: " + rounds);
+		}
+		this.rounds = rounds;
+	}
+
+	/**
+	 * Returns the number of calls to measure() per round
+	 * 
+	 * @return The number of invocations
+	 */
+	public int getInvocations() {
+		return invocations;
+	}
+
+	/**
+	 * Sets the number of calls to measure() per round
+	 * 
+	 * @param invocations
+	 *            The number of invocations
+	 */
+	public void setInvocations(int invocations) {
+		if (invocations < 1) {
+			throw new IllegalArgumentException("Bad invocations: " + invocations);
+		}
+		this.invocations = invocations;
+	}
+
+	/**
+	 * Returns the confidence of the intervals
+	 * 
+	 * @return The confidence, between 0 and 1
+	 */
+	public double getConfidence() {
+		return confidence;
+	}
+
+	/**
+	 * Sets the confidence of the intervals
+	 * 
+	 * @param confidence
+	 *            The confidence, between 0 and 1
+	 */
+	public void setConfidence(double confidence) {
+		if (!(confidence > 0 && confidence < 1)) {
+			throw new IllegalArgumentException("Bad confidence: " + confidence);
+		}
+		this.confidence = confidence;
+	}
+
+	/**
+	 * Returns the sum of the results of measure(), which only exists to keep
+	 * the calls alive
+	 * 
+	 * @return The sum
+	 */
+	public long getSink() {
+		return sink;
+	}
+
+}
@@ -0,0 +1,359 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.time;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class counts values, such as durations in nanoseconds, in log-linear
+ * buckets. Values below 2^precision are counted exactly, and every power of
+ * two above is split in 2^(precision - 1) buckets, so the relative error of a
+ * reported value is below 2^(1 - precision).
+ * 
+ * Counts are atomic, so many threads can record at once without locks, and
+ * recording does not allocate. {@link #drainTo(Histogram)} moves the counts
+ * recorded since the previous call into another histogram, to report
+ * intervals while recording goes on.
+ * 
+ * @author Antonio Vicente Martin
+ *
+ */
+public class Histogram {
+
+	/**
+	 * The default precision, below 1% of relative error
+	 */
+	public static final int DEFAULT_PRECISION = 8;
+
+	private final int precision;
+	private final int halfBuckets;
+	private final AtomicLongArray counts;
+
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong sum = new AtomicLong();
+	private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+	private final AtomicLong max = new AtomicLong(-1);
+
+	/**
+	 * Creates a new Histogram with the default precision
+	 */
+	public Histogram() {
+		this(DEFAULT_PRECISION);
+	}
+
+	/**
+	 * Creates a new Histogram
+	 * 
+	 * @param precision
+	 *            The number of significant bits of the values, from 2 to 16
+	 */
+	public Histogram(int precision) {
+		if (precision < 2 || precision > 16) {
+			throw new IllegalArgumentException("Bad precision: " + precision);
+		}
+		this.precision = precision;
+		this.halfBuckets = 1 << (precision - 1);
+		this.counts = new AtomicLongArray((65 - precision) * halfBuckets);
+	}
+
+	/**
+	 * Records a value
+	 * 
+	 * @param value
+	 *            The value, not negative
+	 */
+	public void record(long value) {
+		record(value, 1);
+	}
+
+	/**
+	 * Records a value several times
+	 * 
+	 * @param value
+	 *            The value, not negative
+	 * @param times
+	 *            The number of times
+	 */
+	public void record(long value, long times) {
+		if (value < 0 || times < 0) {
+			throw new IllegalArgumentException("Bad value: " + value + " or times: " + times);
+		}
+		if (times == 0) {
+			return;
+		}
+		counts.addAndGet(getIndex(value), times);
+		count.addAndGet(times);
+		sum.addAndGet(value * times);
+		updateMin(min, value);
+		updateMax(max, value);
+	}
+
+	/**
+	 * Returns the value below which a percentage of the values fall. The
+	 * value is the highest one of its bucket, but never above the maximum.
+	 * 
+	 * @param percentile
+	 *            The percentile, from 0 to 100
+	 * @return The value or 0 if nothing has been recorded
+	 */
+	public long getValueAtPercentile(double percentile) {
+		if (!(percentile >= 0 && percentile <= 100)) {
+			throw new IllegalArgumentException("Bad percentile: " + percentile);
+		}
+
+		long total = 0;
+		for (int i = 0; i < counts.length(); i++) {
+			total += counts.get(i);
+		}
+		if (total == 0) {
+			return 0;
+		}
+
+		long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+		long seen = 0;
+		for (int i = 0; i < counts.length(); i++) {
+			seen += counts.get(i);
+			if (seen >= rank) {
+				return Math.min(getHighestValue(i), getMax());
+			}
+		}
+		return getMax();
+	}
+
+	/**
+	 * Moves the counts recorded since the previous call into another
+	 * histogram, which is reset first. Values recorded while draining end up
+	 * in this interval or in the next one, but they are never lost.
+	 * 
+	 * The count of the interval is the sum of its buckets, and its minimum
+	 * and maximum lie in its lowest and highest buckets, so they agree with
+	 * the percentiles. The minimum and maximum are exact unless the extreme
+	 * value was recorded while draining, then they are the bound of its
+	 * bucket. The sum, and so the mean, may include or miss the values
+	 * recorded while draining.
+	 * 
+	 * @param interval
+	 *            The histogram of the interval, with the same precision
+	 */
+	public void drainTo(Histogram interval) {
+		checkPrecision(interval);
+		interval.reset();
+
+		long total = 0;
+		int lowest = -1;
+		int highest = -1;
+		for (int i = 0; i < counts.length(); i++) {
+			long value = counts.getAndSet(i, 0);
+			if (value != 0) {
+				interval.counts.set(i, value);
+				total += value;
+				if (lowest < 0) {
+					lowest = i;
+				}
+				highest = i;
+			}
+		}
+
+		// Values whose bucket is drained later keep their count here
+		count.addAndGet(-total);
+		long drainedMin = min.getAndSet(Long.MAX_VALUE);
+		long drainedMax = max.getAndSet(-1);
+		interval.sum.set(sum.getAndSet(0));
+
+		if (total > 0) {
+			interval.count.set(total);
+			interval.min.set(clamp(drainedMin, lowest));
+			interval.max.set(clamp(drainedMax, highest));
+		}
+	}
+
+	/**
+	 * Adds the counts of another histogram
+	 * 
+	 * @param other
+	 *            The histogram, with the same precision
+	 */
+	public void add(Histogram other) {
+		checkPrecision(other);
+		for (int i = 0; i < counts.length(); i++) {
+			long value = other.counts.get(i);
+			if (value != 0) {
+				counts.addAndGet(i, value);
+			}
+		}
+		count.addAndGet(other.count.get());
+		sum.addAndGet(other.sum.get());
+		updateMin(min, other.min.get());
+		updateMax(max, other.max.get());
+	}
+
+	/**
+	 * Clears the counts
+	 */
+	public void reset() {
+		for (int i = 0; i < counts.length(); i++) {
+			counts.set(i, 0);
+		}
+		count.set(0);
+		sum.set(0);
+		min.set(Long.MAX_VALUE);
+		max.set(-1);
+	}
+
+	/**
+	 * Returns the number of values recorded
+	 * 
+	 * @return The number of values
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * Returns the mean of the values recorded
+	 * 
+	 * @return The mean or NaN if nothing has been recorded
+	 */
+	public double getMean() {
+		long n = count.get();
+		return n == 0 ? Double.NaN : (double) sum.get() / n;
+	}
+
+	/**
+	 * Returns the smallest value recorded
+	 * 
+	 * @return The smallest value or 0 if nothing has been recorded
+	 */
+	public long getMin() {
+		long value = min.get();
+		return value == Long.MAX_VALUE ? 0 : value;
+	}
+
+	/**
+	 * Returns the largest value recorded
+	 * 
+	 * @return The largest value or 0 if nothing has been recorded
+	 */
+	public long getMax() {
+		return Math.max(0, max.get());
+	}
+
+	/**
+	 * Returns the number of significant bits of the values
+	 * 
+	 * @return The precision
+	 */
+	public int getPrecision() {
+		return precision;
+	}
+
+	/**
+	 * Returns the count, mean, p50, p99, p999 and max
+	 */
+	@Override
+	public String toString() {
+		return "count: " + getCount() + ", mean: " + getMean() + ", p50: " + getValueAtPercentile(50) + ", p99: "
+				+ getValueAtPercentile(99) + ", p999: " + getValueAtPercentile(99.9) + ", max: " + getMax();
+	}
+
+	/**
+	 * Returns the bucket of a value
+	 * 
+	 * @param value
+	 *            The value, not negative
+	 * @return The index of the bucket
+	 */
+	int getIndex(long value) {
+		if (value < 2 * halfBuckets) {
+			return (int) value;
+		}
+		int shift = 64 - Long.numberOfLeadingZeros(value) - precision;
+		return shift * halfBuckets + (int) (value >>> shift);
+	}
+
+	/**
+	 * Returns the highest value of a bucket
+	 * 
+	 * @param index
+	 *            The index of the bucket
+	 * @return The value
+	 */
+	long getHighestValue(int index) {
+		if (index < 2 * halfBuckets) {
+			return index;
+		}
+		int shift = index / halfBuckets - 1;
+		long sub = index - (long) shift * halfBuckets;
+		return ((sub + 1) << shift) - 1;
+	}
+
+	/**
+	 * Returns the lowest value of a bucket
+	 * 
+	 * @param index
+	 *            The index of the bucket
+	 * @return The value
+	 */
+	long getLowestValue(int index) {
+		if (index < 2 * halfBuckets) {
+			return index;
+		}
+		int shift = index / halfBuckets - 1;
+		long sub = index - (long) shift * halfBuckets;
+		return sub << shift;
+	}
+
+	/**
+	 * Limits a value to the range of a bucket
+	 * 
+	 * @param value
+	 *            The value
+	 * @param index
+	 *            The index of the bucket
+	 * @return The value, or the nearest bound of the bucket
+	 */
+	private long clamp(long value, int index) {
+		return Math.min(Math.max(value, getLowestValue(index)), getHighestValue(index));
+	}
+
+	/**
+	 * Checks another histogram has the same buckets
+	 * 
+	 * @param other
+	 *            The histogram
+	 */
+	private void checkPrecision(Histogram other) {
+		if (other.precision != precision) {
+			throw new IllegalArgumentException("Expected precision " + precision + ", got " + other.precision);
+		}
+	}
+
+	private static void updateMin(AtomicLong min, long value) {
+		long current = min.get();
+		while (value < current && !min.compareAndSet(current, value)) {
+			current = min.get();
+		}
+	}
+
+	private static void updateMax(AtomicLong max, long value) {
+		long current = max.get();
+		while (value > current && !max.compareAndSet(current, value)) {
+			current = max.get();
+		}
+	}
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.time;
+
+/**
+ * This class times operations with {@link System#nanoTime()} and records the
+ * durations into a {@link Histogram}. It keeps no state between start and
+ * stop, so a timer can be shared by many threads.
+ * 
+ * <pre>
+ * long start = timer.start();
+ * queue.push(data);
+ * timer.stop(start);
+ * </pre>
+ * 
+ * @author Antonio Vicente Martin
+ *
+ */
+public class NanoTimer {
+
+	private final Histogram histogram;
+
+	/**
+	 * Creates a new NanoTimer with a histogram of the default precision
+	 */
+	public NanoTimer() {
+		this(new Histogram());
+	}
+
+	/**
+	 * Creates a new NanoTimer
+	 * 
+	 * @param histogram
+	 *            The histogram of durations in nanoseconds
+	 */
+	public NanoTimer(Histogram histogram) {
+		this.histogram = histogram;
+	}
+
+	/**
+	 * Starts timing
+	 * 
+	 * @return The start time, to pass to {@link #stop(long)}
+	 */
+	public long start() {
+		return System.nanoTime();
+	}
+
+	/**
+	 * Stops timing and records the duration
+	 * 
+	 * @param start
+	 *            The time returned by {@link #start()}
+	 * @return The elapsed nanoseconds
+	 */
+	public long stop(long start) {
+		long elapsed = System.nanoTime() - start;
+		histogram.record(elapsed);
+		return elapsed;
+	}
+
+	/**
+	 * Times a measurable object and records the duration
+	 * 
+	 * @param measurable
+	 *            The measurable object
+	 * @return The elapsed nanoseconds
+	 */
+	public long measure(Measurable measurable) {
+		long start = start();
+		measurable.measure();
+		return stop(start);
+	}
+
+	/**
+	 * Returns the histogram of durations in nanoseconds
+	 * 
+	 * @return The histogram
+	 */
+	public Histogram getHistogram() {
+		return histogram;
+	}
+
+}
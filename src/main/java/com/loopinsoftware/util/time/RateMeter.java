@@ -0,0 +1,288 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.time;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * This class measures the rate of events, such as bytes or calls per second,
+ * with exponentially weighted moving averages over 1, 5 and 15 seconds, and
+ * the instantaneous rate of the last fold.
+ * 
+ * Marking only adds to a {@link LongAdder}, whose cells spread the updates of
+ * concurrent threads, so it does not lock nor allocate. The counts are folded
+ * into the averages when the rates are read, once at least a tick has passed
+ * since the previous fold, by the single reader that wins it, so only readers
+ * synchronize. A fold divides the events by the exact time elapsed since the
+ * previous one and decays the averages by that time, so a constant rate is
+ * reported exactly whenever the reads happen.
+ * 
+ * @author Antonio Vicente Martin
+ *
+ */
+public class RateMeter {
+
+	/**
+	 * The shortest time between two folds, one second in nanoseconds
+	 */
+	private static final long TICK = TimeUnit.SECONDS.toNanos(1);
+
+	/**
+	 * The windows of the averages, in seconds
+	 */
+	private static final double[] WINDOWS = { 1, 5, 15 };
+
+	/**
+	 * This class holds the rates of a meter at one instant
+	 * 
+	 * @author Antonio Vicente Martin
+	 *
+	 */
+	public static class Snapshot {
+
+		private final long count;
+		private final double instantRate;
+		private final double oneSecondRate;
+		private final double fiveSecondRate;
+		private final double fifteenSecondRate;
+
+		private Snapshot(long count, double instantRate, double oneSecondRate, double fiveSecondRate,
+				double fifteenSecondRate) {
+			this.count = count;
+			this.instantRate = instantRate;
+			this.oneSecondRate = oneSecondRate;
+			this.fiveSecondRate = fiveSecondRate;
+			this.fifteenSecondRate = fifteenSecondRate;
+		}
+
+		/**
+		 * Returns the number of events marked
+		 * 
+		 * @return The count
+		 */
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * Returns the events per second between the last two folds
+		 * 
+		 * @return The rate
+		 */
+		public double getInstantRate() {
+			return instantRate;
+		}
+
+		/**
+		 * Returns the events per second averaged over 1 second
+		 * 
+		 * @return The rate
+		 */
+		public double getOneSecondRate() {
+			return oneSecondRate;
+		}
+
+		/**
+		 * Returns the events per second averaged over 5 seconds
+		 * 
+		 * @return The rate
+		 */
+		public double getFiveSecondRate() {
+			return fiveSecondRate;
+		}
+
+		/**
+		 * Returns the events per second averaged over 15 seconds
+		 * 
+		 * @return The rate
+		 */
+		public double getFifteenSecondRate() {
+			return fifteenSecondRate;
+		}
+
+		@Override
+		public String toString() {
+			return "count: " + count + ", instant: " + instantRate + "/s, 1s: " + oneSecondRate + "/s, 5s: "
+					+ fiveSecondRate + "/s, 15s: " + fifteenSecondRate + "/s";
+		}
+	}
+
+	private final LongSupplier clock;
+	private final LongAdder count = new LongAdder();
+
+	/**
+	 * The time of the previous fold
+	 */
+	private final AtomicLong lastFold;
+
+	/**
+	 * The count at the previous fold, guarded by rates
+	 */
+	private long foldedCount;
+
+	private double instantRate;
+	private boolean initialized;
+	private final double[] rates = new double[WINDOWS.length];
+
+	/**
+	 * Creates a new RateMeter
+	 */
+	public RateMeter() {
+		this(System::nanoTime);
+	}
+
+	/**
+	 * Creates a new RateMeter
+	 * 
+	 * @param clock
+	 *            The source of nanoseconds
+	 */
+	RateMeter(LongSupplier clock) {
+		this.clock = clock;
+		this.lastFold = new AtomicLong(clock.getAsLong());
+	}
+
+	/**
+	 * Marks one event
+	 */
+	public void mark() {
+		count.increment();
+	}
+
+	/**
+	 * Marks several events
+	 * 
+	 * @param events
+	 *            The number of events
+	 */
+	public void mark(long events) {
+		count.add(events);
+	}
+
+	/**
+	 * Returns the number of events marked
+	 * 
+	 * @return The count
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * Returns the events per second between the last two folds, at least a
+	 * tick apart
+	 * 
+	 * @return The rate
+	 */
+	public double getInstantRate() {
+		tick();
+		synchronized (rates) {
+			return instantRate;
+		}
+	}
+
+	/**
+	 * Returns the events per second averaged over 1 second
+	 * 
+	 * @return The rate
+	 */
+	public double getOneSecondRate() {
+		return getRate(0);
+	}
+
+	/**
+	 * Returns the events per second averaged over 5 seconds
+	 * 
+	 * @return The rate
+	 */
+	public double getFiveSecondRate() {
+		return getRate(1);
+	}
+
+	/**
+	 * Returns the events per second averaged over 15 seconds
+	 * 
+	 * @return The rate
+	 */
+	public double getFifteenSecondRate() {
+		return getRate(2);
+	}
+
+	/**
+	 * Returns the count and all the rates at once
+	 * 
+	 * @return The snapshot
+	 */
+	public Snapshot getSnapshot() {
+		tick();
+		synchronized (rates) {
+			return new Snapshot(count.sum(), instantRate, rates[0], rates[1], rates[2]);
+		}
+	}
+
+	/**
+	 * Returns an average
+	 * 
+	 * @param window
+	 *            The index of the window
+	 * @return The rate
+	 */
+	private double getRate(int window) {
+		tick();
+		synchronized (rates) {
+			return rates[window];
+		}
+	}
+
+	/**
+	 * Folds the events marked since the previous fold into the averages, if
+	 * at least one tick has passed
+	 */
+	private void tick() {
+		long last = lastFold.get();
+		long now = clock.getAsLong();
+		long elapsed = now - last;
+		if (elapsed < TICK) {
+			return;
+		}
+		if (!lastFold.compareAndSet(last, now)) {
+			// Another reader is folding
+			return;
+		}
+
+		synchronized (rates) {
+			long current = count.sum();
+			double seconds = (double) elapsed / TimeUnit.SECONDS.toNanos(1);
+			double rate = (current - foldedCount) / seconds;
+			foldedCount = current;
+
+			for (int i = 0; i < rates.length; i++) {
+				if (initialized) {
+					// The closed form of a constant rate over the elapsed time
+					rates[i] = rate + (rates[i] - rate) * Math.exp(-seconds / WINDOWS[i]);
+				} else {
+					rates[i] = rate;
+				}
+			}
+			initialized = true;
+			instantRate = rate;
+		}
+	}
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.time;
+
+/**
+ * This class measures a stream of bytes with two {@link RateMeter}s, one for
+ * the bytes and one for the operations that moved them, such as the pushes or
+ * pops of a {@link com.loopinsoftware.util.raw.Queue}.
+ * 
+ * @author Antonio Vicente Martin
+ *
+ */
+public class StreamMeter {
+
+	private final RateMeter bytes;
+	private final RateMeter operations;
+
+	/**
+	 * Creates a new StreamMeter
+	 */
+	public StreamMeter() {
+		this(new RateMeter(), new RateMeter());
+	}
+
+	/**
+	 * Creates a new StreamMeter
+	 * 
+	 * @param bytes
+	 *            The meter of bytes
+	 * @param operations
+	 *            The meter of operations
+	 */
+	public StreamMeter(RateMeter bytes, RateMeter operations) {
+		this.bytes = bytes;
+		this.operations = operations;
+	}
+
+	/**
+	 * Marks one operation
+	 * 
+	 * @param numberOfBytes
+	 *            The number of bytes moved by the operation
+	 */
+	public void mark(int numberOfBytes) {
+		bytes.mark(numberOfBytes);
+		operations.mark();
+	}
+
+	/**
+	 * Returns the meter of bytes
+	 * 
+	 * @return The meter
+	 */
+	public RateMeter getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * Returns the meter of operations
+	 * 
+	 * @return The meter
+	 */
+	public RateMeter getOperations() {
+		return operations;
+	}
+
+	@Override
+	public String toString() {
+		return "bytes: [" + bytes.getSnapshot() + "], operations: [" + operations.getSnapshot() + "]";
+	}
+
+}
@@ -73,4 +73,25 @@ public class TimeUtil {
 		return stop();
 	}
 
+	/**
+	 * Returns the nanoseconds elapsed by the measurable argument and records
+	 * them into a histogram. It does not use the state of this object, so it
+	 * is safe to call from many threads.
+	 *
+	 * @param m
+	 *            The measurable object
+	 * @param histogram
+	 *            The histogram of durations in nanoseconds
+	 * @return The time elapsed in nanoseconds
+	 */
+	public static long measureNanos(Measurable m, Histogram histogram) {
+		long before = System.nanoTime();
+
+		m.measure();
+
+		long time = System.nanoTime() - before;
+		histogram.record(time);
+		return time;
+	}
+
 }
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.raw;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * @author Antonio Vicente Martin
+ *
+ *         The {@link ArrayKernels} written with the Vector API. Loaded by
+ *         reflection, so it is only linked when jdk.incubator.vector is
+ *         present. Every method runs whole vectors and finishes the tail with
+ *         the scalar loop.
+ */
+final class VectorArrayKernels implements ArrayKernels {
+
+	/**
+	 * Byte species of the preferred shape and the species of the same shape
+	 * for the swaps
+	 */
+	private static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_PREFERRED;
+	private static final VectorSpecies<Short> SHORTS = ShortVector.SPECIES_PREFERRED;
+	private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+	private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+
+	/**
+	 * Shuffles reversing the bytes of every 2, 4 and 8 bytes lane, lane i
+	 * takes byte i ^ (width - 1)
+	 */
+	private static final VectorShuffle<Byte> SWAP_2 = VectorShuffle.fromOp(BYTES, i -> i ^ 1);
+	private static final VectorShuffle<Byte> SWAP_4 = VectorShuffle.fromOp(BYTES, i -> i ^ 3);
+	private static final VectorShuffle<Byte> SWAP_8 = VectorShuffle.fromOp(BYTES, i -> i ^ 7);
+
+	/**
+	 * Float species of the preferred shape, and the short species with as
+	 * many lanes, half as wide
+	 */
+	private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+	private static final VectorSpecies<Short> HALF_SHORTS = VectorSpecies.of(short.class,
+			VectorShape.forBitSize(FLOATS.vectorBitSize() / 2));
+
+	/**
+	 * 1.5 * 2^23, whose ulp is 1, and its bits
+	 */
+	private static final float ROUNDING = 12582912.0f;
+	private static final int ROUNDING_BITS = Float.floatToRawIntBits(ROUNDING);
+
+	/**
+	 * Fails when the machine has no 128 bits SIMD units, where the API falls
+	 * back to Java code slower than the scalar loops
+	 */
+	VectorArrayKernels() {
+		if (BYTES.vectorBitSize() < 128) {
+			throw new UnsupportedOperationException("No SIMD units");
+		}
+	}
+
+	@Override
+	public void swapBytes(short[] data, int from, int to) {
+		int i = from;
+		for (int bound = from + SHORTS.loopBound(to - from); i < bound; i += SHORTS.length()) {
+			ShortVector.fromArray(SHORTS, data, i).reinterpretAsBytes().rearrange(SWAP_2).reinterpretAsShorts()
+					.intoArray(data, i);
+		}
+		for (; i < to; i++) {
+			data[i] = Short.reverseBytes(data[i]);
+		}
+	}
+
+	@Override
+	public void swapBytes(int[] data, int from, int to) {
+		int i = from;
+		for (int bound = from + INTS.loopBound(to - from); i < bound; i += INTS.length()) {
+			IntVector.fromArray(INTS, data, i).reinterpretAsBytes().rearrange(SWAP_4).reinterpretAsInts()
+					.intoArray(data, i);
+		}
+		for (; i < to; i++) {
+			data[i] = Integer.reverseBytes(data[i]);
+		}
+	}
+
+	@Override
+	public void swapBytes(long[] data, int from, int to) {
+		int i = from;
+		for (int bound = from + LONGS.loopBound(to - from); i < bound; i += LONGS.length()) {
+			LongVector.fromArray(LONGS, data, i).reinterpretAsBytes().rearrange(SWAP_8).reinterpretAsLongs()
+					.intoArray(data, i);
+		}
+		for (; i < to; i++) {
+			data[i] = Long.reverseBytes(data[i]);
+		}
+	}
+
+	@Override
+	public void toFloats(short[] src, int fromSrc, float[] dst, int fromDst, int toDst, float scale) {
+		int i = fromDst;
+		int j = fromSrc;
+		for (int bound = fromDst + FLOATS.loopBound(toDst - fromDst); i < bound; i += FLOATS.length(), j += FLOATS
+				.length()) {
+			((FloatVector) ShortVector.fromArray(HALF_SHORTS, src, j).convertShape(VectorOperators.S2F, FLOATS, 0))
+					.mul(scale).intoArray(dst, i);
+		}
+		for (; i < toDst; i++, j++) {
+			dst[i] = src[j] * scale;
+		}
+	}
+
+	@Override
+	public void fromFloats(float[] src, int fromSrc, int toSrc, short[] dst, int fromDst, float scale) {
+		int i = fromSrc;
+		int j = fromDst;
+		for (int bound = fromSrc + FLOATS.loopBound(toSrc - fromSrc); i < bound; i += FLOATS.length(), j += FLOATS
+				.length()) {
+			FloatVector value = FloatVector.fromArray(FLOATS, src, i).mul(scale).max(Short.MIN_VALUE)
+					.min(Short.MAX_VALUE);
+			// Math.round takes NaN to 0
+			value = value.blend(0.0f, value.test(VectorOperators.IS_NAN));
+
+			// Adding 1.5 * 2^23 rounds half to even and leaves the integer in
+			// the low mantissa bits. Math.round takes ties up, so the ties
+			// rounded down get one more.
+			FloatVector shifted = value.add(ROUNDING);
+			VectorMask<Integer> ties = value.sub(shifted.sub(ROUNDING)).compare(VectorOperators.EQ, 0.5f).cast(INTS);
+			IntVector rounded = shifted.reinterpretAsInts().sub(ROUNDING_BITS).add(1, ties);
+			((ShortVector) rounded.convertShape(VectorOperators.I2S, HALF_SHORTS, 0)).intoArray(dst, j);
+		}
+		for (; i < toSrc; i++, j++) {
+			dst[j] = (short) Math.round(Math.min(Math.max(src[i] * scale, Short.MIN_VALUE), Short.MAX_VALUE));
+		}
+	}
+
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.loopinsoftware.util.raw.PcmConverter;
+import com.loopinsoftware.util.raw.Queue;
+
+/**
+ * @author Antonio Vicente Martin
+ * 
+ */
+public class StatisticsTest {
+
+	@Test
+	public void testKnownValues() {
+		double[] data = { 2, 4, 4, 4, 5, 5, 7, 9 };
+		Statistics statistics = new Statistics();
+		statistics.add(data, 0, data.length);
+
+		Assert.assertEquals(8, statistics.getCount());
+		Assert.assertEquals(5, statistics.getMean(), 0);
+		Assert.assertEquals(4, statistics.getVariance(), 1e-12);
+		Assert.assertEquals(2, statistics.getStandardDeviation(), 1e-12);
+		Assert.assertEquals(java.lang.Math.sqrt(29), statistics.getRms(), 1e-12);
+		Assert.assertEquals(2, statistics.getMin(), 0);
+		Assert.assertEquals(9, statistics.getMax(), 0);
+		Assert.assertEquals(9, statistics.getPeak(), 0);
+	}
+
+	@Test
+	public void testBulkMatchesSingle() {
+		Random random = new Random(1);
+		double[] data = new double[5000];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = 1e6 + random.nextGaussian();
+		}
+
+		Statistics single = new Statistics();
+		for (double value : data) {
+			single.add(value);
+		}
+		Statistics bulk = new Statistics();
+		bulk.add(data, 0, data.length);
+
+		Assert.assertEquals(single.getMean(), bulk.getMean(), 1e-9);
+		Assert.assertEquals(single.getVariance(), bulk.getVariance(), 1e-6);
+		Assert.assertEquals(1, bulk.getVariance(), 0.1);
+		Assert.assertEquals(single.getRms(), bulk.getRms(), 1e-6);
+	}
+
+	@Test
+	public void testMerge() {
+		Random random = new Random(2);
+		float[] data = new float[3001];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (float) random.nextGaussian();
+		}
+
+		Statistics whole = new Statistics();
+		whole.add(data, 0, data.length);
+
+		Statistics first = new Statistics();
+		Statistics second = new Statistics();
+		first.add(data, 0, 1000);
+		second.add(data, 1000, data.length);
+		first.merge(second);
+
+		Assert.assertEquals(whole.getCount(), first.getCount());
+		Assert.assertEquals(whole.getMean(), first.getMean(), 1e-12);
+		Assert.assertEquals(whole.getVariance(), first.getVariance(), 1e-12);
+		Assert.assertEquals(whole.getMin(), first.getMin(), 0);
+		Assert.assertEquals(whole.getMax(), first.getMax(), 0);
+	}
+
+	@Test
+	public void testPcm() {
+		short[] samples = { -32768, -16384, 0, 16384 };
+		byte[] src = new byte[samples.length * 2];
+		for (int i = 0; i < samples.length; i++) {
+			src[2 * i] = (byte) (samples[i] >> 8);
+			src[2 * i + 1] = (byte) samples[i];
+		}
+
+		Statistics statistics = new Statistics();
+		statistics.add(src, 0, 2, true, samples.length, true, true);
+
+		double[] expected = new double[samples.length];
+		PcmConverter.toDoublesArray(src, 0, 2, true, expected, 0, expected.length, true, true);
+
+		Assert.assertEquals(-0.25, statistics.getMean(), 1e-12);
+		Assert.assertEquals(1, statistics.getPeak(), 0);
+		Assert.assertEquals(expected[0], statistics.getMin(), 0);
+	}
+
+	@Test
+	public void testSlidingWindow() {
+		Random random = new Random(3);
+		double[] data = new double[2000];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = random.nextDouble() * 100 - 50;
+		}
+
+		SlidingStatistics sliding = new SlidingStatistics(64);
+		for (int i = 0; i < data.length; i++) {
+			sliding.add(data[i]);
+
+			int from = java.lang.Math.max(0, i - 63);
+			Statistics expected = new Statistics();
+			for (int j = from; j <= i; j++) {
+				expected.add(data[j]);
+			}
+
+			Assert.assertEquals(expected.getCount(), sliding.getCount());
+			Assert.assertEquals(expected.getMean(), sliding.getMean(), 1e-9);
+			Assert.assertEquals(expected.getVariance(), sliding.getVariance(), 1e-7);
+			Assert.assertEquals(expected.getRms(), sliding.getRms(), 1e-9);
+			Assert.assertEquals(expected.getMin(), sliding.getMin(), 0);
+			Assert.assertEquals(expected.getMax(), sliding.getMax(), 0);
+		}
+	}
+
+	@Test
+	public void testSlidingWindowFollowsQueue() {
+		Random random = new Random(5);
+		Queue queue = new Queue(128);
+		SlidingStatistics sliding = new SlidingStatistics(64);
+		queue.addStreamListener(sliding.listen(2, true, true, false));
+
+		for (int round = 0; round < 500; round++) {
+			// Whole samples, pushed in two parts that split one
+			byte[] data = new byte[2 * (1 + random.nextInt(40))];
+			random.nextBytes(data);
+			int split = 1 + 2 * random.nextInt(data.length / 2);
+			queue.push(data, 0, split);
+			queue.push(data, split, data.length);
+
+			if (random.nextBoolean()) {
+				queue.pop(new byte[2 * random.nextInt(queue.getSize() / 2 + 1)]);
+			} else {
+				queue.skip(2 * random.nextInt(queue.getSize() / 2 + 1));
+			}
+
+			byte[] stored = new byte[queue.getSize()];
+			queue.peek(stored);
+			Statistics expected = new Statistics();
+			expected.add(stored, 0, 2, true, stored.length / 2, true, false);
+
+			Assert.assertEquals(expected.getCount(), sliding.getCount());
+			if (expected.getCount() > 0) {
+				Assert.assertEquals(expected.getMean(), sliding.getMean(), 1e-9);
+				Assert.assertEquals(expected.getVariance(), sliding.getVariance(), 1e-9);
+				Assert.assertEquals(expected.getMin(), sliding.getMin(), 0);
+				Assert.assertEquals(expected.getMax(), sliding.getMax(), 0);
+			}
+		}
+	}
+
+	@Test
+	public void testSlidingWindowSmallerThanQueue() {
+		Queue queue = new Queue(32);
+		SlidingStatistics sliding = new SlidingStatistics(4);
+		queue.addStreamListener(sliding.listen(2, true, false, false));
+
+		// Values 1 to 16, least significant byte first
+		byte[] data = new byte[32];
+		for (int i = 0; i < 16; i++) {
+			data[2 * i] = (byte) (i + 1);
+		}
+		queue.push(data);
+		Assert.assertEquals(4, sliding.getCount());
+		Assert.assertEquals(14.5, sliding.getMean(), 0);
+
+		// Value 1 was evicted from the window already
+		queue.pop(new byte[2]);
+		Assert.assertEquals(4, sliding.getCount());
+		Assert.assertEquals(14.5, sliding.getMean(), 0);
+
+		// Values 2 to 13 were evicted too, 14 to 16 are left
+		queue.skip(24);
+		Assert.assertEquals(3, sliding.getCount());
+		Assert.assertEquals(15, sliding.getMean(), 0);
+		Assert.assertEquals(14, sliding.getMin(), 0);
+
+		Random random = new Random(7);
+		for (int round = 0; round < 500; round++) {
+			byte[] more = new byte[2 * (1 + random.nextInt(12))];
+			random.nextBytes(more);
+			queue.push(more);
+			queue.skip(2 * random.nextInt(queue.getSize() / 2 + 1));
+
+			byte[] stored = new byte[queue.getSize()];
+			queue.peek(stored);
+			int samples = java.lang.Math.min(4, stored.length / 2);
+			Statistics expected = new Statistics();
+			expected.add(stored, stored.length - 2 * samples, 2, true, samples, false, false);
+
+			Assert.assertEquals(expected.getCount(), sliding.getCount());
+			if (samples > 0) {
+				Assert.assertEquals(expected.getMean(), sliding.getMean(), 1e-9);
+				Assert.assertEquals(expected.getMin(), sliding.getMin(), 0);
+				Assert.assertEquals(expected.getMax(), sliding.getMax(), 0);
+			}
+		}
+	}
+
+	@Test
+	public void testPercentile() {
+		double[] data = new double[101];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (i * 37) % 101;
+		}
+
+		Assert.assertEquals(0, Math.percentile(data.clone(), 0, 101, 0), 0);
+		Assert.assertEquals(50, Math.percentile(data.clone(), 0, 101, 50), 0);
+		Assert.assertEquals(99, Math.percentile(data.clone(), 0, 101, 99), 0);
+		Assert.assertEquals(100, Math.percentile(data.clone(), 0, 101, 100), 0);
+
+		double[] even = { 4, 1, 3, 2 };
+		Assert.assertEquals(2.5, Math.percentile(even, 0, 4, 50), 0);
+
+		Random random = new Random(4);
+		for (int n = 1; n < 50; n++) {
+			double[] values = new double[n];
+			for (int i = 0; i < n; i++) {
+				values[i] = random.nextInt(10);
+			}
+			double[] sorted = values.clone();
+			Arrays.sort(sorted);
+			int k = random.nextInt(n);
+			double p = n > 1 ? 100.0 * k / (n - 1) : 0;
+			Assert.assertEquals(sorted[k], Math.percentile(values, 0, n, p), 1e-9);
+		}
+	}
+
+}
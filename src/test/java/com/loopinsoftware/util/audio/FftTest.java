@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.audio;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Antonio Vicente Martin
+ * 
+ */
+public class FftTest {
+
+	@Test
+	public void testComplexMatchesDft() {
+		Random random = new Random(1);
+		int[] sizes = { 1, 2, 3, 4, 5, 8, 12, 16, 32, 64, 100, 128, 256, 1000, 1024 };
+
+		for (int size : sizes) {
+			double[] data = random(random, 2 * size);
+			double[] expected = dft(data, size, false);
+
+			Fft fft = Fft.getInstance(size);
+			fft.forward(data);
+			assertClose(expected, data, 1e-9 * size);
+
+			fft.inverse(data);
+			assertClose(dft(expected, size, true), data, 1e-9 * size);
+		}
+	}
+
+	@Test
+	public void testComplexRoundTrip() {
+		double[] original = random(new Random(2), 2 * 4096);
+		double[] data = original.clone();
+
+		Fft fft = Fft.getInstance(4096);
+		fft.forward(data);
+		fft.inverse(data);
+
+		assertClose(original, data, 1e-12);
+	}
+
+	@Test
+	public void testRealMatchesComplex() {
+		Random random = new Random(3);
+		int[] sizes = { 2, 4, 6, 8, 10, 16, 30, 64, 200, 512 };
+
+		for (int size : sizes) {
+			double[] real = random(random, size);
+			double[] complex = new double[2 * size];
+			for (int i = 0; i < size; i++) {
+				complex[2 * i] = real[i];
+			}
+			Fft.getInstance(size).forward(complex);
+
+			double[] packed = real.clone();
+			RealFft fft = RealFft.getInstance(size);
+			fft.forward(packed);
+
+			Assert.assertEquals(complex[0], packed[0], 1e-9);
+			Assert.assertEquals(complex[size], packed[1], 1e-9);
+			for (int k = 1; k < size / 2; k++) {
+				Assert.assertEquals(complex[2 * k], packed[2 * k], 1e-9);
+				Assert.assertEquals(complex[2 * k + 1], packed[2 * k + 1], 1e-9);
+			}
+
+			fft.inverse(packed);
+			assertClose(real, packed, 1e-12);
+		}
+	}
+
+	@Test
+	public void testFloat() {
+		float[] data = new float[64];
+		data[2] = 1;
+
+		Fft.getInstance(32).forward(data);
+
+		// A unit impulse at sample 1 is a unit circle
+		for (int k = 0; k < 32; k++) {
+			double angle = -2 * Math.PI * k / 32;
+			Assert.assertEquals(Math.cos(angle), data[2 * k], 1e-6);
+			Assert.assertEquals(Math.sin(angle), data[2 * k + 1], 1e-6);
+		}
+	}
+
+	@Test
+	public void testPlansAreShared() throws InterruptedException {
+		Assert.assertSame(Fft.getInstance(48), Fft.getInstance(48));
+		Assert.assertSame(RealFft.getInstance(48), RealFft.getInstance(48));
+
+		final double[] original = random(new Random(4), 2 * 300);
+		final double[] expected = original.clone();
+		Fft.getInstance(300).forward(expected);
+		final boolean[] failed = new boolean[1];
+
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					for (int i = 0; i < 50; i++) {
+						double[] data = original.clone();
+						Fft.getInstance(300).forward(data);
+						for (int j = 0; j < data.length; j++) {
+							if (data[j] != expected[j]) {
+								failed[0] = true;
+							}
+						}
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		Assert.assertFalse(failed[0]);
+	}
+
+	@Test
+	public void testPowerSpectrumOfWindowedSine() {
+		int size = 1024;
+		int bin = 100;
+		double[] data = new double[size];
+		for (int i = 0; i < size; i++) {
+			data[i] = Math.sin(2 * Math.PI * bin * i / size);
+		}
+
+		Window.HANN.apply(data, 0, size);
+		RealFft.getInstance(size).forward(data);
+		double[] power = new double[size / 2 + 1];
+		Spectrum.power(data, size, power);
+
+		// A bin centered sine of amplitude 1 peaks at size * gain / 2
+		double peak = size * Window.HANN.getCoherentGain(size) / 2;
+		Assert.assertEquals(0.5, Window.HANN.getCoherentGain(size), 1e-12);
+		Assert.assertEquals(peak * peak, power[bin], 1e-6);
+		Assert.assertEquals(peak * peak / 4, power[bin + 1], 1e-6);
+		Assert.assertEquals(0, power[bin + 2], 1e-6);
+
+		Spectrum.toDecibels(power, 0, power.length, peak * peak, -200);
+		Assert.assertEquals(0, power[bin], 1e-9);
+		Assert.assertEquals(-200, power[bin + 10], 0);
+	}
+
+	@Test
+	public void testWindows() {
+		Assert.assertEquals(0, Window.HANN.getCoefficient(8, 0), 1e-15);
+		Assert.assertEquals(1, Window.HANN.getCoefficient(8, 4), 1e-15);
+		Assert.assertEquals(0.08, Window.HAMMING.getCoefficient(8, 0), 1e-15);
+		Assert.assertEquals(1, Window.RECTANGULAR.getCoherentGain(10), 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testOddRealSize() {
+		RealFft.getInstance(7);
+	}
+
+	private static double[] random(Random random, int length) {
+		double[] data = new double[length];
+		for (int i = 0; i < length; i++) {
+			data[i] = random.nextDouble() * 2 - 1;
+		}
+		return data;
+	}
+
+	private static double[] dft(double[] data, int size, boolean inverse) {
+		double[] result = new double[2 * size];
+		double sign = inverse ? 1 : -1;
+		for (int k = 0; k < size; k++) {
+			double re = 0;
+			double im = 0;
+			for (int j = 0; j < size; j++) {
+				double angle = sign * 2 * Math.PI * (((long) j * k) % size) / size;
+				re += data[2 * j] * Math.cos(angle) - data[2 * j + 1] * Math.sin(angle);
+				im += data[2 * j] * Math.sin(angle) + data[2 * j + 1] * Math.cos(angle);
+			}
+			result[2 * k] = inverse ? re / size : re;
+			result[2 * k + 1] = inverse ? im / size : im;
+		}
+		return result;
+	}
+
+	private static void assertClose(double[] expected, double[] actual, double delta) {
+		for (int i = 0; i < expected.length; i++) {
+			Assert.assertEquals(expected[i], actual[i], delta);
+		}
+	}
+
+}
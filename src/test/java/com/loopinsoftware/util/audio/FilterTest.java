@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.audio;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.loopinsoftware.util.raw.PcmConverter;
+import com.loopinsoftware.util.raw.Queue;
+
+/**
+ * @author Antonio Vicente Martin
+ * 
+ */
+public class FilterTest {
+
+	@Test
+	public void testBiquadBlocksAreContinuous() {
+		double[] signal = noise(5000, 1);
+		double[][] whole = { signal.clone(), signal.clone() };
+		double[][] blocks = { signal.clone(), signal.clone() };
+
+		BiquadCascade a = new BiquadCascade(2).addHighPass(48000, 50, 0.7071).addBandPass(48000, 1000, 2);
+		BiquadCascade b = new BiquadCascade(2).addHighPass(48000, 50, 0.7071).addBandPass(48000, 1000, 2);
+		a.process(whole, 0, signal.length);
+		for (int i = 0; i < signal.length; i += 333) {
+			b.process(blocks, i, Math.min(signal.length, i + 333));
+		}
+
+		Assert.assertArrayEquals(whole[0], blocks[0], 0);
+		Assert.assertArrayEquals(whole[1], blocks[1], 0);
+		Assert.assertArrayEquals(whole[0], whole[1], 0);
+	}
+
+	@Test
+	public void testBiquadResponse() {
+		BiquadCascade filter = new BiquadCascade(1).addLowPass(48000, 1000, 0.7071);
+		Assert.assertEquals(1, gain(filter, 48000, 100), 1e-2);
+		Assert.assertEquals(Math.sqrt(0.5), gain(filter, 48000, 1000), 1e-2);
+		Assert.assertEquals(0, gain(filter, 48000, 20000), 1e-2);
+
+		BiquadCascade notch = new BiquadCascade(1).addNotch(48000, 3000, 5);
+		Assert.assertEquals(0, gain(notch, 48000, 3000), 1e-3);
+	}
+
+	@Test
+	public void testDcBlocker() {
+		BiquadCascade filter = new BiquadCascade(1).addDcBlocker(0.995);
+		double[][] planes = new double[1][20000];
+		Arrays.fill(planes[0], 0.5);
+		filter.process(planes, 0, planes[0].length);
+		Assert.assertEquals(0, planes[0][planes[0].length - 1], 1e-9);
+	}
+
+	@Test
+	public void testDirectConvolution() {
+		double[] taps = noise(17, 2);
+		double[] signal = noise(3000, 3);
+		double[] expected = convolve(signal, taps);
+
+		FirFilter filter = new FirFilter(taps, 1);
+		Assert.assertFalse(filter.isOverlapSave());
+		double[][] planes = { signal.clone() };
+		for (int i = 0; i < signal.length; i += 700) {
+			filter.process(planes, i, Math.min(signal.length, i + 700));
+		}
+
+		Assert.assertArrayEquals(expected, planes[0], 1e-12);
+	}
+
+	@Test
+	public void testOverlapSave() {
+		double[] taps = noise(200, 4);
+		double[] signal = noise(5000, 5);
+		double[] expected = convolve(signal, taps);
+
+		FirFilter filter = new FirFilter(taps, 2);
+		Assert.assertTrue(filter.isOverlapSave());
+		double[][] planes = { signal.clone(), signal.clone() };
+		for (int i = 0; i < signal.length; i += 97) {
+			filter.process(planes, i, Math.min(signal.length, i + 97));
+		}
+
+		int latency = filter.getLatency();
+		for (int c = 0; c < 2; c++) {
+			for (int i = 0; i < latency; i++) {
+				Assert.assertEquals(0, planes[c][i], 0);
+			}
+			for (int i = latency; i < signal.length; i++) {
+				Assert.assertEquals(expected[i - latency], planes[c][i], 1e-9);
+			}
+		}
+	}
+
+	@Test
+	public void testLowPassDesign() {
+		double[] taps = FirFilter.lowPass(101, 0.1, Window.BLACKMAN);
+		for (int i = 0; i < taps.length; i++) {
+			Assert.assertEquals(taps[i], taps[taps.length - 1 - i], 1e-15);
+		}
+
+		Assert.assertEquals(1, gain(new FirFilter(taps, 1, false), 1, 0.02), 1e-2);
+		Assert.assertEquals(0, gain(new FirFilter(taps, 1, false), 1, 0.25), 1e-3);
+	}
+
+	@Test
+	public void testStage() {
+		int blockSize = 64;
+		double[][] planes = { noise(blockSize * 4, 6), noise(blockSize * 4, 7) };
+		for (double[] plane : planes) {
+			for (int i = 0; i < plane.length; i++) {
+				plane[i] *= 0.5;
+			}
+		}
+		byte[] pcm = new byte[planes[0].length * 2 * 2];
+		PcmConverter.interleave(planes, 0, planes[0].length, null, pcm, 0, 2, 2, true, true, false);
+
+		FilterStage stage = new FilterStage(new BiquadCascade(2).addLowPass(48000, 4000, 0.7071), blockSize, 2, true,
+				false);
+		Queue src = new Queue(pcm.length);
+		Queue dst = new Queue(pcm.length);
+		src.push(pcm, 0, pcm.length - 10);
+		Assert.assertEquals(3, stage.process(src, dst));
+		Assert.assertEquals(3 * stage.getBlockBytes(), dst.getSize());
+
+		src.push(pcm, pcm.length - 10, pcm.length);
+		Assert.assertEquals(1, stage.process(src, dst));
+		Assert.assertEquals(0, src.getSize());
+
+		double[][] expected = new double[2][];
+		for (int c = 0; c < 2; c++) {
+			expected[c] = new double[planes[c].length];
+		}
+		PcmConverter.deinterleave(pcm, 0, 2, true, 2, null, expected, 0, expected[0].length, true, false);
+		new BiquadCascade(2).addLowPass(48000, 4000, 0.7071).process(expected, 0, expected[0].length);
+
+		byte[] filtered = new byte[pcm.length];
+		dst.pop(filtered);
+		double[][] actual = new double[2][expected[0].length];
+		PcmConverter.deinterleave(filtered, 0, 2, true, 2, null, actual, 0, actual[0].length, true, false);
+		for (int c = 0; c < 2; c++) {
+			Assert.assertArrayEquals(expected[c], actual[c], 1e-4);
+		}
+	}
+
+	/**
+	 * Measures the steady state gain of a filter for a sine
+	 */
+	private static double gain(Filter filter, double sampleRate, double frequency) {
+		int n = 1 << 15;
+		double[][] planes = new double[1][n];
+		for (int i = 0; i < n; i++) {
+			planes[0][i] = Math.sin(2 * Math.PI * frequency * i / sampleRate);
+		}
+		filter.process(planes, 0, n);
+
+		double max = 0;
+		for (int i = n / 2; i < n; i++) {
+			max = Math.max(max, Math.abs(planes[0][i]));
+		}
+		return max;
+	}
+
+	private static double[] convolve(double[] signal, double[] taps) {
+		double[] y = new double[signal.length];
+		for (int i = 0; i < signal.length; i++) {
+			for (int k = 0; k < taps.length && k <= i; k++) {
+				y[i] += taps[k] * signal[i - k];
+			}
+		}
+		return y;
+	}
+
+	private static double[] noise(int length, long seed) {
+		Random random = new Random(seed);
+		double[] values = new double[length];
+		for (int i = 0; i < length; i++) {
+			values[i] = random.nextDouble() * 2 - 1;
+		}
+		return values;
+	}
+
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.audio;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.loopinsoftware.util.raw.PcmConverter;
+import com.loopinsoftware.util.raw.Queue;
+
+/**
+ * @author Antonio Vicente Martin
+ * 
+ */
+public class OscillatorTest {
+
+	@Test
+	public void testSine() {
+		Oscillator oscillator = new Oscillator(Waveform.SINE, 1000, 48000);
+		oscillator.setAmplitude(0.5);
+		double[] dst = new double[4800];
+		oscillator.render(dst, 0, dst.length);
+
+		for (int i = 0; i < dst.length; i++) {
+			Assert.assertEquals(0.5 * Math.sin(2 * Math.PI * 1000 * i / 48000), dst[i], 1e-6);
+		}
+	}
+
+	@Test
+	public void testBlocksAreContinuous() {
+		Oscillator whole = new Oscillator(Waveform.TRIANGLE, 441, 44100);
+		Oscillator blocks = new Oscillator(Waveform.TRIANGLE, 441, 44100);
+		double[] expected = new double[1000];
+		double[] actual = new double[1000];
+
+		whole.render(expected, 0, expected.length);
+		for (int i = 0; i < actual.length; i += 100) {
+			blocks.render(actual, i, i + 100);
+		}
+
+		Assert.assertArrayEquals(expected, actual, 0);
+	}
+
+	@Test
+	public void testWaveforms() {
+		double[] dst = new double[8];
+
+		new Oscillator(Waveform.SQUARE, 1, 8).render(dst, 0, 8);
+		Assert.assertArrayEquals(new double[] { 1, 1, 1, 1, -1, -1, -1, -1 }, dst, 1e-12);
+
+		new Oscillator(Waveform.SAW, 1, 8).render(dst, 0, 8);
+		Assert.assertArrayEquals(new double[] { -1, -0.75, -0.5, -0.25, 0, 0.25, 0.5, 0.75 }, dst, 1e-12);
+
+		new Oscillator(Waveform.TRIANGLE, 1, 8).render(dst, 0, 8);
+		Assert.assertArrayEquals(new double[] { 0, 0.5, 1, 0.5, 0, -0.5, -1, -0.5 }, dst, 1e-12);
+	}
+
+	@Test
+	public void testMixAndPhase() {
+		Oscillator sine = new Oscillator(Waveform.SINE, 100, 8000);
+		Oscillator cosine = new Oscillator(Waveform.SINE, 100, 8000);
+		cosine.setPhase(0.25);
+
+		double[] dst = new double[800];
+		sine.render(dst, 0, dst.length);
+		cosine.mix(dst, 0, dst.length);
+
+		for (int i = 0; i < dst.length; i++) {
+			double angle = 2 * Math.PI * 100 * i / 8000;
+			Assert.assertEquals(Math.sin(angle) + Math.cos(angle), dst[i], 1e-5);
+		}
+	}
+
+	@Test
+	public void testSweep() {
+		Oscillator chirp = new Oscillator(Waveform.SINE, 100, 8000);
+		chirp.setSweep(1000, 8000);
+		double[] dst = new double[10000];
+		chirp.render(dst, 0, dst.length);
+
+		Assert.assertEquals(1000, chirp.getFrequency(), 1e-6);
+
+		// The steady part after the sweep crosses zero 2000 times a second
+		int crossings = 0;
+		for (int i = 8001; i < dst.length; i++) {
+			if ((dst[i - 1] < 0) != (dst[i] < 0)) {
+				crossings++;
+			}
+		}
+		Assert.assertEquals(500, crossings, 1);
+	}
+
+	@Test
+	public void testNoise() {
+		Oscillator noise = new Oscillator(Waveform.NOISE, 0, 48000);
+		double[] dst = new double[100000];
+		noise.render(dst, 0, dst.length);
+
+		double sum = 0;
+		for (double value : dst) {
+			Assert.assertTrue(value >= -1 && value < 1);
+			sum += value;
+		}
+		Assert.assertEquals(0, sum / dst.length, 0.01);
+	}
+
+	@Test
+	public void testGeneratorIntoQueue() {
+		Oscillator[] channels = new Oscillator[40];
+		for (int c = 0; c < channels.length; c++) {
+			channels[c] = new Oscillator(Waveform.SINE, 100 + 10 * c, 48000);
+		}
+		Oscillator[] copies = new Oscillator[40];
+		for (int c = 0; c < copies.length; c++) {
+			copies[c] = new Oscillator(Waveform.SINE, 100 + 10 * c, 48000);
+		}
+
+		SignalGenerator serial = new SignalGenerator(channels, 256, 2, true, true);
+		SignalGenerator parallel = new SignalGenerator(copies, 256, 2, true, true);
+		Queue queue = new Queue(2 * serial.getBlockBytes());
+
+		serial.renderBlock(queue);
+		byte[] expected = serial.renderBlock().clone();
+		byte[] first = new byte[serial.getBlockBytes()];
+		queue.pop(first);
+		Assert.assertArrayEquals(parallel.renderBlock(ForkJoinPool.commonPool()), first);
+		Assert.assertArrayEquals(expected, parallel.renderBlock(ForkJoinPool.commonPool()));
+
+		double[][] planes = new double[40][256];
+		PcmConverter.deinterleave(expected, 0, 2, true, 40, null, planes, 0, 256, true, true);
+		Assert.assertEquals(Math.sin(2 * Math.PI * 110 * 256 / 48000), planes[1][0], 1e-4);
+	}
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.audio;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.loopinsoftware.util.raw.PcmConverter;
+import com.loopinsoftware.util.raw.Queue;
+
+/**
+ * @author Antonio Vicente Martin
+ * 
+ */
+public class ResamplerTest {
+
+	@Test
+	public void testSine() {
+		resampleSine(44100, 48000, Resampler.Quality.BEST, 1e-3);
+		resampleSine(48000, 44100, Resampler.Quality.BEST, 1e-3);
+		resampleSine(48000, 16000, Resampler.Quality.MEDIUM, 1e-2);
+		resampleSine(8000, 48000, Resampler.Quality.FAST, 5e-2);
+	}
+
+	@Test
+	public void testNearlyCoprimeRates() {
+		// 47999 and 48001 phases, interpolated from the bank
+		resampleSine(48000, 47999, Resampler.Quality.BEST, 1e-3);
+		resampleSine(48000, 48001, Resampler.Quality.BEST, 1e-3);
+		resampleSine(44100, 48001, Resampler.Quality.MEDIUM, 1e-2);
+	}
+
+	@Test
+	public void testBlocksAreContinuous() {
+		double[] signal = sine(10000, 1000, 44100);
+		Resampler whole = new Resampler(44100, 48000, 1, Resampler.Quality.FAST);
+		Resampler blocks = new Resampler(44100, 48000, 1, Resampler.Quality.FAST);
+
+		double[][] expected = new double[1][whole.getOutputFrames(signal.length)];
+		Assert.assertEquals(expected[0].length, whole.process(new double[][] { signal }, 0, signal.length, expected, 0));
+
+		double[][] actual = new double[1][expected[0].length];
+		int written = 0;
+		for (int i = 0; i < signal.length; i += 77) {
+			int to = Math.min(signal.length, i + 77);
+			written += blocks.process(new double[][] { signal }, i, to, actual, written);
+		}
+
+		Assert.assertEquals(expected[0].length, written);
+		Assert.assertArrayEquals(expected[0], actual[0], 0);
+	}
+
+	@Test
+	public void testFloats() {
+		double[] signal = sine(3000, 500, 48000);
+		float[] floats = new float[signal.length];
+		for (int i = 0; i < signal.length; i++) {
+			floats[i] = (float) signal[i];
+		}
+
+		Resampler a = new Resampler(48000, 32000, 1, Resampler.Quality.MEDIUM);
+		Resampler b = new Resampler(48000, 32000, 1, Resampler.Quality.MEDIUM);
+		double[][] expected = new double[1][2000];
+		float[][] actual = new float[1][2000];
+		Assert.assertEquals(2000, a.process(new double[][] { signal }, 0, signal.length, expected, 0));
+		Assert.assertEquals(2000, b.process(new float[][] { floats }, 0, floats.length, actual, 0));
+
+		for (int i = 0; i < 2000; i++) {
+			Assert.assertEquals(expected[0][i], actual[0][i], 1e-6);
+		}
+	}
+
+	@Test
+	public void testQueue() {
+		int frames = 4000;
+		double[][] planes = { sine(frames, 440, 44100), sine(frames, 880, 44100) };
+		byte[] pcm = new byte[frames * 2 * 2];
+		PcmConverter.interleave(planes, 0, frames, null, pcm, 0, 2, 2, true, true, false);
+
+		Resampler direct = new Resampler(44100, 48000, 2, Resampler.Quality.FAST);
+		double[][] decoded = new double[2][frames];
+		PcmConverter.deinterleave(pcm, 0, 2, true, 2, null, decoded, 0, frames, true, false);
+		double[][] expected = new double[2][direct.getOutputFrames(frames)];
+		direct.process(decoded, 0, frames, expected, 0);
+
+		Resampler resampler = new Resampler(44100, 48000, 2, Resampler.Quality.FAST);
+		Queue src = new Queue(pcm.length);
+		src.push(pcm, 0, pcm.length - 1);
+		double[][] actual = new double[2][expected[0].length];
+		int written = resampler.process(src, 2, true, false, actual, 0, 1000);
+		Assert.assertEquals(1000, written);
+
+		written += resampler.process(src, 2, true, false, actual, written, actual[0].length);
+		Assert.assertEquals(3, src.getSize());
+		src.push(pcm, pcm.length - 1, pcm.length);
+		written += resampler.process(src, 2, true, false, actual, written, actual[0].length);
+
+		Assert.assertEquals(0, src.getSize());
+		Assert.assertEquals(expected[0].length, written);
+		Assert.assertArrayEquals(expected[0], actual[0], 0);
+		Assert.assertArrayEquals(expected[1], actual[1], 0);
+	}
+
+	private static void resampleSine(int inputRate, int outputRate, Resampler.Quality quality, double error) {
+		double frequency = 1000;
+		double[] signal = sine(inputRate / 2, frequency, inputRate);
+		Resampler resampler = new Resampler(inputRate, outputRate, 1, quality);
+		double[][] dst = new double[1][resampler.getOutputFrames(signal.length)];
+		resampler.process(new double[][] { signal }, 0, signal.length, dst, 0);
+
+		double delay = resampler.getDelay();
+		for (int i = dst[0].length / 4; i < dst[0].length; i++) {
+			double expected = 0.9 * Math.sin(2 * Math.PI * frequency * (i - delay) / outputRate);
+			Assert.assertEquals(expected, dst[0][i], error);
+		}
+	}
+
+	private static double[] sine(int length, double frequency, double sampleRate) {
+		double[] values = new double[length];
+		for (int i = 0; i < length; i++) {
+			values[i] = 0.9 * Math.sin(2 * Math.PI * frequency * i / sampleRate);
+		}
+		return values;
+	}
+
+}
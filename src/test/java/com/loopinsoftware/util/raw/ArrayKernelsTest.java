@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.raw;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks the vector kernels against the scalar loops, on ranges with heads
+ * and tails that do not fill a vector. Skipped when the JVM runs without
+ * jdk.incubator.vector.
+ *
+ * @author Antonio Vicente Martin
+ *
+ */
+public class ArrayKernelsTest {
+
+	private static final int LENGTH = 301;
+
+	private final Random random = new Random(42);
+
+	@Before
+	public void assumeVectorKernels() {
+		Assume.assumeNotNull(ArrayKernels.VECTOR);
+	}
+
+	@Test
+	public void testSwapBytes() {
+		short[] shorts = new short[LENGTH];
+		int[] ints = new int[LENGTH];
+		long[] longs = new long[LENGTH];
+		for (int i = 0; i < LENGTH; i++) {
+			longs[i] = random.nextLong();
+			ints[i] = (int) longs[i];
+			shorts[i] = (short) longs[i];
+		}
+		short[] swappedShorts = shorts.clone();
+		int[] swappedInts = ints.clone();
+		long[] swappedLongs = longs.clone();
+
+		ArrayKernels.VECTOR.swapBytes(swappedShorts, 3, LENGTH - 2);
+		ArrayKernels.VECTOR.swapBytes(swappedInts, 3, LENGTH - 2);
+		ArrayKernels.VECTOR.swapBytes(swappedLongs, 3, LENGTH - 2);
+
+		for (int i = 0; i < LENGTH; i++) {
+			boolean inside = i >= 3 && i < LENGTH - 2;
+			Assert.assertEquals(inside ? Short.reverseBytes(shorts[i]) : shorts[i], swappedShorts[i]);
+			Assert.assertEquals(inside ? Integer.reverseBytes(ints[i]) : ints[i], swappedInts[i]);
+			Assert.assertEquals(inside ? Long.reverseBytes(longs[i]) : longs[i], swappedLongs[i]);
+		}
+	}
+
+	@Test
+	public void testToFloats() {
+		short[] src = new short[LENGTH];
+		for (int i = 0; i < LENGTH; i++) {
+			src[i] = (short) random.nextInt();
+		}
+		src[5] = Short.MIN_VALUE;
+		src[6] = Short.MAX_VALUE;
+		float scale = 1.0f / 32768;
+		float[] dst = new float[LENGTH];
+
+		ArrayKernels.VECTOR.toFloats(src, 1, dst, 2, LENGTH - 1, scale);
+
+		Assert.assertEquals(0, dst[0], 0);
+		Assert.assertEquals(0, dst[1], 0);
+		for (int i = 2; i < LENGTH - 1; i++) {
+			Assert.assertEquals(src[i - 1] * scale, dst[i], 0);
+		}
+		Assert.assertEquals(0, dst[LENGTH - 1], 0);
+	}
+
+	@Test
+	public void testFromFloatsRoundsAsMathRound() {
+		float[] src = new float[LENGTH];
+		for (int i = 0; i < LENGTH; i++) {
+			src[i] = (random.nextFloat() - 0.5f) * 80000;
+		}
+		float[] edges = { 0.5f, -0.5f, 1.5f, -1.5f, 2.5f, -2.5f, 0.49999997f, -0.49999997f, -0.50000006f, 32767.5f,
+				-32768.5f, 1e9f, -1e9f, Float.NaN, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, -0.0f };
+		System.arraycopy(edges, 0, src, 7, edges.length);
+		short[] dst = new short[LENGTH];
+
+		ArrayKernels.VECTOR.fromFloats(src, 0, LENGTH, dst, 0, 1.0f);
+
+		for (int i = 0; i < LENGTH; i++) {
+			short expected = (short) Math.round(Math.min(Math.max(src[i], Short.MIN_VALUE), Short.MAX_VALUE));
+			Assert.assertEquals("value " + src[i], expected, dst[i]);
+		}
+	}
+
+	@Test
+	public void testFromFloatsScaled() {
+		float[] src = new float[LENGTH];
+		for (int i = 0; i < LENGTH; i++) {
+			src[i] = random.nextFloat() * 2.2f - 1.1f;
+		}
+		short[] dst = new short[LENGTH + 3];
+
+		ArrayKernels.VECTOR.fromFloats(src, 1, LENGTH, dst, 3, 32768);
+
+		for (int i = 1; i < LENGTH; i++) {
+			short expected = (short) Math.round(Math.min(Math.max(src[i] * 32768, Short.MIN_VALUE), Short.MAX_VALUE));
+			Assert.assertEquals(expected, dst[i + 2]);
+		}
+	}
+
+}
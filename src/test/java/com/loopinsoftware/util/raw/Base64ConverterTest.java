@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.raw;
+
+import java.util.Base64;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Antonio Vicente Martin
+ * 
+ */
+public class Base64ConverterTest {
+
+	@Test
+	public void testKnownValues() {
+		String[] plain = { "", "f", "fo", "foo", "foob", "fooba", "foobar" };
+		String[] encoded = { "", "Zg==", "Zm8=", "Zm9v", "Zm9vYg==", "Zm9vYmE=", "Zm9vYmFy" };
+
+		for (int i = 0; i < plain.length; i++) {
+			byte[] src = plain[i].getBytes();
+			char[] dst = new char[encoded[i].length()];
+
+			Assert.assertEquals(dst.length, Base64Converter.encode(src, 0, src.length, dst, 0, false, true));
+			Assert.assertEquals(encoded[i], new String(dst));
+
+			byte[] result = new byte[src.length];
+			Assert.assertEquals(src.length, Base64Converter.decode(dst, 0, dst.length, result, 0, false));
+			Assert.assertArrayEquals(src, result);
+		}
+	}
+
+	@Test
+	public void testMatchesJdk() {
+		Random random = new Random(9);
+
+		for (int length = 0; length < 64; length++) {
+			byte[] src = new byte[length];
+			random.nextBytes(src);
+
+			byte[] standard = new byte[Base64Converter.encodedLength(length, true)];
+			Base64Converter.encode(src, 0, length, standard, 0, false, true);
+			Assert.assertArrayEquals(Base64.getEncoder().encode(src), standard);
+
+			char[] url = new char[Base64Converter.encodedLength(length, false)];
+			Base64Converter.encode(src, 0, length, url, 0, true, false);
+			Assert.assertEquals(Base64.getUrlEncoder().withoutPadding().encodeToString(src), new String(url));
+
+			byte[] result = new byte[length];
+			Base64Converter.decode(url, 0, url.length, result, 0, true);
+			Assert.assertArrayEquals(src, result);
+			Base64Converter.decode(standard, 0, standard.length, result, 0, false);
+			Assert.assertArrayEquals(src, result);
+		}
+	}
+
+	@Test
+	public void testEncodeQueue() {
+		Random random = new Random(10);
+
+		// Every split of the data by the end of the ring
+		for (int offset = 0; offset < 16; offset++) {
+			for (int length = 0; length <= 16; length++) {
+				byte[] src = new byte[length];
+				random.nextBytes(src);
+
+				Queue queue = new Queue(16);
+				if (offset > 0) {
+					queue.add(new byte[offset], 0, offset);
+					queue.skip(offset);
+				}
+				if (length > 0) {
+					queue.add(src, 0, length);
+				}
+
+				char[] chars = new char[Base64Converter.encodedLength(length, true)];
+				byte[] ascii = new byte[Base64Converter.encodedLength(length, false)];
+				Base64Converter.encode(queue, 0, length, chars, 0, false, true);
+				Base64Converter.encode(queue, 0, length, ascii, 0, true, false);
+
+				Assert.assertEquals(Base64.getEncoder().encodeToString(src), new String(chars));
+				Assert.assertEquals(Base64.getUrlEncoder().withoutPadding().encodeToString(src), new String(ascii));
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBadDigit() {
+		Base64Converter.decode("Zm9v-A==".toCharArray(), 0, 8, new byte[5], 0, false);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBadLength() {
+		Base64Converter.decode("Zm9vY".toCharArray(), 0, 5, new byte[4], 0, false);
+	}
+
+}
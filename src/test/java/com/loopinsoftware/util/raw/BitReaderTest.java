@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.raw;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Antonio Vicente Martin
+ * 
+ */
+public class BitReaderTest {
+
+	@Test
+	public void testMsbFirst() {
+		byte[] src = { (byte) 0xb5, 0x3c };
+		BitReader reader = new BitReader(src, 0, src.length, true);
+
+		Assert.assertEquals(0x5, reader.read(3));
+		Assert.assertEquals(0x15, reader.read(5));
+		Assert.assertEquals(0x3, reader.read(4));
+		Assert.assertTrue(reader.readBoolean());
+		Assert.assertEquals(-4, reader.readSigned(3));
+		Assert.assertEquals(0, reader.getRemainingBits());
+	}
+
+	@Test
+	public void testLsbFirst() {
+		byte[] src = { (byte) 0xb5, 0x3c };
+		BitReader reader = new BitReader(src, 0, src.length, false);
+
+		Assert.assertEquals(0x5, reader.read(3));
+		Assert.assertEquals(0x16, reader.read(5));
+		Assert.assertEquals(0xc, reader.read(4));
+		Assert.assertTrue(reader.readBoolean());
+		Assert.assertEquals(1, reader.readSigned(3));
+	}
+
+	@Test
+	public void testWriterKnownBytes() {
+		byte[] msb = new byte[2];
+		BitWriter writer = new BitWriter(msb, 0, msb.length, true);
+		writer.write(0x5, 3);
+		writer.write(0x15, 5);
+		writer.write(0x3, 4);
+		writer.flush();
+
+		Assert.assertArrayEquals(new byte[] { (byte) 0xb5, 0x30 }, msb);
+
+		byte[] lsb = new byte[2];
+		writer = new BitWriter(lsb, 0, lsb.length, false);
+		writer.write(0x5, 3);
+		writer.write(0x16, 5);
+		writer.write(0xc, 4);
+		writer.flush();
+
+		Assert.assertArrayEquals(new byte[] { (byte) 0xb5, 0x0c }, lsb);
+	}
+
+	@Test
+	public void testAlign() {
+		byte[] dst = new byte[3];
+		BitWriter writer = new BitWriter(dst, 0, dst.length, true);
+		writer.write(1, 1);
+		writer.align();
+		writer.write(0xff, 8);
+		writer.flush();
+
+		BitReader reader = new BitReader(dst, 0, dst.length, true);
+		Assert.assertEquals(1, reader.read(1));
+		reader.align();
+		Assert.assertEquals(1, reader.getBytePosition());
+		Assert.assertEquals(0xff, reader.read(8));
+	}
+
+	@Test
+	public void testRoundTripArray() {
+		for (boolean msbFirst : new boolean[] { true, false }) {
+			int[] widths = widths(1000, 11);
+			long[] values = values(widths, 12);
+			byte[] dst = new byte[widths.length * 8 + 3];
+
+			BitWriter writer = new BitWriter(dst, 3, dst.length, msbFirst);
+			for (int i = 0; i < values.length; i++) {
+				writer.write(values[i], widths[i]);
+			}
+			long written = writer.getBitPosition();
+			writer.flush();
+
+			BitReader reader = new BitReader(dst, 3, dst.length, msbFirst);
+			for (int i = 0; i < values.length; i++) {
+				Assert.assertEquals(values[i], reader.read(widths[i]));
+			}
+			Assert.assertEquals(written, reader.getBitPosition());
+		}
+	}
+
+	@Test
+	public void testRoundTripBuffer() {
+		for (boolean msbFirst : new boolean[] { true, false }) {
+			int[] widths = widths(1000, 21);
+			long[] values = values(widths, 22);
+			ByteBuffer dst = ByteBuffer.allocateDirect(widths.length * 8);
+
+			BitWriter writer = new BitWriter(dst, 0, dst.limit(), msbFirst);
+			for (int i = 0; i < values.length; i++) {
+				writer.write(values[i], widths[i]);
+			}
+			writer.flush();
+
+			BitReader reader = new BitReader(dst, 0, dst.limit(), msbFirst);
+			for (int i = 0; i < values.length; i++) {
+				Assert.assertEquals(values[i], reader.read(widths[i]));
+			}
+		}
+	}
+
+	@Test
+	public void testRoundTripQueue() {
+		for (boolean msbFirst : new boolean[] { true, false }) {
+			int[] widths = widths(200, 31);
+			long[] values = values(widths, 32);
+
+			// Wrap the data around the end of the ring
+			Queue queue = new Queue(widths.length * 8);
+			queue.add(new byte[100], 0, 100);
+			queue.skip(100);
+
+			BitWriter writer = new BitWriter(queue, msbFirst);
+			for (int i = 0; i < values.length; i++) {
+				writer.write(values[i], widths[i]);
+			}
+			writer.flush();
+
+			BitReader reader = new BitReader(queue, msbFirst);
+			for (int i = 0; i < values.length; i++) {
+				Assert.assertEquals(values[i], reader.read(widths[i]));
+			}
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testQueueFull() {
+		BitWriter writer = new BitWriter(new Queue(2), true);
+		writer.write(-1, 24);
+		writer.flush();
+	}
+
+	@Test
+	public void testQueueFullKeepsBits() {
+		Queue queue = new Queue(4);
+		queue.add(new byte[2]);
+		BitWriter writer = new BitWriter(queue, true);
+		writer.write(0xabcdef, 24);
+
+		try {
+			writer.flush();
+			Assert.fail();
+		} catch (IllegalStateException e) {
+			Assert.assertEquals(2, queue.getSize());
+		}
+
+		queue.skip(2);
+		writer.flush();
+
+		byte[] out = new byte[3];
+		queue.pop(out);
+		Assert.assertArrayEquals(new byte[] { (byte) 0xab, (byte) 0xcd, (byte) 0xef }, out);
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testReadPastEnd() {
+		BitReader reader = new BitReader(new byte[1], 0, 1, true);
+		reader.read(9);
+	}
+
+	private static int[] widths(int count, long seed) {
+		Random random = new Random(seed);
+		int[] widths = new int[count];
+		for (int i = 0; i < count; i++) {
+			widths[i] = 1 + random.nextInt(64);
+		}
+		return widths;
+	}
+
+	private static long[] values(int[] widths, long seed) {
+		Random random = new Random(seed);
+		long[] values = new long[widths.length];
+		for (int i = 0; i < widths.length; i++) {
+			long value = random.nextLong();
+			values[i] = widths[i] == 64 ? value : value & ((1L << widths[i]) - 1);
+		}
+		return values;
+	}
+
+}
@@ -0,0 +1,804 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.raw;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.loopinsoftware.util.raw.BlockingQueue.PushPolicy;
+import com.loopinsoftware.util.time.Histogram;
+
+/**
+ * @author Antonio Vicente Martin
+ * 
+ *         This class drives a {@link BlockingQueue} with producer and consumer
+ *         threads and checks every byte that goes through it.
+ * 
+ *         Payloads are made of 8 byte words, each one stamped with its
+ *         producer and its sequence number, and every push and pop moves a
+ *         whole number of words. A consumer can check any fragment it pops, so
+ *         the harness finds corrupt, duplicated, reordered and lost words with
+ *         any number of consumers and without framing. Words are lost when a
+ *         push overwrites old data, which is expected with
+ *         {@link PushPolicy#OVERWRITE_OLD_DATA} only.
+ * 
+ *         Threads waiting on a semaphore can not be stopped, so they are
+ *         daemons, and a run that does not end before the timeout is reported
+ *         as hung, with the stack of every thread left.
+ * 
+ *         <pre>
+ * java com.loopinsoftware.util.raw.BlockingQueueLoad producers=4 consumers=2 policy=PRESERVE_OLD_DATA
+ *         </pre>
+ */
+public class BlockingQueueLoad {
+
+	/**
+	 * This enum classifies the distributions of chunk sizes, drawn between a
+	 * minimum and a maximum number of words
+	 * 
+	 * @author Antonio Vicente Martin
+	 *
+	 */
+	public enum Distribution {
+		FIXED, UNIFORM, EXPONENTIAL;
+
+		/**
+		 * Draws a size
+		 * 
+		 * @param random
+		 *            The source of randomness
+		 * @param min
+		 *            The minimum
+		 * @param max
+		 *            The maximum
+		 * @return The size
+		 */
+		int next(Random random, int min, int max) {
+			switch (this) {
+			case FIXED:
+				return max;
+			case UNIFORM:
+				return min + random.nextInt(max - min + 1);
+			default:
+				// Mostly small chunks, with a mean a quarter of the way up
+				double size = min - Math.log(1 - random.nextDouble()) * (max - min) / 4;
+				return (int) Math.min(max, size);
+			}
+		}
+	}
+
+	/**
+	 * The number of bytes of each word
+	 */
+	static final int WORD = 8;
+
+	/**
+	 * The end to end latency is sampled every this many words
+	 */
+	private static final int SAMPLE_WORDS = 64;
+
+	/**
+	 * The word pushed to stop consumers, no producer stamps it
+	 */
+	private static final long POISON = -1;
+
+	/**
+	 * The indexes of the counters of each consumer
+	 */
+	private static final int DUPLICATED = 0;
+	private static final int CORRUPT = 1;
+	private static final int REORDERED = 2;
+	private static final int SHORT_POPS = 3;
+	private static final int EMPTY_POPS = 4;
+
+	private int producers = 2;
+	private int consumers = 2;
+	private int capacity = 64 * 1024;
+	private PushPolicy policy = PushPolicy.PRESERVE_OLD_DATA;
+	private int amountOfDataToRelease = 1;
+	private long bytesPerProducer = 16 * 1024 * 1024;
+	private Distribution pushDistribution = Distribution.UNIFORM;
+	private int minPushBytes = WORD;
+	private int maxPushBytes = 4096;
+	private Distribution popDistribution = Distribution.FIXED;
+	private int minPopBytes = 4096;
+	private int maxPopBytes = 4096;
+	private long timeoutMillis = 60000;
+	private long seed = 42;
+
+	/**
+	 * This class holds the result of a run
+	 * 
+	 * @author Antonio Vicente Martin
+	 *
+	 */
+	public static class Report {
+
+		private long elapsedNanos;
+		private long pushedBytes;
+		private long receivedBytes;
+		private long lostBytes;
+		private long duplicatedBytes;
+		private long corruptBytes;
+		private long reorderedWords;
+		private long shortPops;
+		private long emptyPops;
+		private boolean hung;
+		private String hangDump = "";
+		private final Histogram latency = new Histogram();
+		private final Histogram pushTime = new Histogram();
+		private final Histogram popTime = new Histogram();
+
+		/**
+		 * Returns whether every byte pushed was received once, in order and
+		 * without corruption, and the run did not hang
+		 * 
+		 * @return True if no check failed
+		 */
+		public boolean isIntact() {
+			return !hung && lostBytes == 0 && duplicatedBytes == 0 && corruptBytes == 0 && reorderedWords == 0;
+		}
+
+		/**
+		 * Returns the duration of the run
+		 * 
+		 * @return The nanoseconds
+		 */
+		public long getElapsedNanos() {
+			return elapsedNanos;
+		}
+
+		/**
+		 * Returns the bytes pushed by the producers
+		 * 
+		 * @return The number of bytes
+		 */
+		public long getPushedBytes() {
+			return pushedBytes;
+		}
+
+		/**
+		 * Returns the distinct bytes received by the consumers
+		 * 
+		 * @return The number of bytes
+		 */
+		public long getReceivedBytes() {
+			return receivedBytes;
+		}
+
+		/**
+		 * Returns the bytes pushed but never received, the overwritten ones
+		 * 
+		 * @return The number of bytes
+		 */
+		public long getLostBytes() {
+			return lostBytes;
+		}
+
+		/**
+		 * Returns the bytes received more than once
+		 * 
+		 * @return The number of bytes
+		 */
+		public long getDuplicatedBytes() {
+			return duplicatedBytes;
+		}
+
+		/**
+		 * Returns the bytes of words no producer stamped
+		 * 
+		 * @return The number of bytes
+		 */
+		public long getCorruptBytes() {
+			return corruptBytes;
+		}
+
+		/**
+		 * Returns the words a consumer received before an older word of the
+		 * same producer
+		 * 
+		 * @return The number of words
+		 */
+		public long getReorderedWords() {
+			return reorderedWords;
+		}
+
+		/**
+		 * Returns the pops that returned fewer bytes than asked, but not
+		 * none
+		 * 
+		 * @return The number of pops
+		 */
+		public long getShortPops() {
+			return shortPops;
+		}
+
+		/**
+		 * Returns the pops released by the semaphore that found no data
+		 * 
+		 * @return The number of pops
+		 */
+		public long getEmptyPops() {
+			return emptyPops;
+		}
+
+		/**
+		 * Returns whether the run did not end before the timeout
+		 * 
+		 * @return True if it hung
+		 */
+		public boolean isHung() {
+			return hung;
+		}
+
+		/**
+		 * Returns the state and stack of the threads left by a hung run
+		 * 
+		 * @return The dump, empty if the run did not hang
+		 */
+		public String getHangDump() {
+			return hangDump;
+		}
+
+		/**
+		 * Returns the received bytes per second
+		 * 
+		 * @return The throughput
+		 */
+		public double getThroughput() {
+			return receivedBytes * 1e9 / elapsedNanos;
+		}
+
+		/**
+		 * Returns the nanoseconds between a push and the pop of the same
+		 * word, sampled every {@link BlockingQueueLoad#SAMPLE_WORDS} words
+		 * 
+		 * @return The histogram
+		 */
+		public Histogram getLatency() {
+			return latency;
+		}
+
+		/**
+		 * Returns the nanoseconds spent in push(), blocking included
+		 * 
+		 * @return The histogram
+		 */
+		public Histogram getPushTime() {
+			return pushTime;
+		}
+
+		/**
+		 * Returns the nanoseconds spent in pop(), blocking included
+		 * 
+		 * @return The histogram
+		 */
+		public Histogram getPopTime() {
+			return popTime;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder builder = new StringBuilder();
+			builder.append(isIntact() ? "INTACT" : hung ? "HUNG" : "FAILED");
+			builder.append(String.format(" in %.3f s, %.1f MB/s%n", elapsedNanos / 1e9, getThroughput() / 1e6));
+			builder.append("bytes pushed: ").append(pushedBytes).append(", received: ").append(receivedBytes)
+					.append(", lost: ").append(lostBytes).append(", duplicated: ").append(duplicatedBytes)
+					.append(", corrupt: ").append(corruptBytes).append(String.format("%n"));
+			builder.append("reordered words: ").append(reorderedWords).append(", short pops: ").append(shortPops)
+					.append(", empty pops: ").append(emptyPops).append(String.format("%n"));
+			builder.append("latency ns: ").append(latency).append(String.format("%n"));
+			builder.append("push ns: ").append(pushTime).append(String.format("%n"));
+			builder.append("pop ns: ").append(popTime).append(String.format("%n"));
+			builder.append(hangDump);
+			return builder.toString();
+		}
+	}
+
+	/**
+	 * Runs the harness, configured by arguments such as producers=4
+	 * 
+	 * @param args
+	 *            The settings, named as the setters without the set prefix
+	 */
+	public static void main(String[] args) {
+		BlockingQueueLoad load = new BlockingQueueLoad();
+		for (String arg : args) {
+			int equals = arg.indexOf('=');
+			if (equals < 0) {
+				throw new IllegalArgumentException("Expected name=value, got " + arg);
+			}
+			load.set(arg.substring(0, equals), arg.substring(equals + 1));
+		}
+
+		Report report = load.run();
+		System.out.print(report);
+		System.exit(load.check(report) ? 0 : 1);
+	}
+
+	/**
+	 * Checks a report of this configuration, where lost bytes are only
+	 * expected when old data is overwritten
+	 * 
+	 * @param report
+	 *            The report
+	 * @return True if no check failed
+	 */
+	public boolean check(Report report) {
+		return !report.isHung() && report.getDuplicatedBytes() == 0 && report.getCorruptBytes() == 0
+				&& report.getReorderedWords() == 0
+				&& (policy == PushPolicy.OVERWRITE_OLD_DATA || report.getLostBytes() == 0);
+	}
+
+	/**
+	 * Sets a setting by name
+	 * 
+	 * @param name
+	 *            The name
+	 * @param value
+	 *            The value
+	 */
+	private void set(String name, String value) {
+		switch (name) {
+		case "producers":
+			setProducers(Integer.parseInt(value));
+			break;
+		case "consumers":
+			setConsumers(Integer.parseInt(value));
+			break;
+		case "capacity":
+			setCapacity(Integer.parseInt(value));
+			break;
+		case "policy":
+			setPolicy(PushPolicy.valueOf(value));
+			break;
+		case "amountOfDataToRelease":
+			setAmountOfDataToRelease(Integer.parseInt(value));
+			break;
+		case "bytesPerProducer":
+			setBytesPerProducer(Long.parseLong(value));
+			break;
+		case "push":
+			String[] push = value.split(":");
+			setPushSizes(Distribution.valueOf(push[0]), Integer.parseInt(push[1]), Integer.parseInt(push[2]));
+			break;
+		case "pop":
+			String[] pop = value.split(":");
+			setPopSizes(Distribution.valueOf(pop[0]), Integer.parseInt(pop[1]), Integer.parseInt(pop[2]));
+			break;
+		case "timeoutMillis":
+			setTimeoutMillis(Long.parseLong(value));
+			break;
+		case "seed":
+			setSeed(Long.parseLong(value));
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown setting: " + name);
+		}
+	}
+
+	/**
+	 * Runs the producers and the consumers until every producer has pushed
+	 * its bytes and the consumers have emptied the queue, or until the
+	 * timeout
+	 * 
+	 * @return The report
+	 */
+	public Report run() {
+		final BlockingQueue queue = new BlockingQueue(capacity, policy, amountOfDataToRelease);
+		final Report report = new Report();
+		final long wordsPerProducer = bytesPerProducer / WORD;
+		if (wordsPerProducer * producers > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Too many words: " + wordsPerProducer * producers);
+		}
+
+		final long[][] stamps = new long[producers][(int) (wordsPerProducer / SAMPLE_WORDS) + 1];
+		final BitSet[][] received = new BitSet[consumers][producers];
+		final long[][] counters = new long[consumers][5];
+		final Histogram[][] histograms = new Histogram[consumers + producers][2];
+		for (Histogram[] pair : histograms) {
+			pair[0] = new Histogram();
+			pair[1] = new Histogram();
+		}
+
+		List<Thread> producerThreads = new ArrayList<Thread>();
+		for (int p = 0; p < producers; p++) {
+			final int producer = p;
+			final Random random = new Random(seed + p);
+			producerThreads.add(newThread("producer-" + p, new Runnable() {
+				@Override
+				public void run() {
+					produce(queue, producer, wordsPerProducer, random, stamps[producer], histograms[consumers
+							+ producer][0]);
+				}
+			}));
+		}
+
+		List<Thread> consumerThreads = new ArrayList<Thread>();
+		for (int c = 0; c < consumers; c++) {
+			final int consumer = c;
+			final Random random = new Random(seed - c - 1);
+			consumerThreads.add(newThread("consumer-" + c, new Runnable() {
+				@Override
+				public void run() {
+					consume(queue, received[consumer], wordsPerProducer, random, stamps, counters[consumer],
+							histograms[consumer]);
+				}
+			}));
+		}
+
+		long start = System.nanoTime();
+		long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		for (Thread thread : consumerThreads) {
+			thread.start();
+		}
+		for (Thread thread : producerThreads) {
+			thread.start();
+		}
+
+		boolean finished = join(producerThreads, deadline);
+		if (finished) {
+			// Consumers may be waiting for data that never comes
+			Thread poisoner = newThread("poisoner", new Runnable() {
+				@Override
+				public void run() {
+					byte[] poison = new byte[WORD];
+					ByteConverter.toBytesArray(POISON, poison, 0, true);
+					while (true) {
+						queue.push(poison);
+						try {
+							Thread.sleep(1);
+						} catch (InterruptedException e) {
+							return;
+						}
+					}
+				}
+			});
+			poisoner.start();
+			finished = join(consumerThreads, deadline);
+			poisoner.interrupt();
+		}
+		report.elapsedNanos = System.nanoTime() - start;
+
+		if (!finished) {
+			report.hung = true;
+			report.hangDump = dump(producerThreads, consumerThreads);
+			return report;
+		}
+
+		fill(report, received, counters, histograms, wordsPerProducer);
+		return report;
+	}
+
+	/**
+	 * Pushes the words of a producer
+	 */
+	private void produce(BlockingQueue queue, int producer, long words, Random random, long[] stamps,
+			Histogram pushTime) {
+		byte[] chunk = new byte[maxPushBytes];
+		long sequence = 0;
+		while (sequence < words) {
+			int length = (int) Math.min(words - sequence, pushDistribution.next(random, minPushBytes / WORD,
+					maxPushBytes / WORD));
+			byte[] src = length * WORD == chunk.length ? chunk : new byte[length * WORD];
+			for (int i = 0; i < length; i++) {
+				ByteConverter.toBytesArray((long) producer << 48 | (sequence + i), src, i * WORD, true);
+			}
+
+			long now = System.nanoTime();
+			for (long s = (sequence + SAMPLE_WORDS - 1) / SAMPLE_WORDS * SAMPLE_WORDS; s < sequence
+					+ length; s += SAMPLE_WORDS) {
+				stamps[(int) (s / SAMPLE_WORDS)] = now;
+			}
+
+			queue.push(src);
+			pushTime.record(System.nanoTime() - now);
+			sequence += length;
+		}
+	}
+
+	/**
+	 * Pops and checks words until the poison word
+	 */
+	private void consume(BlockingQueue queue, BitSet[] received, long words, Random random, long[][] stamps,
+			long[] counters, Histogram[] histograms) {
+		for (int p = 0; p < received.length; p++) {
+			received[p] = new BitSet((int) words);
+		}
+		long[] last = new long[received.length];
+		Arrays.fill(last, -1);
+		byte[][] buffers = new byte[maxPopBytes / WORD + 1][];
+
+		while (true) {
+			int length = popDistribution.next(random, minPopBytes / WORD, maxPopBytes / WORD);
+			if (buffers[length] == null) {
+				buffers[length] = new byte[length * WORD];
+			}
+			byte[] dst = buffers[length];
+
+			long before = System.nanoTime();
+			int popped = queue.pop(dst);
+			long now = System.nanoTime();
+			histograms[1].record(now - before);
+
+			if (popped == 0) {
+				counters[EMPTY_POPS]++;
+			} else if (popped < dst.length) {
+				counters[SHORT_POPS]++;
+			}
+			if (popped % WORD != 0) {
+				// The queue cut a word, count the rest as corrupt
+				counters[CORRUPT] += popped % WORD;
+			}
+
+			boolean poisoned = false;
+			for (int i = 0; i + WORD <= popped; i += WORD) {
+				long word = ByteConverter.toLongValue(dst, i, true);
+				if (word == POISON) {
+					poisoned = true;
+					continue;
+				}
+
+				int producer = (int) (word >>> 48);
+				long sequence = word & 0xffffffffffffL;
+				if (producer >= received.length || sequence >= words) {
+					counters[CORRUPT] += WORD;
+					continue;
+				}
+				if (received[producer].get((int) sequence)) {
+					counters[DUPLICATED] += WORD;
+				}
+				received[producer].set((int) sequence);
+				if (sequence <= last[producer]) {
+					counters[REORDERED]++;
+				}
+				last[producer] = sequence;
+
+				if (sequence % SAMPLE_WORDS == 0) {
+					histograms[0].record(now - stamps[producer][(int) (sequence / SAMPLE_WORDS)]);
+				}
+			}
+			if (poisoned) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Merges the results of the threads into a report
+	 */
+	private void fill(Report report, BitSet[][] received, long[][] counters, Histogram[][] histograms,
+			long wordsPerProducer) {
+		report.pushedBytes = wordsPerProducer * producers * WORD;
+		for (int p = 0; p < producers; p++) {
+			BitSet all = new BitSet();
+			for (int c = 0; c < consumers; c++) {
+				BitSet copy = (BitSet) received[c][p].clone();
+				copy.and(all);
+				report.duplicatedBytes += (long) copy.cardinality() * WORD;
+				all.or(received[c][p]);
+			}
+			report.receivedBytes += (long) all.cardinality() * WORD;
+		}
+		report.lostBytes = report.pushedBytes - report.receivedBytes;
+
+		for (int c = 0; c < consumers; c++) {
+			report.duplicatedBytes += counters[c][DUPLICATED];
+			report.corruptBytes += counters[c][CORRUPT];
+			report.reorderedWords += counters[c][REORDERED];
+			report.shortPops += counters[c][SHORT_POPS];
+			report.emptyPops += counters[c][EMPTY_POPS];
+			report.latency.add(histograms[c][0]);
+			report.popTime.add(histograms[c][1]);
+		}
+		for (int p = 0; p < producers; p++) {
+			report.pushTime.add(histograms[consumers + p][0]);
+		}
+	}
+
+	/**
+	 * Waits for threads to end
+	 * 
+	 * @return True if all of them ended before the deadline
+	 */
+	private static boolean join(List<Thread> threads, long deadline) {
+		for (Thread thread : threads) {
+			long left = deadline - System.nanoTime();
+			try {
+				if (left > 0) {
+					TimeUnit.NANOSECONDS.timedJoin(thread, left);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+			if (thread.isAlive()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the state and stack of the threads still alive
+	 */
+	private static String dump(List<Thread> producers, List<Thread> consumers) {
+		StringBuilder builder = new StringBuilder();
+		List<Thread> threads = new ArrayList<Thread>(producers);
+		threads.addAll(consumers);
+		for (Thread thread : threads) {
+			if (!thread.isAlive()) {
+				continue;
+			}
+			builder.append('"').append(thread.getName()).append("\" ").append(thread.getState())
+					.append(String.format("%n"));
+			for (StackTraceElement element : thread.getStackTrace()) {
+				builder.append("\tat ").append(element).append(String.format("%n"));
+			}
+		}
+		return builder.toString();
+	}
+
+	private static Thread newThread(String name, Runnable runnable) {
+		Thread thread = new Thread(runnable, name);
+		thread.setDaemon(true);
+		return thread;
+	}
+
+	/**
+	 * Sets the number of producer threads
+	 * 
+	 * @param producers
+	 *            The number of producers
+	 */
+	public void setProducers(int producers) {
+		if (producers < 1 || producers >= 0xffff) {
+			throw new IllegalArgumentException("Bad producers: " + producers);
+		}
+		this.producers = producers;
+	}
+
+	/**
+	 * Sets the number of consumer threads
+	 * 
+	 * @param consumers
+	 *            The number of consumers
+	 */
+	public void setConsumers(int consumers) {
+		if (consumers < 1) {
+			throw new IllegalArgumentException("Bad consumers: " + consumers);
+		}
+		this.consumers = consumers;
+	}
+
+	/**
+	 * Sets the capacity of the queue
+	 * 
+	 * @param capacity
+	 *            The number of bytes, a multiple of 8
+	 */
+	public void setCapacity(int capacity) {
+		checkWords(capacity);
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Sets the push policy of the queue
+	 * 
+	 * @param policy
+	 *            The push policy
+	 */
+	public void setPolicy(PushPolicy policy) {
+		this.policy = policy;
+	}
+
+	/**
+	 * Sets the minimum amount of data to release the data available
+	 * semaphore of the queue
+	 * 
+	 * @param amountOfDataToRelease
+	 *            The number of bytes
+	 */
+	public void setAmountOfDataToRelease(int amountOfDataToRelease) {
+		this.amountOfDataToRelease = amountOfDataToRelease;
+	}
+
+	/**
+	 * Sets the bytes each producer pushes, rounded down to whole words
+	 * 
+	 * @param bytesPerProducer
+	 *            The number of bytes
+	 */
+	public void setBytesPerProducer(long bytesPerProducer) {
+		if (bytesPerProducer < WORD) {
+			throw new IllegalArgumentException("Bad bytes per producer: " + bytesPerProducer);
+		}
+		this.bytesPerProducer = bytesPerProducer;
+	}
+
+	/**
+	 * Sets the sizes of the pushed chunks
+	 * 
+	 * @param distribution
+	 *            The distribution
+	 * @param min
+	 *            The minimum number of bytes, a multiple of 8
+	 * @param max
+	 *            The maximum number of bytes, a multiple of 8
+	 */
+	public void setPushSizes(Distribution distribution, int min, int max) {
+		checkWords(min, max);
+		this.pushDistribution = distribution;
+		this.minPushBytes = min;
+		this.maxPushBytes = max;
+	}
+
+	/**
+	 * Sets the sizes of the buffers popped into
+	 * 
+	 * @param distribution
+	 *            The distribution
+	 * @param min
+	 *            The minimum number of bytes, a multiple of 8
+	 * @param max
+	 *            The maximum number of bytes, a multiple of 8
+	 */
+	public void setPopSizes(Distribution distribution, int min, int max) {
+		checkWords(min, max);
+		this.popDistribution = distribution;
+		this.minPopBytes = min;
+		this.maxPopBytes = max;
+	}
+
+	/**
+	 * Sets the time after which a run is reported as hung
+	 * 
+	 * @param timeoutMillis
+	 *            The milliseconds
+	 */
+	public void setTimeoutMillis(long timeoutMillis) {
+		this.timeoutMillis = timeoutMillis;
+	}
+
+	/**
+	 * Sets the seed of the chunk sizes
+	 * 
+	 * @param seed
+	 *            The seed
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	private static void checkWords(int min, int max) {
+		checkWords(min);
+		checkWords(max);
+		if (min > max) {
+			throw new IllegalArgumentException("Bad range: " + min + ", " + max);
+		}
+	}
+
+	private static void checkWords(int bytes) {
+		if (bytes < WORD || bytes % WORD != 0) {
+			throw new IllegalArgumentException("Expected a multiple of " + WORD + " bytes, got " + bytes);
+		}
+	}
+
+}
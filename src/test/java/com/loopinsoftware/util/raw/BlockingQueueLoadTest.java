@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.raw;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.loopinsoftware.util.raw.BlockingQueue.PushPolicy;
+import com.loopinsoftware.util.raw.BlockingQueueLoad.Distribution;
+import com.loopinsoftware.util.raw.BlockingQueueLoad.Report;
+
+/**
+ * @author Antonio Vicente Martin
+ * 
+ */
+public class BlockingQueueLoadTest {
+
+	@Test
+	public void testPreserveOldData() {
+		BlockingQueueLoad load = newLoad(PushPolicy.PRESERVE_OLD_DATA);
+		Report report = load.run();
+
+		Assert.assertTrue(report.toString(), report.isIntact());
+		Assert.assertEquals(2 * 64 * 1024, report.getReceivedBytes());
+		Assert.assertTrue(report.getLatency().getCount() > 0);
+	}
+
+	@Test
+	public void testOverwriteOldData() {
+		BlockingQueueLoad load = newLoad(PushPolicy.OVERWRITE_OLD_DATA);
+		load.setCapacity(1024);
+		Report report = load.run();
+
+		Assert.assertTrue(report.toString(), load.check(report));
+		Assert.assertEquals(report.getPushedBytes(), report.getReceivedBytes() + report.getLostBytes());
+	}
+
+	@Test
+	public void testTimeout() {
+		BlockingQueueLoad load = newLoad(PushPolicy.PRESERVE_OLD_DATA);
+		load.setBytesPerProducer(4 * 1024 * 1024);
+		load.setTimeoutMillis(1);
+		Report report = load.run();
+
+		Assert.assertTrue(report.isHung());
+		Assert.assertFalse(load.check(report));
+		Assert.assertTrue(report.getHangDump().contains("producer-"));
+	}
+
+	private static BlockingQueueLoad newLoad(PushPolicy policy) {
+		BlockingQueueLoad load = new BlockingQueueLoad();
+		load.setPolicy(policy);
+		load.setProducers(2);
+		load.setConsumers(2);
+		load.setCapacity(4096);
+		load.setBytesPerProducer(64 * 1024);
+		load.setPushSizes(Distribution.UNIFORM, 8, 512);
+		load.setPopSizes(Distribution.FIXED, 512, 512);
+		load.setTimeoutMillis(30000);
+		return load;
+	}
+
+}
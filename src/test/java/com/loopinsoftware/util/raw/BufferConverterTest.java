@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.raw;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Antonio Vicente Martin
+ * 
+ */
+public class BufferConverterTest {
+
+	@Test
+	public void testToIntValueMatchesByteConverter() {
+		byte[] test = { 1, 2, 3, 4 };
+		ByteBuffer direct = ByteBuffer.allocateDirect(test.length);
+		direct.put(test);
+
+		Assert.assertEquals(ByteConverter.toIntValue(test, 0, true), BufferConverter.toIntValue(direct, 0, true));
+		Assert.assertEquals(ByteConverter.toIntValue(test, 0, false), BufferConverter.toIntValue(direct, 0, false));
+	}
+
+	@Test
+	public void testToValueThreeBytes() {
+		byte[] test = { 0, (byte) 0x80, 2, 3 };
+		ByteBuffer heap = ByteBuffer.wrap(test);
+
+		Assert.assertEquals(ByteConverter.toValue(test, 1, 3, true), BufferConverter.toValue(heap, 1, 3, true));
+		Assert.assertEquals(ByteConverter.toValue(test, 1, 3, false), BufferConverter.toValue(heap, 1, 3, false));
+	}
+
+	@Test
+	public void testToBufferLeavesPositionUntouched() {
+		ByteBuffer direct = ByteBuffer.allocateDirect(8);
+
+		BufferConverter.toBuffer((short) 0x0102, direct, 2, true);
+
+		Assert.assertEquals(0, direct.position());
+		Assert.assertEquals(1, direct.get(2));
+		Assert.assertEquals(2, direct.get(3));
+	}
+
+	@Test
+	public void testShortArrayRoundTrip() {
+		short[] test = { 1, -2, Short.MAX_VALUE };
+		short[] out = new short[test.length];
+		ByteBuffer direct = ByteBuffer.allocateDirect(test.length * 2);
+
+		BufferConverter.fromShortArray(test, 0, test.length, direct, 0, false);
+		BufferConverter.toShortArray(direct, 0, out, 0, out.length, false);
+
+		Assert.assertArrayEquals(test, out);
+	}
+
+	@Test
+	public void testShortArrayMatchesByteConverter() {
+		// The first value is not converted, so it stays 0 in out
+		short[] test = { 0, 1, -2, Short.MAX_VALUE, Short.MIN_VALUE };
+		for (boolean littleEndian : new boolean[] { true, false }) {
+			byte[] expected = new byte[3 + test.length * 2];
+			ByteBuffer direct = ByteBuffer.allocateDirect(expected.length);
+			short[] out = new short[test.length];
+
+			ByteConverter.fromShortArray(test, 1, test.length, expected, 3, littleEndian);
+			BufferConverter.fromShortArray(test, 1, test.length, direct, 3, littleEndian);
+			BufferConverter.toShortArray(direct, 3, out, 1, out.length, littleEndian);
+
+			assertBufferEquals(expected, direct);
+			Assert.assertArrayEquals(test, out);
+		}
+	}
+
+	@Test
+	public void testIntArrayMatchesByteConverter() {
+		int[] test = { 0, 0x04030201, -1, Integer.MIN_VALUE };
+		for (boolean littleEndian : new boolean[] { true, false }) {
+			byte[] expected = new byte[3 + test.length * 4];
+			ByteBuffer direct = ByteBuffer.allocateDirect(expected.length);
+			int[] out = new int[test.length];
+
+			ByteConverter.fromIntArray(test, 1, test.length, expected, 3, littleEndian);
+			BufferConverter.fromIntArray(test, 1, test.length, direct, 3, littleEndian);
+			BufferConverter.toIntArray(direct, 3, out, 1, out.length, littleEndian);
+
+			assertBufferEquals(expected, direct);
+			Assert.assertArrayEquals(test, out);
+		}
+	}
+
+	@Test
+	public void testLongArrayMatchesByteConverter() {
+		long[] test = { 0, 0x0706050403020100l, -1, Long.MIN_VALUE };
+		for (boolean littleEndian : new boolean[] { true, false }) {
+			byte[] expected = new byte[3 + test.length * 8];
+			ByteBuffer direct = ByteBuffer.allocateDirect(expected.length);
+			long[] out = new long[test.length];
+
+			ByteConverter.fromLongArray(test, 1, test.length, expected, 3, littleEndian);
+			BufferConverter.fromLongArray(test, 1, test.length, direct, 3, littleEndian);
+			BufferConverter.toLongArray(direct, 3, out, 1, out.length, littleEndian);
+
+			assertBufferEquals(expected, direct);
+			Assert.assertArrayEquals(test, out);
+		}
+	}
+
+	@Test
+	public void testFloatArrayMatchesByteConverter() {
+		float[] test = { 0, 0.5f, -3.25f, Float.MAX_VALUE, Float.NaN };
+		for (boolean littleEndian : new boolean[] { true, false }) {
+			byte[] expected = new byte[3 + test.length * 4];
+			ByteBuffer direct = ByteBuffer.allocateDirect(expected.length);
+			float[] out = new float[test.length];
+
+			ByteConverter.fromFloatArray(test, 1, test.length, expected, 3, littleEndian);
+			BufferConverter.fromFloatArray(test, 1, test.length, direct, 3, littleEndian);
+			BufferConverter.toFloatArray(direct, 3, out, 1, out.length, littleEndian);
+
+			assertBufferEquals(expected, direct);
+			Assert.assertArrayEquals(test, out, 0);
+		}
+	}
+
+	@Test
+	public void testDoubleArrayMatchesByteConverter() {
+		double[] test = { 0, 1.5, -0.25, Double.MAX_VALUE, Double.MIN_VALUE };
+		for (boolean littleEndian : new boolean[] { true, false }) {
+			byte[] expected = new byte[3 + test.length * 8];
+			ByteBuffer direct = ByteBuffer.allocateDirect(expected.length);
+			double[] out = new double[test.length];
+
+			ByteConverter.fromDoubleArray(test, 1, test.length, expected, 3, littleEndian);
+			BufferConverter.fromDoubleArray(test, 1, test.length, direct, 3, littleEndian);
+			BufferConverter.toDoubleArray(direct, 3, out, 1, out.length, littleEndian);
+
+			assertBufferEquals(expected, direct);
+			Assert.assertArrayEquals(test, out, 0);
+		}
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testToLongValueIndexOutOfBoundsException() {
+		ByteBuffer heap = ByteBuffer.allocate(8);
+		heap.limit(4);
+		BufferConverter.toLongValue(heap, 0, true);
+	}
+
+	private static void assertBufferEquals(byte[] expected, ByteBuffer buffer) {
+		Assert.assertEquals(expected.length, buffer.limit());
+		for (int i = 0; i < expected.length; i++) {
+			Assert.assertEquals("byte " + i, expected[i], buffer.get(i));
+		}
+	}
+
+}
@@ -143,7 +143,7 @@ public class ByteConverterTest {
 	@Test
 	public void testToDoublesArrayNormalizeBigEndian() {
 		byte[] test = { 64, 0, 32, 0 };
-		double[] expected = { 0.0009765625, 0.00048828125 };
+		double[] expected = { 0.001953125, 0.0009765625 };
 		double[] out = new double[expected.length];
 
 		ByteConverter.toDoublesArray(test, 0, 2, out, 0, out.length, true, false);
@@ -151,4 +151,218 @@ public class ByteConverterTest {
 		Assert.assertArrayEquals(expected, out, 0);
 	}
 
+	@Test
+	public void testToValueLongBigEndian() {
+		byte[] test = { 0, 1, 2, 3, 4, 5, 6, (byte) 0x87 };
+		long expected = 0x8706050403020100l;
+		Assert.assertEquals(expected, ByteConverter.toValue(test, 0, 8, false));
+	}
+
+	@Test
+	public void testToValueMatchesBytewise() {
+		byte[] test = { (byte) 0xfe, 1, (byte) 0x80, 3, 4, (byte) 0xff, 6, 7, 8 };
+		for (int width = 1; width <= 4; width++) {
+			Assert.assertEquals(ByteConverter.toValueBytewise(test, 1, width, true),
+					ByteConverter.toValue(test, 1, width, true));
+			Assert.assertEquals(ByteConverter.toValueBytewise(test, 1, width, false),
+					ByteConverter.toValue(test, 1, width, false));
+		}
+	}
+
+	@Test
+	public void testToShortValueSigned() {
+		byte[] test = { (byte) 0xff, (byte) 0xfe };
+		Assert.assertEquals(-2, ByteConverter.toShortValue(test, 0, true));
+		Assert.assertEquals(-257, ByteConverter.toShortValue(test, 0, false));
+	}
+
+	@Test
+	public void testFloatRoundTrip() {
+		byte[] out = new byte[5];
+
+		ByteConverter.toBytesArray(-1.5f, out, 1, true);
+
+		Assert.assertEquals(Float.floatToIntBits(-1.5f), ByteConverter.toIntValue(out, 1, true));
+		Assert.assertEquals(-1.5f, ByteConverter.toFloatValue(out, 1, true), 0);
+	}
+
+	@Test
+	public void testDoubleRoundTrip() {
+		byte[] out = new byte[8];
+
+		ByteConverter.toBytesArray(Math.PI, out, 0, false);
+
+		Assert.assertEquals(Double.doubleToLongBits(Math.PI), ByteConverter.toLongValue(out, 0, false));
+		Assert.assertEquals(Math.PI, ByteConverter.toDoubleValue(out, 0, false), 0);
+	}
+
+	@Test(expected = ArrayIndexOutOfBoundsException.class)
+	public void testToLongValueNegativeIndex() {
+		byte[] test = new byte[8];
+		ByteConverter.toLongValue(test, -1, true);
+	}
+
+	@Test
+	public void testToShortArrayBigEndian() {
+		byte[] test = { 9, 1, 0, 2, 0, (byte) 0xff, (byte) 0xff };
+		short[] expected = { 0, 1, 2, -1 };
+		short[] out = new short[expected.length];
+
+		ByteConverter.toShortArray(test, 1, out, 1, out.length, false);
+
+		Assert.assertArrayEquals(expected, out);
+	}
+
+	@Test
+	public void testIntArrayRoundTrip() {
+		int[] test = { 0x04030201, -1, Integer.MIN_VALUE };
+		int[] out = new int[test.length];
+		byte[] bytes = new byte[test.length * 4];
+
+		ByteConverter.fromIntArray(test, 0, test.length, bytes, 0, true);
+		ByteConverter.toIntArray(bytes, 0, out, 0, out.length, true);
+
+		Assert.assertArrayEquals(test, out);
+		Assert.assertEquals(4, bytes[0]);
+	}
+
+	@Test
+	public void testLongArrayRoundTrip() {
+		long[] test = { 0x0706050403020100l, Long.MIN_VALUE };
+		long[] out = new long[test.length];
+		byte[] bytes = new byte[test.length * 8];
+
+		ByteConverter.fromLongArray(test, 0, test.length, bytes, 0, false);
+		ByteConverter.toLongArray(bytes, 0, out, 0, out.length, false);
+
+		Assert.assertArrayEquals(test, out);
+		Assert.assertEquals(test[0], ByteConverter.toValue(bytes, 0, 8, false));
+	}
+
+	@Test
+	public void testFloatArrayRoundTrip() {
+		float[] test = { 0.5f, -3.25f, Float.MAX_VALUE };
+		float[] out = new float[test.length];
+		byte[] bytes = new byte[test.length * 4];
+
+		ByteConverter.fromFloatArray(test, 0, test.length, bytes, 0, true);
+		ByteConverter.toFloatArray(bytes, 0, out, 0, out.length, true);
+
+		Assert.assertArrayEquals(test, out, 0);
+	}
+
+	@Test(expected = ArrayIndexOutOfBoundsException.class)
+	public void testFromShortArrayArrayIndexOutOfBoundsException() {
+		short[] test = { 1, 2 };
+		ByteConverter.fromShortArray(test, 0, test.length, new byte[3], 0, true);
+	}
+
+	@Test
+	public void testSwapBytesInt() {
+		int[] test = { 0x01020304, 0x05060708, 0x090a0b0c };
+		int[] expected = { 0x01020304, 0x08070605, 0x0c0b0a09 };
+
+		ByteConverter.swapBytes(test, 1, 3);
+
+		Assert.assertArrayEquals(expected, test);
+	}
+
+	@Test
+	public void testSwapBytesShortAndLong() {
+		short[] shorts = { 0x0102 };
+		long[] longs = { 0x0102030405060708l };
+
+		ByteConverter.swapBytes(shorts, 0, 1);
+		ByteConverter.swapBytes(longs, 0, 1);
+
+		Assert.assertEquals(0x0201, shorts[0]);
+		Assert.assertEquals(0x0807060504030201l, longs[0]);
+	}
+
+	@Test(expected = ArrayIndexOutOfBoundsException.class)
+	public void testSwapBytesLongArrayIndexOutOfBoundsException() {
+		long[] test = { 1, 2, 3 };
+		try {
+			ByteConverter.swapBytes(test, 1, 4);
+		} finally {
+			// The range is checked before anything is swapped
+			Assert.assertArrayEquals(new long[] { 1, 2, 3 }, test);
+		}
+	}
+
+	@Test
+	public void testSwapBytesArray() {
+		byte[] test = { 9, 1, 2, 3, 4, 5, 6, 7, 8 };
+		byte[] expected = { 9, 4, 3, 2, 1, 8, 7, 6, 5 };
+
+		ByteConverter.swapBytes(test, 1, test.length, 4);
+
+		Assert.assertArrayEquals(expected, test);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSwapBytesArrayIllegalArgumentException() {
+		ByteConverter.swapBytes(new byte[6], 0, 6, 4);
+	}
+
+	@Test
+	public void testDoubleArray() {
+		double[] test = { 1.5, -0.25, Double.MAX_VALUE, Double.MIN_VALUE };
+		byte[] bytes = new byte[test.length * 8 + 1];
+		double[] result = new double[test.length];
+
+		ByteConverter.fromDoubleArray(test, 0, test.length, bytes, 1, false);
+		ByteConverter.toDoubleArray(bytes, 1, result, 0, result.length, false);
+
+		Assert.assertArrayEquals(test, result, 0);
+		Assert.assertEquals(-0.25, ByteConverter.toDoubleValue(bytes, 9, false), 0);
+	}
+
+	@Test
+	public void testHalfKnownValues() {
+		Assert.assertEquals(0x3c00, ByteConverter.floatToHalf(1f));
+		Assert.assertEquals((short) 0xc000, ByteConverter.floatToHalf(-2f));
+		Assert.assertEquals(0x7bff, ByteConverter.floatToHalf(65504f));
+		Assert.assertEquals(0x7c00, ByteConverter.floatToHalf(65520f));
+		Assert.assertEquals(0x0001, ByteConverter.floatToHalf(0x1p-24f));
+		Assert.assertEquals(0x0000, ByteConverter.floatToHalf(0x1p-25f));
+		Assert.assertEquals(0x3555, ByteConverter.floatToHalf(1f / 3));
+		Assert.assertEquals((short) 0x8000, ByteConverter.floatToHalf(-0f));
+
+		Assert.assertEquals(0.333251953125f, ByteConverter.halfToFloat((short) 0x3555), 0);
+		Assert.assertEquals(0x1p-14f, ByteConverter.halfToFloat((short) 0x0400), 0);
+		Assert.assertEquals(Float.NEGATIVE_INFINITY, ByteConverter.halfToFloat((short) 0xfc00), 0);
+		Assert.assertTrue(Float.isNaN(ByteConverter.halfToFloat(ByteConverter.floatToHalf(Float.NaN))));
+	}
+
+	@Test
+	public void testHalfRoundTrip() {
+		for (int i = 0; i < 0x10000; i++) {
+			short half = (short) i;
+			float value = ByteConverter.halfToFloat(half);
+			if (!Float.isNaN(value)) {
+				Assert.assertEquals(half, ByteConverter.floatToHalf(value));
+			}
+		}
+	}
+
+	@Test
+	public void testHalfArray() {
+		float[] test = { 0.5f, -1024f, 0.1f, 1e-4f };
+		byte[] bytes = new byte[test.length * 2];
+		float[] result = new float[test.length];
+
+		ByteConverter.fromHalfFloatArray(test, 0, test.length, bytes, 0, true);
+		ByteConverter.toHalfFloatArray(bytes, 0, result, 0, result.length, true);
+
+		for (int i = 0; i < test.length; i++) {
+			Assert.assertEquals(test[i], result[i], Math.abs(test[i]) / 1024);
+			Assert.assertEquals(result[i], ByteConverter.toHalfFloatValue(bytes, i * 2, true), 0);
+		}
+
+		ByteConverter.toHalfBytesArray(0.5f, bytes, 0, true);
+		Assert.assertEquals(0x38, bytes[0]);
+		Assert.assertEquals(0x00, bytes[1]);
+	}
+
 }
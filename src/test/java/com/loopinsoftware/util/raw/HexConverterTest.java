@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.raw;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Antonio Vicente Martin
+ * 
+ */
+public class HexConverterTest {
+
+	@Test
+	public void testEncode() {
+		byte[] src = { 0x00, 0x1f, (byte) 0xab, (byte) 0xff };
+		char[] upper = new char[8];
+		byte[] lower = new byte[10];
+
+		Assert.assertEquals(8, HexConverter.encode(src, 0, src.length, upper, 0, true));
+		Assert.assertEquals(10, HexConverter.encode(src, 0, src.length, lower, 2, false));
+
+		Assert.assertEquals("001FABFF", new String(upper));
+		Assert.assertEquals("001fabff", new String(lower, 2, 8));
+	}
+
+	@Test
+	public void testRoundTrip() {
+		byte[] src = new byte[1000];
+		new Random(5).nextBytes(src);
+		char[] chars = new char[2 * src.length];
+		byte[] ascii = new byte[2 * src.length];
+		byte[] result = new byte[src.length];
+
+		HexConverter.encode(src, 0, src.length, chars, 0, false);
+		Assert.assertEquals(src.length, HexConverter.decode(chars, 0, chars.length, result, 0));
+		Assert.assertArrayEquals(src, result);
+
+		HexConverter.encode(src, 0, src.length, ascii, 0, true);
+		result = new byte[src.length];
+		HexConverter.decode(ascii, 0, ascii.length, result, 0);
+		Assert.assertArrayEquals(src, result);
+	}
+
+	@Test
+	public void testEncodeQueue() {
+		byte[] data = { 1, 2, 3, 4, 5, 6 };
+		Queue queue = new Queue(8);
+		queue.add(new byte[5], 0, 5);
+		queue.skip(5);
+		queue.add(data, 0, data.length);
+
+		char[] dst = new char[12];
+		Assert.assertEquals(12, HexConverter.encode(queue, 0, queue.getSize(), dst, 0, true));
+		Assert.assertEquals("010203040506", new String(dst));
+
+		byte[] ascii = new byte[4];
+		HexConverter.encode(queue, 2, 4, ascii, 0, true);
+		Assert.assertEquals("0304", new String(ascii));
+		Assert.assertEquals(6, queue.getSize());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBadDigit() {
+		HexConverter.decode("0g".toCharArray(), 0, 2, new byte[1], 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testOddDigits() {
+		HexConverter.decode("abc".toCharArray(), 0, 3, new byte[2], 0);
+	}
+
+}
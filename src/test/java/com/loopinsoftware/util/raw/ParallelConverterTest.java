@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.raw;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Antonio Vicente Martin
+ * 
+ */
+public class ParallelConverterTest {
+
+	@Test
+	public void testToDoublesArrayMatchesSequential() {
+		int samples = ParallelConverter.PARALLEL_THRESHOLD + 12345;
+		byte[] test = new byte[samples * 3 + 7];
+		double[] expected = new double[samples];
+		double[] out = new double[samples];
+		new Random(1).nextBytes(test);
+
+		PcmConverter.toDoublesArray(test, 7, 3, true, expected, 0, samples, true, false);
+		ParallelConverter.toDoublesArray(ForkJoinPool.commonPool(), test, 7, 3, true, out, 0, samples, true, false);
+
+		Assert.assertArrayEquals(expected, out, 0);
+	}
+
+	@Test
+	public void testChunkBoundariesStartCacheLines() {
+		int to = 5 * ParallelConverter.CHUNK_SIZE;
+		int[][] cases = { { 0, 0, 8 }, { 3, 24, 8 }, { 0, 7, 3 }, { 5, 11, 1 }, { 0, 2, 2 } };
+		for (int[] c : cases) {
+			int from = c[0];
+			int width = c[2];
+			int previous = from;
+			for (int chunk = 1; chunk < 5; chunk++) {
+				int boundary = ParallelConverter.boundary(from, to, c[1], width, chunk);
+				long address = ParallelConverter.ARRAY_BASE_OFFSET + c[1] + (long) (boundary - from) * width;
+
+				Assert.assertEquals(0, address % ParallelConverter.CACHE_LINE);
+				Assert.assertTrue(boundary >= from + chunk * ParallelConverter.CHUNK_SIZE);
+				Assert.assertTrue(boundary > previous);
+				previous = boundary;
+			}
+			Assert.assertEquals(to, ParallelConverter.boundary(from, to, c[1], width, 5));
+		}
+
+		// An odd offset of 2 bytes values can not start a line
+		Assert.assertEquals(ParallelConverter.CHUNK_SIZE, ParallelConverter.boundary(0, to, 1, 2, 1));
+	}
+
+	@Test
+	public void testFromIntArrayMatchesSequential() {
+		int values = ParallelConverter.PARALLEL_THRESHOLD * 2 + 1;
+		int[] test = new int[values];
+		byte[] expected = new byte[values * 4 + 1];
+		byte[] out = new byte[values * 4 + 1];
+		for (int i = 0; i < values; i++) {
+			test[i] = i * 0x01010101;
+		}
+
+		ByteConverter.fromIntArray(test, 0, values, expected, 1, true);
+		ParallelConverter.fromIntArray(ForkJoinPool.commonPool(), test, 0, values, out, 1, true);
+
+		Assert.assertArrayEquals(expected, out);
+	}
+
+	@Test
+	public void testDitherDoesNotDependOnParallelism() {
+		int samples = ParallelConverter.PARALLEL_THRESHOLD * 2;
+		float[] test = new float[samples];
+		byte[] out1 = new byte[samples * 2];
+		byte[] out2 = new byte[samples * 2];
+		ForkJoinPool single = new ForkJoinPool(1);
+		ForkJoinPool wide = new ForkJoinPool(8);
+
+		ParallelConverter.fromFloatsArray(single, test, 0, samples, out1, 0, 2, true, true,
+				new PcmConverter.Dither(5), true);
+		ParallelConverter.fromFloatsArray(wide, test, 0, samples, out2, 0, 2, true, true,
+				new PcmConverter.Dither(5), true);
+		single.shutdown();
+		wide.shutdown();
+
+		Assert.assertArrayEquals(out1, out2);
+	}
+
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.raw;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Antonio Vicente Martin
+ * 
+ */
+public class PcmConverterTest {
+
+	@Test
+	public void testToDoublesArray24BitsBigEndian() {
+		byte[] test = { 0, 0, (byte) 0x80, (byte) 0xff, (byte) 0xff, 0x7f, 1, 0, 0 };
+		double[] expected = { -1.0, (double) 0x7fffff / 0x800000, 1.0 / 0x800000 };
+		double[] out = new double[expected.length];
+
+		PcmConverter.toDoublesArray(test, 0, 3, true, out, 0, out.length, true, false);
+
+		Assert.assertArrayEquals(expected, out, 0);
+	}
+
+	@Test
+	public void testToDoublesArray24BitsLittleEndian() {
+		byte[] test = { (byte) 0xff, (byte) 0xff, (byte) 0xfe };
+		double[] expected = { -2.0 };
+		double[] out = new double[expected.length];
+
+		PcmConverter.toDoublesArray(test, 0, 3, true, out, 0, out.length, false, true);
+
+		Assert.assertArrayEquals(expected, out, 0);
+	}
+
+	@Test
+	public void testToDoublesArrayUnsigned8Bits() {
+		byte[] test = { 0, (byte) 0x80, (byte) 0xff };
+		double[] expected = { -1.0, 0.0, 127.0 / 128 };
+		double[] out = new double[expected.length];
+
+		PcmConverter.toDoublesArray(test, 0, 1, false, out, 0, out.length, true, false);
+
+		Assert.assertArrayEquals(expected, out, 0);
+	}
+
+	@Test
+	public void testToFloatsArrayMatchesGenericPath() {
+		byte[] test = { 1, (byte) 0x80, 3, 4, (byte) 0xff, 6, 7, 8, 9, 10, 11, 12 };
+
+		for (int sampleSize = 1; sampleSize <= 4; sampleSize++) {
+			int samples = test.length / sampleSize;
+			float[] out = new float[samples];
+
+			PcmConverter.toFloatsArray(test, 0, sampleSize, true, out, 0, samples, false, true);
+
+			for (int i = 0; i < samples; i++) {
+				Assert.assertEquals((float) ByteConverter.toValue(test, i * sampleSize, sampleSize, true), out[i], 0);
+			}
+		}
+	}
+
+	@Test
+	public void testToDoublesArrayUnsigned32BitsNoNormalize() {
+		byte[] test = { (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff };
+		double[] out = new double[1];
+
+		PcmConverter.toDoublesArray(test, 0, 4, false, out, 0, out.length, false, false);
+
+		Assert.assertEquals(4294967295.0, out[0], 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testToDoublesArrayIllegalArgumentException() {
+		PcmConverter.toDoublesArray(new byte[8], 0, 5, true, new double[1], 0, 1, true, true);
+	}
+
+	@Test
+	public void testDeinterleaveStereo() {
+		byte[] test = { 1, 0, 2, 0, 3, 0, 4, 0, 5, 0, 6, 0 };
+		double[][] expected = { { 1, 3, 5 }, { 2, 4, 6 } };
+		double[][] out = new double[2][3];
+
+		PcmConverter.deinterleave(test, 0, 2, true, 2, null, out, 0, 3, false, false);
+
+		Assert.assertArrayEquals(expected, out);
+	}
+
+	@Test
+	public void testDeinterleaveChannelSubset() {
+		byte[] test = { 1, 2, 3, 4, 5, 6, 7, 8, 9 };
+		float[][] expected = { { 3, 6, 9 }, { 1, 4, 7 } };
+		float[][] out = new float[2][3];
+
+		PcmConverter.deinterleave(test, 0, 1, true, 3, new int[] { 2, 0 }, out, 0, 3, false, false);
+
+		Assert.assertArrayEquals(expected[0], out[0], 0);
+		Assert.assertArrayEquals(expected[1], out[1], 0);
+	}
+
+	@Test
+	public void testInterleaveRoundTrip24Bits() {
+		int channels = 5;
+		int frames = 3000;
+		double[][] test = new double[channels][frames];
+		double[][] out = new double[channels][frames];
+		byte[] bytes = new byte[channels * frames * 3];
+
+		for (int c = 0; c < channels; c++) {
+			for (int i = 0; i < frames; i++) {
+				test[c][i] = ((c * 7919 + i * 104729) % 0x1000000 - 0x800000) / (double) 0x800000;
+			}
+		}
+
+		PcmConverter.interleave(test, 0, frames, null, bytes, 0, channels, 3, true, true, true);
+		PcmConverter.deinterleave(bytes, 0, 3, true, channels, null, out, 0, frames, true, true);
+
+		for (int c = 0; c < channels; c++) {
+			Assert.assertArrayEquals(test[c], out[c], 0);
+		}
+	}
+
+	@Test
+	public void testInterleaveClipsAndRounds() {
+		double[][] test = { { 2.0, -2.0, 0.5 / 0x8000 } };
+		byte[] expected = { (byte) 0xff, 0x7f, 0, (byte) 0x80, 1, 0 };
+		byte[] out = new byte[expected.length];
+
+		PcmConverter.interleave(test, 0, 3, null, out, 0, 1, 2, true, true, false);
+
+		Assert.assertArrayEquals(expected, out);
+	}
+
+	@Test
+	public void testInterleaveUnsignedLeavesOtherChannels() {
+		float[][] test = { { -1.0f, 0.0f } };
+		byte[] expected = { 9, 0, 9, (byte) 0x80 };
+		byte[] out = { 9, 9, 9, 9 };
+
+		PcmConverter.interleave(test, 0, 2, new int[] { 1 }, out, 0, 2, 1, false, true, false);
+
+		Assert.assertArrayEquals(expected, out);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDeinterleaveBadChannel() {
+		PcmConverter.deinterleave(new byte[4], 0, 2, true, 2, new int[] { 2 }, new double[1][1], 0, 1, true, true);
+	}
+
+	@Test
+	public void testFromFloatsArray32BitsClips() {
+		float[] test = { 1.0f, -1.0f, 0.0f };
+		int[] expected = { Integer.MAX_VALUE, Integer.MIN_VALUE, 0 };
+		int[] out = new int[expected.length];
+		byte[] bytes = new byte[test.length * 4];
+
+		PcmConverter.fromFloatsArray(test, 0, test.length, bytes, 0, 4, true, true, null, true);
+		ByteConverter.toIntArray(bytes, 0, out, 0, out.length, true);
+
+		Assert.assertArrayEquals(expected, out);
+	}
+
+	@Test
+	public void testFromDoublesArrayRoundTrip8BitsUnsigned() {
+		double[] test = { -1.0, -0.5, 0.0, 0.5, 127.0 / 128 };
+		double[] out = new double[test.length];
+		byte[] bytes = new byte[test.length];
+
+		PcmConverter.fromDoublesArray(test, 0, test.length, bytes, 0, 1, false, true, null, false);
+		PcmConverter.toDoublesArray(bytes, 0, 1, false, out, 0, out.length, true, false);
+
+		Assert.assertArrayEquals(test, out, 0);
+	}
+
+	@Test
+	public void testFromDoublesArrayDitherIsUnbiased() {
+		int samples = 100000;
+		double[] test = new double[samples];
+		short[] out = new short[samples];
+		byte[] bytes = new byte[samples * 2];
+		Arrays.fill(test, 0.25 / 0x8000);
+
+		PcmConverter.fromDoublesArray(test, 0, samples, bytes, 0, 2, true, true, new PcmConverter.Dither(7), false);
+		ByteConverter.toShortArray(bytes, 0, out, 0, samples, false);
+
+		double sum = 0;
+		for (int i = 0; i < samples; i++) {
+			Assert.assertTrue(out[i] >= -1 && out[i] <= 1);
+			sum += out[i];
+		}
+		Assert.assertEquals(0.25, sum / samples, 0.01);
+	}
+
+	@Test
+	public void testDitherIsReproducible() {
+		double[] test = new double[64];
+		byte[] out1 = new byte[test.length * 3];
+		byte[] out2 = new byte[test.length * 3];
+
+		PcmConverter.fromDoublesArray(test, 0, test.length, out1, 0, 3, true, true, new PcmConverter.Dither(3), true);
+		PcmConverter.fromDoublesArray(test, 0, test.length, out2, 0, 3, true, true, new PcmConverter.Dither(3), true);
+
+		Assert.assertArrayEquals(out1, out2);
+	}
+
+	@Test
+	public void testWidenAndNarrow16Bits() {
+		short[] test = { Short.MIN_VALUE, -1, 0, 1, Short.MAX_VALUE };
+		float[] floats = new float[test.length];
+		short[] out = new short[test.length];
+
+		PcmConverter.toFloatsArray(test, 0, floats, 0, floats.length, true);
+		PcmConverter.fromFloatsArray(floats, 0, floats.length, out, 0, true);
+
+		Assert.assertEquals(-1.0f, floats[0], 0);
+		Assert.assertArrayEquals(test, out);
+	}
+
+	@Test
+	public void testNarrowClips() {
+		float[] test = { 2.0f, -2.0f };
+		short[] expected = { Short.MAX_VALUE, Short.MIN_VALUE };
+		short[] out = new short[test.length];
+
+		PcmConverter.fromFloatsArray(test, 0, test.length, out, 0, true);
+
+		Assert.assertArrayEquals(expected, out);
+	}
+
+}
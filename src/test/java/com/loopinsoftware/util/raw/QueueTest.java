@@ -64,6 +64,42 @@ public class QueueTest {
 		Assert.assertArrayEquals(expected, test);
 	}
 
+	@Test
+	public void testPopNothing() {
+		Queue qTest = new Queue(4);
+		qTest.push(new byte[] { 1, 2, 3 });
+
+		Assert.assertEquals(0, qTest.pop(new byte[0]));
+		Assert.assertEquals(3, qTest.getSize());
+	}
+
+	@Test
+	public void testAddRangeOfLargerArray() {
+		byte[] src = { 0, 1, 2, 3, 4, 5, 6, 7, 8, 9 };
+		Queue qTest = new Queue(4);
+		byte[] out = new byte[4];
+
+		// Only the range counts against the capacity, not src.length
+		qTest.add(src, 2, 5);
+
+		Assert.assertEquals(3, qTest.getSize());
+		Assert.assertEquals(3, qTest.pop(out));
+		Assert.assertArrayEquals(new byte[] { 2, 3, 4, 0 }, out);
+	}
+
+	@Test
+	public void testPushRangeOverflow() {
+		byte[] src = { 0, 1, 2, 3, 4, 5, 6, 7, 8, 9 };
+		Queue qTest = new Queue(4);
+		byte[] out = new byte[4];
+		qTest.push(new byte[] { 10, 11 });
+
+		qTest.push(src, 1, 7);
+
+		Assert.assertEquals(4, qTest.pop(out));
+		Assert.assertArrayEquals(new byte[] { 3, 4, 5, 6 }, out);
+	}
+
 	@Test
 	public void testPushNoTruncate() {
 		byte[] test = { 1, 2, 3, 4, 5 };
@@ -300,4 +336,70 @@ public class QueueTest {
 
 	}
 
+	@Test
+	public void testSwapBytesAcrossWrap() {
+		byte[] removedData = new byte[3];
+		byte[] newData = { 7, 8, 9 };
+		byte[] expected = { 5, 4, 7, 6, 9, 8 };
+		byte[] out = new byte[expected.length];
+
+		Queue qTest = new Queue(new byte[] { 1, 2, 3, 4, 5, 6 }, 6);
+		qTest.pop(removedData);
+		qTest.add(newData);
+		qTest.swapBytes(2);
+		qTest.peek(out);
+
+		Assert.assertArrayEquals(expected, out);
+	}
+
+	@Test
+	public void testSwapBytesAlignedWrap() {
+		byte[] removedData = new byte[4];
+		byte[] newData = { 9, 10, 11, 12 };
+		byte[] expected = { 8, 7, 6, 5, 12, 11, 10, 9 };
+		byte[] out = new byte[expected.length];
+
+		Queue qTest = new Queue(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 }, 8);
+		qTest.pop(removedData);
+		qTest.add(newData);
+		qTest.swapBytes(4);
+		qTest.peek(out);
+
+		Assert.assertArrayEquals(expected, out);
+	}
+
+	@Test
+	public void testGetByteAndSkip() {
+		byte[] test = { 1, 2, 3, 4 };
+		Queue qTest = new Queue(test, test.length);
+
+		Assert.assertEquals(2, qTest.skip(2));
+		qTest.add(new byte[] { 5 });
+
+		Assert.assertEquals(3, qTest.getByte(0));
+		Assert.assertEquals(5, qTest.getByte(2));
+		Assert.assertEquals(3, qTest.getSize());
+	}
+
+	@Test(expected = ArrayIndexOutOfBoundsException.class)
+	public void testGetByteArrayIndexOutOfBoundsException() {
+		byte[] test = { 1, 2 };
+		Queue qTest = new Queue(test, 1);
+		qTest.getByte(1);
+	}
+
+	@Test
+	public void testAddAndPopWrappedWithOffsets() {
+		byte[] test = { 9, 9, 1, 2, 3, 4, 5 };
+		Queue qTest = new Queue(6);
+
+		qTest.add(new byte[4]);
+		qTest.skip(4);
+		qTest.add(test, 2, test.length);
+
+		byte[] out = new byte[7];
+		Assert.assertEquals(5, qTest.pop(out, 5, 2));
+		Assert.assertArrayEquals(new byte[] { 0, 0, 1, 2, 3, 4, 5 }, out);
+	}
+
 }
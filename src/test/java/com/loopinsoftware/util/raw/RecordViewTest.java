@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.raw;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.loopinsoftware.util.raw.RecordLayout.Field;
+import com.loopinsoftware.util.raw.RecordLayout.Type;
+
+/**
+ * @author Antonio Vicente Martin
+ * 
+ */
+public class RecordViewTest {
+
+	private RecordLayout layout = new RecordLayout(16);
+	private Field id = layout.add("id", Type.SHORT, 0, true);
+	private Field flags = layout.add("flags", Type.BYTE, 2, true);
+	private Field counter = layout.add("counter", Type.INT, 4, false);
+	private Field temperature = layout.add("temperature", Type.FLOAT, 8, true);
+	private Field timestamp = layout.add("timestamp", Type.INT, 12, true);
+
+	@Test
+	public void testLayout() {
+		Assert.assertEquals(16, layout.getSize());
+		Assert.assertSame(counter, layout.getField("counter"));
+		Assert.assertNull(layout.getField("missing"));
+		Assert.assertEquals(5, layout.getFields().size());
+
+		RecordLayout packed = new RecordLayout();
+		packed.add("a", Type.INT, 0, true);
+		packed.add("b", Type.DOUBLE, 4, true);
+		Assert.assertEquals(12, packed.getSize());
+	}
+
+	@Test
+	public void testMatchesByteConverter() {
+		byte[] data = new byte[20];
+		RecordView view = new RecordView(layout).wrap(data, 4);
+
+		view.setLong(id, -2);
+		view.setLong(flags, 0x81);
+		view.setLong(counter, 123456789);
+		view.setDouble(temperature, 21.5);
+
+		Assert.assertEquals(-2, ByteConverter.toShortValue(data, 4, true));
+		Assert.assertEquals((byte) 0x81, data[6]);
+		Assert.assertEquals(123456789, ByteConverter.toIntValue(data, 8, false));
+		Assert.assertEquals(21.5f, ByteConverter.toFloatValue(data, 12, true), 0);
+
+		Assert.assertEquals(-2, view.getInt(id));
+		Assert.assertEquals(-127, view.getInt(flags));
+		Assert.assertEquals(123456789, view.getLong(counter));
+		Assert.assertEquals(21.5f, view.getFloat(temperature), 0);
+	}
+
+	@Test
+	public void testIterateArray() {
+		int records = 100;
+		byte[] data = new byte[records * layout.getSize() + 5];
+		RecordView view = new RecordView(layout);
+
+		view.wrap(data, 0, records * layout.getSize());
+		int i = 0;
+		while (view.next()) {
+			view.setLong(timestamp, i);
+			view.setDouble(temperature, i * 0.5);
+			i++;
+		}
+		Assert.assertEquals(records, i);
+
+		// The trailing bytes are not a whole record
+		view.wrap(data, 0, data.length);
+		long sum = 0;
+		double temperatures = 0;
+		while (view.next()) {
+			sum += view.getLong(timestamp);
+			temperatures += view.getDouble(temperature);
+		}
+
+		Assert.assertEquals(records * (records - 1) / 2, sum);
+		Assert.assertEquals(records * (records - 1) / 4.0, temperatures, 0);
+	}
+
+	@Test
+	public void testIterateBuffer() {
+		ByteBuffer data = ByteBuffer.allocateDirect(10 * layout.getSize());
+		RecordView view = new RecordView(layout).wrap(data, 0, data.limit());
+
+		int i = 0;
+		while (view.next()) {
+			view.setLong(counter, i++);
+		}
+
+		for (i = 0; i < 10; i++) {
+			Assert.assertEquals(i, BufferConverter.toIntValue(data, i * layout.getSize() + 4, false));
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testNotPositioned() {
+		RecordView view = new RecordView(layout).wrap(new byte[32], 0, 32);
+		view.getInt(id);
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testRecordDoesNotFit() {
+		new RecordView(layout).wrap(new byte[20], 5);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testForeignField() {
+		RecordLayout other = new RecordLayout();
+		Field field = other.add("id", Type.SHORT, 0, true);
+		new RecordView(layout).wrap(new byte[16], 0).getInt(field);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testFieldOutOfRecord() {
+		layout.add("overflow", Type.LONG, 12, true);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testFieldAddedAfterView() {
+		RecordLayout growing = new RecordLayout();
+		growing.add("a", Type.INT, 0, true);
+		RecordView view = new RecordView(growing).wrap(new byte[12], 0);
+		Field late = growing.add("b", Type.DOUBLE, 4, true);
+
+		// The record of the view is 4 bytes, the field would read past it
+		view.getDouble(late);
+	}
+
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.raw;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Antonio Vicente Martin
+ * 
+ */
+public class VarintConverterTest {
+
+	@Test
+	public void testEncode300() {
+		byte[] expected = { (byte) 0xac, 0x02 };
+		byte[] out = new byte[expected.length];
+
+		int end = VarintConverter.encode(300, false, out, 0);
+
+		Assert.assertArrayEquals(expected, out);
+		Assert.assertEquals(2, end);
+		Assert.assertEquals(300, VarintConverter.decode(out, 0, false));
+	}
+
+	@Test
+	public void testZigZag() {
+		Assert.assertEquals(0, VarintConverter.zigZag(0));
+		Assert.assertEquals(1, VarintConverter.zigZag(-1));
+		Assert.assertEquals(2, VarintConverter.zigZag(1));
+		Assert.assertEquals(-1, VarintConverter.zigZag(Long.MIN_VALUE));
+		Assert.assertEquals(Long.MIN_VALUE, VarintConverter.unZigZag(-1));
+	}
+
+	@Test
+	public void testSizeOf() {
+		Assert.assertEquals(1, VarintConverter.sizeOf(0));
+		Assert.assertEquals(1, VarintConverter.sizeOf(127));
+		Assert.assertEquals(2, VarintConverter.sizeOf(128));
+		Assert.assertEquals(10, VarintConverter.sizeOf(-1));
+	}
+
+	@Test
+	public void testLongArrayRoundTrip() {
+		Random random = new Random(3);
+		long[] test = new long[1000];
+		for (int i = 0; i < test.length; i++) {
+			// Every length, from 1 to 10 bytes
+			test[i] = random.nextLong() >> random.nextInt(64);
+		}
+		long[] out = new long[test.length];
+		byte[] bytes = new byte[test.length * VarintConverter.MAX_LENGTH];
+
+		int end = VarintConverter.encodeArray(test, 0, test.length, true, bytes, 0);
+		int read = VarintConverter.decodeArray(bytes, 0, out, 0, out.length, true);
+
+		Assert.assertArrayEquals(test, out);
+		Assert.assertEquals(end, read);
+	}
+
+	@Test
+	public void testIntArrayUnsignedRoundTrip() {
+		int[] test = { 0, 1, -1, Integer.MIN_VALUE, 0x12345678 };
+		int[] out = new int[test.length];
+		byte[] bytes = new byte[test.length * 5];
+
+		int end = VarintConverter.encodeArray(test, 0, test.length, false, bytes, 0);
+
+		Assert.assertEquals(end, VarintConverter.decodeArray(bytes, 0, out, 0, out.length, false));
+		Assert.assertArrayEquals(test, out);
+	}
+
+	@Test
+	public void testDeltasRoundTrip() {
+		int[] test = { 1000, 1001, 1003, 990, Integer.MAX_VALUE, Integer.MIN_VALUE };
+		int[] out = new int[test.length];
+		byte[] bytes = new byte[test.length * 5];
+
+		int end = VarintConverter.encodeDeltas(test, 0, test.length, bytes, 0);
+
+		Assert.assertEquals(end, VarintConverter.decodeDeltas(bytes, 0, out, 0, out.length));
+		Assert.assertArrayEquals(test, out);
+		Assert.assertEquals(2, VarintConverter.length(bytes, 0));
+	}
+
+	@Test
+	public void testQueueRoundTripLeavesIncompleteVarint() {
+		long[] test = { 1, -300, 70000 };
+		long[] out = new long[test.length];
+		Queue queue = new Queue(16);
+
+		Assert.assertEquals(test.length, VarintConverter.encodeArray(test, 0, test.length, true, queue));
+		queue.add(new byte[] { (byte) 0x80 });
+
+		Assert.assertEquals(test.length, VarintConverter.decodeArray(queue, out, 0, out.length, true));
+		Assert.assertArrayEquals(test, out);
+		Assert.assertEquals(1, queue.getSize());
+	}
+
+	@Test
+	public void testQueueWrapsAroundRing() {
+		Random random = new Random(42);
+		long[] test = new long[4000];
+		for (int i = 0; i < test.length; i++) {
+			// From 1 to 10 bytes per varint
+			test[i] = random.nextLong() >> random.nextInt(64);
+		}
+		long[] out = new long[test.length];
+		Queue queue = new Queue(37);
+		int encoded = 0;
+		int decoded = 0;
+
+		while (decoded < test.length) {
+			encoded += VarintConverter.encodeArray(test, encoded, test.length, true, queue);
+			int wanted = Math.min(test.length, decoded + 1 + random.nextInt(5));
+			decoded += VarintConverter.decodeArray(queue, out, decoded, wanted, true);
+		}
+
+		Assert.assertArrayEquals(test, out);
+		Assert.assertEquals(0, queue.getSize());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testQueueMalformedVarint() {
+		Queue queue = new Queue(16);
+		queue.add(new byte[5]);
+		queue.skip(5);
+		byte[] continuations = new byte[11];
+		Arrays.fill(continuations, (byte) 0x80);
+		queue.add(continuations);
+
+		VarintConverter.decodeArray(queue, new long[1], 0, 1, false);
+	}
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.raw;
+
+import java.util.Random;
+import java.util.zip.CRC32C;
+import java.util.zip.Checksum;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Antonio Vicente Martin
+ * 
+ */
+public class XXHash64Test {
+
+	@Test
+	public void testKnownValues() {
+		Assert.assertEquals(0xEF46DB3751D8E999L, hash(""));
+		Assert.assertEquals(0x44BC2CF5AD770999L, hash("abc"));
+		Assert.assertEquals(0xFBCEA83C8A378BF1L, hash("Nobody inspects the spammish repetition"));
+	}
+
+	@Test
+	public void testIncremental() {
+		byte[] data = new byte[1000];
+		new Random(4).nextBytes(data);
+
+		XXHash64 whole = new XXHash64(42);
+		whole.update(data, 0, data.length);
+
+		XXHash64 pieces = new XXHash64(42);
+		Random random = new Random(5);
+		for (int i = 0; i < data.length;) {
+			int n = Math.min(random.nextInt(40), data.length - i);
+			if (n == 0) {
+				pieces.update(data[i++]);
+			} else {
+				pieces.update(data, i, n);
+				i += n;
+			}
+			// Querying must not disturb the running state
+			pieces.getValue();
+		}
+
+		Assert.assertEquals(whole.getValue(), pieces.getValue());
+
+		pieces.reset();
+		pieces.update(data, 0, data.length);
+		Assert.assertEquals(whole.getValue(), pieces.getValue());
+	}
+
+	@Test
+	public void testQueueChecksums() {
+		byte[] data = new byte[5000];
+		new Random(6).nextBytes(data);
+
+		Queue queue = new Queue(700);
+		queue.setAddedChecksum(new XXHash64());
+		queue.setRemovedChecksum(new CRC32C());
+
+		byte[] popped = new byte[300];
+		for (int i = 0; i < data.length; i += 250) {
+			queue.add(data, i, i + 250);
+			if (queue.getSize() >= 300) {
+				queue.pop(popped, 200);
+				queue.skip(100);
+			}
+		}
+		queue.skip(queue.getSize());
+
+		XXHash64 added = new XXHash64();
+		added.update(data, 0, data.length);
+		CRC32C removed = new CRC32C();
+		removed.update(data, 0, data.length);
+
+		Assert.assertEquals(added.getValue(), queue.getAddedChecksum().getValue());
+		Assert.assertEquals(removed.getValue(), queue.getRemovedChecksum().getValue());
+	}
+
+	@Test
+	public void testUpdateFromRing() {
+		byte[] data = new byte[100];
+		new Random(7).nextBytes(data);
+
+		Queue queue = new Queue(64);
+		queue.add(data, 0, 40);
+		queue.skip(40);
+		queue.add(data, 40, 100);
+
+		Checksum ring = new CRC32C();
+		queue.updateChecksum(ring, 10, 60);
+
+		Checksum expected = new CRC32C();
+		expected.update(data, 50, 50);
+
+		Assert.assertEquals(expected.getValue(), ring.getValue());
+	}
+
+	private static long hash(String text) {
+		XXHash64 hash = new XXHash64();
+		byte[] bytes = text.getBytes();
+		hash.update(bytes, 0, bytes.length);
+		return hash.getValue();
+	}
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.time;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.loopinsoftware.util.raw.ByteConverter;
+
+/**
+ * @author Antonio Vicente Martin
+ * 
+ */
+public class BenchmarkRunnerTest {
+
+	@Test
+	public void testCriticalValues() {
+		Assert.assertEquals(12.706, BenchmarkRunner.getCriticalValue(0.95, 1), 1e-3);
+		Assert.assertEquals(4.303, BenchmarkRunner.getCriticalValue(0.95, 2), 1e-3);
+		Assert.assertEquals(3.250, BenchmarkRunner.getCriticalValue(0.99, 9), 1e-3);
+		Assert.assertEquals(2.042, BenchmarkRunner.getCriticalValue(0.95, 30), 1e-3);
+		Assert.assertEquals(2.576, BenchmarkRunner.getCriticalValue(0.99, 100000), 1e-3);
+	}
+
+	@Test
+	public void testRun() {
+		final byte[] data = new byte[8];
+		BenchmarkRunner runner = new BenchmarkRunner(2, 5, 100);
+		BenchmarkResult result = runner.run(new Measurable() {
+			@Override
+			public int measure() {
+				long sum = 0;
+				for (int i = 0; i < 10; i++) {
+					sum += ByteConverter.toLongValue(data, 0, true);
+				}
+				return 10 + (int) (sum & 0);
+			}
+		});
+
+		Assert.assertEquals(5, result.getRounds());
+		Assert.assertEquals(5000, result.getOperations());
+		Assert.assertTrue(result.getMean() > 0);
+		Assert.assertTrue(result.getLow() <= result.getMean() && result.getMean() <= result.getHigh());
+		Assert.assertTrue(result.getMin() <= result.getMean() && result.getMean() <= result.getMax());
+	}
+
+	@Test
+	public void testAllocatedBytes() {
+		BenchmarkResult result = new BenchmarkRunner(1, 3, 100).run(new Measurable() {
+			@Override
+			public int measure() {
+				return new byte[1024].length / 1024;
+			}
+		});
+
+		if (!Double.isNaN(result.getAllocatedBytes())) {
+			Assert.assertTrue(result.getAllocatedBytes() >= 1024);
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testNoOperations() {
+		new BenchmarkRunner(0, 2, 10).run(new Measurable() {
+			@Override
+			public int measure() {
+				return 0;
+			}
+		});
+	}
+
+}
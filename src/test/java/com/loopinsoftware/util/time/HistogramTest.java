@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.time;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Antonio Vicente Martin
+ * 
+ */
+public class HistogramTest {
+
+	@Test
+	public void testBuckets() {
+		Histogram histogram = new Histogram(4);
+		long previous = -1;
+		for (int index = 0; index < 100; index++) {
+			long highest = histogram.getHighestValue(index);
+			Assert.assertEquals(index, histogram.getIndex(previous + 1));
+			Assert.assertEquals(index, histogram.getIndex(highest));
+			previous = highest;
+		}
+		Assert.assertEquals(Long.MAX_VALUE, histogram.getHighestValue(histogram.getIndex(Long.MAX_VALUE)));
+	}
+
+	@Test
+	public void testPercentiles() {
+		Histogram histogram = new Histogram();
+		for (int i = 1; i <= 100000; i++) {
+			histogram.record(i);
+		}
+
+		Assert.assertEquals(100000, histogram.getCount());
+		Assert.assertEquals(1, histogram.getMin());
+		Assert.assertEquals(100000, histogram.getMax());
+		Assert.assertEquals(50000.5, histogram.getMean(), 0);
+		assertClose(50000, histogram.getValueAtPercentile(50), 1.0 / 128);
+		assertClose(99000, histogram.getValueAtPercentile(99), 1.0 / 128);
+		assertClose(99900, histogram.getValueAtPercentile(99.9), 1.0 / 128);
+		Assert.assertEquals(100000, histogram.getValueAtPercentile(100));
+		Assert.assertEquals(1, histogram.getValueAtPercentile(0));
+	}
+
+	@Test
+	public void testDrain() {
+		Histogram histogram = new Histogram();
+		Histogram interval = new Histogram();
+		histogram.record(10, 3);
+		histogram.drainTo(interval);
+
+		Assert.assertEquals(0, histogram.getCount());
+		Assert.assertEquals(0, histogram.getValueAtPercentile(50));
+		Assert.assertEquals(3, interval.getCount());
+		Assert.assertEquals(10, interval.getValueAtPercentile(50));
+
+		histogram.record(1000);
+		histogram.drainTo(interval);
+		Assert.assertEquals(1, interval.getCount());
+		Assert.assertEquals(1000, interval.getMin());
+
+		Histogram total = new Histogram();
+		total.add(interval);
+		total.record(10);
+		Assert.assertEquals(2, total.getCount());
+		Assert.assertEquals(10, total.getMin());
+	}
+
+	@Test
+	public void testDrainWhileRecording() throws InterruptedException {
+		final Histogram histogram = new Histogram();
+		Thread recorder = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				Random random = new Random(42);
+				for (int i = 0; i < 400000; i++) {
+					histogram.record(random.nextInt(1000000));
+				}
+			}
+		});
+		recorder.start();
+
+		Histogram interval = new Histogram();
+		long drained = 0;
+		while (recorder.isAlive()) {
+			histogram.drainTo(interval);
+			drained += interval.getCount();
+			if (interval.getCount() > 0) {
+				// The min and max lie in the lowest and highest drained buckets
+				Assert.assertEquals(interval.getIndex(interval.getValueAtPercentile(0)),
+						interval.getIndex(interval.getMin()));
+				Assert.assertEquals(interval.getValueAtPercentile(100), interval.getMax());
+			}
+		}
+		recorder.join();
+		histogram.drainTo(interval);
+		drained += interval.getCount();
+
+		Assert.assertEquals(400000, drained);
+		Assert.assertEquals(0, histogram.getCount());
+	}
+
+	@Test
+	public void testConcurrentRecording() throws InterruptedException {
+		final Histogram histogram = new Histogram();
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			final long seed = t;
+			threads[t] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					Random random = new Random(seed);
+					for (int i = 0; i < 100000; i++) {
+						histogram.record(random.nextInt(1000000));
+					}
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		Assert.assertEquals(400000, histogram.getCount());
+		assertClose(500000, histogram.getValueAtPercentile(50), 0.02);
+	}
+
+	@Test
+	public void testTimer() {
+		NanoTimer timer = new NanoTimer();
+		long elapsed = timer.measure(new Measurable() {
+			@Override
+			public int measure() {
+				return 0;
+			}
+		});
+		long start = timer.start();
+		timer.stop(start);
+		TimeUtil.measureNanos(new Measurable() {
+			@Override
+			public int measure() {
+				return 0;
+			}
+		}, timer.getHistogram());
+
+		Assert.assertEquals(3, timer.getHistogram().getCount());
+		Assert.assertTrue(elapsed >= 0);
+		Assert.assertTrue(timer.getHistogram().getMax() >= elapsed);
+	}
+
+	private static void assertClose(long expected, long actual, double error) {
+		Assert.assertTrue("expected " + expected + " got " + actual, Math.abs(actual - expected) <= expected * error);
+	}
+
+}
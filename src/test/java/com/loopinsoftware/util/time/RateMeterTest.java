@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2014 Loopin Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.loopinsoftware.util.time;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.loopinsoftware.util.raw.BlockingQueue;
+import com.loopinsoftware.util.raw.Queue;
+
+/**
+ * @author Antonio Vicente Martin
+ * 
+ */
+public class RateMeterTest {
+
+	private static class FakeClock implements LongSupplier {
+
+		private long nanos;
+
+		@Override
+		public long getAsLong() {
+			return nanos;
+		}
+
+		void advance(double seconds) {
+			nanos += (long) (seconds * TimeUnit.SECONDS.toNanos(1));
+		}
+	}
+
+	@Test
+	public void testSteadyRate() {
+		FakeClock clock = new FakeClock();
+		RateMeter meter = new RateMeter(clock);
+		for (int second = 0; second < 60; second++) {
+			meter.mark(1000);
+			clock.advance(1);
+			meter.getInstantRate();
+		}
+
+		RateMeter.Snapshot snapshot = meter.getSnapshot();
+		Assert.assertEquals(60000, snapshot.getCount());
+		Assert.assertEquals(1000, snapshot.getInstantRate(), 1e-9);
+		Assert.assertEquals(1000, snapshot.getOneSecondRate(), 1e-9);
+		Assert.assertEquals(1000, snapshot.getFiveSecondRate(), 1e-9);
+		Assert.assertEquals(1000, snapshot.getFifteenSecondRate(), 1e-9);
+	}
+
+	@Test
+	public void testPollingOffTicks() {
+		for (int pollSteps : new int[] { 50, 99, 130, 250 }) {
+			FakeClock clock = new FakeClock();
+			RateMeter meter = new RateMeter(clock);
+
+			// 1000 events per second in steps of 10 ms, polled every pollSteps
+			for (int step = 1; step <= 3000; step++) {
+				meter.mark(10);
+				clock.advance(0.01);
+				if (step % pollSteps == 0) {
+					RateMeter.Snapshot snapshot = meter.getSnapshot();
+					if (snapshot.getCount() > 10 * pollSteps) {
+						Assert.assertEquals(1000, snapshot.getInstantRate(), 1e-6);
+						Assert.assertEquals(1000, snapshot.getOneSecondRate(), 1e-6);
+						Assert.assertEquals(1000, snapshot.getFiveSecondRate(), 1e-6);
+						Assert.assertEquals(1000, snapshot.getFifteenSecondRate(), 1e-6);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testDecay() {
+		FakeClock clock = new FakeClock();
+		RateMeter meter = new RateMeter(clock);
+		meter.mark(100);
+		clock.advance(1);
+		Assert.assertEquals(100, meter.getOneSecondRate(), 1e-9);
+
+		// Idle for 5 seconds, folded at once
+		clock.advance(5);
+		Assert.assertEquals(0, meter.getInstantRate(), 0);
+		Assert.assertEquals(100 * Math.exp(-5), meter.getOneSecondRate(), 1e-9);
+		Assert.assertEquals(100 * Math.exp(-1), meter.getFiveSecondRate(), 1e-9);
+		Assert.assertEquals(100 * Math.exp(-5.0 / 15), meter.getFifteenSecondRate(), 1e-9);
+	}
+
+	@Test
+	public void testPartialTick() {
+		FakeClock clock = new FakeClock();
+		RateMeter meter = new RateMeter(clock);
+		meter.mark(10);
+		clock.advance(0.5);
+		Assert.assertEquals(0, meter.getOneSecondRate(), 0);
+
+		meter.mark(10);
+		clock.advance(0.5);
+		Assert.assertEquals(20, meter.getInstantRate(), 1e-9);
+	}
+
+	@Test
+	public void testQueueMeters() {
+		Queue queue = new BlockingQueue(16, BlockingQueue.PushPolicy.OVERWRITE_OLD_DATA, 1);
+		StreamMeter added = new StreamMeter();
+		StreamMeter removed = new StreamMeter();
+		queue.setAddedMeter(added);
+		queue.setRemovedMeter(removed);
+
+		queue.push(new byte[10]);
+		queue.push(new byte[4]);
+		queue.pop(new byte[8]);
+		queue.skip(0);
+		queue.skip(2);
+
+		Assert.assertEquals(14, added.getBytes().getCount());
+		Assert.assertEquals(2, added.getOperations().getCount());
+		Assert.assertEquals(10, removed.getBytes().getCount());
+		Assert.assertEquals(2, removed.getOperations().getCount());
+
+		queue.setAddedMeter(null);
+		queue.push(new byte[4]);
+		Assert.assertEquals(14, added.getBytes().getCount());
+	}
+
+}